@@ -4,4 +4,9 @@ import org.helios.gmx.*;
 def gmx = Gmx.newInstance();
 gmx.mbeans("java.lang:type=MemoryPool,name=*", {
     println "${it.objectName}:${it.Usage.committed}";
-});
\ No newline at end of file
+});
+
+// The same read in bulk, one getAttributes per pool, or one remote call when the Gmx is remoted
+gmx.read("java.lang:type=MemoryPool,name=*", ["Usage"]).each { name, attrs ->
+    println "${name}:${attrs.Usage.committed}";
+}
\ No newline at end of file
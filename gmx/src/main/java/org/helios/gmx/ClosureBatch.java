@@ -0,0 +1,111 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import groovy.lang.Closure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.helios.gmx.jmx.remote.ClosureResult;
+
+/**
+ * <p>Title: ClosureBatch</p>
+ * <p>Description: A builder for a batch of closures that are executed against a Gmx's MBeanServer in one call, 
+ * which for a remote Gmx is one round trip to the foreign MBeanServer regardless of the number of closures.
+ * Each closure is passed a Gmx for the target MBeanServer as its first parameter, followed by its own arguments.
+ * A failing closure does not stop the batch.</p>
+ * <pre>
+ * def results = gmx.batch().add({ it.getMBeanCount() }).add({ gmx, name -> gmx.getAttribute(name, "Uptime") }, runtimeOn).parallel().execute();
+ * </pre>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.ClosureBatch</code></p>
+ */
+public class ClosureBatch {
+	/** The Gmx to execute the batch against */
+	protected final Gmx gmx;
+	/** The batched closures */
+	protected final List<Closure<?>> closures = new ArrayList<Closure<?>>();
+	/** The arguments of each batched closure */
+	protected final List<Object[]> arguments = new ArrayList<Object[]>();
+	/** Indicates if the closures should be executed concurrently */
+	protected boolean parallel = false;
+	
+	/**
+	 * Creates a new ClosureBatch
+	 * @param gmx The Gmx to execute the batch against
+	 */
+	ClosureBatch(Gmx gmx) {
+		this.gmx = gmx;
+	}
+	
+	/**
+	 * Adds a closure to the batch
+	 * @param closure The closure
+	 * @param args The caller supplied arguments to the closure
+	 * @return this batch
+	 */
+	public ClosureBatch add(Closure<?> closure, Object...args) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		closures.add(closure);
+		arguments.add(args);
+		return this;
+	}
+	
+	/**
+	 * Specifies that the closures should be executed concurrently on the target
+	 * @return this batch
+	 */
+	public ClosureBatch parallel() {
+		return parallel(true);
+	}
+	
+	/**
+	 * Specifies if the closures should be executed concurrently on the target or in the order they were added
+	 * @param parallel true for concurrent execution
+	 * @return this batch
+	 */
+	public ClosureBatch parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+	
+	/**
+	 * Returns the number of batched closures
+	 * @return the number of batched closures
+	 */
+	public int size() {
+		return closures.size();
+	}
+	
+	/**
+	 * Executes the batch
+	 * @return the result of each closure, in the order the closures were added
+	 */
+	public List<ClosureResult> execute() {
+		return gmx.execBatch(closures, arguments, parallel);
+	}
+}
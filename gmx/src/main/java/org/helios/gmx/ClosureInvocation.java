@@ -0,0 +1,147 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import groovy.lang.Closure;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: ClosureInvocation</p>
+ * <p>Description: A pending closure invocation submitted through {@link Gmx#submit(long, Closure, Object...)}.
+ * For a remote Gmx, the closure runs in the foreign MBeanServer's execution engine under the submitted deadline, 
+ * and {@link #cancel(boolean)} cancels it there as well as locally.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.ClosureInvocation</code></p>
+ * @param <T> The closure return type
+ */
+public class ClosureInvocation<T> implements Future<T> {
+	/** The Gmx the closure was submitted through */
+	protected final Gmx gmx;
+	/** The invocation id */
+	protected final String invocationId;
+	/** The task waiting for the closure result */
+	protected final FutureTask<T> task;
+	
+	/** The invocation id serial number factory */
+	private static final AtomicLong serial = new AtomicLong(0L);
+	/** The executor of the tasks waiting for closure results */
+	private static final ExecutorService waiters = Executors.newCachedThreadPool(new ThreadFactory(){
+		final AtomicInteger threadSerial = new AtomicInteger(0);
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GmxClosureInvocation#" + threadSerial.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	
+	/**
+	 * Creates and starts a new ClosureInvocation
+	 * @param gmx The Gmx the closure is submitted through
+	 * @param closure The closure, dehydrated if the Gmx is remote
+	 * @param timeout The timeout in ms.
+	 * @param args The caller supplied arguments to the closure
+	 */
+	ClosureInvocation(final Gmx gmx, final Closure<T> closure, final long timeout, final Object...args) {
+		this.gmx = gmx;
+		invocationId = gmx.clientId + "#" + serial.incrementAndGet();
+		task = new FutureTask<T>(new Callable<T>(){
+			@SuppressWarnings("unchecked")
+			public T call() {
+				if(!gmx.isRemote()) {
+					return closure.call(Gmx.mergeArguments(args, gmx));
+				}
+				return (T)gmx.invokeRemoteClosure(invocationId, closure, timeout, args);
+			}
+		});
+		waiters.execute(task);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if(task.isDone()) return false;
+		if(gmx.isRemote()) gmx.cancelRemoteClosure(invocationId);
+		return task.cancel(mayInterruptIfRunning);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	@Override
+	public boolean isCancelled() {
+		return task.isCancelled();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	@Override
+	public boolean isDone() {
+		return task.isDone();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Future#get()
+	 */
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		return task.get();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return task.get(timeout, unit);
+	}
+	
+	/**
+	 * Returns the invocation id
+	 * @return the invocation id
+	 */
+	public String getInvocationId() {
+		return invocationId;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import java.io.Closeable;
+import java.util.List;
+
+import org.helios.gmx.jmx.remote.ClosureSample;
+import org.helios.gmx.jmx.remote.ClosureScheduler;
+import org.helios.gmx.jmx.remote.SampleBatch;
+
+/**
+ * <p>Title: ClosureSchedule</p>
+ * <p>Description: A closure running on a fixed schedule in the target JVM, as returned by {@link Gmx#schedule(long, groovy.lang.Closure, Object...)}.
+ * Each execution is buffered in the target as a {@link ClosureSample}, and {@link #fetch()} collects all the samples taken since 
+ * the previous fetch in one call. Samples that overflowed the target's ring buffer before they could be fetched are counted in {@link #getDropped()}.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.ClosureSchedule</code></p>
+ */
+public class ClosureSchedule implements Closeable {
+	/** The Gmx of a remote schedule */
+	protected final Gmx gmx;
+	/** The scheduler of a local schedule */
+	protected final ClosureScheduler scheduler;
+	/** The schedule id */
+	protected final String scheduleId;
+	/** The sequence number of the last fetched sample */
+	protected long lastSequence = 0L;
+	/** The number of samples dropped before they could be fetched */
+	protected long dropped = 0L;
+	/** Indicates if the schedule is still running */
+	protected boolean active = true;
+	
+	/**
+	 * Creates a new remote ClosureSchedule
+	 * @param gmx The remote Gmx
+	 * @param scheduleId The schedule id
+	 */
+	ClosureSchedule(Gmx gmx, String scheduleId) {
+		this.gmx = gmx;
+		this.scheduler = null;
+		this.scheduleId = scheduleId;
+	}
+	
+	/**
+	 * Creates a new local ClosureSchedule
+	 * @param scheduler The local scheduler
+	 * @param scheduleId The schedule id
+	 */
+	ClosureSchedule(ClosureScheduler scheduler, String scheduleId) {
+		this.gmx = null;
+		this.scheduler = scheduler;
+		this.scheduleId = scheduleId;
+	}
+	
+	/**
+	 * Returns all the samples taken since the previous fetch
+	 * @return the new samples, in sequence order
+	 */
+	public List<ClosureSample> fetch() {
+		return fetch(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns the samples taken since the previous fetch, up to the passed maximum. The remaining samples are returned by the next fetch.
+	 * @param maxSamples The maximum number of samples to return
+	 * @return the new samples, in sequence order
+	 */
+	public synchronized List<ClosureSample> fetch(int maxSamples) {
+		SampleBatch batch = scheduler!=null ? scheduler.fetch(scheduleId, lastSequence, maxSamples) : gmx.fetchRemoteSamples(scheduleId, lastSequence, maxSamples);
+		lastSequence = batch.getLastSequence();
+		dropped += batch.getDropped();
+		active = batch.isActive();
+		return batch.getSamples();
+	}
+	
+	/**
+	 * Cancels the schedule. Samples that have not been fetched are discarded.
+	 */
+	@Override
+	public synchronized void close() {
+		if(!active) return;
+		active = false;
+		if(scheduler!=null) {
+			scheduler.cancel(scheduleId);
+		} else {
+			gmx.unscheduleRemoteClosure(scheduleId);
+		}
+	}
+	
+	/**
+	 * Returns the schedule id
+	 * @return the schedule id
+	 */
+	public String getScheduleId() {
+		return scheduleId;
+	}
+	
+	/**
+	 * Returns the sequence number of the last fetched sample
+	 * @return the last fetched sequence number
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+	
+	/**
+	 * Returns the number of samples that overflowed the target's ring buffer before they could be fetched
+	 * @return the number of dropped samples
+	 */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Indicates if the schedule was still running at the last fetch
+	 * @return false if the schedule has been closed, cancelled or has expired
+	 */
+	public synchronized boolean isActive() {
+		return active;
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.helios.gmx.jmx.remote.StreamChunk;
+import org.helios.gmx.jmx.remote.StreamSink;
+
+/**
+ * <p>Title: ClosureStream</p>
+ * <p>Description: An iterator over the items a streaming closure emits into its {@link StreamSink}, as returned by 
+ * {@link Gmx#stream(groovy.lang.Closure, Object...)}. Items are pulled from the target one chunk at a time as the iteration 
+ * progresses, so neither side holds more than a few chunks. If the closure fails, the items it emitted are returned 
+ * first and the failure is thrown when the iteration reaches the end. Closing the stream before the end cancels the closure.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.ClosureStream</code></p>
+ */
+public class ClosureStream implements Iterator<Object>, Closeable {
+	/** The Gmx of a remote stream */
+	protected final Gmx gmx;
+	/** The id of a remote stream */
+	protected final String streamId;
+	/** The sink of a local stream */
+	protected final StreamSink sink;
+	/** The items of the current chunk */
+	protected Iterator<Object> items = Collections.emptyList().iterator();
+	/** The streaming closure's exception, thrown once the items are exhausted */
+	protected RuntimeException error = null;
+	/** Indicates the last chunk has been pulled or the stream was closed */
+	protected boolean done = false;
+	
+	/** The time in ms. to wait for a chunk on each pull */
+	public static final long PULL_TIMEOUT = 5000L;
+	
+	/**
+	 * Creates a new remote ClosureStream
+	 * @param gmx The remote Gmx
+	 * @param streamId The stream id
+	 */
+	ClosureStream(Gmx gmx, String streamId) {
+		this.gmx = gmx;
+		this.streamId = streamId;
+		this.sink = null;
+	}
+	
+	/**
+	 * Creates a new local ClosureStream
+	 * @param sink The local stream sink
+	 */
+	ClosureStream(StreamSink sink) {
+		this.gmx = null;
+		this.streamId = sink.getStreamId();
+		this.sink = sink;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		while(!items.hasNext()) {
+			if(done) {
+				if(error!=null) {
+					RuntimeException re = error;
+					error = null;
+					throw new RuntimeException("Streaming closure [" + streamId + "] failed", re);
+				}
+				return false;
+			}
+			StreamChunk chunk = sink!=null ? sink.nextChunk(PULL_TIMEOUT) : gmx.nextStreamChunk(streamId, PULL_TIMEOUT);
+			items = chunk.getItems().iterator();
+			if(chunk.isLast()) {
+				done = true;
+				error = chunk.getError();
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public Object next() {
+		if(!hasNext()) throw new NoSuchElementException();
+		return items.next();
+	}
+	
+	/**
+	 * Unsupported
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("ClosureStream does not support remove");
+	}
+	
+	/**
+	 * Closes the stream, cancelling the streaming closure if it has not completed
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		if(done) return;
+		done = true;
+		items = Collections.emptyList().iterator();
+		if(sink!=null) {
+			sink.cancel();
+		} else {
+			gmx.closeStream(streamId);
+		}
+	}
+	
+	/**
+	 * Returns the stream id
+	 * @return the stream id
+	 */
+	public String getStreamId() {
+		return streamId;
+	}
+}
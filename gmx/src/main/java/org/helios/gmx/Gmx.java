@@ -31,20 +31,27 @@ import groovy.lang.GroovySystem;
 import groovy.lang.MetaClass;
 import groovy.lang.Script;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -66,6 +73,7 @@ import javax.management.MBeanServerFactory;
 import javax.management.NotCompliantMBeanException;
 import javax.management.Notification;
 import javax.management.NotificationFilter;
+import javax.management.NotificationFilterSupport;
 import javax.management.NotificationListener;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
@@ -78,11 +86,35 @@ import javax.management.remote.JMXServiceURL;
 
 import org.helios.gmx.classloading.ByteCodeRepository;
 import org.helios.gmx.classloading.ReverseClassLoader;
+import org.helios.gmx.jmx.AsyncNotificationListener;
+import org.helios.gmx.jmx.AsyncNotificationListener.OverflowPolicy;
+import org.helios.gmx.jmx.AsyncNotificationListenerMBean;
 import org.helios.gmx.jmx.ClosureWrappingNotificationFilter;
 import org.helios.gmx.jmx.ClosureWrappingNotificationListener;
+import org.helios.gmx.jmx.ClosureWrappingNotificationListener.Coalesce;
+import org.helios.gmx.jmx.ConnectionSupervisor;
+import org.helios.gmx.jmx.GmxConnectionPool;
+import org.helios.gmx.jmx.JournaledNotificationListener;
+import org.helios.gmx.jmx.ListenerRegistration;
+import org.helios.gmx.jmx.MBeanInfoCache;
 import org.helios.gmx.jmx.ObjectNameAwareListener;
+import org.helios.gmx.jmx.PatternSubscription;
+import org.helios.gmx.jmx.PatternSubscriptionRegistry;
+import org.helios.gmx.jmx.PooledConnection;
+import org.helios.gmx.jmx.RelayedNotificationListener;
 import org.helios.gmx.jmx.RuntimeMBeanServer;
 import org.helios.gmx.jmx.RuntimeMBeanServerConnection;
+import org.helios.gmx.jmx.remote.ClosureClassCache;
+import org.helios.gmx.jmx.remote.ClosureMeter;
+import org.helios.gmx.jmx.remote.ClosureResult;
+import org.helios.gmx.jmx.remote.ClosureScheduler;
+import org.helios.gmx.jmx.remote.JournalBatch;
+import org.helios.gmx.jmx.remote.NotificationJournal;
+import org.helios.gmx.jmx.remote.NotificationRelay;
+import org.helios.gmx.jmx.remote.SampleBatch;
+import org.helios.gmx.jmx.remote.StreamChunk;
+import org.helios.gmx.jmx.remote.StreamSink;
+import org.helios.gmx.jmx.remote.UnknownClosureHandleException;
 import org.helios.gmx.util.ClosureDehydrator;
 import org.helios.gmx.util.JMXHelper;
 import org.helios.vm.VirtualMachine;
@@ -97,7 +129,6 @@ import org.helios.vm.VirtualMachineDescriptor;
  * <p><code>org.helios.gmx.Gmx</code></p>
  * TODO:
  * MBeanServer[Connection] by JMXServiceURL, JMXServiceURL String and protocol components. 
- * Auto Reconnect
  * Authentication for remote connections
  * attrs: just values, name/value pairs, set
  */
@@ -110,6 +141,12 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	protected RuntimeMBeanServer mbeanServer;
 	/** The JMXConnector for remote connections */
 	protected JMXConnector connector = null;
+	/** The MBeanInfo cache for this connection */
+	protected MBeanInfoCache mbeanInfoCache = null;
+	/** The pooled connection leased for remote connections */
+	protected PooledConnection pooledConnection = null;
+	/** Flag to indicate if this Gmx has released its pooled connection lease */
+	protected final AtomicBoolean released = new AtomicBoolean(false);
 	/** The JMXConnector's originating service URL */
 	protected JMXServiceURL serviceURL =  null;
 	/** The JMXConnector environment */
@@ -124,6 +161,8 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	protected final AtomicBoolean connected = new AtomicBoolean(false);
 	/** Flag to indicate if this Gmx is has been remoted */
 	protected final AtomicBoolean remoted = new AtomicBoolean(false);
+	/** The identifier of this Gmx as the client of installed remote closures */
+	protected final String clientId = ManagementFactory.getRuntimeMXBean().getName() + "/" + Integer.toHexString(System.identityHashCode(this));
 	
 	/** The instance MetaClass */
 	protected MetaClass metaClass;
@@ -136,6 +175,16 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	protected final ClosureDehydrator dehydrator = new ClosureDehydrator();
 	/** A map of sets of registered JMX notification listeners  */
 	protected final Map<ObjectName, Set<ObjectNameAwareListener>> registeredNotificationListeners = new ConcurrentHashMap<ObjectName, Set<ObjectNameAwareListener>>();
+	/** The relay that aggregates notifications for listeners on a local MBeanServer, created when the first aggregating listener is added */
+	protected NotificationRelay localRelay = null;
+	/** The registry of listeners on ObjectName patterns, created when the first pattern listener is added */
+	protected PatternSubscriptionRegistry patternRegistry = null;
+	/** The journal that records notifications for journaled listeners on a local MBeanServer, created when the first one is added */
+	protected NotificationJournal localJournal = null;
+	/** The registration arguments of the listeners registered through a remote connection, keyed by the registered listener */
+	protected final Map<ObjectNameAwareListener, ListenerRegistration> listenerRegistrations = new ConcurrentHashMap<ObjectNameAwareListener, ListenerRegistration>();
+	/** The supervisor that reconnects this Gmx when auto reconnect is enabled */
+	protected volatile ConnectionSupervisor connectionSupervisor = null;
 	
 	
 	/** The platform MBeanServer Default Domain Name */
@@ -154,6 +203,12 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	
 	/** This JVM's PID */
 	public static final String PID = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+	/** The remote closure class cache keys of the closure classes executed remotely, keyed by closure class */
+	protected static final Map<Class<?>, String> CLOSURE_KEYS = new WeakHashMap<Class<?>, String>();
+	/** The meter for closures measured in this JVM */
+	protected static final ClosureMeter LOCAL_METER = new ClosureMeter(ClosureMeter.DEFAULT_MAX_CLASSES);
+	/** The scheduler for closures scheduled in this JVM */
+	protected static final ClosureScheduler LOCAL_SCHEDULER = new ClosureScheduler(ClosureScheduler.DEFAULT_THREADS);
 	
 	static {
 		ByteCodeRepository.getInstance();
@@ -214,6 +269,11 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		} else {
 			this.mbeanServer = null;
 		}
+		if(mbeanServerConnection instanceof MBeanServer) {
+			this.mbeanInfoCache = MBeanInfoCache.getInstance((MBeanServer)mbeanServerConnection);
+		} else {
+			this.mbeanInfoCache = new MBeanInfoCache("connection-" + System.identityHashCode(mbeanServerConnection), mbeanServerConnection);
+		}
 		serverDomain = this.mbeanServerConnection.getDefaultDomain();
 		try {
 			this.jvmName = (String)this.mbeanServerConnection.getAttribute(JMXHelper.objectName(ManagementFactory.RUNTIME_MXBEAN_NAME), "Name");
@@ -222,32 +282,33 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	}
 	
 	/**
-	 * Creates a new Gmx
+	 * Creates a new Gmx, leasing a shared connector from the {@link GmxConnectionPool}
 	 * @param serviceURL The remote JMXServiceURL
+	 * @param environment The JMXConnector environment
 	 */
+	@SuppressWarnings("unchecked")
 	private Gmx(JMXServiceURL serviceURL, Map<String, ?> environment)  {
 		if(serviceURL==null) throw new IllegalArgumentException("The passed serviceURL was null", new Throwable());		
 		this.serviceURL = serviceURL;
-		try {
-			this.connector = JMXConnectorFactory.connect(serviceURL);
-			this.mbeanServerConnection = RuntimeMBeanServerConnection.getInstance(connector.getMBeanServerConnection());
-			this.connectionId = connector.getConnectionId();
-			connected.set(true);
-			connector.addConnectionNotificationListener(this, null, this.connectionId);
-			if(this.mbeanServerConnection instanceof MBeanServer) {
-				this.mbeanServer = RuntimeMBeanServer.getInstance((MBeanServer)this.mbeanServerConnection);
-			} else {
-				this.mbeanServer = null;
-			}			
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to connect to remote MBeanServer on URL [" + serviceURL + "]");
+		if(environment!=null) {
+			((Map<String, Object>)this.environment).putAll(environment);
 		}
-		serverDomain = this.mbeanServerConnection.getDefaultDomain();
+		this.pooledConnection = GmxConnectionPool.getInstance().lease(serviceURL, this.environment, this);
+		this.connector = pooledConnection.getConnector();
+		this.mbeanServerConnection = pooledConnection.getConnection();
+		this.connectionId = pooledConnection.getConnectionId();
+		this.mbeanInfoCache = pooledConnection.getMBeanInfoCache();
+		connected.set(true);
 		try {
-			this.jvmName = (String)this.mbeanServerConnection.getAttribute(JMXHelper.objectName(ManagementFactory.RUNTIME_MXBEAN_NAME), "Name");
-		} catch (Exception e) {}	
-		GMX_REFERENCES.add(new WeakReference<Gmx>(this));
-		
+			connector.addConnectionNotificationListener(this, null, this.connectionId);
+		} catch (Exception e) {}
+		if(this.mbeanServerConnection instanceof MBeanServer) {
+			this.mbeanServer = RuntimeMBeanServer.getInstance((MBeanServer)this.mbeanServerConnection);
+		} else {
+			this.mbeanServer = null;
+		}			
+		serverDomain = pooledConnection.getServerDomain();
+		jvmName = pooledConnection.getJvmName();	GMX_REFERENCES.add(new WeakReference<Gmx>(this));
 	}
 	
 	/**
@@ -306,6 +367,30 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		return new Gmx(serviceURL, new HashMap<String, Object>(0));
 	}
 	
+	/**
+	 * Creates a new remote Gmx. Remote Gmx instances with the same JMXServiceURL and environment share one pooled JMXConnector.
+	 * @param serviceURL The JMXServiceURL to create the Gmx from
+	 * @param environment The JMXConnector environment, for example, credentials
+	 * @return a remote Gmx
+	 */
+	public static Gmx remote(JMXServiceURL serviceURL, Map<String, ?> environment) {
+		ReverseClassLoader.getInstance();
+		return new Gmx(serviceURL, environment);
+	}
+	
+	/**
+	 * Creates a new remote Gmx, optionally reconnecting automatically when the connection fails or is closed
+	 * @param serviceURL The JMXServiceURL to create the Gmx from
+	 * @param environment The JMXConnector environment, for example, credentials
+	 * @param autoReconnect true to reconnect automatically, restoring the remoted MBeanServer and the registered listeners
+	 * @return a remote Gmx
+	 */
+	public static Gmx remote(JMXServiceURL serviceURL, Map<String, ?> environment, boolean autoReconnect) {
+		Gmx gmx = remote(serviceURL, environment);
+		gmx.setAutoReconnect(autoReconnect);
+		return gmx;
+	}
+	
 	/**
 	 * Creates a new remote Gmx
 	 * @param serviceURL The JMXServiceURL to create the Gmx from
@@ -317,6 +402,8 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	
 	/**
 	 * Locates all JVMs on the local host using the attach API and invokes the passed closure on each.
+	 * The JVMs are attached to in parallel by a bounded pool of workers (see {@link ParallelAttacher}) and each
+	 * handler is invoked as soon as its Gmx is connected, so the closure may be called concurrently.
 	 * If a closure is provided, the Gmx will be closed after the closure is invoked and the return value will be null.
 	 * Otherwise, the return value will be live Gmx instances.
 	 * Attach failures are silently ignored.
@@ -325,29 +412,29 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	 * @return An array of Gmx instances created for each located and successfully attached JVM.
 	 */
 	public static Gmx[] attachInstances(boolean includeThis, Closure<Gmx> gmxHandler) {
-		Set<Gmx> set = new HashSet<Gmx>();
-		for(VirtualMachineDescriptor vmd: VirtualMachine.list()) {
-			if(!vmd.id().equals(PID) || (vmd.id().equals(PID) && includeThis)) {
-				Gmx gmx = null;
-				try {
-					gmx = Gmx.attachInstance(vmd.id());
-				} catch (Exception e) {
-					continue;
-				}
-				if(gmxHandler!=null) {
-					try {
-						gmxHandler.call(gmx);
-					} finally {
-						gmx.close();
-					}
-				} else {
-					try {
-						set.add(Gmx.attachInstance(vmd.id()));
-					} catch (Exception e) {}
-				}				
-			}
-		}
-		return gmxHandler!=null ? null : set.toArray(new Gmx[set.size()]);
+		return attachInstances(includeThis, ParallelAttacher.DEFAULT_ATTACH_TIMEOUT, gmxHandler, null);
+	}
+	
+	/**
+	 * Locates all JVMs on the local host using the attach API and invokes the passed closure on each.
+	 * The JVMs are attached to in parallel by a bounded pool of workers (see {@link ParallelAttacher}) and each
+	 * handler is invoked as soon as its Gmx is connected, so the closure may be called concurrently.
+	 * If a closure is provided, the Gmx will be closed after the closure is invoked and the return value will be null.
+	 * Otherwise, the return value will be live Gmx instances.
+	 * @param includeThis If true, includes this JVM (the one running this command)
+	 * @param timeout The per JVM attach and connect timeout in ms.
+	 * @param gmxHandler The optional closure to execute on each Gmx created for each discovered JVM.
+	 * @param failureHandler The optional closure to execute for each JVM that could not be attached to. It is passed the JVM id and the failure cause.
+	 * @return An array of Gmx instances created for each located and successfully attached JVM.
+	 */
+	public static Gmx[] attachInstances(boolean includeThis, long timeout, Closure<Gmx> gmxHandler, Closure<?> failureHandler) {
+		Gmx[] gmxes = ParallelAttacher.newParallelAttacher()
+			.includeThis(includeThis)
+			.timeout(timeout)
+			.handler(gmxHandler)
+			.onFailure(failureHandler)
+			.attach();
+		return gmxHandler!=null ? null : gmxes;
 	}
 	
 	/**
@@ -395,17 +482,48 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	/**
 	 * Closes a remote connection.
 	 * If this is not a remote Gmx, or the connection is already closed, the command does nothing.
+	 * The pooled connector lease is released, and the remoted MBeans are only unregistered when no other 
+	 * Gmx instance holds a lease on the same connector.
 	 */
 	public void close() {
+		ConnectionSupervisor supervisor = connectionSupervisor;
+		if(supervisor!=null) {
+			connectionSupervisor = null;
+			supervisor.close();
+		}
 		for(Map.Entry<ObjectName, Set<ObjectNameAwareListener>> entry: registeredNotificationListeners.entrySet()) {
 			for(ObjectNameAwareListener listener: entry.getValue()) {
 				try {
-					removeNotificationListener(listener.getObjectName(), listener);
+					_unregisterListener(listener);
 				} catch (Exception e) {}
 			}
 			entry.getValue().clear();
 		}
 		registeredNotificationListeners.clear();
+		listenerRegistrations.clear();
+		synchronized(registeredNotificationListeners) {
+			if(localRelay!=null) {
+				localRelay.shutdown();
+				localRelay = null;
+			}
+			if(patternRegistry!=null) {
+				patternRegistry.close();
+				patternRegistry = null;
+			}
+			if(localJournal!=null) {
+				localJournal.close();
+				localJournal = null;
+			}
+		}
+		if(remotedMBeanServer!=null && isConnected()) {
+			try {
+				mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "unregisterClient", new Object[]{clientId}, new String[]{String.class.getName()});
+			} catch (Exception e) {}
+		}
+		if(pooledConnection!=null && pooledConnection.getLeases()>1) {
+			remoteClassLoader = null;
+			remotedMBeanServer = null;
+		}
 		if(remoteClassLoader!=null) {
 			try { 
 				mbeanServerConnection.unregisterMBean(remoteClassLoader.getObjectName());
@@ -419,9 +537,12 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 			} catch (Exception e) {}
 		}		
 		if(connector!=null) {			
-			try { connector.close(); } catch (Exception e) {}
+			try { connector.removeConnectionNotificationListener(this); } catch (Exception e) {}
 			connected.set(false);
 		}
+		if(pooledConnection!=null && released.compareAndSet(false, true)) {
+			GmxConnectionPool.getInstance().release(pooledConnection, this);
+		}
 	}
 	
 	/**
@@ -432,6 +553,154 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		return connected.get();
 	}
 	
+	/**
+	 * Enables or disables automatic reconnect. When enabled, a {@link ConnectionSupervisor} calls {@link #reconnect()} with a jittered
+	 * exponential backoff after the connection fails or is closed, and exposes the reconnect counts and downtime through its MBean.
+	 * @param autoReconnect true to enable automatic reconnect, false to disable it
+	 */
+	public void setAutoReconnect(boolean autoReconnect) {
+		if(!isRemote()) throw new IllegalStateException("Only a remote Gmx can reconnect", new Throwable());
+		synchronized(registeredNotificationListeners) {
+			if(autoReconnect && connectionSupervisor==null) {
+				connectionSupervisor = new ConnectionSupervisor(this, clientId);
+			} else if(!autoReconnect && connectionSupervisor!=null) {
+				connectionSupervisor.close();
+				connectionSupervisor = null;
+			}
+		}
+	}
+	
+	/**
+	 * Indicates if this Gmx reconnects automatically
+	 * @return true if automatic reconnect is enabled
+	 */
+	public boolean isAutoReconnect() {
+		return connectionSupervisor!=null;
+	}
+	
+	/**
+	 * Returns the supervisor that reconnects this Gmx
+	 * @return the connection supervisor, or null if automatic reconnect is not enabled
+	 */
+	public ConnectionSupervisor getConnectionSupervisor() {
+		return connectionSupervisor;
+	}
+	
+	/**
+	 * Replaces the lost connection of this remote Gmx with a new pooled connection to the same JMXServiceURL and restores its state:
+	 * the remoted MBeanServer is reinstalled if this Gmx had been remoted and it is no longer registered in the target,
+	 * and every entry in the registered notification listeners is registered again on the new connection.
+	 * If the current connection is still live, nothing is done.
+	 * @return the number of restored listeners
+	 */
+	public int reconnect() {
+		if(!isRemote()) throw new IllegalStateException("Only a remote Gmx can reconnect", new Throwable());
+		synchronized(remoted) {
+			if(released.get()) throw new IllegalStateException("This Gmx has been closed", new Throwable());
+			try {
+				if(connector.getConnectionId()!=null && connected.get()) return 0;
+			} catch (Exception e) {}
+			connected.set(false);
+			try { connector.removeConnectionNotificationListener(this); } catch (Exception e) {}
+			GmxConnectionPool pool = GmxConnectionPool.getInstance();
+			pool.invalidate(pooledConnection);
+			pool.release(pooledConnection, this);
+			this.pooledConnection = pool.lease(serviceURL, this.environment, this);
+			this.connector = pooledConnection.getConnector();
+			this.mbeanServerConnection = pooledConnection.getConnection();
+			this.connectionId = pooledConnection.getConnectionId();
+			this.mbeanInfoCache = pooledConnection.getMBeanInfoCache();
+			try {
+				connector.addConnectionNotificationListener(this, null, this.connectionId);
+			} catch (Exception e) {}
+			if(this.mbeanServerConnection instanceof MBeanServer) {
+				this.mbeanServer = RuntimeMBeanServer.getInstance((MBeanServer)this.mbeanServerConnection);
+			} else {
+				this.mbeanServer = null;
+			}
+			serverDomain = pooledConnection.getServerDomain();
+			jvmName = pooledConnection.getJvmName();
+			boolean reinstalled = false;
+			if(remotedMBeanServer!=null) {
+				reinstalled = !mbeanServerConnection.isRegistered(remotedMBeanServer.getObjectName());
+				remoteClassLoader = null;
+				remotedMBeanServer = null;
+				remoted.set(false);
+				installRemote();
+			}
+			connected.set(true);
+			int[] outcome = restoreListeners(reinstalled);
+			ConnectionSupervisor supervisor = connectionSupervisor;
+			if(supervisor!=null) {
+				if(reinstalled) supervisor.remoteReinstalled();
+				supervisor.listenersRestored(outcome[0], outcome[1]);
+			}
+			return outcome[0];
+		}
+	}
+	
+	/**
+	 * Registers the entries in the registered notification listeners again on the current connection after a reconnect.
+	 * Relayed listeners are added back to the remoted MBeanServer's relay and, if the remoted MBeanServer was reinstalled, their filter
+	 * and aggregator closures are subscribed again and journaled listeners restart their sequence. Otherwise, journaled listeners
+	 * replay the notifications journaled while the connection was down.
+	 * @param resubscribe true if the remoted MBeanServer was reinstalled and the relay subscriptions were lost with it
+	 * @return an array holding the number of restored listeners and the number of listeners that could not be restored
+	 */
+	protected int[] restoreListeners(boolean resubscribe) {
+		int restored = 0, failed = 0;
+		List<JournaledNotificationListener> journaled = new ArrayList<JournaledNotificationListener>();
+		for(Set<ObjectNameAwareListener> listeners: registeredNotificationListeners.values()) {
+			for(ObjectNameAwareListener listener: listeners) {
+				if(listener instanceof PatternSubscription) continue;
+				ListenerRegistration registration = listenerRegistrations.get(listener);
+				if(registration==null) {
+					failed++;
+					continue;
+				}
+				ObjectNameAwareListener target = listener instanceof AsyncNotificationListener ? ((AsyncNotificationListener)listener).getDelegate() : listener;
+				try {
+					if(target instanceof RelayedNotificationListener) {
+						RelayedNotificationListener relayed = (RelayedNotificationListener)target;
+						if(resubscribe) {
+							String subscriptionId = subscribeRelayed(relayed, registration.getFilter(), registration.getAggregator(), registration.getWindow());
+							if(relayed instanceof JournaledNotificationListener) {
+								((JournaledNotificationListener)relayed).resubscribed(subscriptionId);
+							} else {
+								relayed.setSubscriptionId(subscriptionId);
+							}
+						} else if(relayed instanceof JournaledNotificationListener) {
+							journaled.add((JournaledNotificationListener)relayed);
+						}
+						mbeanServerConnection.addNotificationListener(relayed.getRelayObjectName(), listener, relayFilter(relayed.getSubscriptionId()), registration.getHandback());
+					} else {
+						mbeanServerConnection.addNotificationListener(listener.getObjectName(), listener, registration.getNotificationFilter(), registration.getHandback());
+					}
+					restored++;
+				} catch (Exception e) {
+					failed++;
+				}
+			}
+		}
+		PatternSubscriptionRegistry registry = null;
+		synchronized(registeredNotificationListeners) {
+			registry = patternRegistry;
+		}
+		if(registry!=null) {
+			try {
+				restored += registry.reconnect(mbeanServerConnection);
+			} catch (Exception e) {
+				failed += registry.size();
+			}
+		}
+		for(JournaledNotificationListener listener: journaled) {
+			try {
+				listener.recover();
+			} catch (Exception e) {}
+		}
+		return new int[]{restored, failed};
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see java.lang.Object#finalize()
@@ -509,6 +778,242 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		if(!isRemote()) {
 			return closure.call(mergeArguments(this, args));
 		}
+		ensureRemoted();
+		return invokeRemoteClosure(closure, args);
+	}
+	
+	/**
+	 * Installs the passed closure once in the foreign MBeanServer and returns a handle through which it can be
+	 * invoked repeatedly by sending only the arguments. Handles expire on the foreign server when left idle, 
+	 * in which case the handle transparently re-installs the closure.
+	 * If the Gmx represents a local {@link MBeanServer}, the handle invokes the closure locally.
+	 * @param closure The closure to be executed with a Gmx for the target MBeanServer as the first parameter.
+	 * @return the closure handle
+	 */
+	public <T> RemoteClosure<T> install(Closure<T> closure) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		if(isRemote()) {
+			ensureRemoted();
+			dehydrator.dehydrate(closure);
+		}
+		return new RemoteClosure<T>(this, closure);
+	}
+	
+	/**
+	 * Creates a new closure batch that will execute its closures against this Gmx's MBeanServer in one call
+	 * @return a new closure batch
+	 */
+	public ClosureBatch batch() {
+		return new ClosureBatch(this);
+	}
+	
+	/**
+	 * Executes the passed closures in order, in one call. 
+	 * Each closure is passed a Gmx for the target MBeanServer as its only parameter.
+	 * @param closures The closures to execute
+	 * @return the result of each closure, in the order of the passed closures
+	 */
+	public List<ClosureResult> execBatch(List<? extends Closure<?>> closures) {
+		return execBatch(closures, null, false);
+	}
+	
+	/**
+	 * Executes the passed closures in one call. 
+	 * If the Gmx represents a remote {@link MBeanServerConnection}, all the closures are shipped and executed in one remote round trip.
+	 * @param closures The closures to execute
+	 * @param arguments The caller supplied arguments of each closure. Can be null.
+	 * @param parallel If true, the closures are executed concurrently on the target, otherwise they are executed in order
+	 * @return the result of each closure, in the order of the passed closures
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ClosureResult> execBatch(List<? extends Closure<?>> closures, List<Object[]> arguments, boolean parallel) {
+		if(closures==null) throw new IllegalArgumentException("The passed closure list was null", new Throwable());
+		int size = closures.size();
+		if(!isRemote()) {
+			List<ClosureResult> results = new ArrayList<ClosureResult>(size);
+			for(int i = 0; i < size; i++) {
+				long start = System.nanoTime();
+				try {
+					Object value = closures.get(i).call(mergeArguments(arguments==null ? null : arguments.get(i), this));
+					results.add(new ClosureResult(i, value, System.nanoTime()-start));
+				} catch (Throwable t) {
+					results.add(new ClosureResult(i, t, System.nanoTime()-start));
+				}
+			}
+			return results;
+		}
+		ensureRemoted();
+		String[] keys = new String[size];
+		byte[][] bytes = new byte[size][];
+		Object[][] args = new Object[size][];
+		for(int i = 0; i < size; i++) {
+			Closure<?> closure = closures.get(i);
+			dehydrator.dehydrate(closure);
+			keys[i] = closureKey(closure.getClass());
+			bytes[i] = serialize(closure);
+			args[i] = arguments==null ? null : arguments.get(i);
+		}
+		try {
+			return (List<ClosureResult>)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "invokeClosures", 
+					new Object[]{keys, bytes, args, parallel}, 
+					new String[]{String[].class.getName(), byte[][].class.getName(), Object[][].class.getName(), boolean.class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to invoke remote closure batch", e);
+		}
+	}
+	
+	/**
+	 * Executes the passed closure in streaming mode. The closure is passed a Gmx for the target MBeanServer and a {@link StreamSink},
+	 * followed by the caller supplied arguments, and emits its result items into the sink rather than returning them.
+	 * The returned iterator pulls the items incrementally, a chunk at a time.
+	 * @param closure The streaming closure
+	 * @param args The caller supplied arguments to the closure
+	 * @return an iterator over the emitted items
+	 */
+	public ClosureStream stream(Closure<?> closure, Object...args) {
+		return stream(StreamSink.DEFAULT_CHUNK_SIZE, closure, args);
+	}
+	
+	/**
+	 * Executes the passed closure in streaming mode. The closure is passed a Gmx for the target MBeanServer and a {@link StreamSink},
+	 * followed by the caller supplied arguments, and emits its result items into the sink rather than returning them.
+	 * The returned iterator pulls the items incrementally, a chunk at a time.
+	 * @param chunkSize The number of items per chunk
+	 * @param closure The streaming closure
+	 * @param args The caller supplied arguments to the closure
+	 * @return an iterator over the emitted items
+	 */
+	public ClosureStream stream(int chunkSize, final Closure<?> closure, Object...args) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		if(!isRemote()) {
+			final StreamSink sink = new StreamSink("local-" + System.identityHashCode(closure), chunkSize, StreamSink.DEFAULT_IDLE_TIMEOUT);
+			final Object[] closureArgs = mergeArguments(args, this, sink);
+			Thread t = new Thread(new Runnable(){
+				public void run() {
+					sink.produce(new Callable<Object>(){
+						public Object call() {
+							return closure.call(closureArgs);
+						}
+					});
+				}
+			}, "GmxClosureStream#" + sink.getStreamId());
+			t.setDaemon(true);
+			t.start();
+			return new ClosureStream(sink);
+		}
+		ensureRemoted();
+		dehydrator.dehydrate(closure);
+		try {
+			String streamId = (String)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "openStream", 
+					new Object[]{closureKey(closure.getClass()), serialize(closure), args, chunkSize}, 
+					new String[]{String.class.getName(), byte[].class.getName(), Object[].class.getName(), int.class.getName()});
+			return new ClosureStream(this, streamId);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to open remote closure stream [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Pulls the next chunk of a remote closure stream
+	 * @param streamId The stream id
+	 * @param timeout The time in ms. to wait for a chunk
+	 * @return the next chunk
+	 */
+	StreamChunk nextStreamChunk(String streamId, long timeout) {
+		try {
+			return (StreamChunk)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "nextStreamChunk", 
+					new Object[]{streamId, timeout}, new String[]{String.class.getName(), long.class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to pull chunk from remote closure stream [" + streamId + "]", e);
+		}
+	}
+	
+	/**
+	 * Cancels and closes a remote closure stream
+	 * @param streamId The stream id
+	 */
+	void closeStream(String streamId) {
+		if(remotedMBeanServer==null) return;
+		try {
+			mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "closeStream", new Object[]{streamId}, new String[]{String.class.getName()});
+		} catch (Exception e) {}
+	}
+	
+	/**
+	 * Schedules the passed closure to run at a fixed rate in the target JVM, buffering up to {@link ClosureScheduler#DEFAULT_CAPACITY} samples
+	 * @param period The period in ms.
+	 * @param closure The closure to be executed with a Gmx for the target MBeanServer as the first parameter.
+	 * @param args The caller supplied arguments to the closure
+	 * @return the schedule from which the samples are fetched
+	 */
+	public ClosureSchedule schedule(long period, Closure<?> closure, Object...args) {
+		return schedule(period, ClosureScheduler.DEFAULT_CAPACITY, closure, args);
+	}
+	
+	/**
+	 * Schedules the passed closure to run at a fixed rate in the target JVM. 
+	 * Each execution's result is buffered in the target, in a ring buffer of the passed capacity, until it is fetched through the returned schedule,
+	 * so a high sampling rate does not cost a round trip per sample. If the Gmx represents a local {@link MBeanServer}, the closure is scheduled in this JVM. 
+	 * @param period The period in ms.
+	 * @param capacity The number of samples the target buffers
+	 * @param closure The closure to be executed with a Gmx for the target MBeanServer as the first parameter.
+	 * @param args The caller supplied arguments to the closure
+	 * @return the schedule from which the samples are fetched
+	 */
+	public ClosureSchedule schedule(long period, int capacity, final Closure<?> closure, Object...args) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		if(!isRemote()) {
+			final Object[] closureArgs = mergeArguments(args, this);
+			String scheduleId = LOCAL_SCHEDULER.schedule(clientId, new Callable<Object>(){
+				public Object call() {
+					return closure.call(closureArgs);
+				}
+			}, period, capacity);
+			return new ClosureSchedule(LOCAL_SCHEDULER, scheduleId);
+		}
+		ensureRemoted();
+		dehydrator.dehydrate(closure);
+		try {
+			String scheduleId = (String)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "scheduleClosure", 
+					new Object[]{clientId, closureKey(closure.getClass()), serialize(closure), args, period, capacity}, 
+					new String[]{String.class.getName(), String.class.getName(), byte[].class.getName(), Object[].class.getName(), long.class.getName(), int.class.getName()});
+			return new ClosureSchedule(this, scheduleId);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to schedule remote closure [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Fetches the samples of a remote closure schedule
+	 * @param scheduleId The schedule id
+	 * @param sinceSequence The sequence number of the last sample already fetched
+	 * @param maxSamples The maximum number of samples to return
+	 * @return the sample batch
+	 */
+	SampleBatch fetchRemoteSamples(String scheduleId, long sinceSequence, int maxSamples) {
+		try {
+			return (SampleBatch)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "fetchSamples", 
+					new Object[]{scheduleId, sinceSequence, maxSamples}, new String[]{String.class.getName(), long.class.getName(), int.class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to fetch samples from remote closure schedule [" + scheduleId + "]", e);
+		}
+	}
+	
+	/**
+	 * Cancels a remote closure schedule
+	 * @param scheduleId The schedule id
+	 */
+	void unscheduleRemoteClosure(String scheduleId) {
+		if(remotedMBeanServer==null) return;
+		try {
+			mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "unscheduleClosure", new Object[]{scheduleId}, new String[]{String.class.getName()});
+		} catch (Exception e) {}
+	}
+	
+	/**
+	 * Installs the remote MBeans if this Gmx has not been remoted yet
+	 */
+	protected void ensureRemoted() {
 		if(!isRemoted()) {
 			synchronized(remoted) {
 				if(!isRemoted()) {
@@ -516,7 +1021,6 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 				}
 			}
 		}
-		return invokeRemoteClosure(closure, args);
 	}
 	
 	/**
@@ -544,7 +1048,189 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	public <T> T invokeRemoteClosure(Closure<T> closure, Object...arguments) {
 		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
 		dehydrator.dehydrate(closure);
-		return (T)remotedMBeanServer.invokeMethod("invokeClosure", new Object[]{closure, arguments});
+		try {
+			return (T)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "invokeClosure", 
+					new Object[]{closureKey(closure.getClass()), serialize(closure), arguments}, 
+					new String[]{String.class.getName(), byte[].class.getName(), Object[].class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to invoke remote closure [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Executes the passed closure and returns its outcome together with the resources the invocation consumed: the wall clock time, 
+	 * the CPU time and heap bytes allocated by the invoking thread, and the serialized request and response sizes.
+	 * If the Gmx represents a remote {@link MBeanServerConnection}, the closure is measured in the foreign MBeanServer, 
+	 * which also aggregates the measurements into the closure class's metrics MBean.
+	 * @param closure The closure to be executed with a Gmx for the target MBeanServer as the first parameter.
+	 * @param args The caller supplied arguments to the closure
+	 * @return the closure result carrying the invocation metrics
+	 */
+	public ClosureResult measure(Closure<?> closure, Object...args) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		if(!isRemote()) {
+			ClosureMeter.Probe probe = LOCAL_METER.probe(closure.getClass().getName(), -1L);
+			long start = System.nanoTime();
+			try {
+				probe.start();
+				Object value = closure.call(mergeArguments(args, this));
+				probe.stop(value, false);
+				return new ClosureResult(0, value, System.nanoTime()-start, probe.getMetrics());
+			} catch (Throwable t) {
+				probe.stop(null, true);
+				return new ClosureResult(0, t, System.nanoTime()-start, probe.getMetrics());
+			}
+		}
+		ensureRemoted();
+		dehydrator.dehydrate(closure);
+		try {
+			return (ClosureResult)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "invokeClosureMetered", 
+					new Object[]{closureKey(closure.getClass()), serialize(closure), args}, 
+					new String[]{String.class.getName(), byte[].class.getName(), Object[].class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to invoke remote closure [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Submits the passed closure for execution with a deadline. If the Gmx represents a remote {@link MBeanServerConnection}, 
+	 * the closure runs in the foreign MBeanServer's bounded execution engine, is interrupted when the deadline passes, 
+	 * and can be cancelled through the returned invocation.
+	 * @param timeout The timeout in ms. Zero waits without a deadline and a negative value applies the target's default closure timeout.
+	 * @param closure The closure to be executed with a Gmx for the target MBeanServer as the first parameter.
+	 * @param args The caller supplied arguments to the closure
+	 * @return the pending invocation
+	 */
+	public <T> ClosureInvocation<T> submit(long timeout, Closure<T> closure, Object...args) {
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		if(isRemote()) {
+			ensureRemoted();
+			dehydrator.dehydrate(closure);
+		}
+		return new ClosureInvocation<T>(this, closure, timeout, args);
+	}
+	
+	/**
+	 * Invokes a closure remotely in the foreign MBeanServer under the passed deadline
+	 * @param invocationId The invocation id through which the invocation can be cancelled
+	 * @param closure The dehydrated closure
+	 * @param timeout The timeout in ms.
+	 * @param arguments The closure arguments
+	 * @return The return value of the closure execution.
+	 */
+	Object invokeRemoteClosure(String invocationId, Closure<?> closure, long timeout, Object...arguments) {
+		try {
+			return mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "invokeClosure", 
+					new Object[]{invocationId, closureKey(closure.getClass()), serialize(closure), arguments, timeout}, 
+					new String[]{String.class.getName(), String.class.getName(), byte[].class.getName(), Object[].class.getName(), long.class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to invoke remote closure [" + invocationId + "]", e);
+		}
+	}
+	
+	/**
+	 * Cancels a remote closure invocation
+	 * @param invocationId The invocation id
+	 */
+	void cancelRemoteClosure(String invocationId) {
+		if(remotedMBeanServer==null) return;
+		try {
+			mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "cancelClosure", new Object[]{invocationId}, new String[]{String.class.getName()});
+		} catch (Exception e) {}
+	}
+	
+	/**
+	 * Installs the passed closure in the foreign MBeanServer
+	 * @param closure The dehydrated closure
+	 * @return the handle of the installed closure
+	 */
+	String registerRemoteClosure(Closure<?> closure) {
+		try {
+			return (String)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "registerClosure", 
+					new Object[]{clientId, closureKey(closure.getClass()), serialize(closure)}, 
+					new String[]{String.class.getName(), String.class.getName(), byte[].class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to install remote closure [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Invokes the installed closure with the passed handle in the foreign MBeanServer
+	 * @param handle The closure handle
+	 * @param arguments The closure arguments
+	 * @return The return value of the closure execution.
+	 * @throws UnknownClosureHandleException thrown if the handle is unknown or has expired
+	 */
+	Object invokeRemoteHandle(String handle, Object...arguments) {
+		try {
+			return mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "invokeClosureHandle", 
+					new Object[]{handle, arguments}, new String[]{String.class.getName(), Object[].class.getName()});
+		} catch (Exception e) {
+			for(Throwable t = e; t!=null; t = t.getCause()) {
+				if(t instanceof UnknownClosureHandleException) throw (UnknownClosureHandleException)t;
+			}
+			throw new RuntimeException("Failed to invoke remote closure handle [" + handle + "]", e);
+		}
+	}
+	
+	/**
+	 * Uninstalls the installed closure with the passed handle in the foreign MBeanServer
+	 * @param handle The closure handle
+	 */
+	void unregisterRemoteClosure(String handle) {
+		if(remotedMBeanServer==null) return;
+		try {
+			mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "unregisterClosure", new Object[]{handle}, new String[]{String.class.getName()});
+		} catch (Exception e) {}
+	}
+	
+	/**
+	 * Serializes the passed closure
+	 * @param closure The dehydrated closure
+	 * @return the serialized closure
+	 */
+	protected static byte[] serialize(Closure<?> closure) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(baos);
+			oos.writeObject(closure);
+			oos.flush();
+			return baos.toByteArray();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to serialize closure [" + closure.getClass().getName() + "]", e);
+		}
+	}
+	
+	/**
+	 * Returns the key that identifies the passed closure class in the remote closure class cache.
+	 * The key is the class name and a SHA-1 hash of the class bytecode so that a recompiled closure with the same name gets a new key.
+	 * If the bytecode is not available, the key falls back to a hash unique to the class instance in this JVM.
+	 * @param closureClass The closure class
+	 * @return the closure key
+	 */
+	protected static String closureKey(Class<?> closureClass) {
+		synchronized(CLOSURE_KEYS) {
+			String key = CLOSURE_KEYS.get(closureClass);
+			if(key==null) {
+				String hash = null;
+				try {
+					byte[] bytecode = ReverseClassLoader.getInstance().getByteCode(closureClass);
+					if(bytecode!=null && bytecode.length>0) {
+						StringBuilder b = new StringBuilder();
+						for(byte x: MessageDigest.getInstance("SHA-1").digest(bytecode)) {
+							b.append(String.format("%02x", x & 0xFF));
+						}
+						hash = b.toString();
+					}
+				} catch (Exception e) {}
+				if(hash==null) {
+					hash = PID + "-" + System.identityHashCode(closureClass);
+				}
+				key = ClosureClassCache.key(closureClass.getName(), hash);
+				CLOSURE_KEYS.put(closureClass, key);
+			}
+			return key;
+		}
 	}
 	
 	/**
@@ -570,11 +1256,177 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	 * @return The wrapped listener that can be used to unregister the listener
 	 */
 	public ObjectNameAwareListener addListener(ObjectName objectName, Closure<Void> listener, Closure<Boolean> filter, Object handback, Object...closureArgs ) {
+		return addListener(objectName, listener, filter, null, 0L, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer, optionally aggregating the notifications before they are passed to the listener.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before handling notifications.
+	 * @param aggregator A closure that will be passed the list of notifications that passed the filter in each window. If null, notifications are not aggregated.
+	 * @param window The aggregation window in ms.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 * @see #addListener(ObjectName, Closure, Closure, Closure, long, Object, Object...)
+	 */
+	public ObjectNameAwareListener addListener(CharSequence objectName, Closure<Void> listener, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback, Object...closureArgs ) {
+		return addListener(JMXHelper.objectName(objectName), listener, filter, aggregator, window, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer, optionally aggregating the notifications before they are passed to the listener.
+	 * On a remote MBeanServer, the filter and the aggregator are run inside the target by the remoted MBeanServer, so only the notifications 
+	 * that pass the filter, or one aggregate per window, are sent to this JVM. An aggregate is passed to the listener as a notification of type
+	 * {@link NotificationRelay#AGGREGATE_TYPE} whose user data is the aggregator's return value.
+	 * If the ObjectName is a pattern, the listener is registered on every matching MBean, and is registered on or removed from MBeans
+	 * as they are registered and unregistered. Pattern listeners cannot aggregate notifications.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before handling notifications.
+	 * @param aggregator A closure that will be passed the list of notifications that passed the filter in each window. If null, notifications are not aggregated.
+	 * @param window The aggregation window in ms.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addListener(ObjectName objectName, Closure<Void> listener, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback, Object...closureArgs ) {
+		return registerListener(newClosureListener(objectName, listener, closureArgs), filter, aggregator, window, handback, 0, null, false);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer that is called asynchronously. Notifications are placed in a bounded queue
+	 * and passed to the listener closure by a dispatcher thread, so a slow listener does not stall the delivery of notifications to other listeners.
+	 * The queue depth, lag and drop counters of the listener are exposed through an {@link AsyncNotificationListenerMBean} in the platform MBeanServer.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before handling notifications.
+	 * @param queueCapacity The maximum number of notifications waiting to be passed to the listener
+	 * @param policy The policy applied to notifications that arrive when the queue is full. If null, the oldest queued notification is dropped.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addAsyncListener(CharSequence objectName, Closure<Void> listener, Closure<Boolean> filter, int queueCapacity, OverflowPolicy policy, Object handback, Object...closureArgs ) {
+		return addAsyncListener(JMXHelper.objectName(objectName), listener, filter, queueCapacity, policy, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer that is called asynchronously. Notifications are placed in a bounded queue
+	 * and passed to the listener closure by a dispatcher thread, so a slow listener does not stall the delivery of notifications to other listeners.
+	 * The queue depth, lag and drop counters of the listener are exposed through an {@link AsyncNotificationListenerMBean} in the platform MBeanServer.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before handling notifications.
+	 * @param queueCapacity The maximum number of notifications waiting to be passed to the listener
+	 * @param policy The policy applied to notifications that arrive when the queue is full. If null, the oldest queued notification is dropped.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addAsyncListener(ObjectName objectName, Closure<Void> listener, Closure<Boolean> filter, int queueCapacity, OverflowPolicy policy, Object handback, Object...closureArgs ) {
+		if(queueCapacity<1) throw new IllegalArgumentException("Invalid queue capacity [" + queueCapacity + "]", new Throwable());
+		return registerListener(newClosureListener(objectName, listener, closureArgs), filter, null, 0L, handback, queueCapacity, policy, false);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer whose notifications are recorded in a notification journal where they are emitted.
+	 * Each notification that passes the filter is assigned the subscription's next sequence number. When the listener detects a gap in the sequence,
+	 * or the connector reports lost notifications, the missing notifications are replayed from the journal and passed to the listener closure in order.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be journaled and passed to the listener. If null, all notifications are journaled.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addJournaledListener(CharSequence objectName, Closure<Void> listener, Closure<Boolean> filter, Object handback, Object...closureArgs ) {
+		return addJournaledListener(JMXHelper.objectName(objectName), listener, filter, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer whose notifications are recorded in a notification journal where they are emitted.
+	 * Each notification that passes the filter is assigned the subscription's next sequence number. When the listener detects a gap in the sequence,
+	 * or the connector reports lost notifications, the missing notifications are replayed from the journal and passed to the listener closure in order.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be journaled and passed to the listener. If null, all notifications are journaled.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addJournaledListener(ObjectName objectName, Closure<Void> listener, Closure<Boolean> filter, Object handback, Object...closureArgs ) {
+		return registerListener(newClosureListener(objectName, listener, closureArgs), filter, null, 0L, handback, 0, null, true);
+	}
+	
+	/**
+	 * Replays the journaled notifications of a journaled listener's subscription in the passed sequence range
+	 * @param subscriptionId The subscription id
+	 * @param fromSequence The first sequence number to replay
+	 * @param toSequence The last sequence number to replay
+	 * @return a batch of the journaled notifications in the range
+	 */
+	public JournalBatch replayNotifications(String subscriptionId, long fromSequence, long toSequence) {
 		if(isRemote()) {
-			if(!isRemoted()) {
-				installRemote();
-			}			
+			ensureRemoted();
+			try {
+				return (JournalBatch)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "replayNotifications", 
+						new Object[]{subscriptionId, fromSequence, toSequence}, new String[]{String.class.getName(), long.class.getName(), long.class.getName()});
+			} catch (Exception e) {
+				throw new RuntimeException("Failed to replay journaled notifications for subscription [" + subscriptionId + "]", e);
+			}
 		}
+		NotificationJournal journal = null;
+		synchronized(registeredNotificationListeners) {
+			journal = localJournal;
+		}
+		if(journal==null) throw new IllegalArgumentException("No journaled subscription for id [" + subscriptionId + "]", new Throwable());
+		return journal.replay(subscriptionId, fromSequence, toSequence);
+	}
+	
+	/**
+	 * Registers a batching notification listener with the MBeanServer. The listener closure is passed a list of notifications 
+	 * once the batch size is reached or the batch window elapses, instead of being called once per notification.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the list of notifications and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before batching notifications.
+	 * @param batchSize The number of notifications that triggers a batch delivery, or zero for no size limit
+	 * @param batchWindow The time in ms. between batch deliveries, or zero for no batch window
+	 * @param coalesce The key by which only the latest notification is kept in a batch. If null, notifications are not coalesced.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addBatchingListener(CharSequence objectName, Closure<Void> listener, Closure<Boolean> filter, int batchSize, long batchWindow, Coalesce coalesce, Object handback, Object...closureArgs ) {
+		return addBatchingListener(JMXHelper.objectName(objectName), listener, filter, batchSize, batchWindow, coalesce, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a batching notification listener with the MBeanServer. The listener closure is passed a list of notifications 
+	 * once the batch size is reached or the batch window elapses, instead of being called once per notification.
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener A closure that will passed the list of notifications and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before batching notifications.
+	 * @param batchSize The number of notifications that triggers a batch delivery, or zero for no size limit
+	 * @param batchWindow The time in ms. between batch deliveries, or zero for no batch window
+	 * @param coalesce The key by which only the latest notification is kept in a batch. If null, notifications are not coalesced.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addBatchingListener(ObjectName objectName, Closure<Void> listener, Closure<Boolean> filter, int batchSize, long batchWindow, Coalesce coalesce, Object handback, Object...closureArgs ) {
+		return registerListener(newClosureListener(objectName, listener, closureArgs).setBatching(batchSize, batchWindow, coalesce), filter, null, 0L, handback, 0, null, false);
+	}
+	
+	/**
+	 * Wraps the passed listener closure, validating that it accepts the notification, the optional handback and the additional arguments
+	 * @param objectName The JMX ObjectName that represents the MBeans from which to receive notifications
+	 * @param listener The listener closure
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return the closure wrapping listener
+	 */
+	protected ClosureWrappingNotificationListener newClosureListener(ObjectName objectName, Closure<Void> listener, Object...closureArgs) {
 		int expectedArgCount = listener.getParameterTypes().length;
 		int clozureSuppliedArgCount = closureArgs==null ? 0 : closureArgs.length;
 		int notificationSuppliedArgCount = expectedArgCount-clozureSuppliedArgCount;
@@ -582,10 +1434,195 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 			throw new IllegalArgumentException(String.format(INVALID_ARG_COUNT_TEMPLATE, expectedArgCount, clozureSuppliedArgCount, notificationSuppliedArgCount));
 		} 
 		boolean expectsHandback = notificationSuppliedArgCount==2;
-		ObjectNameAwareListener onAwareListener = new ClosureWrappingNotificationListener(expectsHandback, objectName, dehydrator.dehydrate(listener), closureArgs);
-		_addRegisteredListener(onAwareListener);
-		mbeanServerConnection.addNotificationListener(objectName, onAwareListener, new ClosureWrappingNotificationFilter(dehydrator.dehydrate(filter)), handback);
-		return onAwareListener;
+		return new ClosureWrappingNotificationListener(expectsHandback, objectName, dehydrator.dehydrate(listener), closureArgs);
+	}
+	
+	/**
+	 * Registers the passed closure wrapping listener, relaying it through the remoted MBeanServer or the local relay if it has a remote filter, an aggregator or is journaled
+	 * @param listener The closure wrapping listener
+	 * @param filter The optional filter closure
+	 * @param aggregator The optional aggregator closure
+	 * @param window The aggregation window in ms.
+	 * @param handback The object to be passed back to the listener closure
+	 * @param queueCapacity The capacity of the queue notifications wait in to be dispatched asynchronously, or zero to call the listener synchronously
+	 * @param policy The policy applied to notifications that arrive when the asynchronous queue is full
+	 * @param journal true to record the notifications in a notification journal and replay them when gaps are detected
+	 * @return The registered listener that can be used to unregister the listener
+	 */
+	protected ObjectNameAwareListener registerListener(ClosureWrappingNotificationListener listener, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback, int queueCapacity, OverflowPolicy policy, boolean journal) {
+		if(isRemote()) {
+			ensureRemoted();
+		}
+		ObjectName objectName = listener.getObjectName();
+		if(objectName.isPattern()) {
+			if(aggregator!=null || journal) throw new IllegalArgumentException("Notifications from the ObjectName pattern [" + objectName + "] cannot be aggregated or journaled", new Throwable());
+			PatternSubscription subscription = getPatternRegistry().subscribe(asyncListener(listener, queueCapacity, policy), filter==null ? null : new ClosureWrappingNotificationFilter(dehydrator.dehydrate(filter)), handback);
+			_addRegisteredListener(subscription);
+			return subscription;
+		}
+		if(isRemote() && (filter!=null || aggregator!=null || journal)) {
+			ObjectName relayOn = remotedMBeanServer.getObjectName();
+			RelayedNotificationListener relayed = journal ? new JournaledNotificationListener(listener, relayOn, this, handback) : new RelayedNotificationListener(listener, relayOn);
+			return addRelayedListener(relayed, asyncListener(relayed, queueCapacity, policy), filter, aggregator, window, handback);
+		}
+		if(aggregator!=null || journal) {
+			final RelayedNotificationListener relayed = journal ? new JournaledNotificationListener(listener, null, this, handback) : new RelayedNotificationListener(listener, null);
+			final ObjectNameAwareListener registered = asyncListener(relayed, queueCapacity, policy);
+			NotificationListener sink = registered;
+			if(journal) {
+				final NotificationJournal notificationJournal = getLocalJournal();
+				sink = new NotificationListener() {
+					public void handleNotification(Notification notification, Object hb) {
+						Notification journaled = null;
+						synchronized(relayed) {
+							journaled = notificationJournal.append(relayed.getSubscriptionId(), notification.getSource(), notification);
+						}
+						registered.handleNotification(journaled, hb);
+					}
+				};
+			}
+			NotificationFilter notificationFilter = filter==null ? null : new ClosureWrappingNotificationFilter(dehydrator.dehydrate(filter));
+			synchronized(relayed) {
+				relayed.setSubscriptionId(getLocalRelay().subscribe(clientId, objectName, notificationFilter, aggregator, window, sink, handback));
+			}
+			_addRegisteredListener(registered);
+			return registered;
+		}
+		ObjectNameAwareListener registered = asyncListener(listener, queueCapacity, policy);
+		NotificationFilter notificationFilter = filter==null ? null : new ClosureWrappingNotificationFilter(dehydrator.dehydrate(filter));
+		_addRegisteredListener(registered);
+		if(isRemote()) {
+			listenerRegistrations.put(registered, new ListenerRegistration(registered, notificationFilter, filter, null, 0L, handback));
+		}
+		mbeanServerConnection.addNotificationListener(objectName, registered, notificationFilter, handback);
+		return registered;
+	}
+	
+	/**
+	 * Wraps the passed listener in an {@link AsyncNotificationListener} if a queue capacity is specified
+	 * @param listener The listener to wrap
+	 * @param queueCapacity The queue capacity, or zero to call the listener synchronously
+	 * @param policy The overflow policy
+	 * @return the async listener, or the passed listener if the queue capacity is zero
+	 */
+	protected ObjectNameAwareListener asyncListener(ObjectNameAwareListener listener, int queueCapacity, OverflowPolicy policy) {
+		if(queueCapacity<1) return listener;
+		return new AsyncNotificationListener(listener, queueCapacity, policy);
+	}
+	
+	/**
+	 * Subscribes to the notifications of a remote MBean through the remoted MBeanServer, which runs the filter and aggregator in the target
+	 * and relays the notifications that pass to the returned listener.
+	 * @param relayed The listener the relayed notifications are unwrapped by
+	 * @param registered The listener to register for the relayed notifications, which is either the relayed listener or an async listener wrapping it
+	 * @param filter The optional filter closure
+	 * @param aggregator The optional aggregator closure
+	 * @param window The aggregation window in ms.
+	 * @param handback The object to be passed back to the listener
+	 * @return The registered listener that can be used to unregister the listener
+	 */
+	protected ObjectNameAwareListener addRelayedListener(RelayedNotificationListener relayed, ObjectNameAwareListener registered, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback) {
+		relayed.setSubscriptionId(subscribeRelayed(relayed, filter, aggregator, window));
+		try {
+			mbeanServerConnection.addNotificationListener(relayed.getRelayObjectName(), registered, relayFilter(relayed.getSubscriptionId()), handback);
+		} catch (RuntimeException re) {
+			unsubscribeRemoteNotifications(relayed.getSubscriptionId());
+			throw re;
+		}
+		listenerRegistrations.put(registered, new ListenerRegistration(registered, null, filter, aggregator, window, handback));
+		_addRegisteredListener(registered);
+		return registered;
+	}
+	
+	/**
+	 * Subscribes the filter and aggregator closures of a relayed listener in the remoted MBeanServer
+	 * @param relayed The listener the relayed notifications are unwrapped by
+	 * @param filter The optional filter closure
+	 * @param aggregator The optional aggregator closure
+	 * @param window The aggregation window in ms.
+	 * @return the subscription id
+	 */
+	protected String subscribeRelayed(RelayedNotificationListener relayed, Closure<Boolean> filter, Closure<?> aggregator, long window) {
+		ObjectName objectName = relayed.getObjectName();
+		String filterKey = null, aggregatorKey = null;
+		byte[] filterBytes = null, aggregatorBytes = null;
+		if(filter!=null) {
+			dehydrator.dehydrate(filter);
+			filterKey = closureKey(filter.getClass());
+			filterBytes = serialize(filter);
+		}
+		if(aggregator!=null) {
+			dehydrator.dehydrate(aggregator);
+			aggregatorKey = closureKey(aggregator.getClass());
+			aggregatorBytes = serialize(aggregator);
+		}
+		try {
+			return (String)mbeanServerConnection.invoke(relayed.getRelayObjectName(), "subscribeNotifications", 
+					new Object[]{clientId, objectName, filterKey, filterBytes, aggregatorKey, aggregatorBytes, window, relayed instanceof JournaledNotificationListener}, 
+					new String[]{String.class.getName(), ObjectName.class.getName(), String.class.getName(), byte[].class.getName(), String.class.getName(), byte[].class.getName(), long.class.getName(), boolean.class.getName()});
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to subscribe to remote notifications from [" + objectName + "]", e);
+		}
+	}
+	
+	/**
+	 * Creates the filter that selects the relay notifications of a subscription
+	 * @param subscriptionId The subscription id
+	 * @return the relay notification filter
+	 */
+	protected NotificationFilter relayFilter(String subscriptionId) {
+		NotificationFilterSupport relayFilter = new NotificationFilterSupport();
+		relayFilter.enableType(NotificationRelay.relayType(subscriptionId));
+		return relayFilter;
+	}
+	
+	/**
+	 * Cancels a remote notification subscription
+	 * @param subscriptionId The subscription id
+	 */
+	protected void unsubscribeRemoteNotifications(String subscriptionId) {
+		try {
+			mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "unsubscribeNotifications", new Object[]{subscriptionId}, new String[]{String.class.getName()});
+		} catch (Exception e) {}
+	}
+	
+	/**
+	 * Returns the relay that aggregates notifications for listeners on a local MBeanServer, creating it if necessary
+	 * @return the local notification relay
+	 */
+	protected NotificationRelay getLocalRelay() {
+		synchronized(registeredNotificationListeners) {
+			if(localRelay==null) {
+				localRelay = new NotificationRelay(mbeanServerConnection, null);
+			}
+			return localRelay;
+		}
+	}
+	
+	/**
+	 * Returns the journal that records notifications for journaled listeners on a local MBeanServer, creating it if necessary
+	 * @return the local notification journal
+	 */
+	protected NotificationJournal getLocalJournal() {
+		synchronized(registeredNotificationListeners) {
+			if(localJournal==null) {
+				localJournal = new NotificationJournal(NotificationJournal.DEFAULT_CAPACITY);
+			}
+			return localJournal;
+		}
+	}
+	
+	/**
+	 * Returns the registry of listeners on ObjectName patterns, creating it if necessary
+	 * @return the pattern subscription registry
+	 */
+	protected PatternSubscriptionRegistry getPatternRegistry() {
+		synchronized(registeredNotificationListeners) {
+			if(patternRegistry==null) {
+				patternRegistry = new PatternSubscriptionRegistry(mbeanServerConnection);
+			}
+			return patternRegistry;
+		}
 	}
 	
 	
@@ -626,10 +1663,58 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	 * @param listener The object name aware listener to remove
 	 */
 	public void removeListener(ObjectNameAwareListener listener) {
-		mbeanServerConnection.removeNotificationListener(listener.getObjectName(), listener);
+		_unregisterListener(listener);
 		_removeRegisteredListener(listener.getObjectName(), listener);
 	}
 	
+	/**
+	 * Unregisters an object name aware listener from the MBeanServer, cancelling its pattern or relay subscription if it is a pattern or relayed listener
+	 * and stopping its dispatcher if it is an async listener
+	 * @param listener The listener to unregister
+	 */
+	protected void _unregisterListener(ObjectNameAwareListener listener) {
+		listenerRegistrations.remove(listener);
+		if(listener instanceof PatternSubscription) {
+			PatternSubscription subscription = (PatternSubscription)listener;
+			synchronized(registeredNotificationListeners) {
+				if(patternRegistry!=null) patternRegistry.unsubscribe(subscription);
+			}
+			listener = subscription.getDelegate();
+			if(listener instanceof AsyncNotificationListener) {
+				((AsyncNotificationListener)listener).close();
+				listener = ((AsyncNotificationListener)listener).getDelegate();
+			}
+			if(listener instanceof ClosureWrappingNotificationListener) {
+				((ClosureWrappingNotificationListener)listener).close();
+			}
+			return;
+		}
+		ObjectNameAwareListener target = listener instanceof AsyncNotificationListener ? ((AsyncNotificationListener)listener).getDelegate() : listener;
+		if(target instanceof RelayedNotificationListener) {
+			RelayedNotificationListener relayed = (RelayedNotificationListener)target;
+			if(relayed.getRelayObjectName()==null) {
+				synchronized(registeredNotificationListeners) {
+					if(localRelay!=null) localRelay.unsubscribe(relayed.getSubscriptionId());
+					if(localJournal!=null) localJournal.release(relayed.getSubscriptionId());
+				}
+			} else {
+				try {
+					mbeanServerConnection.removeNotificationListener(relayed.getRelayObjectName(), listener);
+				} finally {
+					unsubscribeRemoteNotifications(relayed.getSubscriptionId());
+				}
+			}
+		} else {
+			mbeanServerConnection.removeNotificationListener(listener.getObjectName(), listener);
+		}
+		if(listener instanceof AsyncNotificationListener) {
+			((AsyncNotificationListener)listener).close();
+		}
+		if(target instanceof ClosureWrappingNotificationListener) {
+			((ClosureWrappingNotificationListener)target).close();
+		}
+	}
+	
 	
 	/**
 	 * Stores a registered JMX {@link NotificationListener} keyed by {@link ObjectName}.
@@ -679,8 +1764,8 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	 */
 	public MetaMBean[] mbeans(ObjectName objectName, Closure<MetaMBean> beanHandler) {
 		Set<MetaMBean> metaBeans = new HashSet<MetaMBean>();
-		for(ObjectName on: mbeanServerConnection.queryNames(objectName, null)) {
-			MetaMBean bean = MetaMBean.newInstance(on, this);
+		for(ObjectInstance oi: mbeanServerConnection.queryMBeans(objectName, null)) {
+			MetaMBean bean = MetaMBean.newInstance(oi, this);
 			metaBeans.add(bean);
 			if(beanHandler!=null) beanHandler.call(bean);
 		}
@@ -764,6 +1849,101 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		return mbeans(JMXHelper.objectName(objectName), null);
 	}
 	
+	/**
+	 * Returns a lazy iterable over the MBeans matching the passed ObjectName pattern and query. 
+	 * The MBeanServer is queried one domain at a time and each {@link MetaMBean} is created on demand, 
+	 * so iteration can be stopped early without querying or creating the remaining MBeans. See {@link MetaMBeanIterator}.
+	 * @param objectName The ObjectName pattern to match against
+	 * @param query The optional query expression
+	 * @return an iterable of matching {@link MetaMBean}s
+	 */
+	public Iterable<MetaMBean> iterate(final ObjectName objectName, final QueryExp query) {
+		return new Iterable<MetaMBean>() {
+			@Override
+			public Iterator<MetaMBean> iterator() {
+				return new MetaMBeanIterator(Gmx.this, objectName, query);
+			}
+		};
+	}
+	
+	/**
+	 * Returns a lazy iterable over the MBeans matching the passed ObjectName pattern
+	 * @param objectName The ObjectName pattern to match against
+	 * @return an iterable of matching {@link MetaMBean}s
+	 * @see #iterate(ObjectName, QueryExp)
+	 */
+	public Iterable<MetaMBean> iterate(CharSequence objectName) {
+		return iterate(JMXHelper.objectName(objectName), null);
+	}
+	
+	/**
+	 * Lazily iterates the MBeans matching the passed ObjectName pattern, executing the passed closure on each
+	 * until the closure returns <code>false</code> or the matches are exhausted. No array of MetaMBeans is accumulated.
+	 * @param objectName The ObjectName pattern to match against
+	 * @param beanHandler A closure which will operate on each matched {@link MetaMBean}. Returning false stops the iteration.
+	 * @return the number of MetaMBeans passed to the closure
+	 */
+	public int eachMBean(ObjectName objectName, Closure<?> beanHandler) {
+		if(beanHandler==null) throw new IllegalArgumentException("The passed beanHandler was null", new Throwable());
+		int cnt = 0;
+		Iterator<MetaMBean> iter = new MetaMBeanIterator(this, objectName, null);
+		while(iter.hasNext()) {
+			cnt++;
+			if(Boolean.FALSE.equals(beanHandler.call(iter.next()))) break;
+		}
+		return cnt;
+	}
+	
+	/**
+	 * Lazily iterates the MBeans matching the passed ObjectName pattern, executing the passed closure on each
+	 * until the closure returns <code>false</code> or the matches are exhausted.
+	 * @param objectName The ObjectName pattern to match against
+	 * @param beanHandler A closure which will operate on each matched {@link MetaMBean}. Returning false stops the iteration.
+	 * @return the number of MetaMBeans passed to the closure
+	 */
+	public int eachMBean(CharSequence objectName, Closure<?> beanHandler) {
+		return eachMBean(JMXHelper.objectName(objectName), beanHandler);
+	}
+	
+	/**
+	 * Reads the named attributes from every MBean matching the passed ObjectName pattern in bulk, using one <code>getAttributes</code> per MBean.
+	 * If this Gmx has been remoted, all the reads are executed by the remote MBeanServer in a single remote call.
+	 * @param objectName The ObjectName pattern to match against
+	 * @param attributeNames The names of the attributes to read. If none are supplied, all readable attributes are read.
+	 * @return a map of attribute values keyed by attribute name, keyed by MBean ObjectName
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<ObjectName, Map<String, Object>> read(ObjectName objectName, String...attributeNames) {
+		if(isRemoted()) {
+			return (Map<ObjectName, Map<String, Object>>)mbeanServerConnection.invoke(remotedMBeanServer.getObjectName(), "readAttributes", 
+					new Object[]{objectName, null, attributeNames}, 
+					new String[]{ObjectName.class.getName(), QueryExp.class.getName(), String[].class.getName()});
+		}
+		return JMXHelper.readAttributes(mbeanServerConnection, objectName, null, attributeNames);
+	}
+	
+	/**
+	 * Reads the named attributes from every MBean matching the passed ObjectName pattern in bulk. 
+	 * @param objectName The ObjectName pattern to match against
+	 * @param attributeNames The names of the attributes to read. If none are supplied, all readable attributes are read.
+	 * @return a map of attribute values keyed by attribute name, keyed by MBean ObjectName
+	 * @see #read(ObjectName, String...)
+	 */
+	public Map<ObjectName, Map<String, Object>> read(CharSequence objectName, String...attributeNames) {
+		return read(JMXHelper.objectName(objectName), attributeNames);
+	}
+	
+	/**
+	 * Reads the named attributes from every MBean matching the passed ObjectName pattern in bulk. 
+	 * @param objectName The ObjectName pattern to match against
+	 * @param attributeNames The names of the attributes to read. If null or empty, all readable attributes are read.
+	 * @return a map of attribute values keyed by attribute name, keyed by MBean ObjectName
+	 * @see #read(ObjectName, String...)
+	 */
+	public Map<ObjectName, Map<String, Object>> read(CharSequence objectName, Collection<String> attributeNames) {
+		return read(JMXHelper.objectName(objectName), attributeNames==null ? null : attributeNames.toArray(new String[attributeNames.size()]));
+	}
+	
 	
 
 	
@@ -1094,28 +2274,47 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 	
 	/**
 	 * Callback when this connection is closed
+	 * If auto reconnect is enabled, the connection supervisor starts reconnecting.
 	 * @param connNot The connection notification
 	 */
 	public void onConnectionClosed(JMXConnectionNotification connNot) {
 		//System.out.println("Connection Closed:" + connNot);
-		//close();
+		connected.set(false);
+		ConnectionSupervisor supervisor = connectionSupervisor;
+		if(supervisor!=null) supervisor.disconnected();
 	}
 
 	/**
 	 * Callback when this connection fails
+	 * If auto reconnect is enabled, the connection supervisor starts reconnecting.
 	 * @param connNot The connection notification
 	 */
 	public void onConnectionFailed(JMXConnectionNotification connNot) {
 		System.out.println("Connection Failed:" + connNot);
-		//close();
+		connected.set(false);
+		ConnectionSupervisor supervisor = connectionSupervisor;
+		if(supervisor!=null) supervisor.disconnected();
 	}
 	
 	/**
-	 * Callback when this connection may have lost notifications
+	 * Callback when this connection may have lost notifications.
+	 * Journaled listeners replay the notifications recorded since the last one they received.
 	 * @param connNot The connection notification
 	 */
 	public void onConnectionLostNotifications(JMXConnectionNotification connNot) {
 		System.out.println("Connection Lost Notifications:" + connNot);
+		for(Set<ObjectNameAwareListener> listeners: registeredNotificationListeners.values()) {
+			for(ObjectNameAwareListener listener: listeners) {
+				if(listener instanceof AsyncNotificationListener) {
+					listener = ((AsyncNotificationListener)listener).getDelegate();
+				}
+				if(listener instanceof JournaledNotificationListener) {
+					try {
+						((JournaledNotificationListener)listener).recover();
+					} catch (Exception e) {}
+				}
+			}
+		}
 	}
 	
 	/**
@@ -1141,6 +2340,14 @@ public class Gmx implements GroovyObject, MBeanServerConnection, NotificationLis
 		}
 	}
 
+	/**
+	 * Returns the MBeanInfo cache for this connection
+	 * @return the MBeanInfo cache
+	 */
+	public MBeanInfoCache getMBeanInfoCache() {
+		return mbeanInfoCache;
+	}
+	
 	/**
 	 * Returns the internal MBeanServer reference
 	 * @return the internal MBeanServer reference which may be null if this is a remote
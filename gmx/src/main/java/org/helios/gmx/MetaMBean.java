@@ -24,24 +24,23 @@
  */
 package org.helios.gmx;
 
-import groovy.lang.Binding;
 import groovy.lang.Closure;
 import groovy.lang.GroovyObject;
-import groovy.lang.GroovyShell;
 import groovy.lang.GroovySystem;
 import groovy.lang.MetaClass;
-import groovy.lang.Script;
+import groovy.lang.MissingMethodException;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.management.Attribute;
@@ -49,8 +48,11 @@ import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
 import javax.management.MBeanOperationInfo;
 import javax.management.MBeanParameterInfo;
+import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 
+import org.helios.gmx.jmx.AsyncNotificationListener.OverflowPolicy;
+import org.helios.gmx.jmx.ClosureWrappingNotificationListener.Coalesce;
 import org.helios.gmx.jmx.ObjectNameAwareListener;
 import org.helios.gmx.util.JMXHelper;
 import org.helios.gmx.util.Primitive;
@@ -70,16 +72,15 @@ public class MetaMBean implements GroovyObject {
 	protected final Gmx gmx;
 	/** A reference to the MBean's MBeanInfo */
 	protected final AtomicReference<MBeanInfo> mbeanInfo = new AtomicReference<MBeanInfo>(null);
-	/** A set of attribute names */
-	protected final Set<String> attributeNames = new CopyOnWriteArraySet<String>();
-	/** A map of operations keyed by operation name with a set of all signatures for that name as the value */
-	protected final Map<String, TreeSet<OperationSignature>> operations = new HashMap<String, TreeSet<OperationSignature>>();
+	/** A set of attribute names, shared by all MetaMBeans with the same MBeanInfo */
+	protected final Set<String> attributeNames;
+	/** A map of operations keyed by operation name with a set of all signatures for that name as the value, shared by all MetaMBeans with the same MBeanInfo */
+	protected final Map<String, TreeSet<OperationSignature>> operations;
 	/** The instance MetaClass */
 	protected MetaClass metaClass;
-	/** The dynamically generated script text used to invoke mbean operations */
-	protected final AtomicReference<String> invokerScriptText = new AtomicReference<String>(null);
-	/** The dynamically generated script used to invoke mbean operations */
-	protected Script invokerScript = null;
+	
+	/** The attribute names and operation signatures built for each distinct MBeanInfo */
+	private static final Map<MBeanInfo, InfoShape> shapes = new WeakHashMap<MBeanInfo, InfoShape>();
 	
 	
 	
@@ -92,7 +93,7 @@ public class MetaMBean implements GroovyObject {
 	 */
 	public static MetaMBean newInstance(ObjectName objectName, Gmx gmx) {
 		if(objectName==null) throw new IllegalArgumentException("The passed ObjectName was null", new Throwable());		
-		return new MetaMBean(objectName, gmx);
+		return new MetaMBean(objectName, null, gmx);
 	}
 	
 	/**
@@ -105,101 +106,39 @@ public class MetaMBean implements GroovyObject {
 		return newInstance(JMXHelper.objectName(objectName), gmx);
 	}
 	
+	/**
+	 * Creates a new MetaMBean from a queried ObjectInstance, 
+	 * allowing the MBeanInfo to be served from the connection's cache by the MBean's class name
+	 * @param objectInstance The ObjectInstance of the MBean
+	 * @param gmx The Gmx instance that created this MetaMBean
+	 * @return a MetaMBean
+	 */
+	public static MetaMBean newInstance(ObjectInstance objectInstance, Gmx gmx) {
+		if(objectInstance==null) throw new IllegalArgumentException("The passed ObjectInstance was null", new Throwable());
+		return new MetaMBean(objectInstance.getObjectName(), objectInstance.getClassName(), gmx);
+	}
+	
 	
 	
 	/**
 	 * Creates a new MetaMBean
 	 * @param objectName The JMX ObjectName of the MBean
+	 * @param className The class name of the MBean which may be null if not known
 	 * @param gmx The Gmx instance that created this MetaMBean
 	 */
-	private MetaMBean(ObjectName objectName, Gmx gmx) {
+	private MetaMBean(ObjectName objectName, String className, Gmx gmx) {
 		this.objectName = objectName;
 		this.gmx = gmx;
 		try {
-			mbeanInfo.set(gmx.mbeanServerConnection.getMBeanInfo(objectName));
-			for(MBeanAttributeInfo minfo: mbeanInfo.get().getAttributes()) {
-				if(minfo.isReadable()) {
-					attributeNames.add(minfo.getName());
-				}
-			}
-			final StringBuilder scriptBuffer = new StringBuilder();
-			final Set<String> imports = new HashSet<String>();		
-			for(MBeanOperationInfo minfo: mbeanInfo.get().getOperations()) {
-				final StringBuilder params = new StringBuilder();
-				final StringBuilder signature = new StringBuilder("[");
-				final StringBuilder values = new StringBuilder("[");					
-				addImport(minfo.getReturnType(), imports);
-				scriptBuffer.append("public Object ").append(minfo.getName()).append("(");				
-				MBeanParameterInfo[] pinfos = minfo.getSignature();
-				if(pinfos!=null && pinfos.length>0) {
-					int cnt = 0;
-					for(MBeanParameterInfo pinfo: pinfos) {
-						addImport(pinfo.getType(), imports);
-						params.append(renderTypeName(pinfo.getType())).append(" p").append(cnt).append(",");
-						signature.append("'").append(pinfo.getType()).append("',");
-						values.append("p").append(cnt).append(",");
-						cnt++;
-					}
-					signature.deleteCharAt(signature.length()-1);
-					values.deleteCharAt(values.length()-1);
-					params.deleteCharAt(params.length()-1);
-				}
-				
-				
-				params.append(") {");
-				signature.append("] as String[]);");
-				values.append("] as Object[],");
-				scriptBuffer.append(params);
-				scriptBuffer.append("\n\treturn server.invoke(objectName, '").append(minfo.getName()).append("', ");
-				scriptBuffer.append(values).append(signature).append("\n}\n");
-			}
-			scriptBuffer.insert(0, renderImports(imports));
-			System.out.println(scriptBuffer.toString());
-			invokerScriptText.set(scriptBuffer.toString());
-			invokerScript = new GroovyShell().parse(scriptBuffer.toString());
-			Binding binding = new Binding();
-			binding.setProperty("server", gmx.getMBeanServerConnection());
-			binding.setProperty("objectName", objectName);
-			invokerScript.setBinding(binding);
+			mbeanInfo.set(gmx.getMBeanInfoCache().getMBeanInfo(gmx.mbeanServerConnection, objectName, className));
 		} catch (Exception e) {			
 			throw new RuntimeException("Failed to acquire MBeanInfo for MBean [" + objectName + "]", e);
-		}	
-	}
-	
-	protected String renderImports(final Set<String> imports) {
-		StringBuilder b = new StringBuilder();
-		for(String s: imports) {
-			b.append(s);
 		}
-		return b.toString();
-	}
-	
-	protected void addImport(String className, final Set<String> imports) {
-		try {
-			imports.add("import " + Class.forName(className).getPackage().getName() + ".*;\n");
-		} catch (Exception e) {}
+		InfoShape shape = InfoShape.getInstance(mbeanInfo.get());
+		attributeNames = shape.attributeNames;
+		operations = shape.operations;
 	}
 	
-	protected String renderTypeName(String name) throws Exception {
-		if(Primitive.isPrimitiveName(name)) {
-			return Primitive.getPrimitive(name).getPclazz().getName();
-		}
-		Class<?> clazz = Class.forName(name);
-		if(clazz.isArray()) {
-			StringBuilder b = new StringBuilder();
-			Class<?> arrClass = clazz;
-			do {
-				b.append("[]");
-				arrClass = arrClass.getComponentType();
-			} while(arrClass.isArray());
-			b.insert(0, arrClass.getName());
-			return b.toString();
-		} else {
-			return name;
-		}
-		
-	}
-
 	/**
 	 * {@inheritDoc}
 	 * @see groovy.lang.GroovyObject#getMetaClass()
@@ -232,7 +171,33 @@ public class MetaMBean implements GroovyObject {
 	 */
 	@Override
 	public Object invokeMethod(String name, Object arg) {
-		return invokerScript.invokeMethod(name, arg);
+		Object[] args = null;
+		if(arg==null) {
+			args = new Object[0];
+		} else if(arg instanceof Object[]) {
+			args = (Object[])arg;
+		} else {
+			args = new Object[]{arg};
+		}
+		if(!operations.containsKey(name)) {
+			if(getMetaClass().respondsTo(this, name).isEmpty()) {
+				throw new MissingMethodException(name, getClass(), args);
+			}
+			return getMetaClass().invokeMethod(this, name, args);
+		}
+		OperationSignature match = null;
+		int matchCost = Integer.MAX_VALUE;
+		for(OperationSignature os: getOpSigs(name, args.length)) {
+			int cost = os.matchCost(args);
+			if(cost>=0 && cost<matchCost) {
+				match = os;
+				matchCost = cost;
+			}
+		}
+		if(match==null) {
+			throw new RuntimeException("No signature of operation [" + name + "] on [" + objectName + "] matches the arguments " + Arrays.deepToString(args), new Throwable());
+		}
+		return gmx.mbeanServerConnection.invoke(objectName, name, match.coerce(args), match.getStrSignature());
 	}
 	
 	
@@ -310,6 +275,61 @@ public class MetaMBean implements GroovyObject {
 		}
 	}
 	
+	/**
+	 * <p>Title: InfoShape</p>
+	 * <p>Description: The attribute names and operation signature tables for an MBeanInfo, built once and shared by 
+	 * every MetaMBean whose MBeanInfo is equal.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.MetaMBean.InfoShape</code></p>
+	 */
+	protected static class InfoShape {
+		/** The readable attribute names */
+		protected final Set<String> attributeNames;
+		/** The operation signatures keyed by operation name */
+		protected final Map<String, TreeSet<OperationSignature>> operations;
+		
+		/**
+		 * Returns the shared InfoShape for the passed MBeanInfo
+		 * @param info The MBeanInfo
+		 * @return the InfoShape
+		 */
+		static InfoShape getInstance(MBeanInfo info) {
+			synchronized(shapes) {
+				InfoShape shape = shapes.get(info);
+				if(shape==null) {
+					shape = new InfoShape(info);
+					shapes.put(info, shape);
+				}
+				return shape;
+			}
+		}
+		
+		/**
+		 * Creates a new InfoShape
+		 * @param info The MBeanInfo
+		 */
+		private InfoShape(MBeanInfo info) {
+			Set<String> attrs = new HashSet<String>();
+			for(MBeanAttributeInfo minfo: info.getAttributes()) {
+				if(minfo.isReadable()) {
+					attrs.add(minfo.getName());
+				}
+			}
+			attributeNames = Collections.unmodifiableSet(attrs);
+			Map<String, TreeSet<OperationSignature>> ops = new HashMap<String, TreeSet<OperationSignature>>();
+			for(MBeanOperationInfo minfo: info.getOperations()) {
+				TreeSet<OperationSignature> sigs = ops.get(minfo.getName());
+				if(sigs==null) {
+					sigs = new TreeSet<OperationSignature>();
+					ops.put(minfo.getName(), sigs);
+				}
+				sigs.add(OperationSignature.newInstance(minfo));
+			}
+			operations = Collections.unmodifiableMap(ops);
+		}
+	}
+	
 	/**
 	 * <p>Title: OperationSignature</p>
 	 * <p>Description: A container class to provide detailed signature matching of provided arguments to operation signatures.</p> 
@@ -374,6 +394,35 @@ public class MetaMBean implements GroovyObject {
 			strSignature = strSig.toArray(new String[strSig.size()]);
 		}
 		
+		/**
+		 * Computes the cost of invoking this operation with the passed arguments
+		 * @param args The arguments
+		 * @return the summed {@link Primitive#coercionCost(Class, Object)} of the arguments, or -1 if the arguments do not match
+		 */
+		public int matchCost(Object[] args) {
+			if(args.length!=signature.length) return -1;
+			int total = 0;
+			for(int i = 0; i < signature.length; i++) {
+				int cost = signature[i]==UnknownClass.class ? 2 : Primitive.coercionCost(signature[i], args[i]);
+				if(cost<0) return -1;
+				total += cost;
+			}
+			return total;
+		}
+		
+		/**
+		 * Coerces the passed arguments to this operation's signature
+		 * @param args The arguments
+		 * @return the coerced arguments
+		 */
+		public Object[] coerce(Object[] args) {
+			Object[] coerced = new Object[args.length];
+			for(int i = 0; i < args.length; i++) {
+				coerced[i] = signature[i]==UnknownClass.class ? args[i] : Primitive.coerce(signature[i], args[i]);
+			}
+			return coerced;
+		}
+		
 		/**
 		 * {@inheritDoc}
 		 * @see java.lang.Object#hashCode()
@@ -464,6 +513,65 @@ public class MetaMBean implements GroovyObject {
 		return gmx.addListener(objectName.toString(), listener, filter, handback, closureArgs);				
 	}
 	
+	/**
+	 * Registers a notification listener with the MBeanServer on the MBean represented by this MetaMBean, aggregating the notifications 
+	 * in windows before they are passed to the listener. On a remote MBeanServer, the filter and aggregator run in the target.
+	 * @param listener A closure that will passed the aggregate notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before aggregating notifications.
+	 * @param aggregator A closure that will be passed the list of notifications that passed the filter in each window
+	 * @param window The aggregation window in ms.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addListener(Closure<Void> listener, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback, Object...closureArgs ) {
+		return gmx.addListener(objectName, listener, filter, aggregator, window, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a batching notification listener with the MBeanServer on the MBean represented by this MetaMBean.
+	 * The listener closure is passed a list of notifications once the batch size is reached or the batch window elapses.
+	 * @param listener A closure that will passed the list of notifications and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before batching notifications.
+	 * @param batchSize The number of notifications that triggers a batch delivery, or zero for no size limit
+	 * @param batchWindow The time in ms. between batch deliveries, or zero for no batch window
+	 * @param coalesce The key by which only the latest notification is kept in a batch. If null, notifications are not coalesced.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addBatchingListener(Closure<Void> listener, Closure<Boolean> filter, int batchSize, long batchWindow, Coalesce coalesce, Object handback, Object...closureArgs ) {
+		return gmx.addBatchingListener(objectName, listener, filter, batchSize, batchWindow, coalesce, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer on the MBean represented by this MetaMBean that is called asynchronously
+	 * from a bounded queue, so a slow listener does not stall the delivery of notifications to other listeners.
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be filtered or not. If null, no filtering will be performed before handling notifications.
+	 * @param queueCapacity The maximum number of notifications waiting to be passed to the listener
+	 * @param policy The policy applied to notifications that arrive when the queue is full. If null, the oldest queued notification is dropped.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addAsyncListener(Closure<Void> listener, Closure<Boolean> filter, int queueCapacity, OverflowPolicy policy, Object handback, Object...closureArgs ) {
+		return gmx.addAsyncListener(objectName, listener, filter, queueCapacity, policy, handback, closureArgs);
+	}
+	
+	/**
+	 * Registers a notification listener with the MBeanServer on the MBean represented by this MetaMBean whose notifications are recorded
+	 * in a notification journal, so that notifications missed by the listener are replayed to it in order.
+	 * @param listener A closure that will passed the notification and handback.
+	 * @param filter A closure that will be passed the notification to determine if it should be journaled and passed to the listener. If null, all notifications are journaled.
+	 * @param handback The object to be passed back to the listener closure. Can be null (so long as the notification is not expecting it....)
+	 * @param closureArgs Optional arguments to the listener closure
+	 * @return The wrapped listener that can be used to unregister the listener
+	 */
+	public ObjectNameAwareListener addJournaledListener(Closure<Void> listener, Closure<Boolean> filter, Object handback, Object...closureArgs ) {
+		return gmx.addJournaledListener(objectName, listener, filter, handback, closureArgs);
+	}
+	
 	/**
 	 * Registers a notification listener with the MBeanServer on the MBean represented by this MetaMBean
 	 * @param listener A closure that will passed the notification and handback.
@@ -0,0 +1,189 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: MetaMBeanIterator</p>
+ * <p>Description: A lazy iterator over the MBeans matching an ObjectName pattern. The MBeanServer is queried one domain at a time,
+ * only when the previous domain's matches have been consumed, and each {@link MetaMBean} is only created when it is returned,
+ * so Groovy's <code>each</code>, <code>find</code> and friends can stop early without touching the rest of the MBeans.
+ * MBeans that are unregistered between the query and their turn in the iteration are skipped.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.MetaMBeanIterator</code></p>
+ */
+public class MetaMBeanIterator implements Iterator<MetaMBean> {
+	/** The Gmx to query */
+	protected final Gmx gmx;
+	/** The optional query expression */
+	protected final QueryExp query;
+	/** The key property list part of the per domain query ObjectName */
+	protected final String keyProperties;
+	/** The domains still to be queried */
+	protected final Iterator<String> domains;
+	/** The current domain's matches */
+	protected Iterator<ObjectInstance> page = null;
+	/** The next MetaMBean to return */
+	protected MetaMBean next = null;
+	/** The number of domains queried */
+	protected int pages = 0;
+
+	/**
+	 * Creates a new MetaMBeanIterator
+	 * @param gmx The Gmx to query
+	 * @param objectName The ObjectName pattern to match. If null, all MBeans are matched.
+	 * @param query The optional query expression
+	 */
+	public MetaMBeanIterator(Gmx gmx, ObjectName objectName, QueryExp query) {
+		if(gmx==null) throw new IllegalArgumentException("The passed Gmx was null", new Throwable());
+		this.gmx = gmx;
+		this.query = query;
+		ObjectName pattern = objectName==null ? JMXHelper.objectName("*:*") : objectName;
+		String props = pattern.getKeyPropertyListString();
+		if(pattern.isPropertyListPattern()) {
+			props = props.length()==0 ? "*" : props + ",*";
+		}
+		keyProperties = props;
+		List<String> matchedDomains = new ArrayList<String>();
+		if(pattern.isDomainPattern()) {
+			Pattern domainPattern = wildcardPattern(pattern.getDomain());
+			String[] allDomains = gmx.getMBeanServerConnection().getDomains();
+			Arrays.sort(allDomains);
+			for(String domain: allDomains) {
+				if(domainPattern.matcher(domain).matches()) {
+					matchedDomains.add(domain);
+				}
+			}
+		} else {
+			matchedDomains.add(pattern.getDomain());
+		}
+		domains = matchedDomains.iterator();
+	}
+
+	/**
+	 * Converts an ObjectName domain wildcard pattern to a regular expression
+	 * @param wildcard The domain pattern with <code>*</code> and <code>?</code> wildcards
+	 * @return the compiled regular expression
+	 */
+	protected static Pattern wildcardPattern(String wildcard) {
+		StringBuilder b = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for(char c: wildcard.toCharArray()) {
+			if(c=='*' || c=='?') {
+				if(literal.length()>0) {
+					b.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				b.append(c=='*' ? ".*" : ".");
+			} else {
+				literal.append(c);
+			}
+		}
+		if(literal.length()>0) {
+			b.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(b.toString());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		while(next==null) {
+			if(page==null || !page.hasNext()) {
+				if(!domains.hasNext()) return false;
+				ObjectName domainQuery = JMXHelper.objectName(domains.next() + ":" + keyProperties);
+				page = gmx.getMBeanServerConnection().queryMBeans(domainQuery, query).iterator();
+				pages++;
+				continue;
+			}
+			ObjectInstance oi = page.next();
+			try {
+				next = MetaMBean.newInstance(oi, gmx);
+			} catch (RuntimeException re) {
+				if(!isUnregistered(re)) throw re;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if the passed exception was caused by the MBean having been unregistered
+	 * @param t The exception
+	 * @return true if the MBean was not found
+	 */
+	protected static boolean isUnregistered(Throwable t) {
+		while(t!=null) {
+			if(t instanceof InstanceNotFoundException) return true;
+			t = t.getCause();
+		}
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public MetaMBean next() {
+		if(!hasNext()) throw new NoSuchElementException();
+		MetaMBean bean = next;
+		next = null;
+		return bean;
+	}
+
+	/**
+	 * Unsupported
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("MetaMBeanIterator does not support remove");
+	}
+
+	/**
+	 * Returns the number of per domain queries issued so far
+	 * @return the number of queried domains
+	 */
+	public int getPages() {
+		return pages;
+	}
+}
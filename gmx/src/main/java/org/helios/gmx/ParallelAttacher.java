@@ -0,0 +1,396 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import groovy.lang.Closure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.helios.vm.VirtualMachine;
+import org.helios.vm.VirtualMachineBootstrap;
+import org.helios.vm.VirtualMachineDescriptor;
+
+/**
+ * <p>Title: ParallelAttacher</p>
+ * <p>Description: Fans out attach API connections to all the JVMs on the local host using a bounded worker pool.
+ * Each target JVM gets its own attach/connect timeout, so one hung JVM does not hold up the sweep, and the optional
+ * handler closure is invoked on each {@link Gmx} as soon as its connection is ready.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.ParallelAttacher</code></p>
+ */
+public class ParallelAttacher {
+	/** Indicates if this JVM should be included in the sweep */
+	protected boolean includeThis = false;
+	/** The maximum number of concurrent attach workers */
+	protected int maxThreads = DEFAULT_MAX_THREADS;
+	/** The per JVM attach and connect timeout in ms. */
+	protected long timeout = DEFAULT_ATTACH_TIMEOUT;
+	/** The optional closure invoked with each connected Gmx */
+	protected Closure<?> gmxHandler = null;
+	/** The optional closure invoked with the JVM id and the failure cause for each failed target */
+	protected Closure<?> failureHandler = null;
+	/** The failures of the last sweep keyed by the JVM id */
+	protected final Map<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+	/** The handler closure errors of the last sweep keyed by the JVM id */
+	protected final Map<String, Throwable> handlerFailures = new ConcurrentHashMap<String, Throwable>();
+
+	/** The default maximum number of concurrent attach workers */
+	public static final int DEFAULT_MAX_THREADS = Math.min(32, Runtime.getRuntime().availableProcessors()*2);
+	/** The default per JVM attach and connect timeout in ms. */
+	public static final long DEFAULT_ATTACH_TIMEOUT = 10000;
+	/** The period in ms. at which in-flight attaches are checked for timeouts */
+	public static final long TIMEOUT_CHECK_PERIOD = 50;
+
+	/** The attach worker thread serial number */
+	private static final AtomicLong threadSerial = new AtomicLong(0L);
+	/** The attach worker thread group */
+	private static final ThreadGroup threadGroup = new ThreadGroup("GmxParallelAttacherThreadGroup");
+
+	/** Attach task state: waiting for a worker */
+	static final int PENDING = 0;
+	/** Attach task state: attaching and connecting */
+	static final int ATTACHING = 1;
+	/** Attach task state: connected, the handler is running or the Gmx has been returned */
+	static final int CONNECTED = 2;
+	/** Attach task state: abandoned because the attach timed out */
+	static final int TIMED_OUT = 3;
+	/** Attach task state: abandoned because the sweep was interrupted */
+	static final int ABANDONED = 4;
+
+	/**
+	 * Creates a new ParallelAttacher
+	 * @return a new ParallelAttacher
+	 */
+	public static ParallelAttacher newParallelAttacher() {
+		return new ParallelAttacher();
+	}
+
+	/**
+	 * Creates a new ParallelAttacher
+	 */
+	private ParallelAttacher() {
+	}
+
+	/**
+	 * Indicates if this JVM (the one running the sweep) should be included
+	 * @param includeThis If true, includes this JVM
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher includeThis(boolean includeThis) {
+		this.includeThis = includeThis;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent attach workers
+	 * @param maxThreads the maximum number of concurrent attach workers
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher threads(int maxThreads) {
+		if(maxThreads<1) throw new IllegalArgumentException("Invalid thread count [" + maxThreads + "]", new Throwable());
+		this.maxThreads = maxThreads;
+		return this;
+	}
+
+	/**
+	 * Sets the per JVM attach and connect timeout
+	 * @param timeout the timeout in ms.
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher timeout(long timeout) {
+		if(timeout<1) throw new IllegalArgumentException("Invalid timeout [" + timeout + "]", new Throwable());
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Sets the per JVM attach and connect timeout
+	 * @param timeout the timeout
+	 * @param unit The unit of the timeout
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher timeout(long timeout, TimeUnit unit) {
+		return timeout(TimeUnit.MILLISECONDS.convert(timeout, unit));
+	}
+
+	/**
+	 * Sets the closure to invoke on each connected Gmx.
+	 * When a handler is set, each Gmx is closed after the handler is called.
+	 * Errors thrown by the handler are reported in {@link #getHandlerFailures()}, not as attach failures.
+	 * @param gmxHandler the closure to invoke on each connected Gmx
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher handler(Closure<?> gmxHandler) {
+		this.gmxHandler = gmxHandler;
+		return this;
+	}
+
+	/**
+	 * Sets the closure to invoke for each failed target. The closure is passed the JVM id and the failure cause.
+	 * @param failureHandler the closure to invoke for each failed target
+	 * @return this ParallelAttacher
+	 */
+	public ParallelAttacher onFailure(Closure<?> failureHandler) {
+		this.failureHandler = failureHandler;
+		return this;
+	}
+
+	/**
+	 * Returns the failures of the last sweep keyed by the JVM id
+	 * @return a map of failure causes keyed by JVM id
+	 */
+	public Map<String, Throwable> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * Returns the errors thrown by the handler closure in the last sweep keyed by the JVM id.
+	 * These targets were attached successfully and are not reported in {@link #getFailures()}.
+	 * @return a map of handler errors keyed by JVM id
+	 */
+	public Map<String, Throwable> getHandlerFailures() {
+		return Collections.unmodifiableMap(handlerFailures);
+	}
+
+	/**
+	 * Attaches to all the located JVMs.
+	 * If a handler closure is set, each Gmx is passed to the handler as soon as it is connected and then closed, and the returned array will be empty.
+	 * Otherwise, the return value will be live Gmx instances.
+	 * @return An array of Gmx instances created for each located and successfully attached JVM.
+	 */
+	public Gmx[] attach() {
+		VirtualMachineBootstrap.getInstance();
+		List<String> targets = new ArrayList<String>();
+		for(VirtualMachineDescriptor vmd: VirtualMachine.list()) {
+			if(includeThis || !vmd.id().equals(Gmx.PID)) {
+				targets.add(vmd.id());
+			}
+		}
+		return attach(targets.toArray(new String[targets.size()]));
+	}
+
+	/**
+	 * Attaches to the JVMs with the passed ids.
+	 * If a handler closure is set, each Gmx is passed to the handler as soon as it is connected and then closed, and the returned array will be empty.
+	 * Otherwise, the return value will be live Gmx instances.
+	 * @param vmIds The ids of the JVMs to attach to
+	 * @return An array of Gmx instances created for each successfully attached JVM.
+	 */
+	public Gmx[] attach(String...vmIds) {
+		failures.clear();
+		handlerFailures.clear();
+		VirtualMachineBootstrap.getInstance();
+		List<String> targets = new ArrayList<String>(vmIds.length);
+		Collections.addAll(targets, vmIds);
+		List<Gmx> gmxes = new ArrayList<Gmx>(targets.size());
+		if(targets.isEmpty()) return new Gmx[0];
+		int poolSize = Math.min(maxThreads, targets.size());
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(threadGroup, r, "GmxParallelAttacher#" + threadSerial.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		CompletionService<Gmx> completionService = new ExecutorCompletionService<Gmx>(executor);
+		Map<Future<Gmx>, AttachTask> inFlight = new HashMap<Future<Gmx>, AttachTask>(targets.size());
+		try {
+			for(String vmId: targets) {
+				AttachTask task = new AttachTask(vmId);
+				inFlight.put(completionService.submit(task), task);
+			}
+			while(!inFlight.isEmpty()) {
+				Future<Gmx> done = null;
+				try {
+					done = completionService.poll(TIMEOUT_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException ie) {
+					abandon(inFlight);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if(done!=null) {
+					AttachTask task = inFlight.remove(done);
+					if(task!=null) {
+						try {
+							Gmx gmx = done.get();
+							if(gmx!=null) gmxes.add(gmx);
+						} catch (CancellationException ce) {
+							/* Timed out and already reported */
+						} catch (ExecutionException ee) {
+							fail(task.vmId, ee.getCause());
+						} catch (InterruptedException ie) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+				long now = System.currentTimeMillis();
+				for(Map.Entry<Future<Gmx>, AttachTask> entry: new ArrayList<Map.Entry<Future<Gmx>, AttachTask>>(inFlight.entrySet())) {
+					AttachTask task = entry.getValue();
+					if(task.isExpired(now, timeout) && task.state.compareAndSet(ATTACHING, TIMED_OUT)) {
+						entry.getKey().cancel(true);
+						inFlight.remove(entry.getKey());
+						// The worker may be stuck in a native attach so replace it to keep the pool at full strength
+						executor.setMaximumPoolSize(executor.getMaximumPoolSize()+1);
+						executor.setCorePoolSize(executor.getCorePoolSize()+1);
+						fail(task.vmId, new TimeoutException("Attach to JVM [" + task.vmId + "] timed out after [" + timeout + "] ms."));
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return gmxes.toArray(new Gmx[gmxes.size()]);
+	}
+
+	/**
+	 * Abandons the in-flight attaches of an interrupted sweep.
+	 * Tasks that have not connected yet are flagged so that they close their own Gmx if the attach
+	 * completes later. Connected tasks are drained from the completion queue and their Gmx closed.
+	 * @param inFlight The in-flight attach tasks keyed by their future
+	 */
+	protected void abandon(Map<Future<Gmx>, AttachTask> inFlight) {
+		for(Map.Entry<Future<Gmx>, AttachTask> entry: inFlight.entrySet()) {
+			AttachTask task = entry.getValue();
+			if(task.state.compareAndSet(PENDING, ABANDONED) || task.state.compareAndSet(ATTACHING, ABANDONED)) continue;
+			// A connected task with a handler closes its own Gmx
+			if(gmxHandler!=null) continue;
+			try {
+				Gmx gmx = entry.getKey().get(timeout, TimeUnit.MILLISECONDS);
+				if(gmx!=null) gmx.close();
+			} catch (Exception e) {
+				/* The attach failed or the handler already closed the Gmx */
+			}
+		}
+		inFlight.clear();
+	}
+
+	/**
+	 * Records a handler closure error for an attached target
+	 * @param vmId The JVM id of the target
+	 * @param cause The handler error
+	 */
+	protected void handlerFailed(String vmId, Throwable cause) {
+		handlerFailures.put(vmId, cause);
+	}
+
+	/**
+	 * Records a target failure and invokes the failure handler if one is set
+	 * @param vmId The JVM id of the failed target
+	 * @param cause The failure cause
+	 */
+	protected void fail(String vmId, Throwable cause) {
+		failures.put(vmId, cause);
+		if(failureHandler!=null) {
+			try {
+				failureHandler.call(vmId, cause);
+			} catch (Exception e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+
+	/**
+	 * <p>Title: AttachTask</p>
+	 * <p>Description: Attaches to one JVM and runs the handler if one is set.</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.ParallelAttacher.AttachTask</code></p>
+	 */
+	protected class AttachTask implements Callable<Gmx> {
+		/** The target JVM id */
+		protected final String vmId;
+		/** The task state */
+		protected final AtomicInteger state = new AtomicInteger(PENDING);
+		/** The time the attach started */
+		protected volatile long startTime = -1L;
+
+		/**
+		 * Creates a new AttachTask
+		 * @param vmId The target JVM id
+		 */
+		protected AttachTask(String vmId) {
+			this.vmId = vmId;
+		}
+
+		/**
+		 * Determines if this task's attach has been running for longer than the timeout
+		 * @param now The current time
+		 * @param timeout The timeout in ms.
+		 * @return true if the attach has timed out
+		 */
+		protected boolean isExpired(long now, long timeout) {
+			long started = startTime;
+			return state.get()==ATTACHING && started!=-1L && (now-started) > timeout;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public Gmx call() throws Exception {
+			if(!state.compareAndSet(PENDING, ATTACHING)) return null;
+			startTime = System.currentTimeMillis();
+			Gmx gmx = Gmx.attachInstance(vmId);
+			if(!state.compareAndSet(ATTACHING, CONNECTED)) {
+				// Abandoned by the sweep
+				gmx.close();
+				return null;
+			}
+			if(gmxHandler!=null) {
+				try {
+					gmxHandler.call(gmx);
+				} catch (Throwable t) {
+					handlerFailed(vmId, t);
+				} finally {
+					gmx.close();
+				}
+				return null;
+			}
+			return gmx;
+		}
+	}
+}
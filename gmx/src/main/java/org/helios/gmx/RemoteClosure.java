@@ -0,0 +1,115 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx;
+
+import groovy.lang.Closure;
+
+import org.helios.gmx.jmx.remote.UnknownClosureHandleException;
+
+/**
+ * <p>Title: RemoteClosure</p>
+ * <p>Description: A handle to a closure installed in a foreign MBeanServer by {@link Gmx#install(Closure)}.
+ * The closure is shipped once, and each call only sends the handle and the call arguments. 
+ * If the foreign MBeanServer has expired the handle, the closure is installed again and the call retried.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.RemoteClosure</code></p>
+ * @param <T> The closure return type
+ */
+public class RemoteClosure<T> {
+	/** The Gmx the closure is installed through */
+	protected final Gmx gmx;
+	/** The installed closure */
+	protected final Closure<T> closure;
+	/** The handle of the installed closure, null if the closure is not installed */
+	protected volatile String handle = null;
+	
+	/**
+	 * Creates a new RemoteClosure
+	 * @param gmx The Gmx the closure is installed through
+	 * @param closure The closure, dehydrated if the Gmx is remote
+	 */
+	RemoteClosure(Gmx gmx, Closure<T> closure) {
+		this.gmx = gmx;
+		this.closure = closure;
+	}
+	
+	/**
+	 * Invokes the closure with a Gmx for the target MBeanServer as the first parameter
+	 * @param args The caller supplied arguments to the closure
+	 * @return the return value of the closure
+	 */
+	@SuppressWarnings("unchecked")
+	public T call(Object...args) {
+		if(!gmx.isRemote()) {
+			return closure.call(Gmx.mergeArguments(args, gmx));
+		}
+		String h = getHandle();
+		try {
+			return (T)gmx.invokeRemoteHandle(h, args);
+		} catch (UnknownClosureHandleException ue) {
+			synchronized(this) {
+				if(h.equals(handle)) handle = null;
+			}
+			return (T)gmx.invokeRemoteHandle(getHandle(), args);
+		}
+	}
+	
+	/**
+	 * Returns the handle of the installed closure, installing it if necessary
+	 * @return the closure handle, or null if the Gmx is local
+	 */
+	public String getHandle() {
+		if(!gmx.isRemote()) return null;
+		String h = handle;
+		if(h==null) {
+			synchronized(this) {
+				if(handle==null) {
+					handle = gmx.registerRemoteClosure(closure);
+				}
+				h = handle;
+			}
+		}
+		return h;
+	}
+	
+	/**
+	 * Uninstalls the closure from the foreign MBeanServer. The closure will be installed again if it is called. 
+	 */
+	public synchronized void close() {
+		if(handle!=null) {
+			gmx.unregisterRemoteClosure(handle);
+			handle = null;
+		}
+	}
+	
+	/**
+	 * Returns the installed closure
+	 * @return the closure
+	 */
+	public Closure<T> getClosure() {
+		return closure;
+	}
+}
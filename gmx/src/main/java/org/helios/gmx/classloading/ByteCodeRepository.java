@@ -34,7 +34,9 @@ import java.lang.instrument.UnmodifiableClassException;
 import java.lang.management.ManagementFactory;
 import java.security.ProtectionDomain;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
 
 import javax.management.MBeanServerInvocationHandler;
@@ -78,6 +80,8 @@ public class ByteCodeRepository implements ClassFileTransformer {
 	
 	/** The resource class name of the GeneratedClosure interface */
 	public static final String generatedClosureName = GeneratedClosure.class.getName().replace('.', '/');
+	/** The constant pool tag of a class reference */
+	public static final int CONSTANT_CLASS = 7;
 	
 	
 	
@@ -243,6 +247,28 @@ public class ByteCodeRepository implements ClassFileTransformer {
 		}
 	}
 	
+	/**
+	 * Returns the internal names of the classes referenced from the constant pool of the passed bytecode.
+	 * Array classes are not included.
+	 * @param bytecode The class bytecode
+	 * @return the set of referenced internal class names, which includes the class itself
+	 */
+	public static Set<String> getReferencedClasses(byte[] bytecode) {
+		if(bytecode==null) throw new IllegalArgumentException("The passed bytecode was null", new Throwable());
+		Set<String> classes = new LinkedHashSet<String>();
+		ClassReader reader = new ClassReader(bytecode);
+		char[] buf = new char[bytecode.length];
+		int itemCount = reader.readUnsignedShort(8);
+		for(int i = 1; i < itemCount; i++) {
+			int index = reader.getItem(i);
+			// The second slot of a long or double constant has no item
+			if(index==0 || reader.readByte(index-1)!=CONSTANT_CLASS) continue;
+			String name = reader.readUTF8(index, buf);
+			if(name.charAt(0)!='[') classes.add(name);
+		}
+		return classes;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see java.lang.instrument.ClassFileTransformer#transform(java.lang.ClassLoader, java.lang.String, java.lang.Class, java.security.ProtectionDomain, byte[])
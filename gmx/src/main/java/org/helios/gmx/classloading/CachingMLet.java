@@ -0,0 +1,404 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import javax.management.loading.PrivateMLet;
+
+/**
+ * <p>Title: CachingMLet</p>
+ * <p>Description: A private MLet installed in a target JVM that keeps the classes and resources it loads from the {@link ReverseClassLoader}
+ * in a disk cache together with their entity tags. Each load revalidates the cached copy with a conditional request, so a reinstall into a JVM
+ * that has loaded the same classes before only downloads what changed. Http jar URLs are downloaded into the cache the same way and loaded from there.
+ * The cache is shared by every CachingMLet in the JVM, and by other JVMs using the same directory, which is safe because the entity tags are content hashes.
+ * The class must only depend on JDK classes since it is loaded through a plain MLet before any other Gmx class reaches the target.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.CachingMLet</code></p>
+ */
+public class CachingMLet extends PrivateMLet implements CachingMLetMBean {
+	/**  */
+	private static final long serialVersionUID = -3052519468207913218L;
+	/** The http code base URLs that classes and resources are loaded from through the cache */
+	protected final List<URL> codeBases = new CopyOnWriteArrayList<URL>();
+	/** The cache directory */
+	protected final File cacheDir;
+	/** Indicates if the cache directory is usable. If not, the MLet loads everything directly. */
+	protected final boolean caching;
+	/** The code source of the classes defined from the cache */
+	protected volatile CodeSource codeSource = null;
+	/** The number of downloads */
+	protected final AtomicLong downloads = new AtomicLong(0L);
+	/** The number of bytes downloaded */
+	protected final AtomicLong bytesDownloaded = new AtomicLong(0L);
+	/** The number of not modified responses */
+	protected final AtomicLong notModified = new AtomicLong(0L);
+
+	/** The system property that overrides the cache directory */
+	public static final String CACHE_DIR_PROP = "org.helios.gmx.classcache.dir";
+	/** The default cache directory */
+	public static final String DEFAULT_CACHE_DIR = System.getProperty("java.io.tmpdir") + File.separator + "gmx-classcache";
+	/** The file name suffix of the entity tag stored next to each cached file */
+	public static final String ETAG_SUFFIX = ".etag";
+	/** The maximum number of retries of a request answered with service unavailable */
+	public static final int MAX_RETRIES = 5;
+	/** The retry wait in ms. when a service unavailable response has no usable Retry-After header */
+	public static final long DEFAULT_RETRY_WAIT = 1000L;
+	/** The maximum retry wait in ms. */
+	public static final long MAX_RETRY_WAIT = 10000L;
+	/** The number of requests retried after a service unavailable response in this JVM */
+	protected static final AtomicLong RETRIES = new AtomicLong(0L);
+
+	/**
+	 * Creates a new CachingMLet
+	 * @param urls The URLs to load classes and resources from
+	 * @param delegateToCLR true if classes not found by this MLet should be loaded through the MBeanServer's class loader repository
+	 */
+	public CachingMLet(URL[] urls, boolean delegateToCLR) {
+		super(new URL[0], delegateToCLR);
+		cacheDir = new File(System.getProperty(CACHE_DIR_PROP, DEFAULT_CACHE_DIR));
+		caching = (cacheDir.isDirectory() || cacheDir.mkdirs()) && cacheDir.canWrite();
+		if(urls!=null) {
+			for(URL url: urls) {
+				addURL(url);
+			}
+		}
+	}
+
+	/**
+	 * Adds a URL to load classes and resources from. Http jars are loaded from their cached copy, and other http URLs are loaded through the cache.
+	 * @param url The URL to add
+	 */
+	@Override
+	public void addURL(URL url) {
+		if(url==null) throw new IllegalArgumentException("The passed URL was null", new Throwable());
+		if(!caching || !"http".equals(url.getProtocol())) {
+			super.addURL(url);
+		} else if(url.getPath().endsWith(".jar")) {
+			String name = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+			URL jarUrl = url;
+			try {
+				File jar = fetch(url, name);
+				if(jar!=null) jarUrl = jar.toURI().toURL();
+			} catch (Exception e) {}
+			super.addURL(jarUrl);
+		} else if(!codeBases.contains(url)) {
+			if(codeSource==null) codeSource = new CodeSource(url, (Certificate[])null);
+			codeBases.add(url);
+		}
+	}
+
+	/**
+	 * Returns the URLs this MLet loads from, including the http code bases loaded through the cache
+	 * @return the URLs
+	 */
+	@Override
+	public URL[] getURLs() {
+		List<URL> urls = new ArrayList<URL>(Arrays.asList(super.getURLs()));
+		urls.addAll(codeBases);
+		return urls.toArray(new URL[urls.size()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.loading.MLet#findClass(java.lang.String)
+	 */
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		String resource = name.replace('.', '/') + ".class";
+		if(super.findResource(resource)!=null) {
+			return super.findClass(name);
+		}
+		byte[] bytecode = load(resource);
+		if(bytecode!=null) {
+			int index = name.lastIndexOf('.');
+			if(index!=-1) {
+				String packageName = name.substring(0, index);
+				if(getPackage(packageName)==null) {
+					try {
+						definePackage(packageName, null, null, null, null, null, null, null);
+					} catch (IllegalArgumentException iae) {}
+				}
+			}
+			return defineClass(name, bytecode, 0, bytecode.length, codeSource);
+		}
+		return super.findClass(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.net.URLClassLoader#findResource(java.lang.String)
+	 */
+	@Override
+	public URL findResource(String name) {
+		URL url = super.findResource(name);
+		return url!=null ? url : findCachedResource(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.net.URLClassLoader#findResources(java.lang.String)
+	 */
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		List<URL> urls = Collections.list(super.findResources(name));
+		URL url = findCachedResource(name);
+		if(url!=null) urls.add(url);
+		return Collections.enumeration(urls);
+	}
+
+	/**
+	 * Returns the URL of the cached copy of the named resource, fetching or revalidating it from the code bases
+	 * @param name The resource name
+	 * @return the URL of the cached resource, the code base URL of the resource if it could not be cached, or null if it was not found
+	 */
+	protected URL findCachedResource(String name) {
+		for(URL codeBase: codeBases) {
+			URL url = null;
+			try {
+				url = new URL(codeBase, name);
+				File file = fetch(url, name);
+				if(file!=null) return file.toURI().toURL();
+			} catch (Exception e) {
+				if(url!=null) return url;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Loads the named resource from the code bases through the cache
+	 * @param resource The resource name
+	 * @return the resource bytes or null if it was not found
+	 */
+	protected byte[] load(String resource) {
+		for(URL codeBase: codeBases) {
+			URL url = null;
+			try {
+				url = new URL(codeBase, resource);
+				File file = fetch(url, resource);
+				if(file!=null) return read(new FileInputStream(file));
+			} catch (Exception e) {
+				// The cache is not usable for this resource so download it directly
+				if(url!=null) {
+					try {
+						return read(url.openStream());
+					} catch (Exception ex) {}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Fetches a resource into the cache, sending the entity tag of the cached copy so that the server can answer that it is current
+	 * @param url The URL of the resource
+	 * @param resource The resource name, which is the path of the cached copy in the cache directory
+	 * @return the cached copy or null if the resource was not found
+	 * @throws IOException thrown if the resource could not be fetched or cached
+	 */
+	protected File fetch(URL url, String resource) throws IOException {
+		if(resource.indexOf("..")!=-1) throw new IOException("Resource [" + resource + "] cannot be cached");
+		File file = new File(cacheDir, resource);
+		File etagFile = new File(cacheDir, resource + ETAG_SUFFIX);
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put("Accept-Encoding", "gzip");
+		if(file.isFile() && etagFile.isFile()) {
+			headers.put("If-None-Match", new String(read(new FileInputStream(etagFile)), "UTF-8"));
+		}
+		HttpURLConnection conn = connect(url, headers);
+		int code = conn.getResponseCode();
+		if(code==HttpURLConnection.HTTP_NOT_MODIFIED) {
+			notModified.incrementAndGet();
+			return file;
+		}
+		if(code!=HttpURLConnection.HTTP_OK) {
+			InputStream es = conn.getErrorStream();
+			if(es!=null) try { read(es); } catch (Exception e) {}
+			if(code==HttpURLConnection.HTTP_NOT_FOUND) return null;
+			throw new IOException("Failed to fetch [" + url + "]. Response code:" + code);
+		}
+		InputStream is = conn.getInputStream();
+		if("gzip".equals(conn.getContentEncoding())) {
+			is = new GZIPInputStream(is);
+		}
+		byte[] bytes = read(is);
+		downloads.incrementAndGet();
+		bytesDownloaded.addAndGet(bytes.length);
+		String etag = conn.getHeaderField("ETag");
+		etagFile.delete();
+		store(file, bytes);
+		if(etag!=null) store(etagFile, etag.getBytes("UTF-8"));
+		return file;
+	}
+
+	/**
+	 * Opens a connection to the passed http URL, retrying while the reverse class loader answers that it is busy.
+	 * Each retry waits for the number of seconds in the Retry-After header, plus a random fraction of it so that 
+	 * the targets of a fleet wide install do not all come back at once.
+	 * @param url The URL to connect to
+	 * @param headers The request headers, which may be null
+	 * @return the connection, which has received a response other than service unavailable unless the retries ran out
+	 * @throws IOException thrown if the connection failed or the wait was interrupted
+	 */
+	public static HttpURLConnection connect(URL url, Map<String, String> headers) throws IOException {
+		if(url==null) throw new IllegalArgumentException("The passed URL was null", new Throwable());
+		for(int attempt = 0; ; attempt++) {
+			HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+			if(headers!=null) {
+				for(Map.Entry<String, String> header: headers.entrySet()) {
+					conn.setRequestProperty(header.getKey(), header.getValue());
+				}
+			}
+			if(conn.getResponseCode()!=HttpURLConnection.HTTP_UNAVAILABLE || attempt>=MAX_RETRIES) {
+				return conn;
+			}
+			InputStream es = conn.getErrorStream();
+			if(es!=null) try { read(es); } catch (Exception e) {}
+			long wait = DEFAULT_RETRY_WAIT;
+			try {
+				wait = Math.min(MAX_RETRY_WAIT, Long.parseLong(conn.getHeaderField("Retry-After").trim()) * 1000L);
+			} catch (Exception e) {}
+			RETRIES.incrementAndGet();
+			try {
+				Thread.sleep(wait + (long)(Math.random() * wait / 2));
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting to retry [" + url + "]");
+			}
+		}
+	}
+
+	/**
+	 * Writes the passed bytes to a temporary file and renames it to the passed file, so that concurrent readers never see a partial file
+	 * @param file The file to write
+	 * @param bytes The bytes to write
+	 * @throws IOException thrown if the file could not be written
+	 */
+	protected static void store(File file, byte[] bytes) throws IOException {
+		File dir = file.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) throw new IOException("Failed to create cache directory [" + dir + "]");
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		OutputStream os = new FileOutputStream(tmp);
+		try {
+			os.write(bytes);
+		} finally {
+			os.close();
+		}
+		if(!tmp.renameTo(file)) {
+			file.delete();
+			if(!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException("Failed to store cached file [" + file + "]");
+			}
+		}
+	}
+
+	/**
+	 * Reads the passed stream to the end and closes it
+	 * @param is The stream to read
+	 * @return the bytes read
+	 * @throws IOException thrown if the stream could not be read
+	 */
+	protected static byte[] read(InputStream is) throws IOException {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int bytesRead = -1;
+			while((bytesRead=is.read(buffer))!=-1) {
+				baos.write(buffer, 0, bytesRead);
+			}
+			return baos.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.CachingMLetMBean#getCacheDirectory()
+	 */
+	@Override
+	public String getCacheDirectory() {
+		return cacheDir.getAbsolutePath();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.CachingMLetMBean#getDownloads()
+	 */
+	@Override
+	public long getDownloads() {
+		return downloads.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.CachingMLetMBean#getBytesDownloaded()
+	 */
+	@Override
+	public long getBytesDownloaded() {
+		return bytesDownloaded.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.CachingMLetMBean#getNotModified()
+	 */
+	@Override
+	public long getNotModified() {
+		return notModified.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.CachingMLetMBean#getRetries()
+	 */
+	@Override
+	public long getRetries() {
+		return RETRIES.get();
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import javax.management.loading.MLetMBean;
+
+/**
+ * <p>Title: CachingMLetMBean</p>
+ * <p>Description: JMX MBean interface for the {@link CachingMLet}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.CachingMLetMBean</code></p>
+ */
+public interface CachingMLetMBean extends MLetMBean {
+	/**
+	 * Returns the directory the downloaded classes and resources are cached in
+	 * @return the cache directory
+	 */
+	public String getCacheDirectory();
+
+	/**
+	 * Returns the number of classes and resources downloaded because they were not cached or had changed
+	 * @return the number of downloads
+	 */
+	public long getDownloads();
+
+	/**
+	 * Returns the number of bytes downloaded
+	 * @return the number of bytes downloaded
+	 */
+	public long getBytesDownloaded();
+
+	/**
+	 * Returns the number of classes and resources loaded from the cache after the reverse class loader confirmed they were current
+	 * @return the number of not modified responses
+	 */
+	public long getNotModified();
+
+	/**
+	 * Returns the number of requests in this JVM that were retried because the reverse class loader was busy
+	 * @return the number of retries
+	 */
+	public long getRetries();
+}
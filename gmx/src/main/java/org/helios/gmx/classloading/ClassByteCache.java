@@ -0,0 +1,369 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.helios.gmx.util.LRUCache;
+
+/**
+ * <p>Title: ClassByteCache</p>
+ * <p>Description: A content addressed, size bounded, LRU cache of the class and resource bytes served by the {@link ReverseClassLoader}.
+ * Each entry is keyed by the resource name and a SHA-1 hash of its bytes, and holds the raw bytes and the bytes compressed once up front,
+ * so that a resource requested by many remote class loaders is resolved and gzipped once and then written straight from memory.
+ * Resources resolved through the class loaders are also indexed by name so that a hit skips the class loader walk entirely,
+ * while generated closure bytes, which can change under the same class name, are always looked up by their content.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.ClassByteCache</code></p>
+ */
+public class ClassByteCache implements ClassByteCacheMBean {
+	/** The cached resource bytes keyed by resource name and content hash */
+	protected final LRUCache<String, CachedBytes> entries;
+	/** The content keys of the resources resolved through the class loaders, keyed by resource name */
+	protected final LRUCache<String, String> names;
+	/** The total size of the cached raw and gzipped bytes */
+	protected final AtomicLong cachedBytes = new AtomicLong(0L);
+	/** The number of cache hits */
+	protected final AtomicLong hits = new AtomicLong(0L);
+	/** The number of cache misses */
+	protected final AtomicLong misses = new AtomicLong(0L);
+	/** The number of response body bytes served */
+	protected final AtomicLong bytesServed = new AtomicLong(0L);
+	/** The number of gzipped response body bytes served */
+	protected final AtomicLong gzipBytesServed = new AtomicLong(0L);
+	/** The number of conditional requests answered with a not modified response */
+	protected final AtomicLong notModified = new AtomicLong(0L);
+
+	/** The default maximum number of cached resources */
+	public static final int DEFAULT_MAX_SIZE = 4096;
+	/** The separator between the resource name and the content hash in a cache key */
+	public static final char KEY_SEPARATOR = '@';
+
+	/**
+	 * Creates a new ClassByteCache
+	 * @param maxSize The maximum number of cached resources
+	 */
+	public ClassByteCache(int maxSize) {
+		entries = new LRUCache<String, CachedBytes>(maxSize) {
+			@Override
+			protected void onEviction(String key, CachedBytes value) {
+				cachedBytes.addAndGet(-value.getSize());
+			}
+		};
+		names = new LRUCache<String, String>(maxSize);
+	}
+
+	/**
+	 * Returns the cached bytes of a resource resolved through the class loaders, counting a hit if found
+	 * @param resource The resource name
+	 * @return the cached bytes or null if the resource is not cached
+	 */
+	public CachedBytes get(String resource) {
+		if(resource==null) throw new IllegalArgumentException("The passed resource was null", new Throwable());
+		String key = names.get(resource);
+		CachedBytes cached = key==null ? null : entries.get(key);
+		if(cached!=null) hits.incrementAndGet();
+		return cached;
+	}
+
+	/**
+	 * Returns the cached entry for the passed resource bytes, compressing and caching them if the same content is not already cached
+	 * @param resource The resource name
+	 * @param bytes The resource bytes
+	 * @param indexName true if the bytes are stable for the resource name and later requests can be served by name through {@link #get(String)}
+	 * @return the cached bytes
+	 */
+	public CachedBytes cache(String resource, byte[] bytes, boolean indexName) {
+		if(resource==null) throw new IllegalArgumentException("The passed resource was null", new Throwable());
+		if(bytes==null) throw new IllegalArgumentException("The passed bytes were null", new Throwable());
+		String hash = hash(bytes);
+		String key = resource + KEY_SEPARATOR + hash;
+		CachedBytes cached = entries.get(key);
+		if(cached==null) {
+			misses.incrementAndGet();
+			CachedBytes created = new CachedBytes(key, hash, bytes);
+			cached = entries.putIfAbsent(key, created);
+			if(cached==created) cachedBytes.addAndGet(created.getSize());
+		} else {
+			hits.incrementAndGet();
+		}
+		if(indexName) names.put(resource, key);
+		return cached;
+	}
+
+	/**
+	 * Records the size of a response body written by the reverse class loader
+	 * @param bytes The number of bytes written
+	 * @param gzipped true if the body was gzipped
+	 */
+	public void served(long bytes, boolean gzipped) {
+		bytesServed.addAndGet(bytes);
+		if(gzipped) gzipBytesServed.addAndGet(bytes);
+	}
+
+	/**
+	 * Records a conditional request answered with a not modified response
+	 */
+	public void notModified() {
+		notModified.incrementAndGet();
+	}
+
+	/**
+	 * Computes the SHA-1 hash of the passed bytes as a hex string
+	 * @param bytes The bytes to hash
+	 * @return the hex encoded hash
+	 */
+	protected static String hash(byte[] bytes) {
+		try {
+			StringBuilder b = new StringBuilder();
+			for(byte x: MessageDigest.getInstance("SHA-1").digest(bytes)) {
+				b.append(String.format("%02x", x & 0xFF));
+			}
+			return b.toString();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to hash resource bytes", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getSize()
+	 */
+	@Override
+	public int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getMaxSize()
+	 */
+	@Override
+	public int getMaxSize() {
+		return entries.getMaxSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#setMaxSize(int)
+	 */
+	@Override
+	public void setMaxSize(int maxSize) {
+		entries.setMaxSize(maxSize);
+		names.setMaxSize(maxSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getCachedBytes()
+	 */
+	@Override
+	public long getCachedBytes() {
+		return cachedBytes.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getHits()
+	 */
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getMisses()
+	 */
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getHitRatio()
+	 */
+	@Override
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total==0 ? 0D : (double)h/total;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getEvictions()
+	 */
+	@Override
+	public long getEvictions() {
+		return entries.getEvictions();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getBytesServed()
+	 */
+	@Override
+	public long getBytesServed() {
+		return bytesServed.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getGzipBytesServed()
+	 */
+	@Override
+	public long getGzipBytesServed() {
+		return gzipBytesServed.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#getNotModified()
+	 */
+	@Override
+	public long getNotModified() {
+		return notModified.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#clear()
+	 */
+	@Override
+	public void clear() {
+		names.clear();
+		entries.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.ClassByteCacheMBean#resetStats()
+	 */
+	@Override
+	public void resetStats() {
+		hits.set(0L);
+		misses.set(0L);
+		bytesServed.set(0L);
+		gzipBytesServed.set(0L);
+		notModified.set(0L);
+		entries.resetStats();
+	}
+
+	/**
+	 * <p>Title: CachedBytes</p>
+	 * <p>Description: The raw and gzipped bytes of a cached resource</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.classloading.ClassByteCache.CachedBytes</code></p>
+	 */
+	public static class CachedBytes {
+		/** The cache key of the resource */
+		protected final String key;
+		/** The SHA-1 hash of the raw bytes */
+		protected final String hash;
+		/** The raw bytes */
+		protected final byte[] bytes;
+		/** The gzipped bytes, or null if compressing does not make the resource smaller */
+		protected final byte[] gzipped;
+
+		/**
+		 * Creates a new CachedBytes, compressing the passed bytes
+		 * @param key The cache key of the resource
+		 * @param hash The SHA-1 hash of the raw bytes
+		 * @param bytes The raw bytes
+		 */
+		CachedBytes(String key, String hash, byte[] bytes) {
+			this.key = key;
+			this.hash = hash;
+			this.bytes = bytes;
+			byte[] gz = gzip(bytes);
+			gzipped = gz.length < bytes.length ? gz : null;
+		}
+
+		/**
+		 * Gzips the passed bytes
+		 * @param bytes The bytes to compress
+		 * @return the gzipped bytes
+		 */
+		protected static byte[] gzip(byte[] bytes) {
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length);
+				GZIPOutputStream gzipOut = new GZIPOutputStream(baos);
+				gzipOut.write(bytes);
+				gzipOut.finish();
+				gzipOut.close();
+				return baos.toByteArray();
+			} catch (Exception e) {
+				throw new RuntimeException("Failed to gzip resource bytes", e);
+			}
+		}
+
+		/**
+		 * Returns the cache key of the resource, which is the resource name and the content hash
+		 * @return the cache key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the SHA-1 hash of the raw bytes
+		 * @return the hex encoded hash
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * Returns the raw bytes
+		 * @return the raw bytes
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Returns the gzipped bytes
+		 * @return the gzipped bytes, or null if compressing does not make the resource smaller
+		 */
+		public byte[] getGzipped() {
+			return gzipped;
+		}
+
+		/**
+		 * Returns the number of cached raw and gzipped bytes
+		 * @return the cached size
+		 */
+		public long getSize() {
+			return bytes.length + (gzipped==null ? 0 : gzipped.length);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+/**
+ * <p>Title: ClassByteCacheMBean</p>
+ * <p>Description: JMX MBean interface for the {@link ClassByteCache}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.ClassByteCacheMBean</code></p>
+ */
+public interface ClassByteCacheMBean {
+	/** The ObjectName of the reverse class loader's class byte cache MBean, registered in the domain of its Jetty statistics MBeans */
+	public static final String CACHE_ON = "org.helios.gmx.classloading:type=classbytecache";
+
+	/**
+	 * Returns the number of cached resources
+	 * @return the number of cached resources
+	 */
+	public int getSize();
+
+	/**
+	 * Returns the maximum number of cached resources. The least recently served resource is evicted first.
+	 * @return the maximum number of cached resources
+	 */
+	public int getMaxSize();
+
+	/**
+	 * Sets the maximum number of cached resources
+	 * @param maxSize the maximum number of cached resources
+	 */
+	public void setMaxSize(int maxSize);
+
+	/**
+	 * Returns the total size of the cached raw and gzipped bytes
+	 * @return the number of cached bytes
+	 */
+	public long getCachedBytes();
+
+	/**
+	 * Returns the number of requests served from the cache
+	 * @return the number of cache hits
+	 */
+	public long getHits();
+
+	/**
+	 * Returns the number of requests that had to resolve and compress the resource bytes
+	 * @return the number of cache misses
+	 */
+	public long getMisses();
+
+	/**
+	 * Returns the ratio of hits to lookups
+	 * @return the hit ratio between 0 and 1
+	 */
+	public double getHitRatio();
+
+	/**
+	 * Returns the number of evicted resources
+	 * @return the number of evictions
+	 */
+	public long getEvictions();
+
+	/**
+	 * Returns the number of response body bytes written by the reverse class loader
+	 * @return the number of bytes served
+	 */
+	public long getBytesServed();
+
+	/**
+	 * Returns the number of response body bytes written gzipped by the reverse class loader
+	 * @return the number of gzipped bytes served
+	 */
+	public long getGzipBytesServed();
+
+	/**
+	 * Returns the number of conditional requests answered with a not modified response because the client's copy was current
+	 * @return the number of not modified responses
+	 */
+	public long getNotModified();
+
+	/**
+	 * Clears the cache
+	 */
+	public void clear();
+
+	/**
+	 * Resets the hit, miss, eviction, bytes served and not modified counters
+	 */
+	public void resetStats();
+}
@@ -0,0 +1,253 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Title: MappedResource</p>
+ * <p>Description: A file served by the {@link ReverseClassLoader} from a read only memory mapping instead of the heap, such as the Gmx jar
+ * or a dynamic resource. The gzipped representation is written once to a sidecar file named by the content hash and mapped as well,
+ * so that both representations are written to clients straight from the page cache and survive restarts of the client.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.MappedResource</code></p>
+ */
+public class MappedResource {
+	/** The mapped file */
+	protected final File file;
+	/** The last modified time of the file when it was mapped */
+	protected final long lastModified;
+	/** The SHA-1 hash of the file content */
+	protected final String hash;
+	/** The mapped file content */
+	protected final MappedByteBuffer content;
+	/** The mapped gzipped sidecar content, or null if compressing does not make the file smaller */
+	protected final MappedByteBuffer gzipped;
+
+	/** The default directory of the gzipped sidecar files */
+	public static final File DEFAULT_SIDECAR_DIR = new File(System.getProperty("java.io.tmpdir"), "gmx-sidecars");
+
+	/**
+	 * Maps the passed file and its gzipped sidecar, writing the sidecar if it does not exist yet
+	 * @param file The file to map
+	 * @param sidecarDir The directory of the gzipped sidecar files
+	 */
+	public MappedResource(File file, File sidecarDir) {
+		if(file==null) throw new IllegalArgumentException("The passed file was null", new Throwable());
+		if(sidecarDir==null) throw new IllegalArgumentException("The passed sidecar directory was null", new Throwable());
+		this.file = file;
+		try {
+			lastModified = file.lastModified();
+			hash = hash(file);
+			content = map(file);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to map file [" + file + "]", e);
+		}
+		MappedByteBuffer gz = null;
+		try {
+			File sidecar = new File(sidecarDir, hash + ".gz");
+			if(!sidecar.isFile()) {
+				writeSidecar(file, sidecar);
+			}
+			if(sidecar.length() < content.capacity()) gz = map(sidecar);
+		} catch (Exception e) {
+			// The file is served uncompressed if the sidecar cannot be written
+		}
+		gzipped = gz;
+	}
+
+	/**
+	 * Returns the local file for the passed URL, copying the URL content to a temporary file if it is not a file URL
+	 * @param url The URL of the resource
+	 * @return the local file
+	 */
+	public static File localFile(URL url) {
+		if(url==null) throw new IllegalArgumentException("The passed URL was null", new Throwable());
+		InputStream is = null;
+		OutputStream os = null;
+		try {
+			if("file".equals(url.getProtocol())) {
+				return new File(url.toURI());
+			}
+			File tmp = File.createTempFile("gmx-resource", ".tmp");
+			tmp.deleteOnExit();
+			is = url.openStream();
+			os = new FileOutputStream(tmp);
+			byte[] buffer = new byte[8192];
+			int bytesRead = -1;
+			while((bytesRead=is.read(buffer))!=-1) {
+				os.write(buffer, 0, bytesRead);
+			}
+			return tmp;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to get local file for [" + url + "]", e);
+		} finally {
+			if(is!=null) try { is.close(); } catch (Exception e) {}
+			if(os!=null) try { os.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Maps the passed file read only
+	 * @param file The file to map
+	 * @return the mapped buffer
+	 * @throws IOException thrown if the file could not be mapped
+	 */
+	protected static MappedByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// The mapping stays valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Computes the SHA-1 hash of the passed file's content as a hex string, streaming the file
+	 * @param file The file to hash
+	 * @return the hex encoded hash
+	 * @throws Exception thrown if the file could not be read
+	 */
+	protected static String hash(File file) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int bytesRead = -1;
+			while((bytesRead=is.read(buffer))!=-1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+		} finally {
+			is.close();
+		}
+		StringBuilder b = new StringBuilder();
+		for(byte x: digest.digest()) {
+			b.append(String.format("%02x", x & 0xFF));
+		}
+		return b.toString();
+	}
+
+	/**
+	 * Gzips the passed file into the passed sidecar file through a temporary file, so that concurrent clients never map a partial sidecar
+	 * @param file The file to compress
+	 * @param sidecar The sidecar file
+	 * @throws IOException thrown if the sidecar could not be written
+	 */
+	protected static void writeSidecar(File file, File sidecar) throws IOException {
+		File dir = sidecar.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) throw new IOException("Failed to create sidecar directory [" + dir + "]");
+		File tmp = File.createTempFile(sidecar.getName(), ".tmp", dir);
+		InputStream is = new FileInputStream(file);
+		GZIPOutputStream gzipOut = null;
+		try {
+			gzipOut = new GZIPOutputStream(new FileOutputStream(tmp), 8192);
+			byte[] buffer = new byte[8192];
+			int bytesRead = -1;
+			while((bytesRead=is.read(buffer))!=-1) {
+				gzipOut.write(buffer, 0, bytesRead);
+			}
+			gzipOut.finish();
+		} finally {
+			is.close();
+			if(gzipOut!=null) gzipOut.close();
+		}
+		if(!tmp.renameTo(sidecar) && !sidecar.isFile()) {
+			tmp.delete();
+			throw new IOException("Failed to write sidecar [" + sidecar + "]");
+		}
+		tmp.delete();
+	}
+
+	/**
+	 * Indicates if the mapping still reflects the file, which is not the case once the file has been modified
+	 * @return true if the file is unchanged
+	 */
+	public boolean isCurrent() {
+		return file.lastModified()==lastModified && file.length()==content.capacity();
+	}
+
+	/**
+	 * Returns the mapped file
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the SHA-1 hash of the file content
+	 * @return the hex encoded hash
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * Returns a read only view of the mapped content with its own position and limit
+	 * @return the content buffer
+	 */
+	public ByteBuffer getContent() {
+		return content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a read only view of the mapped gzipped content with its own position and limit
+	 * @return the gzipped content buffer, or null if compressing does not make the file smaller
+	 */
+	public ByteBuffer getGzipped() {
+		return gzipped==null ? null : gzipped.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the size of the file
+	 * @return the size in bytes
+	 */
+	public int getSize() {
+		return content.capacity();
+	}
+
+	/**
+	 * Returns the size of the gzipped sidecar
+	 * @return the size in bytes, or -1 if there is no gzipped representation
+	 */
+	public int getGzippedSize() {
+		return gzipped==null ? -1 : gzipped.capacity();
+	}
+}
@@ -0,0 +1,353 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.helios.gmx.util.Log2Histogram;
+
+/**
+ * <p>Title: RequestThrottle</p>
+ * <p>Description: Admission control and latency metrics for the {@link ReverseClassLoader}'s bounded server thread pool.
+ * A request is rejected with a service unavailable response and a Retry-After header when its remote host already has
+ * the maximum number of requests in flight, or when the pool's queue has backed up to the saturation depth, so that a
+ * bootstrap storm from many targets is spread out over time instead of piling up threads and memory in the client.
+ * Request latencies are recorded in microseconds in one log2 histogram per resource type.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.RequestThrottle</code></p>
+ */
+public class RequestThrottle implements RequestThrottleMBean {
+	/** The server thread pool */
+	protected final ThreadPoolExecutor executor;
+	/** The capacity of the server task queue */
+	protected final int queueCapacity;
+	/** The number of requests in flight keyed by remote host */
+	protected final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+	/** The latency histograms, in the order of {@link #RESOURCE_TYPES} */
+	protected final Log2Histogram[] latencies = new Log2Histogram[RESOURCE_TYPES.length];
+	/** The number of admitted requests */
+	protected final AtomicLong admitted = new AtomicLong(0L);
+	/** The number of requests rejected by the per host limit */
+	protected final AtomicLong rejectedPerHost = new AtomicLong(0L);
+	/** The number of requests rejected by the saturation depth */
+	protected final AtomicLong rejectedSaturated = new AtomicLong(0L);
+	/** The maximum number of requests served concurrently to one remote host */
+	protected volatile int maxPerHost = DEFAULT_MAX_PER_HOST;
+	/** The queue depth at which requests are rejected */
+	protected volatile int saturationQueueDepth;
+	/** The number of seconds a rejected client is asked to wait before retrying */
+	protected volatile int retryAfter = DEFAULT_RETRY_AFTER;
+
+	/** The resource types that latencies are recorded for */
+	public static final String[] RESOURCE_TYPES = {"Class", "Jar", "Bundle", "Resource"};
+	/** The default maximum number of server threads */
+	public static final int DEFAULT_MAX_THREADS = 32;
+	/** The minimum number of server threads, which leaves room for the connector's acceptor and selector threads */
+	public static final int MIN_THREADS = 4;
+	/** The default capacity of the server task queue */
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+	/** The default maximum number of requests served concurrently to one remote host */
+	public static final int DEFAULT_MAX_PER_HOST = 16;
+	/** The default number of seconds a rejected client is asked to wait before retrying */
+	public static final int DEFAULT_RETRY_AFTER = 1;
+
+	/**
+	 * Creates a new RequestThrottle
+	 * @param executor The server thread pool
+	 * @param queueCapacity The capacity of the server task queue. Requests are rejected once half of it is used.
+	 */
+	public RequestThrottle(ThreadPoolExecutor executor, int queueCapacity) {
+		if(executor==null) throw new IllegalArgumentException("The passed executor was null", new Throwable());
+		this.executor = executor;
+		this.queueCapacity = queueCapacity;
+		saturationQueueDepth = Math.max(1, queueCapacity/2);
+		for(int i = 0; i < latencies.length; i++) {
+			latencies[i] = new Log2Histogram();
+		}
+	}
+
+	/**
+	 * Admits a request from the passed remote host if the host is under its limit and the server is not saturated.
+	 * Every admitted request must be released with {@link #release(String)}.
+	 * @param host The remote host address
+	 * @return true if the request is admitted, false if it should be rejected
+	 */
+	public boolean admit(String host) {
+		if(host==null) throw new IllegalArgumentException("The passed host was null", new Throwable());
+		if(executor.getQueue().size()>=saturationQueueDepth) {
+			rejectedSaturated.incrementAndGet();
+			return false;
+		}
+		AtomicInteger count = inFlight.get(host);
+		if(count==null) {
+			count = new AtomicInteger(0);
+			AtomicInteger existing = inFlight.putIfAbsent(host, count);
+			if(existing!=null) count = existing;
+		}
+		if(count.incrementAndGet()>maxPerHost) {
+			count.decrementAndGet();
+			rejectedPerHost.incrementAndGet();
+			return false;
+		}
+		admitted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Releases an admitted request from the passed remote host
+	 * @param host The remote host address
+	 */
+	public void release(String host) {
+		AtomicInteger count = host==null ? null : inFlight.get(host);
+		if(count!=null) count.decrementAndGet();
+	}
+
+	/**
+	 * Records the latency of a served request
+	 * @param resourceType One of the {@link #RESOURCE_TYPES}
+	 * @param elapsedNanos The elapsed time in ns.
+	 */
+	public void record(String resourceType, long elapsedNanos) {
+		getHistogram(resourceType).record(TimeUnit.MICROSECONDS.convert(elapsedNanos, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Returns the latency histogram of the passed resource type
+	 * @param resourceType One of the {@link #RESOURCE_TYPES}
+	 * @return the histogram
+	 */
+	public Log2Histogram getHistogram(String resourceType) {
+		for(int i = 0; i < RESOURCE_TYPES.length; i++) {
+			if(RESOURCE_TYPES[i].equals(resourceType)) return latencies[i];
+		}
+		throw new IllegalArgumentException("Unknown resource type [" + resourceType + "]", new Throwable());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getMaxThreads()
+	 */
+	@Override
+	public int getMaxThreads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#setMaxThreads(int)
+	 */
+	@Override
+	public void setMaxThreads(int maxThreads) {
+		if(maxThreads<MIN_THREADS) throw new IllegalArgumentException("The maximum number of threads must be at least [" + MIN_THREADS + "]", new Throwable());
+		if(maxThreads>executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(maxThreads);
+			executor.setCorePoolSize(maxThreads);
+		} else {
+			executor.setCorePoolSize(maxThreads);
+			executor.setMaximumPoolSize(maxThreads);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getPoolSize()
+	 */
+	@Override
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getActiveThreads()
+	 */
+	@Override
+	public int getActiveThreads() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getQueueDepth()
+	 */
+	@Override
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getQueueCapacity()
+	 */
+	@Override
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getSaturationQueueDepth()
+	 */
+	@Override
+	public int getSaturationQueueDepth() {
+		return saturationQueueDepth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#setSaturationQueueDepth(int)
+	 */
+	@Override
+	public void setSaturationQueueDepth(int depth) {
+		if(depth<1) throw new IllegalArgumentException("The saturation queue depth must be positive", new Throwable());
+		saturationQueueDepth = depth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getMaxPerHost()
+	 */
+	@Override
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#setMaxPerHost(int)
+	 */
+	@Override
+	public void setMaxPerHost(int maxPerHost) {
+		if(maxPerHost<0) throw new IllegalArgumentException("The per host limit was negative", new Throwable());
+		this.maxPerHost = maxPerHost;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getRetryAfter()
+	 */
+	@Override
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#setRetryAfter(int)
+	 */
+	@Override
+	public void setRetryAfter(int seconds) {
+		if(seconds<0) throw new IllegalArgumentException("The Retry-After seconds were negative", new Throwable());
+		retryAfter = seconds;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getInFlight()
+	 */
+	@Override
+	public Map<String, Integer> getInFlight() {
+		Map<String, Integer> hosts = new TreeMap<String, Integer>();
+		for(Map.Entry<String, AtomicInteger> entry: inFlight.entrySet()) {
+			int count = entry.getValue().get();
+			if(count>0) hosts.put(entry.getKey(), count);
+		}
+		return hosts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getAdmitted()
+	 */
+	@Override
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getRejectedPerHost()
+	 */
+	@Override
+	public long getRejectedPerHost() {
+		return rejectedPerHost.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getRejectedSaturated()
+	 */
+	@Override
+	public long getRejectedSaturated() {
+		return rejectedSaturated.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getLatencySummary()
+	 */
+	@Override
+	public Map<String, Long> getLatencySummary() {
+		Map<String, Long> summary = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < RESOURCE_TYPES.length; i++) {
+			summary.put(RESOURCE_TYPES[i] + "Count", latencies[i].getCount());
+			summary.put(RESOURCE_TYPES[i] + "Mean", latencies[i].getMean());
+			summary.put(RESOURCE_TYPES[i] + "P99", latencies[i].getPercentile(99));
+			summary.put(RESOURCE_TYPES[i] + "Max", latencies[i].getMax());
+		}
+		return summary;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#getLatencyHistogram(java.lang.String)
+	 */
+	@Override
+	public long[] getLatencyHistogram(String resourceType) {
+		return getHistogram(resourceType).getBuckets();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.classloading.RequestThrottleMBean#resetStats()
+	 */
+	@Override
+	public void resetStats() {
+		admitted.set(0L);
+		rejectedPerHost.set(0L);
+		rejectedSaturated.set(0L);
+		for(Log2Histogram h: latencies) {
+			h.reset();
+		}
+	}
+}
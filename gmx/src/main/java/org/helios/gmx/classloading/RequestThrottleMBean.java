@@ -0,0 +1,154 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.classloading;
+
+import java.util.Map;
+
+/**
+ * <p>Title: RequestThrottleMBean</p>
+ * <p>Description: JMX MBean interface for the {@link RequestThrottle}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.classloading.RequestThrottleMBean</code></p>
+ */
+public interface RequestThrottleMBean {
+	/** The ObjectName of the reverse class loader's request throttle MBean */
+	public static final String THROTTLE_ON = "org.helios.gmx.classloading:type=requestthrottle";
+
+	/**
+	 * Returns the maximum number of server threads
+	 * @return the maximum number of server threads
+	 */
+	public int getMaxThreads();
+
+	/**
+	 * Sets the maximum number of server threads
+	 * @param maxThreads the maximum number of server threads
+	 */
+	public void setMaxThreads(int maxThreads);
+
+	/**
+	 * Returns the number of server threads
+	 * @return the number of server threads
+	 */
+	public int getPoolSize();
+
+	/**
+	 * Returns the number of server threads running a task, including the connector's acceptor and selector threads
+	 * @return the number of active threads
+	 */
+	public int getActiveThreads();
+
+	/**
+	 * Returns the number of tasks waiting for a server thread
+	 * @return the queue depth
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * Returns the capacity of the server task queue
+	 * @return the queue capacity
+	 */
+	public int getQueueCapacity();
+
+	/**
+	 * Returns the queue depth at which requests are rejected with a service unavailable response
+	 * @return the saturation queue depth
+	 */
+	public int getSaturationQueueDepth();
+
+	/**
+	 * Sets the queue depth at which requests are rejected with a service unavailable response
+	 * @param depth the saturation queue depth
+	 */
+	public void setSaturationQueueDepth(int depth);
+
+	/**
+	 * Returns the maximum number of requests served concurrently to one remote host
+	 * @return the per host limit
+	 */
+	public int getMaxPerHost();
+
+	/**
+	 * Sets the maximum number of requests served concurrently to one remote host
+	 * @param maxPerHost the per host limit
+	 */
+	public void setMaxPerHost(int maxPerHost);
+
+	/**
+	 * Returns the number of seconds a rejected client is asked to wait before retrying
+	 * @return the Retry-After seconds
+	 */
+	public int getRetryAfter();
+
+	/**
+	 * Sets the number of seconds a rejected client is asked to wait before retrying
+	 * @param seconds the Retry-After seconds
+	 */
+	public void setRetryAfter(int seconds);
+
+	/**
+	 * Returns the number of requests being served keyed by remote host
+	 * @return the in flight requests by host
+	 */
+	public Map<String, Integer> getInFlight();
+
+	/**
+	 * Returns the number of admitted requests
+	 * @return the number of admitted requests
+	 */
+	public long getAdmitted();
+
+	/**
+	 * Returns the number of requests rejected because their remote host reached the per host limit
+	 * @return the number of per host rejections
+	 */
+	public long getRejectedPerHost();
+
+	/**
+	 * Returns the number of requests rejected because the server queue reached the saturation depth
+	 * @return the number of saturation rejections
+	 */
+	public long getRejectedSaturated();
+
+	/**
+	 * Returns a summary of the request latencies in microseconds keyed by resource type and statistic:
+	 * the count, mean, approximate 99th percentile and maximum of each resource type
+	 * @return the latency summary
+	 */
+	public Map<String, Long> getLatencySummary();
+
+	/**
+	 * Returns the log2 latency histogram in microseconds of the passed resource type
+	 * @param resourceType One of the {@link RequestThrottle#RESOURCE_TYPES}
+	 * @return an array of counts, indexed by bucket
+	 */
+	public long[] getLatencyHistogram(String resourceType);
+
+	/**
+	 * Resets the admission counters and the latency histograms
+	 */
+	public void resetStats();
+}
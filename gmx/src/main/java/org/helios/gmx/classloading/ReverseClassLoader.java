@@ -26,24 +26,32 @@ package org.helios.gmx.classloading;
 
 
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.zip.GZIPOutputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import javax.management.ObjectName;
 import javax.management.loading.MLet;
@@ -53,7 +61,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.codehaus.groovy.runtime.GeneratedClosure;
+import org.eclipse.jetty.io.nio.DirectNIOBuffer;
 import org.eclipse.jetty.jmx.MBeanContainer;
+import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.AbstractHandler;
@@ -61,6 +71,7 @@ import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.helios.gmx.Gmx;
+import org.helios.gmx.classloading.ClassByteCache.CachedBytes;
 import org.helios.gmx.jmx.remote.RemotableMBeanServer;
 import org.helios.gmx.util.FreePortFinder;
 import org.helios.gmx.util.JMXHelper;
@@ -91,12 +102,12 @@ public class ReverseClassLoader extends AbstractHandler  {
 	protected SelectChannelConnector connector = null;
 	/** The server thread pool */
 	protected ExecutorThreadPool threadPool = null;
+	/** The admission control and latency metrics of the server thread pool */
+	protected final RequestThrottle throttle;
 	/** Indicates if the class loader is serving a jar or individual classes */
 	protected final boolean jarClassLoader; 
-	/** The byte array of the jar is a jar class loader is being used */
-	protected byte[] jarContent = null;
-	/** The gzipped byte array of the jar is a jar class loader is being used for remote classloaders reporting gzip support */
-	protected byte[] gzJarContent = null;
+	/** The memory mapped jar and gzipped jar if a jar class loader is being used */
+	protected MappedResource jarResource = null;
 	/** The URL of the code source for this class */
 	protected final URL codeSourceUrl = getClass().getProtectionDomain().getCodeSource().getLocation();
 	/** The stats MBeanContainer */
@@ -109,6 +120,10 @@ public class ReverseClassLoader extends AbstractHandler  {
 	protected final ByteCodeRepository byteCodeRepo = ByteCodeRepository.getInstance();
 	/** A map of local file system resources that can be served by the loader keyed by the URI */
 	protected final Map<String, URL> dynamicResources = new ConcurrentHashMap<String, URL>();
+	/** The memory mapped file dynamic resources keyed by the URI */
+	protected final Map<String, MappedResource> mappedResources = new ConcurrentHashMap<String, MappedResource>();
+	/** The cache of raw and gzipped resource bytes served by the loader */
+	protected final ClassByteCache byteCache = new ClassByteCache(ClassByteCache.DEFAULT_MAX_SIZE);
 	/** An instance GLogger */
 	protected final GLogger log = LoggingConfig.getInstance().getLogger(getClass());
 	
@@ -116,6 +131,10 @@ public class ReverseClassLoader extends AbstractHandler  {
 	public static final String HTTP_URI_PREFIX = "/classloader/";
 	/** The http classloading URI suffix for jar loading */
 	public static final String HTTP_URI_JAR_SUFFIX = "gmx.jar";
+	/** The http classloading URI prefix, relative to {@link #HTTP_URI_PREFIX}, for class bundle loading. The bundle is named by the root class resource name. */
+	public static final String HTTP_URI_BUNDLE_PREFIX = "bundle/";
+	/** The cache control of served resources. Clients may keep them but must revalidate them with the entity tag, since the URIs are not content addressed. */
+	public static final String CACHE_CONTROL = "no-cache";
 	
 	
 	/** The server's thread group */
@@ -268,18 +287,22 @@ public class ReverseClassLoader extends AbstractHandler  {
 		classLoaders.put(getClass().getClassLoader(), getClass().getClassLoader());
 		jarClassLoader = codeSourceUrl.toString().toLowerCase().endsWith(".jar");
 		if(jarClassLoader) {
-			loadJarBytes(codeSourceUrl);
-			log.log("Loaded Gmx jar bytes.\n\tStandard:" , jarContent.length , "\n\tGZipped:" , gzJarContent.length);
+			mapJar(codeSourceUrl);
+			log.log("Mapped Gmx jar bytes.\n\tStandard:" , jarResource.getSize() , "\n\tGZipped:" , jarResource.getGzippedSize());
 		}
 		server = new Server();
-		threadPool = new ExecutorThreadPool(Executors.newCachedThreadPool(new ThreadFactory(){
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(RequestThrottle.DEFAULT_MAX_THREADS, RequestThrottle.DEFAULT_MAX_THREADS, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<Runnable>(RequestThrottle.DEFAULT_QUEUE_CAPACITY), new ThreadFactory(){
 			@Override
 			public Thread newThread(Runnable r) {
 				Thread t = new Thread(threadGroup, r, "ReverseClassLoader#" + threadSerial.incrementAndGet());
 				t.setDaemon(true);
 				return t;
 			}
-		}));
+		});
+		executor.allowCoreThreadTimeOut(true);
+		throttle = new RequestThrottle(executor, RequestThrottle.DEFAULT_QUEUE_CAPACITY);
+		threadPool = new ExecutorThreadPool(executor);
 		server.setThreadPool(threadPool);
 		try {			
 			container = new MBeanContainer(ManagementFactory.getPlatformMBeanServer());
@@ -292,47 +315,63 @@ public class ReverseClassLoader extends AbstractHandler  {
 			log.elog("Warning: Failed to register stats MBean for ReverseClassLoader. Continuing.");
 			e.printStackTrace(System.err);
 		}
+		try {
+			ObjectName cacheOn = JMXHelper.objectName(ClassByteCacheMBean.CACHE_ON);
+			if(!ManagementFactory.getPlatformMBeanServer().isRegistered(cacheOn)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(byteCache, cacheOn);
+			}
+		} catch (Exception e) {
+			log.elog("Warning: Failed to register class byte cache MBean for ReverseClassLoader. Continuing.");
+		}
+		try {
+			ObjectName throttleOn = JMXHelper.objectName(RequestThrottleMBean.THROTTLE_ON);
+			if(!ManagementFactory.getPlatformMBeanServer().isRegistered(throttleOn)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(throttle, throttleOn);
+			}
+		} catch (Exception e) {
+			log.elog("Warning: Failed to register request throttle MBean for ReverseClassLoader. Continuing.");
+		}
 		startServer();
 		baseURL = URLHelper.url(new StringBuilder("http://").append(bindInterface).append(":").append(port).append(HTTP_URI_PREFIX));
 	}
 	
 	/**
-	 * Loads the Gmx jar into a byte array for serving to remote class loaders
+	 * Maps the Gmx jar and its gzipped sidecar for serving to remote class loaders
 	 * @param jarUrl The URL of the jar resource.
 	 */
-	protected void loadJarBytes(URL jarUrl) {
+	protected void mapJar(URL jarUrl) {
 		if(jarUrl==null) throw new IllegalArgumentException("The passed jarUrl was null", new Throwable());
-		ByteArrayOutputStream baos = null;
-		BufferedInputStream bis = null;
-		InputStream is = null;	
-		GZIPOutputStream gzipOut = null;
-		try {
-			is = jarUrl.openStream();
-			bis = new BufferedInputStream(is);
-			baos = new ByteArrayOutputStream(is.available());
-			byte[] buffer = new byte[8092];
-			int bytesRead = -1;
-			while((bytesRead=bis.read(buffer))!=-1) {
-				baos.write(buffer, 0, bytesRead);
-			}
-			baos.flush();
-			jarContent = baos.toByteArray();
-			baos.close();
-			baos = new ByteArrayOutputStream(jarContent.length);
-			gzipOut = new GZIPOutputStream(baos, jarContent.length);
-			gzipOut.write(jarContent);
-			gzipOut.flush();
-			gzipOut.finish();
-			baos.flush();
-			gzJarContent = baos.toByteArray();
-			gzipOut.close();
-			baos.close();
-		} catch (Exception e) {
-			throw new RuntimeException("Failed to load bytes for jar [" + jarUrl + "]", e);
-		} finally {
-			if(bis!=null) try { bis.close(); } catch (Exception e) {}
-			if(is!=null) try { is.close(); } catch (Exception e) {}			
+		jarResource = new MappedResource(MappedResource.localFile(jarUrl), MappedResource.DEFAULT_SIDECAR_DIR);
+	}
+	
+	/**
+	 * Returns the mapped Gmx jar, remapping it if the jar file has been rebuilt since it was mapped
+	 * @return the mapped jar or null if this class loader is not serving a jar
+	 */
+	protected synchronized MappedResource getJarResource() {
+		if(jarResource!=null && !jarResource.isCurrent()) {
+			jarResource = new MappedResource(jarResource.getFile(), MappedResource.DEFAULT_SIDECAR_DIR);
+		}
+		return jarResource;
+	}
+	
+	/**
+	 * Returns the mapped file of the named dynamic resource, mapping it on first request and remapping it when the file changes.
+	 * Dynamic resources that are not local files are served from the class byte cache instead.
+	 * @param resource The resource name
+	 * @return the mapped resource or null if the resource is not a file dynamic resource
+	 */
+	protected MappedResource getMappedResource(String resource) {
+		URL url = dynamicResources.get(resource);
+		if(url==null || !"file".equals(url.getProtocol())) return null;
+		MappedResource mapped = mappedResources.get(resource);
+		if(mapped==null || !mapped.isCurrent()) {
+			File file = MappedResource.localFile(url);
+			if(!file.isFile()) return null;
+			mapped = new MappedResource(file, MappedResource.DEFAULT_SIDECAR_DIR);
+			mappedResources.put(resource, mapped);
 		}
+		return mapped;
 	}
 	
 	/**
@@ -374,6 +413,8 @@ public class ReverseClassLoader extends AbstractHandler  {
 	 */
 	public void stopServer() {
 		try { server.stop(); } catch (Exception e) {};
+		try { ManagementFactory.getPlatformMBeanServer().unregisterMBean(JMXHelper.objectName(ClassByteCacheMBean.CACHE_ON)); } catch (Exception e) {}
+		try { ManagementFactory.getPlatformMBeanServer().unregisterMBean(JMXHelper.objectName(RequestThrottleMBean.THROTTLE_ON)); } catch (Exception e) {}
 		instance=null;
 	}
 
@@ -384,64 +425,288 @@ public class ReverseClassLoader extends AbstractHandler  {
 	@Override
 	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
 		log.log("Request Target ", request.getMethod() , " [" , target , "] \n\tfrom [" , request.getRemoteAddr() , ":" , request.getRemotePort() , "]");
+		long start = System.nanoTime();
+		String host = request.getRemoteAddr();
+		if(!throttle.admit(host)) {
+			response.setHeader("Retry-After", String.valueOf(throttle.getRetryAfter()));
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Reverse class loader is busy");
+			baseRequest.setHandled(true);
+			log.log("Sent 503 for [" , target , "] to [" , host , "]");
+			return;
+		}
+		try {
+			serve(target, baseRequest, request, response);
+		} finally {
+			throttle.release(host);
+			throttle.record(resourceType(target), System.nanoTime()-start);
+		}
+	}
+	
+	/**
+	 * Returns the resource type that the latency of a request for the passed target is recorded under
+	 * @param target The request target
+	 * @return one of the {@link RequestThrottle#RESOURCE_TYPES}
+	 */
+	protected String resourceType(String target) {
+		if(target.equals(HTTP_URI_PREFIX + HTTP_URI_JAR_SUFFIX)) return "Jar";
+		if(target.startsWith(HTTP_URI_PREFIX + HTTP_URI_BUNDLE_PREFIX)) return "Bundle";
+		if(dynamicResources.containsKey(target.replace(HTTP_URI_PREFIX, ""))) return "Resource";
+		return "Class";
+	}
+	
+	/**
+	 * Serves an admitted request for a class, bundle, jar or dynamic resource
+	 * @param target The request target
+	 * @param baseRequest The Jetty request
+	 * @param request The servlet request
+	 * @param response The servlet response
+	 * @throws IOException thrown if the response could not be written
+	 */
+	protected void serve(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
 		boolean jarRequest = (target.equals(HTTP_URI_PREFIX + HTTP_URI_JAR_SUFFIX));		
-		byte[] classBytes = null;
+		boolean bundleRequest = target.startsWith(HTTP_URI_PREFIX + HTTP_URI_BUNDLE_PREFIX);
 		boolean isHead = "HEAD".equals(request.getMethod());
-		if(!jarRequest) {
-			String resource = target.replace(HTTP_URI_PREFIX, "");
-			if(dynamicResources.containsKey(resource)) {
-				URL url = dynamicResources.get(resource);
-				classBytes = URLHelper.getBytesFromURL(url);
+		String encodings = request.getHeader("Accept-Encoding");
+		boolean gzipAgent = (encodings != null && encodings.indexOf("gzip") != -1);
+		ByteBuffer content = null;
+		boolean gzipped = false;
+		String hash = null;
+		MappedResource mapped = jarRequest ? getJarResource() : bundleRequest ? null : getMappedResource(target.replace(HTTP_URI_PREFIX, ""));
+		if(mapped!=null) {
+			hash = mapped.getHash();
+			if(gzipAgent && mapped.getGzipped()!=null) {
+				content = mapped.getGzipped();
+				gzipped = true;
 			} else {
-				classBytes = getClassBytes(resource);
+				content = mapped.getContent();
+			}
+		} else if(!jarRequest) {
+			CachedBytes cached = bundleRequest ? getBundle(target.substring((HTTP_URI_PREFIX + HTTP_URI_BUNDLE_PREFIX).length())) : getCachedBytes(target.replace(HTTP_URI_PREFIX, ""));
+			if(cached!=null) {
+				hash = cached.getHash();
+				if(gzipAgent && cached.getGzipped()!=null) {
+					content = ByteBuffer.wrap(cached.getGzipped());
+					gzipped = true;
+				} else {
+					content = ByteBuffer.wrap(cached.getBytes());
+				}
 			}
 		}
-		OutputStream os = response.getOutputStream();
-		GZIPOutputStream gzipOut = null;
-		String encodings = request.getHeader("Accept-Encoding");
-		boolean gzipAgent = false;
-		if (encodings != null && encodings.indexOf("gzip") != -1) {
-			// Go with GZIP
-			gzipAgent = true;
-		    response.setHeader("Content-Encoding", "gzip");
-		    if(!jarRequest) {
-		    	gzipOut = new GZIPOutputStream(os, classBytes.length);
-		    }
-		}
-        response.setContentType("application/octet-stream");
-        response.setStatus(HttpServletResponse.SC_OK);
-        if(jarRequest) {
-        	if(gzipAgent) {
-        		response.setHeader("Content-Encoding", "gzip");
-        		classBytes = gzJarContent;
-//        		os.write(gzJarContent);
-//        		log.log("Wrote [" + gzJarContent.length , "] GZipped for resource [", target, "]");
-        	} else {
-        		classBytes = jarContent;
-//        		os.write(jarContent);
-//        		log.log("Wrote [" + jarContent.length , "] for resource [", target, "]");
-        	}
-        } else {
-        	if(classBytes==null) {
-        		response.sendError(404, "Class Not Found [" + target + "]");
-        		baseRequest.setHandled(true);
-        		log.log("ERROR: Sent 404 for [" , target , "]");
-        		return;
-        	}
-        	response.setContentLength(classBytes.length);
-        	if(!isHead) {
-	        	if(gzipOut!=null) {
-	        		gzipOut.write(classBytes);
-	        		gzipOut.flush();
-	        		gzipOut.finish();        		
-	        	} else {
-	        		os.write(classBytes);        		
-	        	}
-        	}
-        }
-        os.flush();        
-        log.log("Wrote [" + classBytes.length , "] for resource [", target, "]");
-        baseRequest.setHandled(true);
+		if(content==null) {
+			response.sendError(404, "Class Not Found [" + target + "]");
+			baseRequest.setHandled(true);
+			log.log("ERROR: Sent 404 for [" , target , "]");
+			return;
+		}
+		String etag = etag(hash, gzipped);
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+		response.setHeader("Vary", "Accept-Encoding");
+		response.setHeader("Accept-Ranges", "bytes");
+		if(matches(request.getHeader("If-None-Match"), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			byteCache.notModified();
+			baseRequest.setHandled(true);
+			log.log("Not Modified [", target, "]");
+			return;
+		}
+		if(gzipped) {
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		int length = content.remaining();
+		long[] range = null;
+		String ifRange = request.getHeader("If-Range");
+		if(ifRange==null || ifRange.trim().equals(etag)) {
+			range = range(request.getHeader("Range"), length);
+		}
+		if(range!=null && range.length==0) {
+			response.setHeader("Content-Range", "bytes */" + length);
+			response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			baseRequest.setHandled(true);
+			log.log("Range Not Satisfiable [", target, "]");
+			return;
+		}
+		response.setContentType(jarRequest || bundleRequest ? "application/java-archive" : "application/octet-stream");
+		if(range!=null) {
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+			content.position(content.position() + (int)range[0]);
+			content.limit(content.position() + (int)(range[1] - range[0] + 1));
+		} else {
+			response.setStatus(HttpServletResponse.SC_OK);
+		}
+		int served = content.remaining();
+		response.setContentLength(served);
+		if(!isHead) {
+			write(content.slice(), response.getOutputStream());
+			byteCache.served(served, gzipped);
+		}
+		log.log("Wrote [" + served , "] for resource [", target, "]");
+		baseRequest.setHandled(true);
+	}
+	
+	/**
+	 * Writes the passed buffer to the passed response output stream. A direct buffer, such as a mapped file, is handed to Jetty
+	 * so that the connector writes it to the socket channel without copying it onto the heap.
+	 * @param content The buffer to write
+	 * @param os The response output stream
+	 * @throws IOException thrown if the buffer could not be written
+	 */
+	protected static void write(ByteBuffer content, OutputStream os) throws IOException {
+		if(content.isDirect() && os instanceof HttpConnection.Output) {
+			((HttpConnection.Output)os).sendContent(new DirectNIOBuffer(content, true));
+		} else if(content.hasArray()) {
+			os.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+			os.flush();
+		} else {
+			WritableByteChannel channel = Channels.newChannel(os);
+			while(content.hasRemaining()) {
+				channel.write(content);
+			}
+			os.flush();
+		}
+	}
+	
+	/**
+	 * Parses a single byte range of the passed Range header. Multiple ranges are not supported and are answered with the full content.
+	 * @param header The Range header value, which may be null
+	 * @param length The length of the content
+	 * @return null if the full content should be served, the first and last byte positions of the range, or an empty array if the range is not satisfiable
+	 */
+	protected static long[] range(String header, long length) {
+		if(header==null) return null;
+		header = header.trim();
+		if(!header.startsWith("bytes=") || header.indexOf(',')!=-1) return null;
+		String spec = header.substring(6).trim();
+		int dash = spec.indexOf('-');
+		if(dash==-1) return null;
+		long first, last;
+		try {
+			if(dash==0) {
+				long suffix = Long.parseLong(spec.substring(1).trim());
+				if(suffix<=0) return new long[0];
+				first = Math.max(0, length - suffix);
+				last = length - 1;
+			} else {
+				first = Long.parseLong(spec.substring(0, dash).trim());
+				String end = spec.substring(dash+1).trim();
+				if(end.length()==0) {
+					last = length - 1;
+				} else {
+					last = Long.parseLong(end);
+					// A last position before the first is a syntactically invalid range, which is ignored
+					if(last<first) return null;
+					last = Math.min(last, length - 1);
+				}
+			}
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+		if(first>=length || last<first) return new long[0];
+		return new long[]{first, last};
+	}
+	
+	/**
+	 * Returns the strong entity tag of a served representation. The gzipped representation gets its own tag.
+	 * @param hash The SHA-1 hash of the raw content
+	 * @param gzipped true if the representation is gzipped
+	 * @return the quoted entity tag
+	 */
+	public static String etag(String hash, boolean gzipped) {
+		return new StringBuilder("\"").append(hash).append(gzipped ? "-gz" : "").append('"').toString();
+	}
+	
+	/**
+	 * Determines if the passed If-None-Match header matches the passed entity tag
+	 * @param ifNoneMatch The If-None-Match header value, which may be null
+	 * @param etag The quoted entity tag of the current representation
+	 * @return true if the client's copy is current
+	 */
+	protected static boolean matches(String ifNoneMatch, String etag) {
+		if(ifNoneMatch==null) return false;
+		for(String tag: ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if(tag.startsWith("W/")) tag = tag.substring(2);
+			if(tag.equals("*") || tag.equals(etag)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the cached raw and gzipped bytes of the named resource, resolving and caching them on a miss.
+	 * Dynamic resources and generated closure bytes are looked up by their content on each request since they can change under the same name,
+	 * while resources resolved through the class loaders are served by name from the cache.
+	 * @param resource The resource name
+	 * @return the cached bytes or null if the resource was not found
+	 */
+	protected CachedBytes getCachedBytes(String resource) {
+		URL url = dynamicResources.get(resource);
+		if(url!=null) {
+			byte[] bytes = URLHelper.getBytesFromURL(url);
+			return bytes==null ? null : byteCache.cache(resource, bytes, false);
+		}
+		byte[] bytecode = byteCodeRepo.getByteCodeFromResource(resource);
+		if(bytecode!=null) {
+			return byteCache.cache(resource, bytecode, false);
+		}
+		CachedBytes cached = byteCache.get(resource);
+		if(cached!=null) return cached;
+		bytecode = getClassBytes(resource);
+		return bytecode==null ? null : byteCache.cache(resource, bytecode, true);
+	}
+	
+	/**
+	 * Returns a jar of the named class and the classes it references transitively that are nested under its name,
+	 * such as the nested closures of a closure class, so that a remote closure class loader can load them all in one request.
+	 * @param resource The class resource name of the root class
+	 * @return the cached bundle bytes or null if the root class was not found
+	 */
+	protected CachedBytes getBundle(String resource) {
+		String rootName = resource.replace(".class", "");
+		Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+		LinkedList<String> pending = new LinkedList<String>();
+		pending.add(rootName);
+		while(!pending.isEmpty()) {
+			String name = pending.removeFirst();
+			if(classes.containsKey(name)) continue;
+			CachedBytes cached = getCachedBytes(name + ".class");
+			if(cached==null) continue;
+			classes.put(name, cached.getBytes());
+			for(String ref: ByteCodeRepository.getReferencedClasses(cached.getBytes())) {
+				if(ref.startsWith(rootName) && !classes.containsKey(ref)) pending.add(ref);
+			}
+		}
+		if(classes.isEmpty()) return null;
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			JarOutputStream jarOut = new JarOutputStream(baos);
+			for(Map.Entry<String, byte[]> entry: classes.entrySet()) {
+				jarOut.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+				jarOut.write(entry.getValue());
+				jarOut.closeEntry();
+			}
+			jarOut.close();
+			log.log("Bundled [" , classes.size() , "] classes for [" , resource , "]");
+			return byteCache.cache(HTTP_URI_BUNDLE_PREFIX + resource, baos.toByteArray(), false);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to bundle classes for [" + resource + "]", e);
+		}
+	}
+	
+	/**
+	 * Returns the cache of raw and gzipped resource bytes served by this loader
+	 * @return the class byte cache
+	 */
+	public ClassByteCache getByteCache() {
+		return byteCache;
+	}
+	
+	/**
+	 * Returns the admission control and latency metrics of the server thread pool
+	 * @return the request throttle
+	 */
+	public RequestThrottle getThrottle() {
+		return throttle;
 	}
 	
 	
@@ -473,7 +738,7 @@ public class ReverseClassLoader extends AbstractHandler  {
 		}
 		if(!gmx.getMBeanServerConnection().isRegistered(classLoaderOn)) {
 			if(privateClassLoader) {				
-				gmx.getMBeanServerConnection().createMBean(PrivateMLet.class.getName(), classLoaderOn, new Object[]{getHttpCodeBaseURL(), true}, new String[]{URL[].class.getName(), boolean.class.getName()});
+				installCachingMLet(gmx, classLoaderOn);
 			} else {
 				gmx.getMBeanServerConnection().createMBean(MLet.class.getName(), classLoaderOn);
 				for(URL url: getHttpCodeBaseURL()) {
@@ -493,6 +758,28 @@ public class ReverseClassLoader extends AbstractHandler  {
 
 
 
+	/**
+	 * Installs a {@link CachingMLet} as the private classloading MBean in the target MBeanServer.
+	 * The CachingMLet class itself is loaded through a temporary bootstrap PrivateMLet which is unregistered once the CachingMLet is created.
+	 * If the CachingMLet cannot be installed, a plain PrivateMLet is installed instead.
+	 * @param gmx The Gmx connected to the target MBeanServer
+	 * @param classLoaderOn The ObjectName of the classloading MBean
+	 */
+	protected void installCachingMLet(Gmx gmx, ObjectName classLoaderOn) {
+		ObjectName bootstrapOn = JMXHelper.objectName(classLoaderOn.toString() + ",type=bootstrap");
+		Object[] params = new Object[]{getHttpCodeBaseURL(), true};
+		String[] signature = new String[]{URL[].class.getName(), boolean.class.getName()};
+		try {
+			gmx.getMBeanServerConnection().createMBean(PrivateMLet.class.getName(), bootstrapOn, params, signature);
+			gmx.getMBeanServerConnection().createMBean(CachingMLet.class.getName(), classLoaderOn, bootstrapOn, params, signature);
+		} catch (Exception e) {
+			log.elog("Warning: Failed to install CachingMLet. Installing PrivateMLet:", e);
+			gmx.getMBeanServerConnection().createMBean(PrivateMLet.class.getName(), classLoaderOn, params, signature);
+		} finally {
+			try { gmx.getMBeanServerConnection().unregisterMBean(bootstrapOn); } catch (Exception e) {}
+		}
+	}
+
 	/**
 	 * @param clazz
 	 * @return
@@ -529,6 +816,7 @@ public class ReverseClassLoader extends AbstractHandler  {
 		String[] frags = resourceURL.getPath().split("/");
 		String key = frags[frags.length-1];
 		dynamicResources.put(key, resourceURL);
+		mappedResources.remove(key);
 		log.log("Added Dynamic Resource [" , key , "]");
 	}
 	
@@ -0,0 +1,377 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.ObjectName;
+
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: AsyncNotificationListener</p>
+ * <p>Description: An {@link ObjectNameAwareListener} that hands notifications to a bounded queue and dispatches them to the wrapped listener
+ * from a shared dispatcher pool, so a slow listener does not stall the JMX notification thread and the other listeners.
+ * Each listener has its own queue, is drained by at most one dispatcher thread at a time, and applies its {@link OverflowPolicy} when the queue is full.
+ * The queue depth, lag and drop counters are exposed through an MBean registered in the platform MBeanServer.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.AsyncNotificationListener</code></p>
+ */
+public class AsyncNotificationListener implements ObjectNameAwareListener, AsyncNotificationListenerMBean, Closeable {
+	/** The wrapped listener */
+	protected final ObjectNameAwareListener delegate;
+	/** The queue of notifications waiting to be dispatched */
+	protected final ArrayBlockingQueue<QueuedNotification> queue;
+	/** The queue capacity */
+	protected final int capacity;
+	/** The overflow policy */
+	protected final OverflowPolicy policy;
+	/** The ObjectName of this listener's MBean */
+	protected final ObjectName mbeanObjectName;
+	/** Indicates if a dispatcher thread is draining the queue */
+	protected final AtomicBoolean dispatching = new AtomicBoolean(false);
+	/** The number of received notifications */
+	protected final AtomicLong received = new AtomicLong(0L);
+	/** The number of dispatched notifications */
+	protected final AtomicLong dispatched = new AtomicLong(0L);
+	/** The number of dropped notifications */
+	protected final AtomicLong dropped = new AtomicLong(0L);
+	/** The number of listener errors */
+	protected final AtomicLong errors = new AtomicLong(0L);
+	/** The number of notifications that overflowed the queue, used to sample them */
+	protected final AtomicLong overflows = new AtomicLong(0L);
+	/** The maximum lag in ms. */
+	protected volatile long maxLag = 0L;
+	/** Indicates if this listener has been closed */
+	protected volatile boolean closed = false;
+
+	/** The serial number factory for listener MBean names */
+	protected static final AtomicLong serial = new AtomicLong(0L);
+	/** The default queue capacity */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/** The rate at which the {@link OverflowPolicy#SAMPLE} policy admits overflowing notifications */
+	public static final int SAMPLE_RATE = 10;
+
+	/** The dispatcher pool shared by all async listeners */
+	protected static final ThreadPoolExecutor DISPATCHER = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory(){
+		final AtomicInteger serial = new AtomicInteger(0);
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GmxNotificationDispatcher#" + serial.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * <p>Title: OverflowPolicy</p>
+	 * <p>Description: The policies applied to a notification that arrives when the queue is full</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.AsyncNotificationListener.OverflowPolicy</code></p>
+	 */
+	public static enum OverflowPolicy {
+		/** The oldest queued notification is dropped to make room */
+		DROP_OLDEST,
+		/** The arriving notification is dropped */
+		DROP_NEWEST,
+		/** The delivering thread waits for room in the queue */
+		BLOCK,
+		/** One in {@link AsyncNotificationListener#SAMPLE_RATE} arriving notifications replaces the oldest queued notification, the others are dropped */
+		SAMPLE;
+	}
+
+	/**
+	 * Creates a new AsyncNotificationListener and registers its MBean
+	 * @param delegate The wrapped listener
+	 * @param capacity The queue capacity
+	 * @param policy The overflow policy. If null, {@link OverflowPolicy#DROP_OLDEST} is applied.
+	 */
+	public AsyncNotificationListener(ObjectNameAwareListener delegate, int capacity, OverflowPolicy policy) {
+		if(delegate==null) throw new IllegalArgumentException("The passed delegate listener was null", new Throwable());
+		if(capacity<1) throw new IllegalArgumentException("Invalid queue capacity [" + capacity + "]", new Throwable());
+		this.delegate = delegate;
+		this.capacity = capacity;
+		this.policy = policy==null ? OverflowPolicy.DROP_OLDEST : policy;
+		queue = new ArrayBlockingQueue<QueuedNotification>(capacity);
+		mbeanObjectName = JMXHelper.objectName(String.format(ASYNC_ON_TEMPLATE, serial.incrementAndGet(), ObjectName.quote(String.valueOf(delegate.getObjectName()))));
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(!server.isRegistered(mbeanObjectName)) {
+				server.registerMBean(this, mbeanObjectName);
+			}
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Queues the notification, applying the overflow policy if the queue is full, and schedules a dispatch
+	 * @param notification The notification
+	 * @param handback The handback
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		received.incrementAndGet();
+		QueuedNotification queued = new QueuedNotification(notification, handback);
+		if(!queue.offer(queued)) {
+			switch(policy) {
+				case DROP_NEWEST:
+					dropped.incrementAndGet();
+					break;
+				case BLOCK:
+					try {
+						queue.put(queued);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						dropped.incrementAndGet();
+					}
+					break;
+				case SAMPLE:
+					if(overflows.getAndIncrement() % SAMPLE_RATE != 0) {
+						dropped.incrementAndGet();
+						break;
+					}
+					// fall through to replace the oldest
+				default:
+					while(!queue.offer(queued)) {
+						if(queue.poll()!=null) dropped.incrementAndGet();
+					}
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Starts draining the queue in a dispatcher thread unless one is already draining it
+	 */
+	protected void dispatch() {
+		if(!closed && !queue.isEmpty() && dispatching.compareAndSet(false, true)) {
+			DISPATCHER.execute(new Runnable(){
+				public void run() {
+					drain();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Dispatches queued notifications to the wrapped listener until the queue is empty
+	 */
+	protected void drain() {
+		try {
+			QueuedNotification queued = null;
+			while(!closed && (queued = queue.poll())!=null) {
+				long lag = System.currentTimeMillis() - queued.queuedAt;
+				if(lag > maxLag) maxLag = lag;
+				try {
+					delegate.handleNotification(queued.notification, queued.handback);
+				} catch (Throwable t) {
+					errors.incrementAndGet();
+				}
+				dispatched.incrementAndGet();
+			}
+		} finally {
+			dispatching.set(false);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Stops dispatching, discards the queued notifications and unregisters this listener's MBean
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		dropped.addAndGet(queue.size());
+		queue.clear();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(mbeanObjectName)) {
+				server.unregisterMBean(mbeanObjectName);
+			}
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Returns the ObjectName the wrapped listener was registered on
+	 * @return the ObjectName the wrapped listener was registered on
+	 */
+	@Override
+	public ObjectName getObjectName() {
+		return delegate.getObjectName();
+	}
+
+	/**
+	 * Returns the wrapped listener
+	 * @return the wrapped listener
+	 */
+	public ObjectNameAwareListener getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Returns the ObjectName of this listener's MBean
+	 * @return the MBean ObjectName
+	 */
+	public ObjectName getMBeanObjectName() {
+		return mbeanObjectName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getListeningObjectName()
+	 */
+	@Override
+	public String getListeningObjectName() {
+		return String.valueOf(delegate.getObjectName());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getOverflowPolicy()
+	 */
+	@Override
+	public String getOverflowPolicy() {
+		return policy.name();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getQueueDepth()
+	 */
+	@Override
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getQueueCapacity()
+	 */
+	@Override
+	public int getQueueCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getLag()
+	 */
+	@Override
+	public long getLag() {
+		QueuedNotification oldest = queue.peek();
+		return oldest==null ? 0L : System.currentTimeMillis() - oldest.queuedAt;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getMaxLag()
+	 */
+	@Override
+	public long getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getReceived()
+	 */
+	@Override
+	public long getReceived() {
+		return received.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getDispatched()
+	 */
+	@Override
+	public long getDispatched() {
+		return dispatched.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getDropped()
+	 */
+	@Override
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#getErrors()
+	 */
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.AsyncNotificationListenerMBean#resetMaxLag()
+	 */
+	@Override
+	public void resetMaxLag() {
+		maxLag = 0L;
+	}
+
+	/**
+	 * <p>Title: QueuedNotification</p>
+	 * <p>Description: A notification and its handback waiting to be dispatched</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.AsyncNotificationListener.QueuedNotification</code></p>
+	 */
+	protected static class QueuedNotification {
+		/** The notification */
+		protected final Notification notification;
+		/** The handback */
+		protected final Object handback;
+		/** The time the notification was queued */
+		protected final long queuedAt = System.currentTimeMillis();
+
+		/**
+		 * Creates a new QueuedNotification
+		 * @param notification The notification
+		 * @param handback The handback
+		 */
+		protected QueuedNotification(Notification notification, Object handback) {
+			this.notification = notification;
+			this.handback = handback;
+		}
+	}
+}
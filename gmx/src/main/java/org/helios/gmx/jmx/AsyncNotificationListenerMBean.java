@@ -0,0 +1,102 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+/**
+ * <p>Title: AsyncNotificationListenerMBean</p>
+ * <p>Description: JMX MBean interface for the {@link AsyncNotificationListener}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.AsyncNotificationListenerMBean</code></p>
+ */
+public interface AsyncNotificationListenerMBean {
+	/** The ObjectName template of the async listener MBeans, where the parameters are the listener serial number and the quoted listened ObjectName */
+	public static final String ASYNC_ON_TEMPLATE = "org.helios.gmx:service=AsyncNotificationListener,id=%s,listening=%s";
+
+	/**
+	 * Returns the ObjectName of the MBean the listener is registered on
+	 * @return the listened ObjectName
+	 */
+	public String getListeningObjectName();
+
+	/**
+	 * Returns the overflow policy applied when the queue is full
+	 * @return the overflow policy name
+	 */
+	public String getOverflowPolicy();
+
+	/**
+	 * Returns the number of notifications waiting to be dispatched
+	 * @return the queue depth
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * Returns the maximum number of notifications that can wait to be dispatched
+	 * @return the queue capacity
+	 */
+	public int getQueueCapacity();
+
+	/**
+	 * Returns the time the oldest queued notification has been waiting
+	 * @return the current lag in ms.
+	 */
+	public long getLag();
+
+	/**
+	 * Returns the longest time a notification waited before it was dispatched
+	 * @return the maximum lag in ms.
+	 */
+	public long getMaxLag();
+
+	/**
+	 * Returns the number of notifications received
+	 * @return the number of received notifications
+	 */
+	public long getReceived();
+
+	/**
+	 * Returns the number of notifications dispatched to the listener
+	 * @return the number of dispatched notifications
+	 */
+	public long getDispatched();
+
+	/**
+	 * Returns the number of notifications dropped by the overflow policy
+	 * @return the number of dropped notifications
+	 */
+	public long getDropped();
+
+	/**
+	 * Returns the number of notifications the listener failed to handle
+	 * @return the number of listener errors
+	 */
+	public long getErrors();
+
+	/**
+	 * Resets the maximum lag
+	 */
+	public void resetMaxLag();
+}
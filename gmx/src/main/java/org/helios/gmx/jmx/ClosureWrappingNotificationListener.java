@@ -26,19 +26,33 @@ package org.helios.gmx.jmx;
 
 import groovy.lang.Closure;
 
+import java.io.Closeable;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.Notification;
 import javax.management.ObjectName;
 
 /**
  * <p>Title: ClosureWrappingNotificationListener</p>
- * <p>Description: A {@link javax.management.NotificationListener} that wraps and delegates to a Groovy {@link groovy.lang.Closure}</p> 
+ * <p>Description: A {@link javax.management.NotificationListener} that wraps and delegates to a Groovy {@link groovy.lang.Closure}.
+ * In batching mode, notifications are buffered until the batch size is reached or the batch window elapses and the closure is called once
+ * with the list of buffered notifications, optionally keeping only the latest notification per {@link Coalesce} key.</p> 
  * <p>Company: Helios Development Group LLC</p>
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>org.helios.gmx.jmx.ClosureWrappingNotificationListener</code></p>
  */
-public class ClosureWrappingNotificationListener implements Serializable, ObjectNameAwareListener {
+public class ClosureWrappingNotificationListener implements Serializable, ObjectNameAwareListener, Closeable {
 	/**  */
 	private static final long serialVersionUID = 8086336838224760998L;
 	/** The wrapped closure */
@@ -52,8 +66,70 @@ public class ClosureWrappingNotificationListener implements Serializable, Object
 	/** The ObjectName this listener was registered on */
 	protected final ObjectName objectName;
 	
+	/** The number of notifications that triggers a batch delivery, or zero for no size limit */
+	protected int batchSize = 0;
+	/** The time in ms. between batch deliveries, or zero for no batch window */
+	protected long batchWindow = 0L;
+	/** The key batched notifications are coalesced by */
+	protected Coalesce coalesce = Coalesce.NONE;
+	/** Serializes batch deliveries so batches are passed to the closure in order */
+	protected final ReentrantLock deliveryLock = new ReentrantLock();
+	/** The notifications of the current batch */
+	protected transient List<Notification> pending = null;
+	/** The positions in the current batch of the pending notifications keyed by coalescing key */
+	protected transient Map<Object, Integer> pendingKeys = null;
+	/** The handback of the last batched notification */
+	protected transient Object pendingHandback = null;
+	/** The scheduled batch window delivery */
+	protected transient ScheduledFuture<?> windowTask = null;
+	/** Indicates if this listener has been closed */
+	protected transient volatile boolean closed = false;
+	/** The number of delivered batches */
+	protected long deliveredBatches = 0L;
+	/** The number of notifications replaced by a later notification with the same coalescing key */
+	protected long coalescedNotifications = 0L;
 	
+	/** The scheduler that delivers the batches of batching listeners when their window elapses */
+	protected static final ScheduledThreadPoolExecutor WINDOW_SCHEDULER = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+		final AtomicInteger serial = new AtomicInteger(0);
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GmxNotificationBatcher#" + serial.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	
+	/**
+	 * <p>Title: Coalesce</p>
+	 * <p>Description: The keys by which a batching listener keeps only the latest notification</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.ClosureWrappingNotificationListener.Coalesce</code></p>
+	 */
+	public static enum Coalesce {
+		/** Every notification is delivered */
+		NONE,
+		/** Only the latest notification of each type is delivered */
+		TYPE,
+		/** Only the latest notification from each source is delivered */
+		SOURCE,
+		/** Only the latest notification of each type from each source is delivered */
+		TYPE_AND_SOURCE;
+		
+		/**
+		 * Returns the coalescing key of the passed notification
+		 * @param notification The notification
+		 * @return the key, or null if the notification is not coalesced
+		 */
+		public Object key(Notification notification) {
+			switch(this) {
+				case TYPE: return notification.getType();
+				case SOURCE: return String.valueOf(notification.getSource());
+				case TYPE_AND_SOURCE: return Arrays.asList(notification.getType(), String.valueOf(notification.getSource()));
+				default: return null;
+			}
+		}
+	}
 	
 	/**
 	 * Creates a new ClosureWrappingNotificationListener
@@ -78,6 +154,33 @@ public class ClosureWrappingNotificationListener implements Serializable, Object
 	public ClosureWrappingNotificationListener(ObjectName objectName, Closure<?> closure, Object...arguments) {
 		this(true, objectName, closure, arguments);
 	}
+	
+	/**
+	 * Creates a new ClosureWrappingNotificationListener with the same closure, arguments and batching mode as the passed listener
+	 * @param template The listener to copy
+	 */
+	protected ClosureWrappingNotificationListener(ClosureWrappingNotificationListener template) {
+		this(template.expectHandback, template.objectName, template.closure, template.arguments);
+		batchSize = template.batchSize;
+		batchWindow = template.batchWindow;
+		coalesce = template.coalesce;
+	}
+	
+	/**
+	 * Switches this listener to batching mode, where the closure is passed a list of notifications instead of one notification.
+	 * Must be called before the listener is registered.
+	 * @param batchSize The number of notifications that triggers a batch delivery, or zero for no size limit
+	 * @param batchWindow The time in ms. between batch deliveries, or zero for no batch window
+	 * @param coalesce The key batched notifications are coalesced by. If null, notifications are not coalesced.
+	 * @return this listener
+	 */
+	public ClosureWrappingNotificationListener setBatching(int batchSize, long batchWindow, Coalesce coalesce) {
+		if(batchSize<1 && batchWindow<1) throw new IllegalArgumentException("Invalid batching. Batch size [" + batchSize + "] or batch window [" + batchWindow + "] must be positive", new Throwable());
+		this.batchSize = Math.max(0, batchSize);
+		this.batchWindow = Math.max(0L, batchWindow);
+		this.coalesce = coalesce==null ? Coalesce.NONE : coalesce;
+		return this;
+	}
 
 
 
@@ -87,9 +190,84 @@ public class ClosureWrappingNotificationListener implements Serializable, Object
 	 */
 	@Override
 	public void handleNotification(Notification notification, Object handback) {
+		if(!isBatching() || closed) {
+			deliver(notification, handback);
+			return;
+		}
+		boolean full = false;
+		synchronized(this) {
+			if(pending==null) {
+				pending = new ArrayList<Notification>();
+				pendingKeys = new HashMap<Object, Integer>();
+			}
+			if(batchWindow>0 && windowTask==null) {
+				windowTask = WINDOW_SCHEDULER.scheduleAtFixedRate(new Runnable(){
+					public void run() {
+						flush();
+					}
+				}, batchWindow, batchWindow, TimeUnit.MILLISECONDS);
+			}
+			Object key = coalesce.key(notification);
+			Integer position = key==null ? null : pendingKeys.get(key);
+			if(position!=null) {
+				pending.set(position, notification);
+				coalescedNotifications++;
+			} else {
+				if(key!=null) pendingKeys.put(key, pending.size());
+				pending.add(notification);
+			}
+			pendingHandback = handback;
+			full = batchSize>0 && pending.size()>=batchSize;
+		}
+		if(full) flush();
+	}
+	
+	/**
+	 * Delivers the current batch to the closure, if it is not empty
+	 */
+	public void flush() {
+		deliveryLock.lock();
+		try {
+			List<Notification> batch = null;
+			Object handback = null;
+			synchronized(this) {
+				if(pending==null || pending.isEmpty()) return;
+				batch = pending;
+				handback = pendingHandback;
+				pending = new ArrayList<Notification>();
+				pendingKeys.clear();
+				deliveredBatches++;
+			}
+			deliver(batch, handback);
+		} finally {
+			deliveryLock.unlock();
+		}
+	}
+	
+	/**
+	 * Stops batching, delivering the current batch. Notifications received afterwards are delivered one by one.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		synchronized(this) {
+			if(windowTask!=null) {
+				windowTask.cancel(false);
+				windowTask = null;
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * Calls the closure with the passed notification, or list of notifications, the handback if expected, and the additional arguments
+	 * @param payload The notification or list of notifications
+	 * @param handback The handback
+	 */
+	protected void deliver(Object payload, Object handback) {
 		int index = expectHandback ? 2 : 1;
 		Object[] args = new Object[index + (arguments==null ? 0 : arguments.length)];
-		args[0] = notification;
+		args[0] = payload;
 		if(expectHandback) args[1] = handback;
 		if(arguments!=null) {
 			System.arraycopy(arguments, 0, args, index, arguments.length);
@@ -136,6 +314,62 @@ public class ClosureWrappingNotificationListener implements Serializable, Object
 		return expectHandback;
 	}
 	
+	/**
+	 * Indicates if this listener passes lists of notifications to the closure
+	 * @return true if this listener is in batching mode
+	 */
+	public boolean isBatching() {
+		return batchSize>0 || batchWindow>0;
+	}
+	
+	/**
+	 * Returns the number of notifications that triggers a batch delivery
+	 * @return the batch size, or zero for no size limit
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Returns the time between batch deliveries
+	 * @return the batch window in ms., or zero for no batch window
+	 */
+	public long getBatchWindow() {
+		return batchWindow;
+	}
+	
+	/**
+	 * Returns the key batched notifications are coalesced by
+	 * @return the coalescing key
+	 */
+	public Coalesce getCoalesce() {
+		return coalesce;
+	}
+	
+	/**
+	 * Returns the number of delivered batches
+	 * @return the number of delivered batches
+	 */
+	public synchronized long getDeliveredBatches() {
+		return deliveredBatches;
+	}
+	
+	/**
+	 * Returns the number of notifications that were replaced by a later notification with the same coalescing key
+	 * @return the number of coalesced notifications
+	 */
+	public synchronized long getCoalescedNotifications() {
+		return coalescedNotifications;
+	}
+	
+	/**
+	 * Returns the number of notifications waiting in the current batch
+	 * @return the number of pending notifications
+	 */
+	public synchronized int getPendingCount() {
+		return pending==null ? 0 : pending.size();
+	}
+	
 	
 
 }
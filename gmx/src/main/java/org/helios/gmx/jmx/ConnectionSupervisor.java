@@ -0,0 +1,426 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.helios.gmx.Gmx;
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: ConnectionSupervisor</p>
+ * <p>Description: Reconnects a remote {@link Gmx} when its connection fails or is closed by the server. Reconnect attempts are scheduled with
+ * a jittered exponential backoff: the delay starts at the initial delay, doubles with each failed attempt up to the maximum delay, and each
+ * attempt is made at a random point in the upper half of its delay so that clients that lost the same server do not reconnect in lockstep.
+ * The reconnect counts and downtime are exposed through an MBean registered in the platform MBeanServer.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.ConnectionSupervisor</code></p>
+ */
+public class ConnectionSupervisor implements ConnectionSupervisorMBean, Closeable {
+	/** The supervised Gmx */
+	protected final Gmx gmx;
+	/** The ObjectName of this supervisor's MBean */
+	protected final ObjectName mbeanObjectName;
+	/** The delay before the first reconnect attempt in ms. */
+	protected volatile long initialDelay = DEFAULT_INITIAL_DELAY;
+	/** The maximum delay between reconnect attempts in ms. */
+	protected volatile long maxDelay = DEFAULT_MAX_DELAY;
+	/** The time the connection went down, or zero if it is connected */
+	protected long disconnectedAt = 0L;
+	/** The number of failed attempts since the last successful reconnect */
+	protected int consecutiveFailures = 0;
+	/** The pending reconnect attempt */
+	protected ScheduledFuture<?> pending = null;
+	/** The message of the last failed reconnect attempt */
+	protected volatile String lastFailure = null;
+	/** The time the connection was down before the last successful reconnect */
+	protected volatile long lastDowntime = 0L;
+	/** The number of disconnects */
+	protected final AtomicLong disconnects = new AtomicLong(0L);
+	/** The number of reconnect attempts */
+	protected final AtomicLong attempts = new AtomicLong(0L);
+	/** The number of successful reconnects */
+	protected final AtomicLong reconnects = new AtomicLong(0L);
+	/** The number of failed reconnect attempts */
+	protected final AtomicLong failures = new AtomicLong(0L);
+	/** The number of remotable MBeanServer reinstalls */
+	protected final AtomicLong reinstalls = new AtomicLong(0L);
+	/** The number of restored listeners */
+	protected final AtomicLong restoredListeners = new AtomicLong(0L);
+	/** The number of listeners that could not be restored */
+	protected final AtomicLong restoreFailures = new AtomicLong(0L);
+	/** The accumulated downtime of completed outages in ms. */
+	protected final AtomicLong totalDowntime = new AtomicLong(0L);
+	/** Indicates if this supervisor has been closed */
+	protected volatile boolean closed = false;
+
+	/** The default delay before the first reconnect attempt in ms. */
+	public static final long DEFAULT_INITIAL_DELAY = 500L;
+	/** The default maximum delay between reconnect attempts in ms. */
+	public static final long DEFAULT_MAX_DELAY = 30000L;
+	/** The random source for the backoff jitter */
+	protected static final Random RANDOM = new Random(System.nanoTime());
+
+	/** The scheduler shared by all supervisors to run reconnect attempts */
+	protected static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(2, new ThreadFactory(){
+		final AtomicInteger serial = new AtomicInteger(0);
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "GmxReconnect#" + serial.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Creates a new ConnectionSupervisor and registers its MBean
+	 * @param gmx The remote Gmx to supervise
+	 * @param clientId The Gmx client id
+	 */
+	public ConnectionSupervisor(Gmx gmx, String clientId) {
+		if(gmx==null) throw new IllegalArgumentException("The passed Gmx was null", new Throwable());
+		if(!gmx.isRemote()) throw new IllegalArgumentException("The passed Gmx is not remote", new Throwable());
+		this.gmx = gmx;
+		mbeanObjectName = JMXHelper.objectName(String.format(SUPERVISOR_ON_TEMPLATE, ObjectName.quote(String.valueOf(clientId)), ObjectName.quote(String.valueOf(gmx.getServiceURL()))));
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(!server.isRegistered(mbeanObjectName)) {
+				server.registerMBean(this, mbeanObjectName);
+			}
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Callback when the supervised connection fails or is closed. Schedules the first reconnect attempt unless the supervisor is already reconnecting.
+	 */
+	public synchronized void disconnected() {
+		if(closed || disconnectedAt!=0L) return;
+		disconnectedAt = System.currentTimeMillis();
+		disconnects.incrementAndGet();
+		consecutiveFailures = 0;
+		schedule(backoff(0));
+	}
+
+	/**
+	 * Schedules a reconnect attempt
+	 * @param delay The delay before the attempt in ms.
+	 */
+	protected synchronized void schedule(long delay) {
+		if(closed) return;
+		if(pending!=null) pending.cancel(false);
+		pending = SCHEDULER.schedule(new Runnable(){
+			public void run() {
+				attempt();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the jittered delay before the reconnect attempt following the passed number of failed attempts
+	 * @param failed The number of failed attempts
+	 * @return the delay in ms.
+	 */
+	protected long backoff(int failed) {
+		long delay = Math.max(1L, initialDelay);
+		long max = Math.max(delay, maxDelay);
+		for(int i = 0; i < failed && delay < max; i++) {
+			delay <<= 1;
+		}
+		delay = Math.min(delay, max);
+		long half = delay/2;
+		return half + (long)(RANDOM.nextDouble() * (delay - half));
+	}
+
+	/**
+	 * Makes a reconnect attempt, scheduling the next attempt if it fails
+	 */
+	protected void attempt() {
+		synchronized(this) {
+			if(closed || disconnectedAt==0L) return;
+		}
+		attempts.incrementAndGet();
+		try {
+			gmx.reconnect();
+		} catch (Throwable t) {
+			failures.incrementAndGet();
+			lastFailure = t.toString();
+			synchronized(this) {
+				schedule(backoff(++consecutiveFailures));
+			}
+			return;
+		}
+		synchronized(this) {
+			long downtime = System.currentTimeMillis() - disconnectedAt;
+			lastDowntime = downtime;
+			totalDowntime.addAndGet(downtime);
+			disconnectedAt = 0L;
+			consecutiveFailures = 0;
+			pending = null;
+			reconnects.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records the outcome of restoring the registered listeners after a reconnect
+	 * @param restored The number of restored listeners
+	 * @param failed The number of listeners that could not be restored
+	 */
+	public void listenersRestored(int restored, int failed) {
+		restoredListeners.addAndGet(restored);
+		restoreFailures.addAndGet(failed);
+	}
+
+	/**
+	 * Records that the remotable MBeanServer was missing and was reinstalled after a reconnect
+	 */
+	public void remoteReinstalled() {
+		reinstalls.incrementAndGet();
+	}
+
+	/**
+	 * Cancels any pending reconnect attempt and unregisters this supervisor's MBean
+	 */
+	@Override
+	public void close() {
+		synchronized(this) {
+			closed = true;
+			if(pending!=null) {
+				pending.cancel(false);
+				pending = null;
+			}
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(mbeanObjectName)) {
+				server.unregisterMBean(mbeanObjectName);
+			}
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Returns the ObjectName of this supervisor's MBean
+	 * @return the MBean ObjectName
+	 */
+	public ObjectName getMBeanObjectName() {
+		return mbeanObjectName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#reconnectNow()
+	 */
+	@Override
+	public synchronized void reconnectNow() {
+		if(disconnectedAt!=0L) schedule(0L);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getServiceURL()
+	 */
+	@Override
+	public String getServiceURL() {
+		return String.valueOf(gmx.getServiceURL());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#isConnected()
+	 */
+	@Override
+	public synchronized boolean isConnected() {
+		return disconnectedAt==0L;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getDisconnects()
+	 */
+	@Override
+	public long getDisconnects() {
+		return disconnects.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getReconnectAttempts()
+	 */
+	@Override
+	public long getReconnectAttempts() {
+		return attempts.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getReconnects()
+	 */
+	@Override
+	public long getReconnects() {
+		return reconnects.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getFailedReconnectAttempts()
+	 */
+	@Override
+	public long getFailedReconnectAttempts() {
+		return failures.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getConsecutiveFailures()
+	 */
+	@Override
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getLastFailure()
+	 */
+	@Override
+	public String getLastFailure() {
+		return lastFailure;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getRemoteReinstalls()
+	 */
+	@Override
+	public long getRemoteReinstalls() {
+		return reinstalls.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getRestoredListeners()
+	 */
+	@Override
+	public long getRestoredListeners() {
+		return restoredListeners.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getListenerRestoreFailures()
+	 */
+	@Override
+	public long getListenerRestoreFailures() {
+		return restoreFailures.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getCurrentDowntime()
+	 */
+	@Override
+	public synchronized long getCurrentDowntime() {
+		return disconnectedAt==0L ? 0L : System.currentTimeMillis() - disconnectedAt;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getLastDowntime()
+	 */
+	@Override
+	public long getLastDowntime() {
+		return lastDowntime;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getTotalDowntime()
+	 */
+	@Override
+	public long getTotalDowntime() {
+		return totalDowntime.get() + getCurrentDowntime();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getInitialDelay()
+	 */
+	@Override
+	public long getInitialDelay() {
+		return initialDelay;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#setInitialDelay(long)
+	 */
+	@Override
+	public void setInitialDelay(long initialDelay) {
+		if(initialDelay<1) throw new IllegalArgumentException("Invalid initial delay [" + initialDelay + "]", new Throwable());
+		this.initialDelay = initialDelay;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#getMaxDelay()
+	 */
+	@Override
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.ConnectionSupervisorMBean#setMaxDelay(long)
+	 */
+	@Override
+	public void setMaxDelay(long maxDelay) {
+		if(maxDelay<1) throw new IllegalArgumentException("Invalid maximum delay [" + maxDelay + "]", new Throwable());
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("ConnectionSupervisor [serviceURL:").append(getServiceURL())
+			.append(", connected:").append(isConnected())
+			.append(", reconnects:").append(reconnects.get())
+			.append(", totalDowntime:").append(getTotalDowntime()).append("]").toString();
+	}
+}
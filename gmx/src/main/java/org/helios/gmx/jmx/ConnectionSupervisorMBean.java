@@ -0,0 +1,150 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+/**
+ * <p>Title: ConnectionSupervisorMBean</p>
+ * <p>Description: JMX MBean interface for the {@link ConnectionSupervisor}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.ConnectionSupervisorMBean</code></p>
+ */
+public interface ConnectionSupervisorMBean {
+	/** The ObjectName template of the connection supervisor MBeans, where the parameters are the quoted Gmx client id and the quoted JMXServiceURL */
+	public static final String SUPERVISOR_ON_TEMPLATE = "org.helios.gmx:service=ConnectionSupervisor,client=%s,url=%s";
+
+	/**
+	 * Returns the JMXServiceURL of the supervised connection
+	 * @return the JMXServiceURL
+	 */
+	public String getServiceURL();
+
+	/**
+	 * Indicates if the supervised connection is currently connected
+	 * @return true if connected, false if the supervisor is reconnecting
+	 */
+	public boolean isConnected();
+
+	/**
+	 * Returns the number of times the connection failed or was closed by the server
+	 * @return the number of disconnects
+	 */
+	public long getDisconnects();
+
+	/**
+	 * Returns the number of reconnect attempts
+	 * @return the number of reconnect attempts
+	 */
+	public long getReconnectAttempts();
+
+	/**
+	 * Returns the number of successful reconnects
+	 * @return the number of reconnects
+	 */
+	public long getReconnects();
+
+	/**
+	 * Returns the number of failed reconnect attempts
+	 * @return the number of failed reconnect attempts
+	 */
+	public long getFailedReconnectAttempts();
+
+	/**
+	 * Returns the number of failed reconnect attempts since the last successful reconnect
+	 * @return the number of consecutive failures
+	 */
+	public int getConsecutiveFailures();
+
+	/**
+	 * Returns the message of the last failed reconnect attempt
+	 * @return the last failure message, or null if no attempt has failed
+	 */
+	public String getLastFailure();
+
+	/**
+	 * Returns the number of times the remotable MBeanServer was found missing and reinstalled after a reconnect
+	 * @return the number of reinstalls
+	 */
+	public long getRemoteReinstalls();
+
+	/**
+	 * Returns the number of notification listeners restored after reconnects
+	 * @return the number of restored listeners
+	 */
+	public long getRestoredListeners();
+
+	/**
+	 * Returns the number of notification listeners that could not be restored after reconnects
+	 * @return the number of listener restore failures
+	 */
+	public long getListenerRestoreFailures();
+
+	/**
+	 * Returns the time the connection has been down, if it is currently down
+	 * @return the current downtime in ms., or zero if connected
+	 */
+	public long getCurrentDowntime();
+
+	/**
+	 * Returns the time the connection was down before the last successful reconnect
+	 * @return the last downtime in ms.
+	 */
+	public long getLastDowntime();
+
+	/**
+	 * Returns the total time the connection has been down, including the current downtime
+	 * @return the total downtime in ms.
+	 */
+	public long getTotalDowntime();
+
+	/**
+	 * Returns the delay before the first reconnect attempt, which doubles with each failed attempt
+	 * @return the initial delay in ms.
+	 */
+	public long getInitialDelay();
+
+	/**
+	 * Sets the delay before the first reconnect attempt
+	 * @param initialDelay the initial delay in ms.
+	 */
+	public void setInitialDelay(long initialDelay);
+
+	/**
+	 * Returns the maximum delay between reconnect attempts
+	 * @return the maximum delay in ms.
+	 */
+	public long getMaxDelay();
+
+	/**
+	 * Sets the maximum delay between reconnect attempts
+	 * @param maxDelay the maximum delay in ms.
+	 */
+	public void setMaxDelay(long maxDelay);
+
+	/**
+	 * Cancels any pending backoff and attempts to reconnect immediately if the connection is down
+	 */
+	public void reconnectNow();
+}
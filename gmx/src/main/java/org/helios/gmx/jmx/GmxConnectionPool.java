@@ -0,0 +1,483 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * <p>Title: GmxConnectionPool</p>
+ * <p>Description: A registry of shared, reference counted JMXConnectors keyed by JMXServiceURL and connector environment.
+ * Remote Gmx instances lease a {@link PooledConnection} rather than opening their own connector, and release the lease on close.
+ * Connectors with no leases are closed once they have been idle for longer than the idle timeout.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.GmxConnectionPool</code></p>
+ */
+public class GmxConnectionPool implements GmxConnectionPoolMBean, NotificationListener {
+	/** The singleton instance */
+	private static volatile GmxConnectionPool instance = null;
+	/** The singleton instance ctor lock */
+	private static final Object lock = new Object();
+
+	/** The pooled connections keyed by service URL and environment */
+	protected final Map<PoolKey, FutureTask<PooledConnection>> connections = new ConcurrentHashMap<PoolKey, FutureTask<PooledConnection>>();
+	/** The idle connector reaper */
+	protected final ScheduledExecutorService reaper;
+	/** The idle timeout in ms. */
+	protected volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	/** The number of leases served from an open connector */
+	protected final AtomicLong hits = new AtomicLong(0L);
+	/** The number of leases that required a new connector */
+	protected final AtomicLong misses = new AtomicLong(0L);
+	/** The number of closed idle or broken connectors */
+	protected final AtomicLong evictions = new AtomicLong(0L);
+	/** The number of failed connects */
+	protected final AtomicLong connectFailures = new AtomicLong(0L);
+	/** Indicates the JVM is shutting down and released connectors should be closed immediately */
+	protected volatile boolean shutdown = false;
+
+	/** The default idle timeout in ms. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+	/** The period in ms. of the idle connector reaper */
+	public static final long REAP_PERIOD = 5000;
+
+	/**
+	 * Acquires the GmxConnectionPool singleton
+	 * @return the GmxConnectionPool singleton
+	 */
+	public static GmxConnectionPool getInstance() {
+		if(instance==null) {
+			synchronized(lock) {
+				if(instance==null) {
+					instance = new GmxConnectionPool();
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new GmxConnectionPool
+	 */
+	private GmxConnectionPool() {
+		reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GmxConnectionPoolReaper");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		reaper.scheduleWithFixedDelay(new Runnable(){
+			@Override
+			public void run() {
+				reap(idleTimeout);
+			}
+		}, REAP_PERIOD, REAP_PERIOD, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread("GmxConnectionPoolShutdown"){
+			@Override
+			public void run() {
+				shutdown();
+			}
+		});
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(!server.isRegistered(POOL_ON)) {
+				server.registerMBean(this, POOL_ON);
+			}
+		} catch (Exception e) {
+			System.err.println("Warning: Failed to register GmxConnectionPool MBean. Continuing.");
+		}
+	}
+
+	/**
+	 * Leases a shared connection to the passed service URL, connecting if there is no open connector for the URL and environment.
+	 * @param serviceURL The JMXServiceURL to connect to
+	 * @param environment The connector environment
+	 * @param holder The lease holder which must release the lease with {@link #release(PooledConnection, Object)}
+	 * @return a leased PooledConnection
+	 */
+	public PooledConnection lease(final JMXServiceURL serviceURL, final Map<String, ?> environment, Object holder) {
+		if(serviceURL==null) throw new IllegalArgumentException("The passed serviceURL was null", new Throwable());
+		if(holder==null) throw new IllegalArgumentException("The passed holder was null", new Throwable());
+		final Map<String, ?> env = environment==null ? new HashMap<String, Object>(0) : new HashMap<String, Object>(environment);
+		PoolKey key = new PoolKey(serviceURL, env);
+		while(true) {
+			FutureTask<PooledConnection> task = connections.get(key);
+			boolean connecting = false;
+			if(task==null) {
+				FutureTask<PooledConnection> newTask = new FutureTask<PooledConnection>(new Callable<PooledConnection>(){
+					@Override
+					public PooledConnection call() throws Exception {
+						return new PooledConnection(serviceURL, env);
+					}
+				});
+				task = ((ConcurrentHashMap<PoolKey, FutureTask<PooledConnection>>)connections).putIfAbsent(key, newTask);
+				if(task==null) {
+					task = newTask;
+					connecting = true;
+					misses.incrementAndGet();
+					task.run();
+				}
+			}
+			PooledConnection pc = null;
+			try {
+				pc = task.get();
+			} catch (ExecutionException ee) {
+				connections.remove(key);
+				if(connecting) connectFailures.incrementAndGet();
+				Throwable cause = ee.getCause();
+				if(cause instanceof RuntimeException) throw (RuntimeException)cause;
+				throw new RuntimeException("Failed to connect to remote MBeanServer on URL [" + serviceURL + "]", cause);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for connection to [" + serviceURL + "]", ie);
+			}
+			if((connecting || pc.validate()) && pc.acquire(holder)) {
+				if(!connecting) hits.incrementAndGet();
+				if(connecting) {
+					try {
+						pc.getConnector().addConnectionNotificationListener(this, null, key);
+					} catch (Exception e) {}
+				}
+				return pc;
+			}
+			// Closed or broken since it was looked up, so take it out of the pool and go again
+			invalidate(pc);
+		}
+	}
+
+	/**
+	 * Releases a lease on a pooled connection. The connector stays open until it has been idle for the idle timeout.
+	 * @param pc The pooled connection to release
+	 * @param holder The lease holder that acquired the lease
+	 * @return the number of remaining leases on the connection
+	 */
+	public int release(PooledConnection pc, Object holder) {
+		if(pc==null) return 0;
+		int remaining = pc.release(holder);
+		if(remaining==0 && (pc.isBroken() || shutdown)) {
+			if(pc.closeIfIdle(System.currentTimeMillis(), -1L)) {
+				evictions.incrementAndGet();
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Marks a pooled connection as broken so that it will not be leased again.
+	 * The connector is closed once all its leases have been released.
+	 * @param pc The failed pooled connection
+	 */
+	public void invalidate(PooledConnection pc) {
+		if(pc==null) return;
+		pc.broken = true;
+		for(Map.Entry<PoolKey, FutureTask<PooledConnection>> entry: connections.entrySet()) {
+			FutureTask<PooledConnection> task = entry.getValue();
+			try {
+				if(task.isDone() && task.get()==pc) {
+					connections.remove(entry.getKey());
+				}
+			} catch (Exception e) {}
+		}
+		if(pc.getLeases()==0 && pc.closeIfIdle(System.currentTimeMillis(), 0)) {
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Closes connectors with no leases that have been idle longer than the passed timeout
+	 * @param timeout The idle timeout in ms. A negative value closes all unleased connectors.
+	 * @return the number of closed connectors
+	 */
+	protected int reap(long timeout) {
+		int closed = 0;
+		long now = System.currentTimeMillis();
+		for(Map.Entry<PoolKey, FutureTask<PooledConnection>> entry: connections.entrySet()) {
+			FutureTask<PooledConnection> task = entry.getValue();
+			if(!task.isDone()) continue;
+			try {
+				PooledConnection pc = task.get();
+				if(pc.closeIfIdle(now, timeout)) {
+					connections.remove(entry.getKey());
+					evictions.incrementAndGet();
+					closed++;
+				}
+			} catch (Exception e) {
+				connections.remove(entry.getKey());
+			}
+		}
+		return closed;
+	}
+
+	/**
+	 * Returns all the currently open pooled connections
+	 * @return a list of pooled connections
+	 */
+	protected List<PooledConnection> getConnections() {
+		List<PooledConnection> list = new ArrayList<PooledConnection>(connections.size());
+		for(FutureTask<PooledConnection> task: connections.values()) {
+			if(!task.isDone()) continue;
+			try {
+				list.add(task.get());
+			} catch (Exception e) {}
+		}
+		return list;
+	}
+
+	/**
+	 * Closes all the unleased pooled connectors. Leased connectors are closed as soon as their last lease is released.
+	 */
+	protected void shutdown() {
+		shutdown = true;
+		reaper.shutdownNow();
+		reap(-1L);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Removes failed or closed connectors from the pool so the next lease reconnects.</p>
+	 * @see javax.management.NotificationListener#handleNotification(javax.management.Notification, java.lang.Object)
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if(notification instanceof JMXConnectionNotification && handback instanceof PoolKey) {
+			String type = notification.getType();
+			if(JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				FutureTask<PooledConnection> task = connections.get(handback);
+				if(task!=null && task.isDone()) {
+					try {
+						PooledConnection pc = task.get();
+						if(pc.getConnectionId()==null || pc.getConnectionId().equals(((JMXConnectionNotification)notification).getConnectionId())) {
+							invalidate(pc);
+						}
+					} catch (Exception e) {}
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getHits()
+	 */
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getMisses()
+	 */
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getEvictions()
+	 */
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getConnectFailures()
+	 */
+	@Override
+	public long getConnectFailures() {
+		return connectFailures.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getConnectionCount()
+	 */
+	@Override
+	public int getConnectionCount() {
+		return getConnections().size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getLeaseCount()
+	 */
+	@Override
+	public int getLeaseCount() {
+		int cnt = 0;
+		for(PooledConnection pc: getConnections()) {
+			cnt += pc.getLeases();
+		}
+		return cnt;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getServiceURLs()
+	 */
+	@Override
+	public String[] getServiceURLs() {
+		List<String> urls = new ArrayList<String>();
+		for(PooledConnection pc: getConnections()) {
+			urls.add(pc.getServiceURL().toString());
+		}
+		return urls.toArray(new String[urls.size()]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#getIdleTimeout()
+	 */
+	@Override
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#setIdleTimeout(long)
+	 */
+	@Override
+	public void setIdleTimeout(long idleTimeout) {
+		if(idleTimeout<0) throw new IllegalArgumentException("Invalid idle timeout [" + idleTimeout + "]", new Throwable());
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#closeIdle()
+	 */
+	@Override
+	public int closeIdle() {
+		return reap(-1L);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.GmxConnectionPoolMBean#resetStats()
+	 */
+	@Override
+	public void resetStats() {
+		hits.set(0L);
+		misses.set(0L);
+		evictions.set(0L);
+		connectFailures.set(0L);
+	}
+
+	/**
+	 * <p>Title: PoolKey</p>
+	 * <p>Description: The pool key made up of the service URL and the connector environment.
+	 * Array valued environment entries, such as credentials, are compared by content.</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.GmxConnectionPool.PoolKey</code></p>
+	 */
+	protected static class PoolKey {
+		/** The service URL */
+		private final String serviceURL;
+		/** The sorted environment */
+		private final TreeMap<String, Object> environment = new TreeMap<String, Object>();
+		/** The precomputed hash code */
+		private final int hashCode;
+
+		/**
+		 * Creates a new PoolKey
+		 * @param serviceURL The service URL
+		 * @param environment The connector environment
+		 */
+		PoolKey(JMXServiceURL serviceURL, Map<String, ?> environment) {
+			this.serviceURL = serviceURL.toString();
+			this.environment.putAll(environment);
+			int h = this.serviceURL.hashCode();
+			for(Map.Entry<String, Object> entry: this.environment.entrySet()) {
+				h = 31*h + entry.getKey().hashCode();
+				h = 31*h + Arrays.deepHashCode(new Object[]{entry.getValue()});
+			}
+			hashCode = h;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if(this==obj) return true;
+			if(!(obj instanceof PoolKey)) return false;
+			PoolKey other = (PoolKey)obj;
+			if(hashCode!=other.hashCode || !serviceURL.equals(other.serviceURL)) return false;
+			Set<String> keys = environment.keySet();
+			if(!keys.equals(other.environment.keySet())) return false;
+			for(String key: keys) {
+				if(!Arrays.deepEquals(new Object[]{environment.get(key)}, new Object[]{other.environment.get(key)})) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return serviceURL;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import javax.management.ObjectName;
+
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: GmxConnectionPoolMBean</p>
+ * <p>Description: JMX MBean interface for the {@link GmxConnectionPool}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.GmxConnectionPoolMBean</code></p>
+ */
+public interface GmxConnectionPoolMBean {
+	/** The connection pool JMX ObjectName */
+	public static final ObjectName POOL_ON = JMXHelper.objectName("org.helios.gmx:service=ConnectionPool");
+
+	/**
+	 * Returns the number of leases served from an already open connector
+	 * @return the number of pool hits
+	 */
+	public long getHits();
+
+	/**
+	 * Returns the number of leases that required a new connector
+	 * @return the number of pool misses
+	 */
+	public long getMisses();
+
+	/**
+	 * Returns the number of connectors closed because they were idle or had failed
+	 * @return the number of pool evictions
+	 */
+	public long getEvictions();
+
+	/**
+	 * Returns the number of failed connect attempts
+	 * @return the number of failed connect attempts
+	 */
+	public long getConnectFailures();
+
+	/**
+	 * Returns the number of open pooled connectors
+	 * @return the number of open pooled connectors
+	 */
+	public int getConnectionCount();
+
+	/**
+	 * Returns the total number of outstanding leases across all pooled connectors
+	 * @return the total number of outstanding leases
+	 */
+	public int getLeaseCount();
+
+	/**
+	 * Returns the JMXServiceURLs of the open pooled connectors
+	 * @return the JMXServiceURLs of the open pooled connectors
+	 */
+	public String[] getServiceURLs();
+
+	/**
+	 * Returns the time in ms. an unleased connector is kept open before it is closed
+	 * @return the idle timeout in ms.
+	 */
+	public long getIdleTimeout();
+
+	/**
+	 * Sets the time in ms. an unleased connector is kept open before it is closed
+	 * @param idleTimeout the idle timeout in ms.
+	 */
+	public void setIdleTimeout(long idleTimeout);
+
+	/**
+	 * Closes all connectors that currently have no leases, regardless of the idle timeout
+	 * @return the number of closed connectors
+	 */
+	public int closeIdle();
+
+	/**
+	 * Resets the hit, miss, eviction and failure counters
+	 */
+	public void resetStats();
+}
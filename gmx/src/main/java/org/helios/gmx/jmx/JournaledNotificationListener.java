@@ -0,0 +1,169 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.ObjectName;
+
+import org.helios.gmx.Gmx;
+import org.helios.gmx.jmx.remote.JournalBatch;
+
+/**
+ * <p>Title: JournaledNotificationListener</p>
+ * <p>Description: A {@link RelayedNotificationListener} for a subscription whose relayed notifications are recorded in a notification journal.
+ * Each journaled notification carries the subscription's sequence number. When a notification arrives after a gap in the sequence,
+ * or when the connector reports lost notifications, the missing range is replayed from the journal and passed to the wrapped closure in order
+ * before any later notification. Notifications that were already delivered are discarded.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.JournaledNotificationListener</code></p>
+ */
+public class JournaledNotificationListener extends RelayedNotificationListener {
+	/**  */
+	private static final long serialVersionUID = 7904416520993380241L;
+	/** The Gmx the journal is replayed through */
+	protected final transient Gmx gmx;
+	/** The handback passed to the wrapped closure with replayed notifications */
+	protected final transient Object handback;
+	/** The sequence number of the last delivered notification */
+	protected long lastSequence = 0L;
+	/** The number of replayed notifications */
+	protected final AtomicLong replayed = new AtomicLong(0L);
+	/** The number of notifications overwritten in the journal before they could be replayed */
+	protected final AtomicLong lost = new AtomicLong(0L);
+	/** The number of gaps detected */
+	protected final AtomicLong gaps = new AtomicLong(0L);
+
+	/**
+	 * Creates a new JournaledNotificationListener with the same closure, arguments and batching mode as the passed listener
+	 * @param template The listener to copy
+	 * @param relayObjectName The ObjectName of the MBean emitting the relay notifications, or null if the relay runs in this JVM
+	 * @param gmx The Gmx the journal is replayed through
+	 * @param handback The handback passed to the wrapped closure with replayed notifications
+	 */
+	public JournaledNotificationListener(ClosureWrappingNotificationListener template, ObjectName relayObjectName, Gmx gmx, Object handback) {
+		super(template, relayObjectName);
+		if(gmx==null) throw new IllegalArgumentException("The passed Gmx was null", new Throwable());
+		this.gmx = gmx;
+		this.handback = handback;
+	}
+
+	/**
+	 * Replays the notifications missing before the passed notification, then delivers it unless it was already delivered
+	 * @param notification The received journaled notification
+	 * @param handback The handback
+	 */
+	@Override
+	public synchronized void handleNotification(Notification notification, Object handback) {
+		long sequence = notification.getSequenceNumber();
+		if(sequence <= lastSequence) return;
+		if(sequence > lastSequence + 1) {
+			gaps.incrementAndGet();
+			replay(sequence - 1);
+		}
+		lastSequence = sequence;
+		super.handleNotification(notification, handback);
+	}
+
+	/**
+	 * Replays every journaled notification after the last delivered notification.
+	 * Called when the connector reports lost notifications, so that gaps are recovered even if no further notification arrives.
+	 * @return the number of replayed notifications
+	 */
+	public synchronized int recover() {
+		return replay(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Switches this listener to a new journaled subscription after the journal of its previous subscription was lost,
+	 * restarting the sequence tracking so that the new subscription's notifications are not discarded as already delivered.
+	 * @param subscriptionId The id of the new subscription
+	 */
+	public synchronized void resubscribed(String subscriptionId) {
+		setSubscriptionId(subscriptionId);
+		lastSequence = 0L;
+	}
+
+	/**
+	 * Replays the journaled notifications after the last delivered notification up to the passed sequence number
+	 * @param toSequence The last sequence number to replay
+	 * @return the number of replayed notifications
+	 */
+	protected int replay(long toSequence) {
+		String subscriptionId = getSubscriptionId();
+		if(subscriptionId==null) return 0;
+		JournalBatch batch = null;
+		try {
+			batch = gmx.replayNotifications(subscriptionId, lastSequence + 1, toSequence);
+		} catch (Exception e) {
+			return 0;
+		}
+		int count = 0;
+		for(Notification notification: batch.getNotifications()) {
+			if(notification.getSequenceNumber() <= lastSequence) continue;
+			lastSequence = notification.getSequenceNumber();
+			replayed.incrementAndGet();
+			count++;
+			super.handleNotification(notification, handback);
+		}
+		lost.addAndGet(batch.getLost());
+		lastSequence = Math.max(lastSequence, Math.min(toSequence, batch.getLastSequence()));
+		return count;
+	}
+
+	/**
+	 * Returns the sequence number of the last delivered notification
+	 * @return the last sequence number
+	 */
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the number of notifications replayed from the journal
+	 * @return the number of replayed notifications
+	 */
+	public long getReplayed() {
+		return replayed.get();
+	}
+
+	/**
+	 * Returns the number of notifications overwritten in the journal before they could be replayed
+	 * @return the number of lost notifications
+	 */
+	public long getLost() {
+		return lost.get();
+	}
+
+	/**
+	 * Returns the number of sequence gaps detected
+	 * @return the number of gaps
+	 */
+	public long getGaps() {
+		return gaps.get();
+	}
+}
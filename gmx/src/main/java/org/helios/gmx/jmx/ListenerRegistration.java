@@ -0,0 +1,119 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import groovy.lang.Closure;
+
+import javax.management.NotificationFilter;
+
+/**
+ * <p>Title: ListenerRegistration</p>
+ * <p>Description: The arguments a listener was registered with through a remote connection, kept so that the listener can be registered again
+ * after a reconnect. For a relayed listener, the filter and aggregator closures are subscribed again in the remoted MBeanServer.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.ListenerRegistration</code></p>
+ */
+public class ListenerRegistration {
+	/** The registered listener */
+	protected final ObjectNameAwareListener listener;
+	/** The notification filter the listener was registered with, or null if it is relayed */
+	protected final NotificationFilter notificationFilter;
+	/** The filter closure */
+	protected final Closure<Boolean> filter;
+	/** The aggregator closure */
+	protected final Closure<?> aggregator;
+	/** The aggregation window in ms. */
+	protected final long window;
+	/** The handback the listener was registered with */
+	protected final Object handback;
+
+	/**
+	 * Creates a new ListenerRegistration
+	 * @param listener The registered listener
+	 * @param notificationFilter The notification filter the listener was registered with, or null if it is relayed
+	 * @param filter The filter closure
+	 * @param aggregator The aggregator closure
+	 * @param window The aggregation window in ms.
+	 * @param handback The handback the listener was registered with
+	 */
+	public ListenerRegistration(ObjectNameAwareListener listener, NotificationFilter notificationFilter, Closure<Boolean> filter, Closure<?> aggregator, long window, Object handback) {
+		if(listener==null) throw new IllegalArgumentException("The passed listener was null", new Throwable());
+		this.listener = listener;
+		this.notificationFilter = notificationFilter;
+		this.filter = filter;
+		this.aggregator = aggregator;
+		this.window = window;
+		this.handback = handback;
+	}
+
+	/**
+	 * Returns the registered listener
+	 * @return the registered listener
+	 */
+	public ObjectNameAwareListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Returns the notification filter the listener was registered with
+	 * @return the notification filter, or null if there is none or the listener is relayed
+	 */
+	public NotificationFilter getNotificationFilter() {
+		return notificationFilter;
+	}
+
+	/**
+	 * Returns the filter closure
+	 * @return the filter closure, or null if there is none
+	 */
+	public Closure<Boolean> getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Returns the aggregator closure
+	 * @return the aggregator closure, or null if there is none
+	 */
+	public Closure<?> getAggregator() {
+		return aggregator;
+	}
+
+	/**
+	 * Returns the aggregation window
+	 * @return the aggregation window in ms.
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Returns the handback the listener was registered with
+	 * @return the handback
+	 */
+	public Object getHandback() {
+		return handback;
+	}
+}
@@ -0,0 +1,388 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Descriptor;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+import javax.management.remote.JMXConnectionNotification;
+
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: MBeanInfoCache</p>
+ * <p>Description: A per connection cache of MBeanInfos. MBeanInfos are interned by class name and a fingerprint of the info,
+ * so identical MBeanInfos fetched for many MBeans share one instance. MBeanInfos whose descriptor declares <code>immutableInfo=true</code>
+ * are cached by ObjectName, and, for standard MBeans and MXBeans, by the MBean's class name so that further MBeans of the same
+ * class do not need to be fetched at all. Cached entries are invalidated by the MBeanServerDelegate's unregistration notifications.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.MBeanInfoCache</code></p>
+ */
+public class MBeanInfoCache implements MBeanInfoCacheMBean, NotificationListener {
+	/** The caches for local MBeanServers */
+	private static final Map<MBeanServer, MBeanInfoCache> localCaches = new WeakHashMap<MBeanServer, MBeanInfoCache>();
+
+	/** The name of the connection this cache serves */
+	protected final String connectionName;
+	/** The JMX ObjectName of this cache */
+	protected final ObjectName objectName;
+	/** The cached immutable MBeanInfos keyed by MBean ObjectName */
+	protected final Map<ObjectName, CachedInfo> byName = new ConcurrentHashMap<ObjectName, CachedInfo>();
+	/** The cached immutable standard MBean and MXBean MBeanInfos keyed by MBean class name */
+	protected final Map<String, CachedInfo> byClass = new ConcurrentHashMap<String, CachedInfo>();
+	/** The interned MBeanInfos keyed by class name and fingerprint */
+	protected final Map<String, CachedInfo> interned = new ConcurrentHashMap<String, CachedInfo>();
+	/** The MBeanServerDelegate unregistration notification filter */
+	protected final MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+	/** The number of cache hits */
+	protected final AtomicLong hits = new AtomicLong(0L);
+	/** The number of cache misses */
+	protected final AtomicLong misses = new AtomicLong(0L);
+	/** The number of deduplicated MBeanInfos */
+	protected final AtomicLong deduplications = new AtomicLong(0L);
+	/** The number of invalidations */
+	protected final AtomicLong invalidations = new AtomicLong(0L);
+	/** The number of bytes saved */
+	protected final AtomicLong bytesSaved = new AtomicLong(0L);
+
+	/** The MBeanInfo descriptor field indicating the info never changes */
+	public static final String IMMUTABLE_INFO = "immutableInfo";
+	/** The MBeanInfo descriptor field present on standard MBeans and MXBeans naming the management interface */
+	public static final String INTERFACE_CLASS_NAME = "interfaceClassName";
+
+	/**
+	 * Returns the MBeanInfo cache for the passed local MBeanServer
+	 * @param server The MBeanServer
+	 * @return the MBeanInfo cache for the passed MBeanServer
+	 */
+	public static MBeanInfoCache getInstance(MBeanServer server) {
+		if(server==null) throw new IllegalArgumentException("The passed MBeanServer was null", new Throwable());
+		synchronized(localCaches) {
+			MBeanInfoCache cache = localCaches.get(server);
+			if(cache==null) {
+				cache = new MBeanInfoCache("local-" + server.getDefaultDomain() + "-" + System.identityHashCode(server), server);
+				localCaches.put(server, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Creates a new MBeanInfoCache, subscribing to unregistration notifications on the passed connection
+	 * and registering the cache's management interface in the platform MBeanServer.
+	 * @param connectionName The name of the connection this cache serves
+	 * @param conn The connection this cache serves
+	 */
+	public MBeanInfoCache(String connectionName, MBeanServerConnection conn) {
+		this.connectionName = connectionName;
+		objectName = JMXHelper.objectName(String.format(CACHE_ON_TEMPLATE, ObjectName.quote(connectionName)));
+		filter.enableAllObjectNames();
+		filter.disableType(MBeanServerNotification.REGISTRATION_NOTIFICATION);
+		try {
+			conn.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+		} catch (Exception e) {
+			System.err.println("Warning: Failed to register MBeanInfoCache unregistration listener for [" + connectionName + "]. Continuing.");
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Returns the MBeanInfo for the passed ObjectName
+	 * @param conn The connection to fetch the MBeanInfo from on a cache miss
+	 * @param on The ObjectName of the MBean
+	 * @return the MBeanInfo
+	 */
+	public MBeanInfo getMBeanInfo(MBeanServerConnection conn, ObjectName on) {
+		return getMBeanInfo(conn, on, null);
+	}
+
+	/**
+	 * Returns the MBeanInfo for the passed ObjectName
+	 * @param conn The connection to fetch the MBeanInfo from on a cache miss
+	 * @param on The ObjectName of the MBean
+	 * @param className The class name of the MBean, usually from a <code>queryMBeans</code>. May be null if not known.
+	 * @return the MBeanInfo
+	 */
+	public MBeanInfo getMBeanInfo(MBeanServerConnection conn, ObjectName on, String className) {
+		CachedInfo cached = byName.get(on);
+		if(cached==null && className!=null) {
+			cached = byClass.get(className);
+			if(cached!=null) byName.put(on, cached);
+		}
+		if(cached!=null) {
+			hits.incrementAndGet();
+			bytesSaved.addAndGet(cached.size);
+			return cached.info;
+		}
+		MBeanInfo info = null;
+		try {
+			info = conn.getMBeanInfo(on);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to acquire MBeanInfo for MBean [" + on + "]", e);
+		}
+		misses.incrementAndGet();
+		cached = intern(info);
+		if(cached.immutable) {
+			byName.put(on, cached);
+			if(cached.classShared) {
+				byClass.put(className!=null ? className : info.getClassName(), cached);
+			}
+		}
+		return cached.info;
+	}
+
+	/**
+	 * Interns the passed MBeanInfo, returning the already cached identical instance if there is one
+	 * @param info The fetched MBeanInfo
+	 * @return the interned MBeanInfo entry
+	 */
+	protected CachedInfo intern(MBeanInfo info) {
+		String key = new StringBuilder(String.valueOf(info.getClassName())).append('#').append(Integer.toHexString(info.hashCode())).toString();
+		CachedInfo cached = interned.get(key);
+		if(cached!=null && cached.info.equals(info)) {
+			deduplications.incrementAndGet();
+			return cached;
+		}
+		CachedInfo newInfo = new CachedInfo(info);
+		if(cached==null) {
+			interned.put(key, newInfo);
+		}
+		return newInfo;
+	}
+
+	/**
+	 * Removes the delegate listener from the passed connection and unregisters the cache's management interface
+	 * @param conn The connection this cache serves
+	 */
+	public void close(MBeanServerConnection conn) {
+		if(conn!=null) {
+			try { conn.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null); } catch (Exception e) {}
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if(server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (Exception e) {}
+		clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Invalidates the cached MBeanInfo for unregistered MBeans, and clears the cache when notifications have been lost.</p>
+	 * @see javax.management.NotificationListener#handleNotification(javax.management.Notification, java.lang.Object)
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if(notification instanceof MBeanServerNotification) {
+			if(MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+				if(byName.remove(((MBeanServerNotification)notification).getMBeanName())!=null) {
+					invalidations.incrementAndGet();
+				}
+			}
+		} else if(notification instanceof JMXConnectionNotification) {
+			if(JMXConnectionNotification.NOTIFS_LOST.equals(notification.getType())) {
+				invalidations.addAndGet(byName.size());
+				byName.clear();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getConnectionName()
+	 */
+	@Override
+	public String getConnectionName() {
+		return connectionName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getHits()
+	 */
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getMisses()
+	 */
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getHitRate()
+	 */
+	@Override
+	public int getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		if(total==0) return 0;
+		return (int)(h*100/total);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getDeduplications()
+	 */
+	@Override
+	public long getDeduplications() {
+		return deduplications.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getInvalidations()
+	 */
+	@Override
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getBytesSaved()
+	 */
+	@Override
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getCachedMBeanCount()
+	 */
+	@Override
+	public int getCachedMBeanCount() {
+		return byName.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#getDistinctMBeanInfoCount()
+	 */
+	@Override
+	public int getDistinctMBeanInfoCount() {
+		return interned.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#clear()
+	 */
+	@Override
+	public void clear() {
+		byName.clear();
+		byClass.clear();
+		interned.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.MBeanInfoCacheMBean#resetStats()
+	 */
+	@Override
+	public void resetStats() {
+		hits.set(0L);
+		misses.set(0L);
+		deduplications.set(0L);
+		invalidations.set(0L);
+		bytesSaved.set(0L);
+	}
+
+	/**
+	 * <p>Title: CachedInfo</p>
+	 * <p>Description: A cached MBeanInfo with its approximate serialized size and immutability</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.MBeanInfoCache.CachedInfo</code></p>
+	 */
+	protected static class CachedInfo {
+		/** The cached MBeanInfo */
+		protected final MBeanInfo info;
+		/** The approximate serialized size of the MBeanInfo in bytes */
+		protected final int size;
+		/** Indicates the MBeanInfo's descriptor declares it immutable */
+		protected final boolean immutable;
+		/** Indicates the MBeanInfo is derived from the MBean's class and can be shared by all MBeans of that class */
+		protected final boolean classShared;
+
+		/**
+		 * Creates a new CachedInfo
+		 * @param info The MBeanInfo to cache
+		 */
+		CachedInfo(MBeanInfo info) {
+			this.info = info;
+			Descriptor descriptor = info.getDescriptor();
+			immutable = descriptor!=null && "true".equalsIgnoreCase(String.valueOf(descriptor.getFieldValue(IMMUTABLE_INFO)));
+			classShared = immutable && descriptor.getFieldValue(INTERFACE_CLASS_NAME)!=null;
+			size = serializedSize(info);
+		}
+
+		/**
+		 * Computes the serialized size of the passed object
+		 * @param obj The object to size
+		 * @return the serialized size in bytes, or zero if the object could not be serialized
+		 */
+		private static int serializedSize(Object obj) {
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+				ObjectOutputStream oos = new ObjectOutputStream(baos);
+				oos.writeObject(obj);
+				oos.flush();
+				return baos.size();
+			} catch (Exception e) {
+				return 0;
+			}
+		}
+	}
+}
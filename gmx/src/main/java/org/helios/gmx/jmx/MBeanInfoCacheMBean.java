@@ -0,0 +1,101 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+/**
+ * <p>Title: MBeanInfoCacheMBean</p>
+ * <p>Description: JMX MBean interface for the {@link MBeanInfoCache}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.MBeanInfoCacheMBean</code></p>
+ */
+public interface MBeanInfoCacheMBean {
+	/** The ObjectName template of the MBeanInfo cache MBeans, where the parameter is the quoted connection name */
+	public static final String CACHE_ON_TEMPLATE = "org.helios.gmx:service=MBeanInfoCache,connection=%s";
+
+	/**
+	 * Returns the name of the connection this cache serves
+	 * @return the connection name
+	 */
+	public String getConnectionName();
+
+	/**
+	 * Returns the number of MBeanInfo lookups served from the cache
+	 * @return the number of cache hits
+	 */
+	public long getHits();
+
+	/**
+	 * Returns the number of MBeanInfo lookups that were fetched from the MBeanServer
+	 * @return the number of cache misses
+	 */
+	public long getMisses();
+
+	/**
+	 * Returns the percentage of MBeanInfo lookups served from the cache
+	 * @return the cache hit rate percentage
+	 */
+	public int getHitRate();
+
+	/**
+	 * Returns the number of fetched MBeanInfos that were replaced by an identical, already cached, instance
+	 * @return the number of deduplicated MBeanInfos
+	 */
+	public long getDeduplications();
+
+	/**
+	 * Returns the number of cached MBeanInfos invalidated by MBean unregistration
+	 * @return the number of invalidations
+	 */
+	public long getInvalidations();
+
+	/**
+	 * Returns the approximate serialized size in bytes of the MBeanInfos that did not have to be fetched
+	 * @return the number of bytes saved
+	 */
+	public long getBytesSaved();
+
+	/**
+	 * Returns the number of MBeans with a cached MBeanInfo
+	 * @return the number of cached MBeans
+	 */
+	public int getCachedMBeanCount();
+
+	/**
+	 * Returns the number of distinct cached MBeanInfo instances
+	 * @return the number of distinct MBeanInfos
+	 */
+	public int getDistinctMBeanInfoCount();
+
+	/**
+	 * Clears the cache
+	 */
+	public void clear();
+
+	/**
+	 * Resets the cache statistics
+	 */
+	public void resetStats();
+}
@@ -0,0 +1,122 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.ObjectName;
+
+/**
+ * <p>Title: PatternSubscription</p>
+ * <p>Description: A notification subscription on an ObjectName pattern, managed by a {@link PatternSubscriptionRegistry}.
+ * The subscription is registered as the listener on every MBean matching the pattern and passes their notifications to the wrapped listener.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.PatternSubscription</code></p>
+ */
+public class PatternSubscription implements ObjectNameAwareListener {
+	/** The subscribed ObjectName pattern */
+	protected final ObjectName pattern;
+	/** The listener the notifications are passed to */
+	protected final ObjectNameAwareListener delegate;
+	/** The filter registered with each listener registration */
+	protected final NotificationFilter filter;
+	/** The handback registered with each listener registration */
+	protected final Object handback;
+	/** The registry index domain key */
+	protected final String indexDomain;
+	/** The registry index property key */
+	protected final String indexProperty;
+	/** The ObjectNames of the MBeans this subscription is attached to */
+	protected final Set<ObjectName> attached = Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+	/** Indicates if this subscription is active */
+	protected volatile boolean active = true;
+
+	/**
+	 * Creates a new PatternSubscription
+	 * @param pattern The subscribed ObjectName pattern
+	 * @param delegate The listener the notifications are passed to
+	 * @param filter The filter registered with each listener registration
+	 * @param handback The handback registered with each listener registration
+	 * @param indexDomain The registry index domain key
+	 * @param indexProperty The registry index property key
+	 */
+	protected PatternSubscription(ObjectName pattern, ObjectNameAwareListener delegate, NotificationFilter filter, Object handback, String indexDomain, String indexProperty) {
+		this.pattern = pattern;
+		this.delegate = delegate;
+		this.filter = filter;
+		this.handback = handback;
+		this.indexDomain = indexDomain;
+		this.indexProperty = indexProperty;
+	}
+
+	/**
+	 * Passes the notification to the wrapped listener
+	 * @param notification The notification
+	 * @param handback The handback
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		delegate.handleNotification(notification, handback);
+	}
+
+	/**
+	 * Returns the subscribed ObjectName pattern
+	 * @return the subscribed ObjectName pattern
+	 */
+	@Override
+	public ObjectName getObjectName() {
+		return pattern;
+	}
+
+	/**
+	 * Returns the listener the notifications are passed to
+	 * @return the wrapped listener
+	 */
+	public ObjectNameAwareListener getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Returns the ObjectNames of the MBeans this subscription is currently attached to
+	 * @return a set of ObjectNames
+	 */
+	public Set<ObjectName> getAttachedObjectNames() {
+		return Collections.unmodifiableSet(new HashSet<ObjectName>(attached));
+	}
+
+	/**
+	 * Indicates if this subscription is active
+	 * @return true if this subscription is active, false if it has been cancelled
+	 */
+	public boolean isActive() {
+		return active;
+	}
+}
@@ -0,0 +1,408 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationBroadcaster;
+import javax.management.NotificationFilter;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+/**
+ * <p>Title: PatternSubscriptionRegistry</p>
+ * <p>Description: Manages notification subscriptions on ObjectName patterns. A subscription is attached to every MBean matching its pattern
+ * when it subscribes, and is attached to or detached from MBeans as the {@link MBeanServerDelegate} reports their registration and unregistration.</p>
+ * <p>Subscriptions are indexed by domain and by one of their non-wildcard key properties, so a registration event is only matched against the
+ * subscriptions in the buckets of the registered MBean's domain and key properties, and an unregistration event is resolved from the MBeans
+ * each subscription is attached to, instead of scanning every pattern.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.PatternSubscriptionRegistry</code></p>
+ */
+public class PatternSubscriptionRegistry implements NotificationListener {
+	/** The MBeanServer the subscribed MBeans are registered in */
+	protected volatile MBeanServerConnection server;
+	/** The subscriptions indexed by domain key, then by property key */
+	protected final Map<String, Map<String, Set<PatternSubscription>>> index = new ConcurrentHashMap<String, Map<String, Set<PatternSubscription>>>();
+	/** The subscriptions attached to each MBean */
+	protected final Map<ObjectName, Set<PatternSubscription>> attachments = new ConcurrentHashMap<ObjectName, Set<PatternSubscription>>();
+	/** The number of active subscriptions */
+	protected final AtomicInteger size = new AtomicInteger(0);
+	/** The number of registration events processed */
+	protected final AtomicLong registrationEvents = new AtomicLong(0L);
+	/** The number of pattern evaluations performed for registration events */
+	protected final AtomicLong evaluations = new AtomicLong(0L);
+	/** The executor that processes registration events, created when the first subscription is made */
+	protected volatile ExecutorService executor = null;
+	/** Indicates if this registry has been closed */
+	protected volatile boolean closed = false;
+
+	/** The index domain key of patterns with a wildcard domain */
+	public static final String WILDCARD_DOMAIN = "*";
+	/** The index property key of patterns without a non-wildcard key property */
+	public static final String WILDCARD_PROPERTY = "";
+
+	/**
+	 * Creates a new PatternSubscriptionRegistry
+	 * @param server The MBeanServer the subscribed MBeans are registered in
+	 */
+	public PatternSubscriptionRegistry(MBeanServerConnection server) {
+		if(server==null) throw new IllegalArgumentException("The passed MBeanServer was null", new Throwable());
+		this.server = server;
+	}
+
+	/**
+	 * Subscribes the passed listener to the notifications of all the MBeans matching its ObjectName pattern, now and as they are registered
+	 * @param listener The listener whose ObjectName is the subscribed pattern
+	 * @param filter The optional filter registered with each listener registration
+	 * @param handback The handback registered with each listener registration
+	 * @return the subscription, which is the listener registered on each matching MBean
+	 */
+	public PatternSubscription subscribe(ObjectNameAwareListener listener, NotificationFilter filter, Object handback) {
+		if(listener==null) throw new IllegalArgumentException("The passed listener was null", new Throwable());
+		ObjectName pattern = listener.getObjectName();
+		if(pattern==null) throw new IllegalArgumentException("The passed listener's ObjectName was null", new Throwable());
+		if(closed) throw new IllegalStateException("The pattern subscription registry is closed", new Throwable());
+		PatternSubscription subscription = new PatternSubscription(pattern, listener, filter, handback, domainKey(pattern), propertyKey(pattern));
+		bucket(subscription.indexDomain, subscription.indexProperty).add(subscription);
+		size.incrementAndGet();
+		try {
+			start();
+			for(ObjectName objectName: server.queryNames(pattern, null)) {
+				attach(subscription, objectName);
+			}
+		} catch (Exception e) {
+			unsubscribe(subscription);
+			throw new RuntimeException("Failed to subscribe to notifications from [" + pattern + "]", e);
+		}
+		return subscription;
+	}
+
+	/**
+	 * Cancels a subscription and removes its listener from the MBeans it is attached to
+	 * @param subscription The subscription to cancel
+	 */
+	public void unsubscribe(PatternSubscription subscription) {
+		if(subscription==null) return;
+		synchronized(subscription) {
+			if(!subscription.active) return;
+			subscription.active = false;
+		}
+		Map<String, Set<PatternSubscription>> domainIndex = index.get(subscription.indexDomain);
+		if(domainIndex!=null) {
+			Set<PatternSubscription> bucket = domainIndex.get(subscription.indexProperty);
+			if(bucket!=null) bucket.remove(subscription);
+		}
+		size.decrementAndGet();
+		synchronized(subscription) {
+			for(ObjectName objectName: subscription.attached) {
+				Set<PatternSubscription> subscriptions = attachments.get(objectName);
+				if(subscriptions!=null) subscriptions.remove(subscription);
+				try {
+					server.removeNotificationListener(objectName, subscription, subscription.filter, subscription.handback);
+				} catch (Exception e) {}
+			}
+			subscription.attached.clear();
+		}
+	}
+
+	/**
+	 * Handles the registration notifications of the MBeanServerDelegate
+	 * @param notification The notification
+	 * @param handback The handback
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if(closed || !(notification instanceof MBeanServerNotification)) return;
+		final String type = notification.getType();
+		final ObjectName objectName = ((MBeanServerNotification)notification).getMBeanName();
+		ExecutorService ex = executor;
+		if(ex==null) return;
+		try {
+			ex.execute(new Runnable(){
+				public void run() {
+					if(MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(type)) {
+						registered(objectName);
+					} else if(MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(type)) {
+						unregistered(objectName);
+					}
+				}
+			});
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Attaches the subscriptions whose pattern matches the passed newly registered MBean
+	 * @param objectName The ObjectName of the registered MBean
+	 */
+	protected void registered(ObjectName objectName) {
+		registrationEvents.incrementAndGet();
+		for(PatternSubscription subscription: candidates(objectName)) {
+			evaluations.incrementAndGet();
+			if(subscription.pattern.apply(objectName)) {
+				attach(subscription, objectName);
+			}
+		}
+	}
+
+	/**
+	 * Detaches the subscriptions attached to the passed unregistered MBean
+	 * @param objectName The ObjectName of the unregistered MBean
+	 */
+	protected void unregistered(ObjectName objectName) {
+		Set<PatternSubscription> subscriptions = attachments.remove(objectName);
+		if(subscriptions==null) return;
+		for(PatternSubscription subscription: subscriptions) {
+			subscription.attached.remove(objectName);
+		}
+	}
+
+	/**
+	 * Returns the subscriptions whose pattern may match the passed ObjectName, from the index buckets of its domain and key properties
+	 * @param objectName The ObjectName
+	 * @return the candidate subscriptions
+	 */
+	protected Collection<PatternSubscription> candidates(ObjectName objectName) {
+		Set<PatternSubscription> candidates = new LinkedHashSet<PatternSubscription>();
+		for(String domain: new String[]{objectName.getDomain(), WILDCARD_DOMAIN}) {
+			Map<String, Set<PatternSubscription>> domainIndex = index.get(domain);
+			if(domainIndex==null) continue;
+			Set<PatternSubscription> bucket = domainIndex.get(WILDCARD_PROPERTY);
+			if(bucket!=null) candidates.addAll(bucket);
+			for(Map.Entry<String, String> property: objectName.getKeyPropertyList().entrySet()) {
+				bucket = domainIndex.get(property.getKey() + "=" + property.getValue());
+				if(bucket!=null) candidates.addAll(bucket);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Registers the subscription as a listener on the passed MBean, if it is not already attached and the MBean is a notification broadcaster
+	 * @param subscription The subscription
+	 * @param objectName The ObjectName of the MBean
+	 */
+	protected void attach(PatternSubscription subscription, ObjectName objectName) {
+		synchronized(subscription) {
+			if(!subscription.active || subscription.attached.contains(objectName)) return;
+			try {
+				if(!server.isInstanceOf(objectName, NotificationBroadcaster.class.getName())) return;
+				server.addNotificationListener(objectName, subscription, subscription.filter, subscription.handback);
+			} catch (Exception e) {
+				return;
+			}
+			subscription.attached.add(objectName);
+			Set<PatternSubscription> subscriptions = attachments.get(objectName);
+			if(subscriptions==null) {
+				synchronized(attachments) {
+					subscriptions = attachments.get(objectName);
+					if(subscriptions==null) {
+						subscriptions = Collections.newSetFromMap(new ConcurrentHashMap<PatternSubscription, Boolean>());
+						attachments.put(objectName, subscriptions);
+					}
+				}
+			}
+			subscriptions.add(subscription);
+		}
+	}
+
+	/**
+	 * Returns the index bucket for the passed keys, creating it if necessary
+	 * @param domain The domain key
+	 * @param property The property key
+	 * @return the index bucket
+	 */
+	protected Set<PatternSubscription> bucket(String domain, String property) {
+		synchronized(index) {
+			Map<String, Set<PatternSubscription>> domainIndex = index.get(domain);
+			if(domainIndex==null) {
+				domainIndex = new ConcurrentHashMap<String, Set<PatternSubscription>>();
+				index.put(domain, domainIndex);
+			}
+			Set<PatternSubscription> bucket = domainIndex.get(property);
+			if(bucket==null) {
+				bucket = Collections.newSetFromMap(new ConcurrentHashMap<PatternSubscription, Boolean>());
+				domainIndex.put(property, bucket);
+			}
+			return bucket;
+		}
+	}
+
+	/**
+	 * Returns the index domain key of the passed pattern
+	 * @param pattern The ObjectName pattern
+	 * @return the domain, or {@link #WILDCARD_DOMAIN} if the domain is a pattern
+	 */
+	protected static String domainKey(ObjectName pattern) {
+		return pattern.isDomainPattern() ? WILDCARD_DOMAIN : pattern.getDomain();
+	}
+
+	/**
+	 * Returns the index property key of the passed pattern, which is its first key property whose value is not a pattern
+	 * @param pattern The ObjectName pattern
+	 * @return the <code>key=value</code> property key, or {@link #WILDCARD_PROPERTY} if every key property value is a pattern
+	 */
+	protected static String propertyKey(ObjectName pattern) {
+		for(Map.Entry<String, String> property: pattern.getKeyPropertyList().entrySet()) {
+			if(!pattern.isPropertyValuePattern(property.getKey())) {
+				return property.getKey() + "=" + property.getValue();
+			}
+		}
+		return WILDCARD_PROPERTY;
+	}
+
+	/**
+	 * Registers this registry as a listener on the MBeanServerDelegate and starts the registration event executor, if not already started
+	 * @throws Exception thrown if the listener cannot be registered
+	 */
+	protected synchronized void start() throws Exception {
+		if(executor!=null) return;
+		NotificationFilterSupport filter = new NotificationFilterSupport();
+		filter.enableType(MBeanServerNotification.REGISTRATION_NOTIFICATION);
+		filter.enableType(MBeanServerNotification.UNREGISTRATION_NOTIFICATION);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			final AtomicInteger serial = new AtomicInteger(0);
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GmxPatternSubscriptions#" + serial.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+		} catch (Exception e) {
+			executor.shutdownNow();
+			executor = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Moves this registry to a new connection to the same MBeanServer after the previous connection was lost.
+	 * The listener registrations made through the lost connection are discarded, and every active subscription is attached again
+	 * to the MBeans that currently match its pattern.
+	 * @param server The new connection to the MBeanServer
+	 * @return the number of active subscriptions
+	 */
+	public int reconnect(MBeanServerConnection server) {
+		if(server==null) throw new IllegalArgumentException("The passed MBeanServer was null", new Throwable());
+		if(closed) throw new IllegalStateException("The pattern subscription registry is closed", new Throwable());
+		List<PatternSubscription> subscriptions = new ArrayList<PatternSubscription>();
+		for(Map<String, Set<PatternSubscription>> domainIndex: index.values()) {
+			for(Set<PatternSubscription> bucket: domainIndex.values()) {
+				subscriptions.addAll(bucket);
+			}
+		}
+		synchronized(this) {
+			if(executor!=null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+			this.server = server;
+		}
+		attachments.clear();
+		for(PatternSubscription subscription: subscriptions) {
+			synchronized(subscription) {
+				subscription.attached.clear();
+			}
+		}
+		try {
+			start();
+			for(PatternSubscription subscription: subscriptions) {
+				for(ObjectName objectName: server.queryNames(subscription.pattern, null)) {
+					attach(subscription, objectName);
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to restore the pattern subscriptions", e);
+		}
+		return subscriptions.size();
+	}
+
+	/**
+	 * Cancels all the subscriptions and removes this registry's listener from the MBeanServerDelegate
+	 */
+	public void close() {
+		closed = true;
+		List<PatternSubscription> subscriptions = new ArrayList<PatternSubscription>();
+		for(Map<String, Set<PatternSubscription>> domainIndex: index.values()) {
+			for(Set<PatternSubscription> bucket: domainIndex.values()) {
+				subscriptions.addAll(bucket);
+			}
+		}
+		for(PatternSubscription subscription: subscriptions) {
+			unsubscribe(subscription);
+		}
+		synchronized(this) {
+			if(executor!=null) {
+				try { server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this); } catch (Exception e) {}
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of active subscriptions
+	 * @return the number of active subscriptions
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Returns the number of registration events processed
+	 * @return the number of registration events
+	 */
+	public long getRegistrationEvents() {
+		return registrationEvents.get();
+	}
+
+	/**
+	 * Returns the number of pattern evaluations performed for registration events
+	 * @return the number of pattern evaluations
+	 */
+	public long getEvaluations() {
+		return evaluations.get();
+	}
+}
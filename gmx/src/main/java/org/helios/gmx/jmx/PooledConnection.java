@@ -0,0 +1,264 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.helios.gmx.util.JMXHelper;
+
+/**
+ * <p>Title: PooledConnection</p>
+ * <p>Description: A shared JMXConnector managed by the {@link GmxConnectionPool}, together with the
+ * connection details that every lease holder would otherwise look up for itself.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.PooledConnection</code></p>
+ */
+public class PooledConnection {
+	/** The JMXConnector's originating service URL */
+	protected final JMXServiceURL serviceURL;
+	/** The connector environment */
+	protected final Map<String, ?> environment;
+	/** The shared JMXConnector */
+	protected final JMXConnector connector;
+	/** The shared runtime wrapped MBeanServer connection */
+	protected final RuntimeMBeanServerConnection connection;
+	/** The JMXConnector's connection Id */
+	protected final String connectionId;
+	/** The mbean server default domain */
+	protected final String serverDomain;
+	/** The mbean server jvm instance runtime name */
+	protected final String jvmName;
+	/** The MBeanInfo cache shared by all lease holders */
+	protected final MBeanInfoCache infoCache;
+	/** The current lease holders, weakly referenced so leaked holders can still be finalized */
+	protected final Map<Object, Boolean> holders = new WeakHashMap<Object, Boolean>();
+	/** The number of outstanding leases */
+	protected int leases = 0;
+	/** The time the last lease was released */
+	protected long lastReleased = System.currentTimeMillis();
+	/** Indicates the connector has been closed */
+	protected boolean closed = false;
+	/** Indicates the connector has failed and should not be leased again */
+	protected volatile boolean broken = false;
+
+	/**
+	 * Creates a new PooledConnection, connecting to the passed service URL
+	 * @param serviceURL The JMXServiceURL to connect to
+	 * @param environment The connector environment
+	 */
+	PooledConnection(JMXServiceURL serviceURL, Map<String, ?> environment) {
+		this.serviceURL = serviceURL;
+		this.environment = environment;
+		try {
+			connector = JMXConnectorFactory.connect(serviceURL, environment);
+			connection = RuntimeMBeanServerConnection.getInstance(connector.getMBeanServerConnection());
+			connectionId = connector.getConnectionId();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to connect to remote MBeanServer on URL [" + serviceURL + "]", e);
+		}
+		serverDomain = connection.getDefaultDomain();
+		String name = null;
+		try {
+			name = (String)connection.getAttribute(JMXHelper.objectName(ManagementFactory.RUNTIME_MXBEAN_NAME), "Name");
+		} catch (Exception e) {}
+		jvmName = name;
+		infoCache = new MBeanInfoCache(serviceURL + "/" + connectionId, connection);
+		try {
+			connector.addConnectionNotificationListener(infoCache, null, null);
+		} catch (Exception e) {}
+	}
+
+	/**
+	 * Acquires a lease on this connection for the passed holder
+	 * @param holder The lease holder
+	 * @return true if the lease was acquired, false if this connection has been closed or is broken
+	 */
+	synchronized boolean acquire(Object holder) {
+		if(closed || broken) return false;
+		leases++;
+		holders.put(holder, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * Checks that an unleased connector is still live before it is handed out again, since a connector 
+	 * that has been sitting idle may have lost its server without a failure notification being delivered.
+	 * Leased connectors are not checked, as their failures surface through the connection notifications.
+	 * @return true if the connector is live or leased, false if it has been closed or has failed
+	 */
+	synchronized boolean validate() {
+		if(closed || broken) return false;
+		if(leases>0) return true;
+		try {
+			connector.getConnectionId();
+			return true;
+		} catch (Exception e) {
+			broken = true;
+			return false;
+		}
+	}
+
+	/**
+	 * Releases a lease on this connection
+	 * @param holder The lease holder
+	 * @return the number of remaining leases
+	 */
+	synchronized int release(Object holder) {
+		if(holders.remove(holder)!=null) {
+			leases--;
+			if(leases==0) lastReleased = System.currentTimeMillis();
+		}
+		return leases;
+	}
+
+	/**
+	 * Closes the connector if it has no leases and has been idle for longer than the passed timeout
+	 * @param now The current time
+	 * @param idleTimeout The idle timeout in ms. A value less than zero closes regardless of idle time.
+	 * @return true if the connector was closed
+	 */
+	synchronized boolean closeIfIdle(long now, long idleTimeout) {
+		if(closed || leases>0) return false;
+		if(!broken && idleTimeout>=0 && (now-lastReleased) < idleTimeout) return false;
+		close();
+		return true;
+	}
+
+	/**
+	 * Unconditionally closes the connector
+	 */
+	synchronized void close() {
+		closed = true;
+		infoCache.close(null);
+		try { connector.close(); } catch (Exception e) {}
+	}
+
+	/**
+	 * Returns the number of outstanding leases
+	 * @return the number of outstanding leases
+	 */
+	public synchronized int getLeases() {
+		return leases;
+	}
+
+	/**
+	 * Indicates if the connector has been closed
+	 * @return true if the connector has been closed
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Indicates if the connector has failed
+	 * @return true if the connector has failed
+	 */
+	public boolean isBroken() {
+		return broken;
+	}
+
+	/**
+	 * Returns the originating service URL
+	 * @return the serviceURL
+	 */
+	public JMXServiceURL getServiceURL() {
+		return serviceURL;
+	}
+
+	/**
+	 * Returns the connector environment
+	 * @return the connector environment
+	 */
+	public Map<String, ?> getEnvironment() {
+		return Collections.unmodifiableMap(environment);
+	}
+
+	/**
+	 * Returns the shared JMXConnector
+	 * @return the connector
+	 */
+	public JMXConnector getConnector() {
+		return connector;
+	}
+
+	/**
+	 * Returns the shared runtime wrapped MBeanServer connection
+	 * @return the connection
+	 */
+	public RuntimeMBeanServerConnection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Returns the connector's connection Id
+	 * @return the connectionId
+	 */
+	public String getConnectionId() {
+		return connectionId;
+	}
+
+	/**
+	 * Returns the MBeanServer default domain
+	 * @return the serverDomain
+	 */
+	public String getServerDomain() {
+		return serverDomain;
+	}
+
+	/**
+	 * Returns the MBeanInfo cache for this connection
+	 * @return the MBeanInfo cache
+	 */
+	public MBeanInfoCache getMBeanInfoCache() {
+		return infoCache;
+	}
+
+	/**
+	 * Returns the JVM Runtime name for the connected JVM
+	 * @return the jvmName which may be null
+	 */
+	public String getJvmName() {
+		return jvmName;
+	}
+
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("PooledConnection [")
+			.append(serviceURL).append(", leases:").append(getLeases())
+			.append(", broken:").append(broken).append("]").toString();
+	}
+}
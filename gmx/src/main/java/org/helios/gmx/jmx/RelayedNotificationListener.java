@@ -0,0 +1,106 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx;
+
+import groovy.lang.Closure;
+
+import javax.management.Notification;
+import javax.management.ObjectName;
+
+import org.helios.gmx.jmx.remote.NotificationRelay;
+
+/**
+ * <p>Title: RelayedNotificationListener</p>
+ * <p>Description: A {@link ClosureWrappingNotificationListener} for a notification subscription that is filtered and aggregated by a {@link NotificationRelay}.
+ * It unwraps relay notifications and passes the original notification to the wrapped closure.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.RelayedNotificationListener</code></p>
+ */
+public class RelayedNotificationListener extends ClosureWrappingNotificationListener {
+	/**  */
+	private static final long serialVersionUID = -3551604381562740583L;
+	/** The ObjectName of the MBean emitting the relay notifications, or null if the relay runs in this JVM */
+	protected final ObjectName relayObjectName;
+	/** The relay subscription id */
+	protected volatile String subscriptionId = null;
+
+	/**
+	 * Creates a new RelayedNotificationListener
+	 * @param expectHandback Indicates if the notification expects a handback
+	 * @param objectName The ObjectName of the subscribed MBean
+	 * @param closure The wrapped closure
+	 * @param relayObjectName The ObjectName of the MBean emitting the relay notifications, or null if the relay runs in this JVM
+	 * @param arguments Additional closure arguments
+	 */
+	public RelayedNotificationListener(boolean expectHandback, ObjectName objectName, Closure<?> closure, ObjectName relayObjectName, Object...arguments) {
+		super(expectHandback, objectName, closure, arguments);
+		this.relayObjectName = relayObjectName;
+	}
+
+	/**
+	 * Creates a new RelayedNotificationListener with the same closure, arguments and batching mode as the passed listener
+	 * @param template The listener to copy
+	 * @param relayObjectName The ObjectName of the MBean emitting the relay notifications, or null if the relay runs in this JVM
+	 */
+	public RelayedNotificationListener(ClosureWrappingNotificationListener template, ObjectName relayObjectName) {
+		super(template);
+		this.relayObjectName = relayObjectName;
+	}
+
+	/**
+	 * Unwraps relay notifications and passes the original notification to the wrapped closure
+	 * @param notification The received notification
+	 * @param handback The handback
+	 */
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		super.handleNotification(NotificationRelay.unwrap(notification), handback);
+	}
+
+	/**
+	 * Returns the ObjectName of the MBean emitting the relay notifications
+	 * @return the relay ObjectName, or null if the relay runs in this JVM
+	 */
+	public ObjectName getRelayObjectName() {
+		return relayObjectName;
+	}
+
+	/**
+	 * Returns the relay subscription id
+	 * @return the subscription id
+	 */
+	public String getSubscriptionId() {
+		return subscriptionId;
+	}
+
+	/**
+	 * Sets the relay subscription id
+	 * @param subscriptionId the subscription id
+	 */
+	public void setSubscriptionId(String subscriptionId) {
+		this.subscriptionId = subscriptionId;
+	}
+}
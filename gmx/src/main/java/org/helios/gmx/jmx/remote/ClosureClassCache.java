@@ -0,0 +1,189 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+import org.helios.gmx.classloading.CachingMLet;
+import org.helios.gmx.classloading.ReverseClassLoader;
+import org.helios.gmx.util.LRUCache;
+
+/**
+ * <p>Title: ClosureClassCache</p>
+ * <p>Description: A content addressed, size bounded, LRU cache of the class loaders that define remotely executed closure classes.
+ * Each entry is keyed by the closure class name and a hash of its bytecode, and holds a class loader that loads the closure class,
+ * and the closures nested in it, from the reverse class loader on first use and then keeps them defined. Repeat executions of the same
+ * closure therefore need no class loading and no HTTP requests back to the client, while closures that share a class name but not
+ * bytecode, such as two <code>Script1</code> compilations, never see each other's classes. On first use, the closure class and its nested
+ * closures are prefetched as one bundle from the reverse class loader instead of one request per class.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureClassCache</code></p>
+ */
+public class ClosureClassCache {
+	/** The cached closure class loaders keyed by closure key */
+	protected final LRUCache<String, ClassLoader> loaders;
+	
+	/** The default maximum number of cached closure classes */
+	public static final int DEFAULT_MAX_SIZE = 256;
+	/** The separator between the class name and the bytecode hash in a closure key */
+	public static final char KEY_SEPARATOR = '@';
+	
+	/**
+	 * Creates a new ClosureClassCache
+	 * @param maxSize The maximum number of cached closure classes
+	 */
+	public ClosureClassCache(int maxSize) {
+		loaders = new LRUCache<String, ClassLoader>(maxSize);
+	}
+	
+	/**
+	 * Creates a closure key
+	 * @param className The closure class name
+	 * @param hash The hash of the closure class bytecode
+	 * @return the closure key
+	 */
+	public static String key(String className, String hash) {
+		return className + KEY_SEPARATOR + hash;
+	}
+	
+	/**
+	 * Returns the class loader for the closure identified by the passed key, creating it on a cache miss
+	 * @param closureKey The closure key as created by {@link #key(String, String)}
+	 * @param codeBase The URL of the reverse class loader to load the closure classes from
+	 * @param parent The parent class loader
+	 * @return the closure class loader
+	 */
+	public ClassLoader getClassLoader(String closureKey, URL codeBase, ClassLoader parent) {
+		if(closureKey==null) throw new IllegalArgumentException("The passed closure key was null", new Throwable());
+		ClassLoader loader = loaders.get(closureKey);
+		if(loader==null) {
+			int index = closureKey.lastIndexOf(KEY_SEPARATOR);
+			String className = index==-1 ? closureKey : closureKey.substring(0, index);
+			loader = loaders.putIfAbsent(closureKey, new ClosureClassLoader(className, codeBase, parent));
+		}
+		return loader;
+	}
+	
+	/**
+	 * Returns the cache
+	 * @return the cache
+	 */
+	public LRUCache<String, ClassLoader> getCache() {
+		return loaders;
+	}
+	
+	/**
+	 * <p>Title: ClosureClassLoader</p>
+	 * <p>Description: A class loader that loads a closure class and its nested closure classes itself, child first,
+	 * and delegates everything else to its parent. The closure classes are defined from a bundle fetched in a single request,
+	 * falling back to loading each class from the code base if the bundle is not available.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.ClosureClassCache.ClosureClassLoader</code></p>
+	 */
+	protected static class ClosureClassLoader extends URLClassLoader {
+		/** The closure class name which is also the name prefix of its nested closures */
+		protected final String closureClassName;
+		/** The code base URL of the reverse class loader */
+		protected final URL codeBase;
+		/** The bundled bytecode of the closure classes not yet defined, keyed by class name, or null if the bundle has not been fetched */
+		protected Map<String, byte[]> bundle = null;
+		
+		/**
+		 * Creates a new ClosureClassLoader
+		 * @param closureClassName The closure class name
+		 * @param codeBase The URL of the reverse class loader
+		 * @param parent The parent class loader
+		 */
+		ClosureClassLoader(String closureClassName, URL codeBase, ClassLoader parent) {
+			super(new URL[]{codeBase}, parent);
+			this.closureClassName = closureClassName;
+			this.codeBase = codeBase;
+		}
+		
+		/**
+		 * Fetches the bundle of the closure class and its nested closures from the reverse class loader
+		 * @return the bundled bytecode keyed by class name, which is empty if the bundle could not be fetched
+		 */
+		protected Map<String, byte[]> fetchBundle() {
+			Map<String, byte[]> classes = new HashMap<String, byte[]>();
+			JarInputStream jarIn = null;
+			try {
+				URL bundleUrl = new URL(codeBase, ReverseClassLoader.HTTP_URI_BUNDLE_PREFIX + closureClassName.replace('.', '/') + ".class");
+				jarIn = new JarInputStream(CachingMLet.connect(bundleUrl, null).getInputStream());
+				JarEntry entry = null;
+				byte[] buffer = new byte[8192];
+				while((entry=jarIn.getNextJarEntry())!=null) {
+					if(!entry.getName().endsWith(".class")) continue;
+					ByteArrayOutputStream baos = new ByteArrayOutputStream();
+					int bytesRead = -1;
+					while((bytesRead=jarIn.read(buffer))!=-1) {
+						baos.write(buffer, 0, bytesRead);
+					}
+					classes.put(entry.getName().replace(".class", "").replace('/', '.'), baos.toByteArray());
+				}
+			} catch (Exception e) {
+				classes.clear();
+			} finally {
+				if(jarIn!=null) try { jarIn.close(); } catch (Exception e) {}
+			}
+			return classes;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.ClassLoader#loadClass(java.lang.String, boolean)
+		 */
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if(!name.startsWith(closureClassName)) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> clazz = findLoadedClass(name);
+			if(clazz==null) {
+				if(bundle==null) bundle = fetchBundle();
+				byte[] bytecode = bundle.remove(name);
+				if(bytecode!=null) {
+					clazz = defineClass(name, bytecode, 0, bytecode.length);
+				} else {
+					try {
+						clazz = findClass(name);
+					} catch (ClassNotFoundException cnfe) {
+						return super.loadClass(name, resolve);
+					}
+				}
+			}
+			if(resolve) resolveClass(clazz);
+			return clazz;
+		}
+	}
+}
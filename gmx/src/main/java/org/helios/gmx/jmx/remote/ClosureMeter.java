@@ -0,0 +1,432 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.helios.gmx.util.JMXHelper;
+import org.helios.gmx.util.LRUCache;
+
+/**
+ * <p>Title: ClosureMeter</p>
+ * <p>Description: Measures closure invocations and aggregates the measurements per closure class into {@link ClosureMetrics}.
+ * CPU time and allocated bytes are read from the {@link ThreadMXBean} for the invoking thread, before and after the closure runs, 
+ * and the serialized request and response sizes are counted without buffering the serialized bytes.
+ * The number of tracked closure classes is bounded, and the metrics of the least recently invoked class are dropped first.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureMeter</code></p>
+ */
+public class ClosureMeter implements ClosureMeterMBean {
+	/** The default maximum number of tracked closure classes */
+	public static final int DEFAULT_MAX_CLASSES = 256;
+	/** The platform thread MXBean */
+	protected static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	/** Indicates if the current thread's CPU time can be measured */
+	protected static final boolean cpuTimeSupported = initCpuTime();
+	/** Indicates if the current thread's allocated bytes can be measured */
+	protected static final boolean allocationSupported = initAllocation();
+	
+	/** The per closure class metrics */
+	protected final LRUCache<String, ClosureMetrics> metrics;
+	/** The MBeanServer where this meter is registered */
+	protected MBeanServer server = null;
+	/** The ObjectName this meter is registered under */
+	protected ObjectName objectName = null;
+	/** Indicates if invocations are being measured */
+	protected volatile boolean enabled = true;
+	
+	/**
+	 * Creates a new ClosureMeter
+	 * @param maxClasses The maximum number of tracked closure classes
+	 */
+	public ClosureMeter(int maxClasses) {
+		metrics = new LRUCache<String, ClosureMetrics>(maxClasses);
+	}
+	
+	/**
+	 * Enables thread CPU time measurement if it is supported
+	 * @return true if the current thread's CPU time can be measured
+	 */
+	private static boolean initCpuTime() {
+		try {
+			if(!threadMXBean.isCurrentThreadCpuTimeSupported()) return false;
+			if(!threadMXBean.isThreadCpuTimeEnabled()) threadMXBean.setThreadCpuTimeEnabled(true);
+			return true;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Enables thread allocation measurement if the JVM supports it
+	 * @return true if the current thread's allocated bytes can be measured
+	 */
+	private static boolean initAllocation() {
+		try {
+			if(!(threadMXBean instanceof com.sun.management.ThreadMXBean)) return false;
+			com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean)threadMXBean;
+			if(!tmx.isThreadAllocatedMemorySupported()) return false;
+			if(!tmx.isThreadAllocatedMemoryEnabled()) tmx.setThreadAllocatedMemoryEnabled(true);
+			return true;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the CPU time of the current thread
+	 * @return the CPU time in ns. or -1 if it is not supported
+	 */
+	protected static long cpuTime() {
+		return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : -1L;
+	}
+	
+	/**
+	 * Returns the number of bytes allocated by the current thread
+	 * @return the allocated bytes or -1 if it is not supported
+	 */
+	protected static long allocatedBytes() {
+		return allocationSupported ? ((com.sun.management.ThreadMXBean)threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+	}
+	
+	/**
+	 * Returns the serialized size of the passed object, counting the bytes as they are written rather than buffering them
+	 * @param value The object to size
+	 * @return the serialized size in bytes, zero for null, or -1 if the object could not be serialized
+	 */
+	public static long serializedSize(Object value) {
+		if(value==null) return 0L;
+		final long[] count = new long[1];
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(new OutputStream(){
+				@Override
+				public void write(int b) {
+					count[0]++;
+				}
+				@Override
+				public void write(byte[] b, int off, int len) {
+					count[0] += len;
+				}
+			});
+			oos.writeObject(value);
+			oos.flush();
+			return count[0];
+		} catch (Exception e) {
+			return -1L;
+		}
+	}
+	
+	/**
+	 * Registers this meter as an MBean next to the passed RemotableMBeanServer
+	 * @param server The MBeanServer to register in
+	 * @param owner The ObjectName of the owning RemotableMBeanServer, whose domain, host and port key properties qualify this meter's ObjectName
+	 */
+	public synchronized void register(MBeanServer server, ObjectName owner) {
+		if(server==null || owner==null) return;
+		ObjectName on = JMXHelper.objectName(String.format(METER_ON_TEMPLATE, 
+				owner.getKeyProperty("domain"), owner.getKeyProperty("host"), owner.getKeyProperty("port")));
+		try {
+			server.registerMBean(this, on);
+			this.server = server;
+			objectName = on;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to register ClosureMeter [" + on + "]", e);
+		}
+	}
+	
+	/**
+	 * Unregisters this meter's MBean, if it is registered
+	 */
+	public synchronized void unregister() {
+		if(server==null) return;
+		try {
+			if(server.isRegistered(objectName)) server.unregisterMBean(objectName);
+		} catch (Exception e) {}
+		server = null;
+		objectName = null;
+	}
+	
+	/**
+	 * Returns the ObjectName this meter is registered under
+	 * @return the ObjectName, or null if the meter is not registered
+	 */
+	public synchronized ObjectName getObjectName() {
+		return objectName;
+	}
+	
+	/**
+	 * Returns the serialized size of an invocation request
+	 * @param closureBytes The serialized closure, or null if the closure was not sent with the request
+	 * @param arguments The closure arguments
+	 * @return the request size in bytes, or -1 if metering is disabled
+	 */
+	public long requestSize(byte[] closureBytes, Object[] arguments) {
+		if(!enabled) return -1L;
+		long size = closureBytes==null ? 0L : closureBytes.length;
+		if(arguments!=null && arguments.length>0) {
+			long argSize = serializedSize(arguments);
+			if(argSize<0) return -1L;
+			size += argSize;
+		}
+		return size;
+	}
+	
+	/**
+	 * Creates a probe to measure one invocation of the named closure class
+	 * @param closureClass The closure class name
+	 * @param requestBytes The serialized size of the request, or -1 if it is not known
+	 * @return a new probe
+	 */
+	public Probe probe(String closureClass, long requestBytes) {
+		return new Probe(closureClass, requestBytes);
+	}
+	
+	/**
+	 * Returns the metrics for the named closure class, creating them if necessary
+	 * @param closureClass The closure class name
+	 * @return the closure class metrics
+	 */
+	public ClosureMetrics getMetrics(String closureClass) {
+		ClosureMetrics cm = metrics.get(closureClass);
+		if(cm!=null) return cm;
+		return metrics.putIfAbsent(closureClass, new ClosureMetrics(closureClass));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getClosureClasses()
+	 */
+	@Override
+	public String[] getClosureClasses() {
+		return metrics.snapshot().keySet().toArray(new String[0]);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getClosureClassCount()
+	 */
+	@Override
+	public int getClosureClassCount() {
+		return metrics.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getMaxClosureClasses()
+	 */
+	@Override
+	public int getMaxClosureClasses() {
+		return metrics.getMaxSize();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#setMaxClosureClasses(int)
+	 */
+	@Override
+	public void setMaxClosureClasses(int maxClasses) {
+		metrics.setMaxSize(maxClasses);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getTotalInvocations()
+	 */
+	@Override
+	public long getTotalInvocations() {
+		long total = 0;
+		for(ClosureMetrics cm: metrics.snapshot().values()) {
+			total += cm.getInvocations();
+		}
+		return total;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getSummary()
+	 */
+	@Override
+	public Map<String, Map<String, Long>> getSummary() {
+		Map<String, Map<String, Long>> summary = new LinkedHashMap<String, Map<String, Long>>();
+		for(ClosureMetrics cm: metrics.snapshot().values()) {
+			summary.put(cm.getClosureClass(), cm.getSummary());
+		}
+		return summary;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getClosureSummary(java.lang.String)
+	 */
+	@Override
+	public Map<String, Long> getClosureSummary(String closureClass) {
+		ClosureMetrics cm = metrics.snapshot().get(closureClass);
+		return cm==null ? null : cm.getSummary();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#getClosureHistogram(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public long[] getClosureHistogram(String closureClass, String metric) {
+		ClosureMetrics cm = metrics.snapshot().get(closureClass);
+		return cm==null ? null : cm.getHistogram(metric).getBuckets();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for(ClosureMetrics cm: metrics.snapshot().values()) {
+			cm.reset();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#clear()
+	 */
+	@Override
+	public void clear() {
+		metrics.clear();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#setEnabled(boolean)
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#isCpuTimeSupported()
+	 */
+	@Override
+	public boolean isCpuTimeSupported() {
+		return cpuTimeSupported;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.ClosureMeterMBean#isAllocationSupported()
+	 */
+	@Override
+	public boolean isAllocationSupported() {
+		return allocationSupported;
+	}
+	
+	/**
+	 * <p>Title: Probe</p>
+	 * <p>Description: Measures a single closure invocation. The probe must be started and stopped on the thread that invokes the closure.</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.ClosureMeter.Probe</code></p>
+	 */
+	public class Probe {
+		/** The closure class name */
+		protected final String closureClass;
+		/** The serialized request size */
+		protected final long requestBytes;
+		/** Indicates if the meter was enabled when the probe was created */
+		protected final boolean active;
+		/** The wall clock time at start */
+		protected long wallStart;
+		/** The thread CPU time at start */
+		protected long cpuStart;
+		/** The thread allocated bytes at start */
+		protected long allocStart;
+		/** The invocation metrics, available once the probe is stopped */
+		protected InvocationMetrics result = null;
+		
+		/**
+		 * Creates a new Probe
+		 * @param closureClass The closure class name
+		 * @param requestBytes The serialized request size
+		 */
+		protected Probe(String closureClass, long requestBytes) {
+			this.closureClass = closureClass;
+			this.requestBytes = requestBytes;
+			active = enabled;
+		}
+		
+		/**
+		 * Starts the measurement
+		 */
+		public void start() {
+			if(!active) return;
+			allocStart = allocatedBytes();
+			cpuStart = cpuTime();
+			wallStart = System.nanoTime();
+		}
+		
+		/**
+		 * Stops the measurement, sizes the response and records the invocation against the closure class
+		 * @param value The closure return value
+		 * @param failed true if the closure threw an exception
+		 * @return the invocation metrics, or null if the meter was disabled
+		 */
+		public InvocationMetrics stop(Object value, boolean failed) {
+			if(!active) return null;
+			long wall = System.nanoTime()-wallStart;
+			long cpu = cpuStart<0 ? -1L : cpuTime()-cpuStart;
+			long alloc = allocStart<0 ? -1L : allocatedBytes()-allocStart;
+			result = new InvocationMetrics(closureClass, wall, cpu, alloc, requestBytes, failed ? -1L : serializedSize(value));
+			ClosureMeter.this.getMetrics(closureClass).record(result, failed);
+			return result;
+		}
+		
+		/**
+		 * Returns the invocation metrics
+		 * @return the invocation metrics, or null if the probe has not been stopped or the meter was disabled
+		 */
+		public InvocationMetrics getMetrics() {
+			return result;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.util.Map;
+
+/**
+ * <p>Title: ClosureMeterMBean</p>
+ * <p>Description: JMX MBean interface for the {@link ClosureMeter}</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureMeterMBean</code></p>
+ */
+public interface ClosureMeterMBean {
+	/** The ObjectName template of the closure metrics MBeans, where the parameters are the domain, host and port key properties of the owning RemotableMBeanServer */
+	public static final String METER_ON_TEMPLATE = "org.helios.gmx:service=ClosureMetrics,domain=%s,host=%s,port=%s";
+
+	/**
+	 * Indicates if closure invocations are being measured
+	 * @return true if closure invocations are being measured
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Enables or disables the measurement of closure invocations
+	 * @param enabled true to measure closure invocations
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Indicates if the CPU time of the invoking thread can be measured in this JVM
+	 * @return true if thread CPU time is supported
+	 */
+	public boolean isCpuTimeSupported();
+
+	/**
+	 * Indicates if the bytes allocated by the invoking thread can be measured in this JVM
+	 * @return true if thread allocation accounting is supported
+	 */
+	public boolean isAllocationSupported();
+
+	/**
+	 * Returns the names of the closure classes with metrics
+	 * @return the metered closure class names
+	 */
+	public String[] getClosureClasses();
+
+	/**
+	 * Returns the number of closure classes with metrics
+	 * @return the number of metered closure classes
+	 */
+	public int getClosureClassCount();
+
+	/**
+	 * Returns the maximum number of closure classes with metrics. The metrics of the least recently invoked class are dropped first.
+	 * @return the maximum number of metered closure classes
+	 */
+	public int getMaxClosureClasses();
+
+	/**
+	 * Sets the maximum number of closure classes with metrics
+	 * @param maxClasses the maximum number of metered closure classes
+	 */
+	public void setMaxClosureClasses(int maxClasses);
+
+	/**
+	 * Returns the total number of measured invocations across all metered closure classes
+	 * @return the total number of measured invocations
+	 */
+	public long getTotalInvocations();
+
+	/**
+	 * Returns the metric summaries of all metered closure classes
+	 * @return a map of metric summaries keyed by closure class name
+	 * @see ClosureMetrics#getSummary()
+	 */
+	public Map<String, Map<String, Long>> getSummary();
+
+	/**
+	 * Returns the metric summary of the named closure class
+	 * @param closureClass The closure class name
+	 * @return the metric summary, or null if the closure class is not metered
+	 * @see ClosureMetrics#getSummary()
+	 */
+	public Map<String, Long> getClosureSummary(String closureClass);
+
+	/**
+	 * Returns the log2 histogram of one metric of the named closure class, where bucket <code>n</code> counts the values less than <code>2<sup>n</sup></code>
+	 * @param closureClass The closure class name
+	 * @param metric One of the {@link ClosureMetrics#METRIC_NAMES}
+	 * @return the bucket counts, or null if the closure class is not metered
+	 */
+	public long[] getClosureHistogram(String closureClass, String metric);
+
+	/**
+	 * Resets the metrics of all metered closure classes
+	 */
+	public void reset();
+
+	/**
+	 * Drops the metrics of all closure classes
+	 */
+	public void clear();
+}
@@ -0,0 +1,163 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.helios.gmx.util.Log2Histogram;
+
+/**
+ * <p>Title: ClosureMetrics</p>
+ * <p>Description: The aggregated invocation metrics of one closure class, kept as log2 histograms so that recording
+ * an invocation costs a handful of atomic increments.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureMetrics</code></p>
+ */
+public class ClosureMetrics {
+	/** The names of the measured metrics */
+	public static final String[] METRIC_NAMES = {"WallTime", "CpuTime", "AllocatedBytes", "RequestBytes", "ResponseBytes"};
+	
+	/** The closure class name */
+	protected final String closureClass;
+	/** The histograms, in the order of {@link #METRIC_NAMES} */
+	protected final Log2Histogram[] histograms = new Log2Histogram[METRIC_NAMES.length];
+	/** The number of failed invocations */
+	protected final AtomicLong errors = new AtomicLong(0L);
+	/** The time of the last invocation */
+	protected volatile long lastInvocation = 0L;
+	
+	/**
+	 * Creates a new ClosureMetrics
+	 * @param closureClass The closure class name
+	 */
+	public ClosureMetrics(String closureClass) {
+		this.closureClass = closureClass;
+		for(int i = 0; i < histograms.length; i++) {
+			histograms[i] = new Log2Histogram();
+		}
+	}
+	
+	/**
+	 * Records one invocation
+	 * @param metrics The invocation's metrics
+	 * @param failed true if the invocation threw an exception
+	 */
+	public void record(InvocationMetrics metrics, boolean failed) {
+		histograms[0].record(metrics.getWallTime());
+		histograms[1].record(metrics.getCpuTime());
+		histograms[2].record(metrics.getAllocatedBytes());
+		histograms[3].record(metrics.getRequestBytes());
+		histograms[4].record(metrics.getResponseBytes());
+		if(failed) errors.incrementAndGet();
+		lastInvocation = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Returns the histogram of the named metric
+	 * @param metric One of the {@link #METRIC_NAMES}
+	 * @return the histogram
+	 */
+	public Log2Histogram getHistogram(String metric) {
+		for(int i = 0; i < METRIC_NAMES.length; i++) {
+			if(METRIC_NAMES[i].equals(metric)) return histograms[i];
+		}
+		throw new IllegalArgumentException("Unknown closure metric [" + metric + "]", new Throwable());
+	}
+	
+	/**
+	 * Returns a summary of the metrics keyed by name: the invocation and error counts, the last invocation time, 
+	 * and the mean, approximate 99th percentile and maximum of each measured metric 
+	 * @return the metric summary
+	 */
+	public Map<String, Long> getSummary() {
+		Map<String, Long> summary = new LinkedHashMap<String, Long>();
+		summary.put("Invocations", getInvocations());
+		summary.put("Errors", getErrors());
+		summary.put("LastInvocation", lastInvocation);
+		for(int i = 0; i < METRIC_NAMES.length; i++) {
+			summary.put(METRIC_NAMES[i] + "Mean", histograms[i].getMean());
+			summary.put(METRIC_NAMES[i] + "P99", histograms[i].getPercentile(99));
+			summary.put(METRIC_NAMES[i] + "Max", histograms[i].getMax());
+		}
+		return summary;
+	}
+	
+	/**
+	 * Returns the closure class name
+	 * @return the closure class name
+	 */
+	public String getClosureClass() {
+		return closureClass;
+	}
+	
+	/**
+	 * Returns the number of measured invocations
+	 * @return the number of invocations
+	 */
+	public long getInvocations() {
+		return histograms[0].getCount();
+	}
+	
+	/**
+	 * Returns the number of measured invocations that threw an exception
+	 * @return the number of failed invocations
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	/**
+	 * Returns the time of the last measured invocation
+	 * @return the last invocation timestamp, or zero if there have been none
+	 */
+	public long getLastInvocation() {
+		return lastInvocation;
+	}
+	
+	/**
+	 * Resets the metrics
+	 */
+	public void reset() {
+		for(Log2Histogram h: histograms) {
+			h.reset();
+		}
+		errors.set(0L);
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("ClosureMetrics [").append(closureClass)
+			.append(", invocations:").append(getInvocations())
+			.append(", errors:").append(getErrors())
+			.append(", wall:").append(histograms[0]).append("]").toString();
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import groovy.lang.Closure;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: ClosureRegistry</p>
+ * <p>Description: A registry of installed closures keyed by handle, so that a client can ship a closure once 
+ * and then invoke it by sending only the handle and its arguments. Each handle belongs to a client and expires 
+ * after it has not been invoked for the idle timeout. Expired handles are swept lazily by the registry's own calls 
+ * so the registry needs no thread in the target JVM.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureRegistry</code></p>
+ */
+public class ClosureRegistry {
+	/** The registered closures keyed by handle */
+	protected final Map<String, RegisteredClosure> closures = new ConcurrentHashMap<String, RegisteredClosure>();
+	/** The handle serial number factory */
+	protected final AtomicLong serial = new AtomicLong(0L);
+	/** The number of handles that expired */
+	protected final AtomicLong expirations = new AtomicLong(0L);
+	/** The idle timeout of a handle in ms. */
+	protected volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	/** The time of the last expiry sweep */
+	protected volatile long lastSweep = System.currentTimeMillis();
+	
+	/** The default idle timeout of a handle in ms. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 300000L;
+	
+	/**
+	 * Registers the passed closure and returns its handle
+	 * @param clientId The identifier of the registering client
+	 * @param closure The closure to register
+	 * @return the closure handle
+	 */
+	public String register(String clientId, Closure<?> closure) {
+		if(clientId==null) throw new IllegalArgumentException("The passed client id was null", new Throwable());
+		if(closure==null) throw new IllegalArgumentException("The passed closure was null", new Throwable());
+		sweep();
+		String handle = Long.toString(serial.incrementAndGet(), Character.MAX_RADIX);
+		closures.put(handle, new RegisteredClosure(clientId, closure));
+		return handle;
+	}
+	
+	/**
+	 * Returns the closure registered under the passed handle and marks the handle as used
+	 * @param handle The closure handle
+	 * @return the registered closure
+	 * @throws UnknownClosureHandleException thrown if the handle is not registered or has expired
+	 */
+	public Closure<?> get(String handle) {
+		sweep();
+		RegisteredClosure rc = handle==null ? null : closures.get(handle);
+		if(rc==null) throw new UnknownClosureHandleException(handle);
+		rc.lastUsed = System.currentTimeMillis();
+		return rc.closure;
+	}
+	
+	/**
+	 * Unregisters the closure with the passed handle
+	 * @param handle The closure handle
+	 * @return true if the handle was registered
+	 */
+	public boolean unregister(String handle) {
+		return handle!=null && closures.remove(handle)!=null;
+	}
+	
+	/**
+	 * Unregisters all the closures registered by the passed client
+	 * @param clientId The client identifier
+	 * @return the number of unregistered closures
+	 */
+	public int unregisterClient(String clientId) {
+		int removed = 0;
+		for(Iterator<RegisteredClosure> iter = closures.values().iterator(); iter.hasNext();) {
+			if(iter.next().clientId.equals(clientId)) {
+				iter.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+	
+	/**
+	 * Removes the handles that have been idle for longer than the idle timeout.
+	 * The registry is swept at most once per tenth of the idle timeout.
+	 */
+	protected void sweep() {
+		long now = System.currentTimeMillis();
+		long timeout = idleTimeout;
+		if(now-lastSweep < timeout/10) return;
+		lastSweep = now;
+		for(Iterator<RegisteredClosure> iter = closures.values().iterator(); iter.hasNext();) {
+			if(now-iter.next().lastUsed > timeout) {
+				iter.remove();
+				expirations.incrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of registered closures
+	 * @return the number of registered closures
+	 */
+	public int size() {
+		return closures.size();
+	}
+	
+	/**
+	 * Returns the number of handles that expired
+	 * @return the number of expired handles
+	 */
+	public long getExpirations() {
+		return expirations.get();
+	}
+	
+	/**
+	 * Returns the idle timeout of a handle
+	 * @return the idle timeout in ms.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	/**
+	 * Sets the idle timeout of a handle
+	 * @param idleTimeout the idle timeout in ms.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		if(idleTimeout<1) throw new IllegalArgumentException("Invalid idle timeout [" + idleTimeout + "]", new Throwable());
+		this.idleTimeout = idleTimeout;
+	}
+	
+	/**
+	 * <p>Title: RegisteredClosure</p>
+	 * <p>Description: A registered closure and its owning client</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.ClosureRegistry.RegisteredClosure</code></p>
+	 */
+	protected static class RegisteredClosure {
+		/** The registering client's identifier */
+		protected final String clientId;
+		/** The registered closure */
+		protected final Closure<?> closure;
+		/** The time the closure was last invoked */
+		protected volatile long lastUsed = System.currentTimeMillis();
+		
+		/**
+		 * Creates a new RegisteredClosure
+		 * @param clientId The registering client's identifier
+		 * @param closure The registered closure
+		 */
+		RegisteredClosure(String clientId, Closure<?> closure) {
+			this.clientId = clientId;
+			this.closure = closure;
+		}
+	}
+}
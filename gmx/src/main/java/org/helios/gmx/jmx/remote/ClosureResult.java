@@ -0,0 +1,181 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+
+/**
+ * <p>Title: ClosureResult</p>
+ * <p>Description: The outcome of one closure in a batch execution: either the closure's return value or the exception it threw,
+ * together with the time the closure took. Exceptions are copied into plain {@link RuntimeException}s carrying the original
+ * class name, message and stack trace so that they can be returned to a client that does not have the exception's class.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureResult</code></p>
+ */
+public class ClosureResult implements Serializable {
+	/**  */
+	private static final long serialVersionUID = -3457328957740587516L;
+	/** The index of the closure in the batch */
+	protected final int index;
+	/** The closure return value */
+	protected final Object value;
+	/** The exception thrown by the closure */
+	protected final RuntimeException error;
+	/** The closure elapsed time in ns. */
+	protected final long elapsed;
+	/** The closure's invocation metrics, if it was measured */
+	protected final InvocationMetrics metrics;
+	
+	/**
+	 * Creates a new successful ClosureResult
+	 * @param index The index of the closure in the batch
+	 * @param value The closure return value
+	 * @param elapsed The closure elapsed time in ns.
+	 */
+	public ClosureResult(int index, Object value, long elapsed) {
+		this(index, value, elapsed, null);
+	}
+	
+	/**
+	 * Creates a new successful ClosureResult carrying the closure's invocation metrics
+	 * @param index The index of the closure in the batch
+	 * @param value The closure return value
+	 * @param elapsed The closure elapsed time in ns.
+	 * @param metrics The closure's invocation metrics
+	 */
+	public ClosureResult(int index, Object value, long elapsed, InvocationMetrics metrics) {
+		this.index = index;
+		this.value = value;
+		this.error = null;
+		this.elapsed = elapsed;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Creates a new failed ClosureResult
+	 * @param index The index of the closure in the batch
+	 * @param error The exception thrown by the closure
+	 * @param elapsed The closure elapsed time in ns.
+	 */
+	public ClosureResult(int index, Throwable error, long elapsed) {
+		this(index, error, elapsed, null);
+	}
+	
+	/**
+	 * Creates a new failed ClosureResult carrying the closure's invocation metrics
+	 * @param index The index of the closure in the batch
+	 * @param error The exception thrown by the closure
+	 * @param elapsed The closure elapsed time in ns.
+	 * @param metrics The closure's invocation metrics
+	 */
+	public ClosureResult(int index, Throwable error, long elapsed, InvocationMetrics metrics) {
+		this.index = index;
+		this.value = null;
+		this.error = portable(error);
+		this.elapsed = elapsed;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Copies the passed exception and its causes into plain runtime exceptions
+	 * @param t The exception to copy
+	 * @return the copied exception
+	 */
+	protected static RuntimeException portable(Throwable t) {
+		if(t==null) return null;
+		RuntimeException re = new RuntimeException(t.toString(), portable(t.getCause()==t ? null : t.getCause()));
+		re.setStackTrace(t.getStackTrace());
+		return re;
+	}
+	
+	/**
+	 * Returns the closure return value, or throws the closure's exception if it failed
+	 * @return the closure return value
+	 */
+	public Object get() {
+		if(error!=null) throw new RuntimeException("Closure #" + index + " failed", error);
+		return value;
+	}
+	
+	/**
+	 * Indicates if the closure completed without throwing an exception
+	 * @return true if the closure succeeded
+	 */
+	public boolean isSuccess() {
+		return error==null;
+	}
+	
+	/**
+	 * Returns the index of the closure in the batch
+	 * @return the index
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Returns the closure return value
+	 * @return the value, which is null if the closure failed
+	 */
+	public Object getValue() {
+		return value;
+	}
+	
+	/**
+	 * Returns the exception thrown by the closure
+	 * @return the error, or null if the closure succeeded
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+	
+	/**
+	 * Returns the closure elapsed time
+	 * @return the elapsed time in ns.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+	
+	/**
+	 * Returns the closure's invocation metrics
+	 * @return the invocation metrics, or null if the closure was not measured
+	 */
+	public InvocationMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("ClosureResult [#").append(index)
+			.append(isSuccess() ? ", value:" + value : ", error:" + error.getMessage())
+			.append(", elapsed:").append(elapsed).append("ns]").toString();
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+
+/**
+ * <p>Title: ClosureSample</p>
+ * <p>Description: One execution of a scheduled closure: its sequence number, the time it ran, and the closure's return value
+ * or the exception it threw, copied into a portable form as in {@link ClosureResult}.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureSample</code></p>
+ */
+public class ClosureSample implements Serializable {
+	/**  */
+	private static final long serialVersionUID = -6013517622845617395L;
+	/** The sample sequence number, starting at 1 */
+	protected final long sequence;
+	/** The time the closure was started */
+	protected final long timestamp;
+	/** The closure return value */
+	protected final Object value;
+	/** The exception thrown by the closure */
+	protected final RuntimeException error;
+	/** The closure elapsed time in ns. */
+	protected final long elapsed;
+	
+	/**
+	 * Creates a new successful ClosureSample
+	 * @param sequence The sample sequence number
+	 * @param timestamp The time the closure was started
+	 * @param value The closure return value
+	 * @param elapsed The closure elapsed time in ns.
+	 */
+	public ClosureSample(long sequence, long timestamp, Object value, long elapsed) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.value = value;
+		this.error = null;
+		this.elapsed = elapsed;
+	}
+	
+	/**
+	 * Creates a new failed ClosureSample
+	 * @param sequence The sample sequence number
+	 * @param timestamp The time the closure was started
+	 * @param error The exception thrown by the closure
+	 * @param elapsed The closure elapsed time in ns.
+	 */
+	public ClosureSample(long sequence, long timestamp, Throwable error, long elapsed) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.value = null;
+		this.error = ClosureResult.portable(error);
+		this.elapsed = elapsed;
+	}
+	
+	/**
+	 * Returns the closure return value, or throws the closure's exception if it failed
+	 * @return the closure return value
+	 */
+	public Object get() {
+		if(error!=null) throw new RuntimeException("Sample #" + sequence + " failed", error);
+		return value;
+	}
+	
+	/**
+	 * Indicates if the closure completed without throwing an exception
+	 * @return true if the closure succeeded
+	 */
+	public boolean isSuccess() {
+		return error==null;
+	}
+
+	/**
+	 * Returns the sample sequence number
+	 * @return the sequence number
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the time the closure was started
+	 * @return the sample timestamp
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Returns the closure return value
+	 * @return the value, which is null if the closure failed
+	 */
+	public Object getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns the exception thrown by the closure
+	 * @return the error, or null if the closure succeeded
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the closure elapsed time
+	 * @return the elapsed time in ns.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("ClosureSample [#").append(sequence)
+			.append(", timestamp:").append(timestamp)
+			.append(isSuccess() ? ", value:" + value : ", error:" + error.getMessage())
+			.append("]").toString();
+	}
+}
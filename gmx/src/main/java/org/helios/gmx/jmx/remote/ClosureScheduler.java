@@ -0,0 +1,283 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: ClosureScheduler</p>
+ * <p>Description: Runs closures on a fixed schedule inside the target JVM and keeps their results in a bounded ring buffer per schedule,
+ * so a client can sample at a high rate and collect all the samples taken since its last fetch in one call. 
+ * Each schedule belongs to a client and cancels itself when it has not been fetched for the idle timeout, 
+ * so an abandoned schedule does not run forever, while a client outage shorter than the idle timeout only loses
+ * the samples that overflow the ring buffer.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ClosureScheduler</code></p>
+ */
+public class ClosureScheduler {
+	/** The scheduler pool */
+	protected final ScheduledThreadPoolExecutor executor;
+	/** The active schedules keyed by schedule id */
+	protected final Map<String, Schedule> schedules = new ConcurrentHashMap<String, Schedule>();
+	/** The schedule id serial number factory */
+	protected final AtomicLong serial = new AtomicLong(0L);
+	/** The number of schedules that expired */
+	protected final AtomicLong expirations = new AtomicLong(0L);
+	/** The idle timeout of a schedule in ms. */
+	protected volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	
+	/** The default number of scheduler threads */
+	public static final int DEFAULT_THREADS = 2;
+	/** The default ring buffer capacity of a schedule */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/** The default idle timeout of a schedule in ms. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 600000L;
+	
+	/**
+	 * Creates a new ClosureScheduler
+	 * @param threads The number of scheduler threads
+	 */
+	public ClosureScheduler(int threads) {
+		executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory(){
+			final AtomicInteger serial = new AtomicInteger(0);
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GmxClosureScheduler#" + serial.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+	
+	/**
+	 * Schedules the passed task
+	 * @param clientId The identifier of the scheduling client
+	 * @param task The task, which is called once per period and whose return value is buffered as a sample
+	 * @param period The period in ms.
+	 * @param capacity The number of samples the ring buffer holds
+	 * @return the schedule id
+	 */
+	public String schedule(String clientId, Callable<?> task, long period, int capacity) {
+		if(clientId==null) throw new IllegalArgumentException("The passed client id was null", new Throwable());
+		if(task==null) throw new IllegalArgumentException("The passed task was null", new Throwable());
+		if(period<1) throw new IllegalArgumentException("Invalid period [" + period + "]", new Throwable());
+		if(capacity<1) throw new IllegalArgumentException("Invalid capacity [" + capacity + "]", new Throwable());
+		String scheduleId = Long.toString(serial.incrementAndGet(), Character.MAX_RADIX);
+		Schedule schedule = new Schedule(scheduleId, clientId, task, capacity);
+		schedules.put(scheduleId, schedule);
+		schedule.future = executor.scheduleAtFixedRate(schedule, 0, period, TimeUnit.MILLISECONDS);
+		return scheduleId;
+	}
+	
+	/**
+	 * Returns the samples of the identified schedule taken after the passed sequence number
+	 * @param scheduleId The schedule id
+	 * @param sinceSequence The sequence number of the last sample already fetched, or 0 for all buffered samples
+	 * @param maxSamples The maximum number of samples to return
+	 * @return the sample batch
+	 */
+	public SampleBatch fetch(String scheduleId, long sinceSequence, int maxSamples) {
+		Schedule schedule = scheduleId==null ? null : schedules.get(scheduleId);
+		if(schedule==null) throw new IllegalArgumentException("Unknown schedule [" + scheduleId + "]", new Throwable());
+		return schedule.fetch(sinceSequence, maxSamples);
+	}
+	
+	/**
+	 * Cancels the identified schedule
+	 * @param scheduleId The schedule id
+	 * @return true if the schedule was found and cancelled
+	 */
+	public boolean cancel(String scheduleId) {
+		Schedule schedule = scheduleId==null ? null : schedules.remove(scheduleId);
+		if(schedule==null) return false;
+		schedule.cancel();
+		return true;
+	}
+	
+	/**
+	 * Cancels all the schedules of the identified client
+	 * @param clientId The client identifier
+	 * @return the number of cancelled schedules
+	 */
+	public int cancelClient(String clientId) {
+		int count = 0;
+		for(Iterator<Schedule> iter = schedules.values().iterator(); iter.hasNext();) {
+			Schedule schedule = iter.next();
+			if(schedule.clientId.equals(clientId)) {
+				iter.remove();
+				schedule.cancel();
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Cancels all schedules and stops the scheduler threads
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		schedules.clear();
+	}
+	
+	/**
+	 * Returns the number of active schedules
+	 * @return the number of active schedules
+	 */
+	public int size() {
+		return schedules.size();
+	}
+	
+	/**
+	 * Returns the number of schedules that were cancelled because they had not been fetched for the idle timeout
+	 * @return the number of expired schedules
+	 */
+	public long getExpirations() {
+		return expirations.get();
+	}
+	
+	/**
+	 * Returns the idle timeout of a schedule
+	 * @return the idle timeout in ms.
+	 */
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+	
+	/**
+	 * Sets the idle timeout of a schedule
+	 * @param idleTimeout the idle timeout in ms.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		if(idleTimeout<1) throw new IllegalArgumentException("Invalid idle timeout [" + idleTimeout + "]", new Throwable());
+		this.idleTimeout = idleTimeout;
+	}
+	
+	/**
+	 * <p>Title: Schedule</p>
+	 * <p>Description: A scheduled task and its ring buffer of samples</p> 
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.ClosureScheduler.Schedule</code></p>
+	 */
+	protected class Schedule implements Runnable {
+		/** The schedule id */
+		protected final String scheduleId;
+		/** The identifier of the scheduling client */
+		protected final String clientId;
+		/** The scheduled task */
+		protected final Callable<?> task;
+		/** The ring buffer of samples */
+		protected final ClosureSample[] buffer;
+		/** The sequence number of the next sample */
+		protected long nextSequence = 1;
+		/** The time of the last fetch */
+		protected volatile long lastFetch = System.currentTimeMillis();
+		/** Indicates if the schedule has been cancelled */
+		protected volatile boolean cancelled = false;
+		/** The scheduled future of this schedule */
+		protected volatile ScheduledFuture<?> future = null;
+		
+		/**
+		 * Creates a new Schedule
+		 * @param scheduleId The schedule id
+		 * @param clientId The identifier of the scheduling client
+		 * @param task The scheduled task
+		 * @param capacity The number of samples the ring buffer holds
+		 */
+		protected Schedule(String scheduleId, String clientId, Callable<?> task, int capacity) {
+			this.scheduleId = scheduleId;
+			this.clientId = clientId;
+			this.task = task;
+			buffer = new ClosureSample[capacity];
+		}
+		
+		/**
+		 * Runs the task once and buffers the sample, unless the schedule has not been fetched for the idle timeout in which case it is cancelled
+		 */
+		@Override
+		public void run() {
+			long now = System.currentTimeMillis();
+			if(now-lastFetch > idleTimeout) {
+				if(schedules.remove(scheduleId)!=null) expirations.incrementAndGet();
+				cancel();
+				return;
+			}
+			long start = System.nanoTime();
+			Object value = null;
+			Throwable error = null;
+			try {
+				value = task.call();
+			} catch (Throwable t) {
+				error = t.getCause()!=null && t.getClass()==RuntimeException.class ? t.getCause() : t;
+			}
+			long elapsed = System.nanoTime()-start;
+			synchronized(this) {
+				long sequence = nextSequence++;
+				buffer[(int)((sequence-1) % buffer.length)] = error==null ? 
+						new ClosureSample(sequence, now, value, elapsed) : new ClosureSample(sequence, now, error, elapsed);
+			}
+		}
+		
+		/**
+		 * Returns the buffered samples taken after the passed sequence number
+		 * @param sinceSequence The sequence number of the last sample already fetched
+		 * @param maxSamples The maximum number of samples to return
+		 * @return the sample batch
+		 */
+		protected synchronized SampleBatch fetch(long sinceSequence, int maxSamples) {
+			lastFetch = System.currentTimeMillis();
+			long oldest = Math.max(1, nextSequence - buffer.length);
+			long from = Math.max(sinceSequence+1, oldest);
+			long dropped = from - (sinceSequence+1);
+			long to = Math.min(nextSequence, from + Math.max(0, maxSamples));
+			ArrayList<ClosureSample> samples = new ArrayList<ClosureSample>((int)Math.max(0, to-from));
+			for(long seq = from; seq < to; seq++) {
+				samples.add(buffer[(int)((seq-1) % buffer.length)]);
+			}
+			return new SampleBatch(samples, Math.max(sinceSequence, to-1), dropped, !cancelled);
+		}
+		
+		/**
+		 * Cancels the schedule
+		 */
+		protected void cancel() {
+			cancelled = true;
+			ScheduledFuture<?> f = future;
+			if(f!=null) f.cancel(false);
+		}
+	}
+}
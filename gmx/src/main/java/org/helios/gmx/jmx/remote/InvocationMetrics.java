@@ -0,0 +1,133 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+
+/**
+ * <p>Title: InvocationMetrics</p>
+ * <p>Description: The resources consumed by one closure invocation in the target JVM: the wall clock time, the CPU time and heap bytes 
+ * allocated by the invoking thread, and the serialized sizes of the request and the response. Measurements the JVM does not support
+ * are reported as <code>-1</code>.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.InvocationMetrics</code></p>
+ */
+public class InvocationMetrics implements Serializable {
+	/**  */
+	private static final long serialVersionUID = 2958411035530826479L;
+	/** The closure class name */
+	protected final String closureClass;
+	/** The wall clock time in ns. */
+	protected final long wallTime;
+	/** The thread CPU time in ns. */
+	protected final long cpuTime;
+	/** The number of bytes allocated by the invoking thread */
+	protected final long allocatedBytes;
+	/** The serialized size of the closure and its arguments in bytes */
+	protected final long requestBytes;
+	/** The serialized size of the return value in bytes */
+	protected final long responseBytes;
+	
+	/**
+	 * Creates a new InvocationMetrics
+	 * @param closureClass The closure class name
+	 * @param wallTime The wall clock time in ns.
+	 * @param cpuTime The thread CPU time in ns.
+	 * @param allocatedBytes The number of bytes allocated by the invoking thread
+	 * @param requestBytes The serialized size of the closure and its arguments in bytes
+	 * @param responseBytes The serialized size of the return value in bytes
+	 */
+	public InvocationMetrics(String closureClass, long wallTime, long cpuTime, long allocatedBytes, long requestBytes, long responseBytes) {
+		this.closureClass = closureClass;
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+		this.allocatedBytes = allocatedBytes;
+		this.requestBytes = requestBytes;
+		this.responseBytes = responseBytes;
+	}
+
+	/**
+	 * Returns the closure class name
+	 * @return the closure class name
+	 */
+	public String getClosureClass() {
+		return closureClass;
+	}
+
+	/**
+	 * Returns the wall clock time
+	 * @return the wall clock time in ns.
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	/**
+	 * Returns the CPU time consumed by the invoking thread
+	 * @return the CPU time in ns. or -1 if thread CPU time is not supported
+	 */
+	public long getCpuTime() {
+		return cpuTime;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the invoking thread
+	 * @return the allocated bytes or -1 if thread allocation accounting is not supported
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the serialized size of the closure and its arguments
+	 * @return the request size in bytes or -1 if it was not measured
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Returns the serialized size of the return value
+	 * @return the response size in bytes or -1 if it was not measured
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("InvocationMetrics [").append(closureClass)
+			.append(", wall:").append(wallTime).append("ns")
+			.append(", cpu:").append(cpuTime).append("ns")
+			.append(", allocated:").append(allocatedBytes)
+			.append(", request:").append(requestBytes)
+			.append(", response:").append(responseBytes).append("]").toString();
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Notification;
+
+/**
+ * <p>Title: JournalBatch</p>
+ * <p>Description: The journaled notifications of a subscription replayed in one call, together with the number of notifications in the
+ * requested range that were overwritten in the journal before they could be replayed and the last sequence number the subscription was assigned.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.JournalBatch</code></p>
+ */
+public class JournalBatch implements Serializable {
+	/**  */
+	private static final long serialVersionUID = -6415237046587132953L;
+	/** The replayed notifications, in sequence order */
+	protected final ArrayList<Notification> notifications;
+	/** The number of notifications in the requested range that were overwritten before they could be replayed */
+	protected final long lost;
+	/** The last sequence number assigned to the subscription */
+	protected final long lastSequence;
+
+	/**
+	 * Creates a new JournalBatch
+	 * @param notifications The replayed notifications, in sequence order
+	 * @param lost The number of notifications in the requested range that were overwritten before they could be replayed
+	 * @param lastSequence The last sequence number assigned to the subscription
+	 */
+	public JournalBatch(ArrayList<Notification> notifications, long lost, long lastSequence) {
+		this.notifications = notifications;
+		this.lost = lost;
+		this.lastSequence = lastSequence;
+	}
+
+	/**
+	 * Returns the replayed notifications
+	 * @return the notifications, in sequence order
+	 */
+	public List<Notification> getNotifications() {
+		return notifications;
+	}
+
+	/**
+	 * Returns the number of notifications in the requested range that were overwritten before they could be replayed
+	 * @return the number of lost notifications
+	 */
+	public long getLost() {
+		return lost;
+	}
+
+	/**
+	 * Returns the last sequence number assigned to the subscription when the batch was replayed
+	 * @return the last sequence number
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("JournalBatch [notifications:").append(notifications.size())
+			.append(", lost:").append(lost)
+			.append(", lastSequence:").append(lastSequence).append("]").toString();
+	}
+}
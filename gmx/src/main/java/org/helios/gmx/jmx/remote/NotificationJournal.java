@@ -0,0 +1,350 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+
+import org.helios.gmx.util.ClassLoaderObjectInputStream;
+
+/**
+ * <p>Title: NotificationJournal</p>
+ * <p>Description: A bounded, append-only ring of serialized notifications in a memory-mapped file. Each journaled notification is assigned
+ * the next sequence number of its subscription and wrapped in a relay notification carrying that sequence number, so a client can detect
+ * gaps in the sequence and replay the missing range from the journal. When the ring is full, the oldest records are overwritten.</p>
+ * <p>Each record is written as <code>[int length][long sequence][serialized notification]</code>. The record offsets are kept in an in-heap index.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.NotificationJournal</code></p>
+ */
+public class NotificationJournal {
+	/** The journal file */
+	protected final File file;
+	/** The journal file channel */
+	protected final FileChannel channel;
+	/** The memory-mapped ring */
+	protected final MappedByteBuffer ring;
+	/** The ring capacity in bytes */
+	protected final int capacity;
+	/** The index of the journaled records, oldest first */
+	protected final ArrayDeque<Record> index = new ArrayDeque<Record>();
+	/** The last sequence number assigned to each subscription */
+	protected final Map<String, AtomicLong> sequences = new ConcurrentHashMap<String, AtomicLong>();
+	/** The ring write position */
+	protected int position = 0;
+	/** The number of journaled notifications */
+	protected final AtomicLong journaled = new AtomicLong(0L);
+	/** The number of records overwritten */
+	protected final AtomicLong evicted = new AtomicLong(0L);
+	/** The number of notifications that could not be journaled */
+	protected final AtomicLong rejected = new AtomicLong(0L);
+	/** Indicates if this journal has been closed */
+	protected volatile boolean closed = false;
+
+	/** The default ring capacity in bytes */
+	public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+	/** The size of a record header */
+	public static final int HEADER_SIZE = 12;
+
+	/**
+	 * Creates a new NotificationJournal in a temporary file that is deleted when the journal is closed
+	 * @param capacity The ring capacity in bytes
+	 */
+	public NotificationJournal(int capacity) {
+		this(null, capacity);
+	}
+
+	/**
+	 * Creates a new NotificationJournal
+	 * @param file The journal file. If null, a temporary file is created and deleted when the journal is closed.
+	 * @param capacity The ring capacity in bytes
+	 */
+	public NotificationJournal(File file, int capacity) {
+		if(capacity<=HEADER_SIZE) throw new IllegalArgumentException("Invalid journal capacity [" + capacity + "]", new Throwable());
+		this.capacity = capacity;
+		RandomAccessFile raf = null;
+		try {
+			if(file==null) {
+				file = File.createTempFile("gmx-journal-", ".dat");
+				file.deleteOnExit();
+			}
+			this.file = file;
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(capacity);
+			channel = raf.getChannel();
+			ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		} catch (IOException e) {
+			if(raf!=null) try { raf.close(); } catch (Exception ex) {}
+			throw new RuntimeException("Failed to create notification journal in [" + file + "]", e);
+		}
+	}
+
+	/**
+	 * Assigns the next sequence number of the passed subscription to the notification, wraps it in a relay notification and appends it to the journal
+	 * @param subscriptionId The subscription id
+	 * @param source The source of the relay notification
+	 * @param notification The notification to journal, which is unwrapped first if it is a relay notification
+	 * @return the relay notification whose sequence number is the subscription sequence number
+	 */
+	public Notification append(String subscriptionId, Object source, Notification notification) {
+		if(subscriptionId==null) throw new IllegalArgumentException("The passed subscription id was null", new Throwable());
+		if(notification==null) throw new IllegalArgumentException("The passed notification was null", new Throwable());
+		Notification original = NotificationRelay.unwrap(notification);
+		AtomicLong sequence = sequences.get(subscriptionId);
+		if(sequence==null) {
+			synchronized(sequences) {
+				sequence = sequences.get(subscriptionId);
+				if(sequence==null) {
+					sequence = new AtomicLong(0L);
+					sequences.put(subscriptionId, sequence);
+				}
+			}
+		}
+		byte[] bytes = null;
+		synchronized(this) {
+			Notification journaledNotification = NotificationRelay.wrap(subscriptionId, source, sequence.incrementAndGet(), original);
+			try {
+				bytes = serialize(journaledNotification);
+			} catch (Exception e) {
+				rejected.incrementAndGet();
+				return journaledNotification;
+			}
+			if(closed || bytes.length + HEADER_SIZE > capacity) {
+				rejected.incrementAndGet();
+				return journaledNotification;
+			}
+			write(new Record(subscriptionId, journaledNotification.getSequenceNumber(), position, bytes.length), bytes);
+			journaled.incrementAndGet();
+			return journaledNotification;
+		}
+	}
+
+	/**
+	 * Writes a record at the write position, wrapping to the start of the ring and evicting the overwritten records as required
+	 * @param record The record
+	 * @param bytes The serialized notification
+	 */
+	protected void write(Record record, byte[] bytes) {
+		int size = bytes.length + HEADER_SIZE;
+		if(position + size > capacity) {
+			while(!index.isEmpty() && index.peekFirst().offset >= position) {
+				index.pollFirst();
+				evicted.incrementAndGet();
+			}
+			position = 0;
+			record.offset = 0;
+		}
+		while(!index.isEmpty() && index.peekFirst().offset >= position && index.peekFirst().offset < position + size) {
+			index.pollFirst();
+			evicted.incrementAndGet();
+		}
+		ByteBuffer buffer = ring.duplicate();
+		buffer.position(position);
+		buffer.putInt(bytes.length);
+		buffer.putLong(record.sequence);
+		buffer.put(bytes);
+		index.addLast(record);
+		position += size;
+	}
+
+	/**
+	 * Replays the journaled notifications of a subscription in the passed sequence range
+	 * @param subscriptionId The subscription id
+	 * @param fromSequence The first sequence number to replay
+	 * @param toSequence The last sequence number to replay
+	 * @return a batch of the journaled notifications in the range
+	 */
+	public JournalBatch replay(String subscriptionId, long fromSequence, long toSequence) {
+		AtomicLong sequence = subscriptionId==null ? null : sequences.get(subscriptionId);
+		if(sequence==null) throw new IllegalArgumentException("No journaled subscription for id [" + subscriptionId + "]", new Throwable());
+		long lastSequence = sequence.get();
+		long last = Math.min(toSequence, lastSequence);
+		long first = Math.max(fromSequence, 1L);
+		ArrayList<Notification> notifications = new ArrayList<Notification>();
+		ArrayList<byte[]> records = new ArrayList<byte[]>();
+		synchronized(this) {
+			for(Record record: index) {
+				if(record.sequence < first || record.sequence > last || !record.subscriptionId.equals(subscriptionId)) continue;
+				byte[] bytes = new byte[record.length];
+				ByteBuffer buffer = ring.duplicate();
+				buffer.position(record.offset + HEADER_SIZE);
+				buffer.get(bytes);
+				records.add(bytes);
+			}
+		}
+		for(byte[] bytes: records) {
+			try {
+				notifications.add(deserialize(bytes));
+			} catch (Exception e) {}
+		}
+		long lost = last < first ? 0L : (last - first + 1) - notifications.size();
+		return new JournalBatch(notifications, lost, lastSequence);
+	}
+
+	/**
+	 * Releases the sequence of an ended subscription. Its records remain in the ring until they are overwritten.
+	 * @param subscriptionId The subscription id
+	 */
+	public void release(String subscriptionId) {
+		if(subscriptionId!=null) sequences.remove(subscriptionId);
+	}
+
+	/**
+	 * Closes the journal file and deletes it if it is a temporary file
+	 */
+	public void close() {
+		synchronized(this) {
+			closed = true;
+			index.clear();
+		}
+		sequences.clear();
+		try { channel.close(); } catch (Exception e) {}
+		file.delete();
+	}
+
+	/**
+	 * Serializes the passed notification
+	 * @param notification The notification
+	 * @return the serialized notification
+	 * @throws IOException thrown if the notification cannot be serialized
+	 */
+	protected static byte[] serialize(Notification notification) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(notification);
+		oos.flush();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Deserializes a notification
+	 * @param bytes The serialized notification
+	 * @return the notification
+	 * @throws Exception thrown if the notification cannot be deserialized
+	 */
+	protected Notification deserialize(byte[] bytes) throws Exception {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		ClassLoaderObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes), classLoader==null ? getClass().getClassLoader() : classLoader);
+		try {
+			return (Notification)ois.readObject();
+		} finally {
+			try { ois.close(); } catch (Exception e) {}
+		}
+	}
+
+	/**
+	 * Returns the journal file
+	 * @return the journal file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the ring capacity in bytes
+	 * @return the ring capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of records in the ring
+	 * @return the number of records
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Returns the number of journaled notifications
+	 * @return the number of journaled notifications
+	 */
+	public long getJournaled() {
+		return journaled.get();
+	}
+
+	/**
+	 * Returns the number of records overwritten in the ring
+	 * @return the number of evicted records
+	 */
+	public long getEvicted() {
+		return evicted.get();
+	}
+
+	/**
+	 * Returns the number of notifications that could not be journaled because they could not be serialized or were larger than the ring
+	 * @return the number of rejected notifications
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * <p>Title: Record</p>
+	 * <p>Description: The index entry of a journaled record</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.NotificationJournal.Record</code></p>
+	 */
+	protected static class Record {
+		/** The subscription id */
+		protected final String subscriptionId;
+		/** The subscription sequence number */
+		protected final long sequence;
+		/** The offset of the record in the ring */
+		protected int offset;
+		/** The length of the serialized notification */
+		protected final int length;
+
+		/**
+		 * Creates a new Record
+		 * @param subscriptionId The subscription id
+		 * @param sequence The subscription sequence number
+		 * @param offset The offset of the record in the ring
+		 * @param length The length of the serialized notification
+		 */
+		protected Record(String subscriptionId, long sequence, int offset, int length) {
+			this.subscriptionId = subscriptionId;
+			this.sequence = sequence;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import groovy.lang.Closure;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
+/**
+ * <p>Title: NotificationRelay</p>
+ * <p>Description: Subscribes to the notifications of MBeans in the MBeanServer it runs against, applies a filter and an optional aggregator
+ * to them where they are emitted, and forwards only the notifications that pass the filter, or one aggregate notification per window, to a sink.
+ * Running inside a remote target, the forwarded notifications are wrapped in relay notifications typed <code>gmx.relay.&lt;subscription id&gt;.&lt;original type&gt;</code>
+ * so the client can select its own subscription's notifications with a type filter that the JMX connector server evaluates,
+ * and the notifications that fail the filter never cross the wire.</p>
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.NotificationRelay</code></p>
+ */
+public class NotificationRelay {
+	/** The MBeanServer the subscribed MBeans are registered in */
+	protected final MBeanServerConnection server;
+	/** The source of relay notifications, or null if forwarded notifications are not wrapped */
+	protected final ObjectName relaySource;
+	/** The active subscriptions keyed by subscription id */
+	protected final Map<String, Subscription> subscriptions = new ConcurrentHashMap<String, Subscription>();
+	/** The subscription id serial number factory */
+	protected final AtomicLong serial = new AtomicLong(0L);
+	/** The relay notification sequence number factory */
+	protected final AtomicLong sequence = new AtomicLong(0L);
+	/** The number of notifications received by all subscriptions */
+	protected final AtomicLong received = new AtomicLong(0L);
+	/** The number of notifications discarded by subscription filters */
+	protected final AtomicLong filtered = new AtomicLong(0L);
+	/** The number of notifications and aggregates forwarded to the sinks */
+	protected final AtomicLong forwarded = new AtomicLong(0L);
+	/** The scheduler that flushes aggregating subscriptions, created when the first one subscribes */
+	protected ScheduledThreadPoolExecutor executor = null;
+
+	/** The notification type prefix of relay notifications */
+	public static final String RELAY_TYPE_PREFIX = "gmx.relay.";
+	/** The notification type of aggregate notifications */
+	public static final String AGGREGATE_TYPE = "gmx.aggregate";
+	/** The maximum number of notifications an aggregating subscription buffers per window */
+	public static final int MAX_AGGREGATE_SIZE = 65536;
+
+	/**
+	 * Creates a new NotificationRelay
+	 * @param server The MBeanServer the subscribed MBeans are registered in
+	 * @param relaySource The source of relay notifications. If null, forwarded notifications are passed to the sink as is.
+	 */
+	public NotificationRelay(MBeanServerConnection server, ObjectName relaySource) {
+		if(server==null) throw new IllegalArgumentException("The passed MBeanServer was null", new Throwable());
+		this.server = server;
+		this.relaySource = relaySource;
+	}
+
+	/**
+	 * Returns the notification type prefix of the relay notifications of the passed subscription
+	 * @param subscriptionId The subscription id
+	 * @return the relay notification type prefix
+	 */
+	public static String relayType(String subscriptionId) {
+		return RELAY_TYPE_PREFIX + subscriptionId + ".";
+	}
+
+	/**
+	 * Unwraps the original notification from a relay notification
+	 * @param notification The received notification
+	 * @return the original notification if the passed notification is a relay notification, otherwise the passed notification
+	 */
+	public static Notification unwrap(Notification notification) {
+		if(notification!=null && notification.getType().startsWith(RELAY_TYPE_PREFIX) && notification.getUserData() instanceof Notification) {
+			return (Notification)notification.getUserData();
+		}
+		return notification;
+	}
+
+	/**
+	 * Returns the id of the subscription a relay notification was relayed for
+	 * @param notification The relay notification
+	 * @return the subscription id, or null if the passed notification is not a relay notification
+	 */
+	public static String subscriptionId(Notification notification) {
+		String type = notification==null ? null : notification.getType();
+		if(type==null || !type.startsWith(RELAY_TYPE_PREFIX)) return null;
+		int end = type.indexOf('.', RELAY_TYPE_PREFIX.length());
+		return end==-1 ? null : type.substring(RELAY_TYPE_PREFIX.length(), end);
+	}
+
+	/**
+	 * Wraps a notification in a relay notification
+	 * @param subscriptionId The id of the subscription the notification is relayed for
+	 * @param source The source of the relay notification
+	 * @param sequence The sequence number of the relay notification
+	 * @param notification The notification to wrap
+	 * @return the relay notification
+	 */
+	public static Notification wrap(String subscriptionId, Object source, long sequence, Notification notification) {
+		Notification relayed = new Notification(relayType(subscriptionId) + notification.getType(), source, sequence,
+				notification.getTimeStamp(), notification.getMessage());
+		relayed.setUserData(notification);
+		return relayed;
+	}
+
+	/**
+	 * Subscribes to the notifications of the passed MBean
+	 * @param clientId The identifier of the subscribing client
+	 * @param objectName The ObjectName of the MBean to subscribe to
+	 * @param filter The optional filter applied to each notification
+	 * @param aggregator The optional closure that is passed the list of notifications that passed the filter in each window,
+	 * and whose return value is forwarded as the user data of an {@link #AGGREGATE_TYPE} notification
+	 * @param window The aggregation window in ms. Ignored if there is no aggregator.
+	 * @param sink The listener the notifications are forwarded to
+	 * @param handback The handback passed to the sink
+	 * @return the subscription id
+	 */
+	public String subscribe(String clientId, ObjectName objectName, NotificationFilter filter, Closure<?> aggregator, long window, NotificationListener sink, Object handback) {
+		if(clientId==null) throw new IllegalArgumentException("The passed client id was null", new Throwable());
+		if(objectName==null) throw new IllegalArgumentException("The passed ObjectName was null", new Throwable());
+		if(sink==null) throw new IllegalArgumentException("The passed sink was null", new Throwable());
+		if(aggregator!=null && window<1) throw new IllegalArgumentException("Invalid aggregation window [" + window + "]", new Throwable());
+		String subscriptionId = Long.toString(serial.incrementAndGet(), Character.MAX_RADIX);
+		Subscription subscription = new Subscription(subscriptionId, clientId, objectName, filter, aggregator, sink, handback);
+		try {
+			server.addNotificationListener(objectName, subscription, null, null);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to subscribe to notifications from [" + objectName + "]", e);
+		}
+		subscriptions.put(subscriptionId, subscription);
+		if(aggregator!=null) {
+			subscription.future = getExecutor().scheduleAtFixedRate(subscription, window, window, TimeUnit.MILLISECONDS);
+		}
+		return subscriptionId;
+	}
+
+	/**
+	 * Returns the aggregation scheduler, creating it if necessary
+	 * @return the aggregation scheduler
+	 */
+	protected synchronized ScheduledThreadPoolExecutor getExecutor() {
+		if(executor==null) {
+			executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+				final AtomicInteger serial = new AtomicInteger(0);
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "GmxNotificationRelay#" + serial.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+		return executor;
+	}
+
+	/**
+	 * Cancels the identified subscription
+	 * @param subscriptionId The subscription id
+	 * @return true if the subscription was found and cancelled
+	 */
+	public boolean unsubscribe(String subscriptionId) {
+		Subscription subscription = subscriptionId==null ? null : subscriptions.remove(subscriptionId);
+		if(subscription==null) return false;
+		subscription.cancel();
+		return true;
+	}
+
+	/**
+	 * Cancels all the subscriptions of the identified client
+	 * @param clientId The client identifier
+	 * @return the number of cancelled subscriptions
+	 */
+	public int unsubscribeClient(String clientId) {
+		int count = 0;
+		for(Iterator<Subscription> iter = subscriptions.values().iterator(); iter.hasNext();) {
+			Subscription subscription = iter.next();
+			if(subscription.clientId.equals(clientId)) {
+				iter.remove();
+				subscription.cancel();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Cancels all subscriptions and stops the aggregation scheduler
+	 */
+	public void shutdown() {
+		for(Iterator<Subscription> iter = subscriptions.values().iterator(); iter.hasNext();) {
+			Subscription subscription = iter.next();
+			iter.remove();
+			subscription.cancel();
+		}
+		synchronized(this) {
+			if(executor!=null) executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of active subscriptions
+	 * @return the number of active subscriptions
+	 */
+	public int size() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Returns the number of notifications received by all subscriptions
+	 * @return the number of received notifications
+	 */
+	public long getReceived() {
+		return received.get();
+	}
+
+	/**
+	 * Returns the number of notifications discarded by subscription filters
+	 * @return the number of filtered notifications
+	 */
+	public long getFiltered() {
+		return filtered.get();
+	}
+
+	/**
+	 * Returns the number of notifications and aggregates forwarded to the sinks
+	 * @return the number of forwarded notifications
+	 */
+	public long getForwarded() {
+		return forwarded.get();
+	}
+
+	/**
+	 * <p>Title: Subscription</p>
+	 * <p>Description: A subscription to the notifications of one MBean. Without an aggregator, notifications that pass the filter are forwarded
+	 * in the emitting thread. With an aggregator, they are buffered and the aggregate of each window is forwarded by the aggregation scheduler.</p>
+	 * <p>Company: Helios Development Group LLC</p>
+	 * @author Whitehead (nwhitehead AT heliosdev DOT org)
+	 * <p><code>org.helios.gmx.jmx.remote.NotificationRelay.Subscription</code></p>
+	 */
+	protected class Subscription implements NotificationListener, Runnable {
+		/** The subscription id */
+		protected final String subscriptionId;
+		/** The identifier of the subscribing client */
+		protected final String clientId;
+		/** The ObjectName of the subscribed MBean */
+		protected final ObjectName objectName;
+		/** The optional filter */
+		protected final NotificationFilter filter;
+		/** The optional aggregator */
+		protected final Closure<?> aggregator;
+		/** The listener the notifications are forwarded to */
+		protected final NotificationListener sink;
+		/** The handback passed to the sink */
+		protected final Object handback;
+		/** The notifications buffered for the current aggregation window */
+		protected List<Notification> buffer = new ArrayList<Notification>();
+		/** The scheduled aggregation future of this subscription */
+		protected volatile ScheduledFuture<?> future = null;
+
+		/**
+		 * Creates a new Subscription
+		 * @param subscriptionId The subscription id
+		 * @param clientId The identifier of the subscribing client
+		 * @param objectName The ObjectName of the subscribed MBean
+		 * @param filter The optional filter
+		 * @param aggregator The optional aggregator
+		 * @param sink The listener the notifications are forwarded to
+		 * @param handback The handback passed to the sink
+		 */
+		protected Subscription(String subscriptionId, String clientId, ObjectName objectName, NotificationFilter filter, Closure<?> aggregator, NotificationListener sink, Object handback) {
+			this.subscriptionId = subscriptionId;
+			this.clientId = clientId;
+			this.objectName = objectName;
+			this.filter = filter;
+			this.aggregator = aggregator;
+			this.sink = sink;
+			this.handback = handback;
+		}
+
+		/**
+		 * Filters the received notification and forwards or buffers it
+		 * @param notification The received notification
+		 * @param hb The registration handback, which is not used
+		 */
+		@Override
+		public void handleNotification(Notification notification, Object hb) {
+			received.incrementAndGet();
+			if(filter!=null) {
+				boolean enabled = false;
+				try {
+					enabled = filter.isNotificationEnabled(notification);
+				} catch (Throwable t) {}
+				if(!enabled) {
+					filtered.incrementAndGet();
+					return;
+				}
+			}
+			if(aggregator==null) {
+				forward(notification);
+			} else {
+				synchronized(this) {
+					if(buffer.size() < MAX_AGGREGATE_SIZE) buffer.add(notification);
+				}
+			}
+		}
+
+		/**
+		 * Aggregates the notifications buffered in the window that just ended and forwards the aggregate
+		 */
+		@Override
+		public void run() {
+			List<Notification> window = null;
+			synchronized(this) {
+				if(buffer.isEmpty()) return;
+				window = buffer;
+				buffer = new ArrayList<Notification>();
+			}
+			Object aggregate = null;
+			try {
+				aggregate = aggregator.call(window);
+			} catch (Throwable t) {
+				t.printStackTrace(System.err);
+				return;
+			}
+			Notification notification = new Notification(AGGREGATE_TYPE, objectName, sequence.incrementAndGet(),
+					window.get(window.size()-1).getTimeStamp(), "Aggregate of " + window.size() + " notifications");
+			notification.setUserData(aggregate);
+			forward(notification);
+		}
+
+		/**
+		 * Forwards the passed notification to the sink, wrapping it in a relay notification if this relay has a relay source
+		 * @param notification The notification to forward
+		 */
+		protected void forward(Notification notification) {
+			Notification forward = notification;
+			if(relaySource!=null) {
+				forward = wrap(subscriptionId, relaySource, sequence.incrementAndGet(), notification);
+			}
+			forwarded.incrementAndGet();
+			try {
+				sink.handleNotification(forward, handback);
+			} catch (Exception e) {
+				e.printStackTrace(System.err);
+			}
+		}
+
+		/**
+		 * Removes the subscription's listener and stops its aggregation
+		 */
+		protected void cancel() {
+			ScheduledFuture<?> f = future;
+			if(f!=null) f.cancel(false);
+			try {
+				server.removeNotificationListener(objectName, this);
+			} catch (Exception e) {}
+		}
+	}
+}
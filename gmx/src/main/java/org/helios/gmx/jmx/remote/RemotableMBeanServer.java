@@ -26,7 +26,6 @@ package org.helios.gmx.jmx.remote;
 
 import groovy.lang.Binding;
 import groovy.lang.Closure;
-import groovy.lang.GroovyShell;
 
 import java.io.ByteArrayInputStream;
 import java.io.ObjectInputStream;
@@ -36,11 +35,18 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -52,10 +58,14 @@ import javax.management.InvalidAttributeValueException;
 import javax.management.ListenerNotFoundException;
 import javax.management.MBeanException;
 import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
 import javax.management.MBeanServerFactory;
 import javax.management.NotCompliantMBeanException;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.NotificationEmitter;
 import javax.management.NotificationFilter;
 import javax.management.NotificationListener;
 import javax.management.ObjectInstance;
@@ -65,6 +75,10 @@ import javax.management.QueryExp;
 import javax.management.ReflectionException;
 import javax.management.loading.ClassLoaderRepository;
 
+import org.helios.gmx.jmx.ClosureWrappingNotificationFilter;
+import org.helios.gmx.util.ClassLoaderObjectInputStream;
+import org.helios.gmx.util.JMXHelper;
+
 /**
  * <p>Title: RemotableMBeanServer</p>
  * <p>Description: An MBean that provides remote MBeanServer operations.</p> 
@@ -72,7 +86,7 @@ import javax.management.loading.ClassLoaderRepository;
  * @author Whitehead (nwhitehead AT heliosdev DOT org)
  * <p><code>org.helios.gmx.jmx.remote.RemotableMBeanServer</code></p>
  */
-public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializable {
+public class RemotableMBeanServer implements RemotableMBeanServerMBean, NotificationEmitter, Serializable {
 	/**  */
 	private static final long serialVersionUID = 5409466004786907167L;
 	/** The registration injected MBeanServer */
@@ -95,6 +109,28 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 	protected final Method newInstance;
 	/** The Gmx instance */
 	protected Object gmx;
+	/** The cache of closure class loaders keyed by closure class name and bytecode hash */
+	protected final transient ClosureClassCache closureCache = new ClosureClassCache(ClosureClassCache.DEFAULT_MAX_SIZE);
+	/** The cache of compiled scripts keyed by script source hash */
+	protected final transient ScriptCache scriptCache = new ScriptCache(ScriptCache.DEFAULT_MAX_SIZE, getClass().getClassLoader());
+	/** The registry of installed closures invoked by handle */
+	protected final transient ClosureRegistry closureRegistry = new ClosureRegistry();
+	/** The open closure result streams keyed by stream id */
+	protected final transient Map<String, StreamSink> streams = new ConcurrentHashMap<String, StreamSink>();
+	/** The stream id serial number factory */
+	protected final AtomicLong streamSerial = new AtomicLong(0L);
+	/** The bounded execution engine that runs the closures */
+	protected final transient RemoteExecutionEngine engine = new RemoteExecutionEngine(RemoteExecutionEngine.DEFAULT_THREADS, RemoteExecutionEngine.DEFAULT_QUEUE_CAPACITY);
+	/** The closure invocation meter */
+	protected final transient ClosureMeter meter = new ClosureMeter(ClosureMeter.DEFAULT_MAX_CLASSES);
+	/** The scheduler for scheduled closures */
+	protected final transient ClosureScheduler scheduler = new ClosureScheduler(ClosureScheduler.DEFAULT_THREADS);
+	/** The broadcaster of the relay notifications */
+	protected final transient NotificationBroadcasterSupport broadcaster = new NotificationBroadcasterSupport();
+	/** The relay that filters and aggregates subscribed notifications in this JVM, created when this MBean is registered */
+	protected transient NotificationRelay relay = null;
+	/** The journal of relayed notifications, created when the first journaled subscription is made */
+	protected transient NotificationJournal journal = null;
 	
 	
 	/**
@@ -163,13 +199,569 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 	}
 	
 	/**
-	 * Invokes the passed closure and returns the result
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#invokeClosure(java.lang.String, byte[], java.lang.Object[])
+	 */
+	@Override
+	public Object invokeClosure(String closureKey, byte[] closureBytes, Object[] arguments) {
+		Closure<?> closure = extractClosure(closureKey, closureBytes);
+		return execute(null, closure, arguments, meter.probe(closure.getClass().getName(), meter.requestSize(closureBytes, arguments)), -1L);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#invokeClosureMetered(java.lang.String, byte[], java.lang.Object[])
+	 */
+	@Override
+	public ClosureResult invokeClosureMetered(String closureKey, byte[] closureBytes, final Object[] arguments) {
+		final Closure<?> closure = extractClosure(closureKey, closureBytes);
+		final ClosureMeter.Probe probe = meter.probe(closure.getClass().getName(), meter.requestSize(closureBytes, arguments));
+		long start = System.nanoTime();
+		try {
+			Object value = execute(null, closure, arguments, probe, -1L);
+			return new ClosureResult(0, value, System.nanoTime()-start, probe.getMetrics());
+		} catch (Throwable t) {
+			Throwable cause = t.getCause()!=null && t.getClass()==RuntimeException.class ? t.getCause() : t;
+			return new ClosureResult(0, cause, System.nanoTime()-start, probe.getMetrics());
+		}
+	}
+	
+	/**
+	 * Deserializes the passed closure bytes using the cached class loader for the passed closure key
+	 * @param closureKey The closure class name and bytecode hash
+	 * @param closureBytes The closure serialized as a byte array
+	 * @return the closure
+	 */
+	protected Closure<?> extractClosure(String closureKey, byte[] closureBytes) {
+		ClassLoader loader = closureCache.getClassLoader(closureKey, reverseClassLoadURL, classLoader);
+		ClassLoader current = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(loader);
+			ObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(closureBytes), loader);
+			return (Closure<?>)ois.readObject();
+		} catch (Exception e) {
+			closureCache.getCache().remove(closureKey);
+			throw new RuntimeException("Failed to extract closure [" + closureKey + "] from byte array", e);
+		} finally {
+			Thread.currentThread().setContextClassLoader(current);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#invokeClosures(java.lang.String[], byte[][], java.lang.Object[][], boolean)
+	 */
+	@Override
+	public List<ClosureResult> invokeClosures(final String[] closureKeys, final byte[][] closureBytes, final Object[][] arguments, boolean parallel) {
+		if(closureKeys==null || closureBytes==null || closureKeys.length!=closureBytes.length) {
+			throw new IllegalArgumentException("The passed closure keys and closure bytes do not match", new Throwable());
+		}
+		final int size = closureKeys.length;
+		if(!parallel || size<2) {
+			return engine.execute(null, new Callable<List<ClosureResult>>(){
+				public List<ClosureResult> call() {
+					List<ClosureResult> results = new ArrayList<ClosureResult>(size);
+					for(int i = 0; i < size; i++) {
+						results.add(invokeBatched(i, closureKeys[i], closureBytes[i], arguments==null ? null : arguments[i]));
+					}
+					return results;
+				}
+			}, -1L);
+		}
+		long timeout = engine.effectiveTimeout(-1L);
+		long deadline = timeout==0 ? 0 : System.currentTimeMillis() + timeout;
+		List<Future<ClosureResult>> futures = new ArrayList<Future<ClosureResult>>(size);
+		List<ClosureResult> results = new ArrayList<ClosureResult>(size);
+		for(int i = 0; i < size; i++) {
+			final int index = i;
+			final String key = closureKeys[i];
+			final byte[] bytes = closureBytes[i];
+			final Object[] args = arguments==null ? null : arguments[i];
+			try {
+				futures.add(engine.submit(null, new Callable<ClosureResult>(){
+					public ClosureResult call() {
+						return invokeBatched(index, key, bytes, args);
+					}
+				}));
+			} catch (RejectedExecutionException ree) {
+				futures.add(null);
+				results.add(new ClosureResult(i, ree, 0L));
+			}
+		}
+		for(int i = 0; i < size; i++) {
+			Future<ClosureResult> future = futures.get(i);
+			if(future==null) continue;
+			try {
+				results.add(engine.await(null, future, deadline));
+			} catch (RuntimeException re) {
+				results.add(new ClosureResult(i, re.getCause()==null ? re : re.getCause(), 0L));
+			}
+		}
+		Collections.sort(results, new Comparator<ClosureResult>(){
+			public int compare(ClosureResult r1, ClosureResult r2) {
+				return r1.getIndex()-r2.getIndex();
+			}
+		});
+		return results;
+	}
+	
+	/**
+	 * Invokes one closure of a batch, capturing its outcome
+	 * @param index The index of the closure in the batch
+	 * @param closureKey The closure class name and bytecode hash
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @return the closure result
+	 */
+	protected ClosureResult invokeBatched(int index, String closureKey, byte[] closureBytes, Object[] arguments) {
+		long start = System.nanoTime();
+		ClosureMeter.Probe probe = null;
+		try {
+			Closure<?> closure = extractClosure(closureKey, closureBytes);
+			probe = meter.probe(closure.getClass().getName(), meter.requestSize(closureBytes, arguments));
+			Object value = callClosure(closure, arguments, probe);
+			if(value!=null && !(value instanceof Serializable)) {
+				throw new RuntimeException("The closure return value of type [" + value.getClass().getName() + "] is not serializable");
+			}
+			return new ClosureResult(index, value, System.nanoTime()-start, probe.getMetrics());
+		} catch (Throwable t) {
+			Throwable cause = t.getCause()!=null && t.getClass()==RuntimeException.class ? t.getCause() : t;
+			return new ClosureResult(index, cause, System.nanoTime()-start, probe==null ? null : probe.getMetrics());
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#openStream(java.lang.String, byte[], java.lang.Object[], int)
+	 */
+	@Override
+	public String openStream(String closureKey, byte[] closureBytes, Object[] arguments, int chunkSize) {
+		long now = System.currentTimeMillis();
+		for(Iterator<StreamSink> iter = streams.values().iterator(); iter.hasNext();) {
+			StreamSink stale = iter.next();
+			if(stale.isCancelled() || stale.isIdle(now)) {
+				stale.cancel();
+				iter.remove();
+			}
+		}
+		final Closure<?> closure = extractClosure(closureKey, closureBytes);
+		final ClosureMeter.Probe probe = meter.probe(closure.getClass().getName(), meter.requestSize(closureBytes, arguments));
+		final String streamId = Long.toString(streamSerial.incrementAndGet(), Character.MAX_RADIX);
+		final StreamSink sink = new StreamSink(streamId, chunkSize, StreamSink.DEFAULT_IDLE_TIMEOUT);
+		int argsSize = (arguments==null ? 0 : arguments.length);
+		final Object[] args = new Object[argsSize+1];
+		args[0] = sink;
+		if(argsSize>0) System.arraycopy(arguments, 0, args, 1, argsSize);
+		streams.put(streamId, sink);
+		Thread t = new Thread(new Runnable(){
+			public void run() {
+				sink.produce(new Callable<Object>(){
+					public Object call() {
+						return callClosure(closure, args, probe);
+					}
+				});
+			}
+		}, "GmxClosureStream#" + streamId);
+		t.setDaemon(true);
+		t.start();
+		return streamId;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#nextStreamChunk(java.lang.String, long)
+	 */
+	@Override
+	public StreamChunk nextStreamChunk(String streamId, long timeout) {
+		StreamSink sink = streamId==null ? null : streams.get(streamId);
+		if(sink==null) throw new IllegalArgumentException("Unknown stream [" + streamId + "]", new Throwable());
+		StreamChunk chunk = sink.nextChunk(timeout);
+		if(sink.isDrained()) streams.remove(streamId);
+		return chunk;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#closeStream(java.lang.String)
+	 */
+	@Override
+	public void closeStream(String streamId) {
+		StreamSink sink = streamId==null ? null : streams.remove(streamId);
+		if(sink!=null) sink.cancel();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getOpenStreamCount()
+	 */
+	@Override
+	public int getOpenStreamCount() {
+		return streams.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#registerClosure(java.lang.String, java.lang.String, byte[])
+	 */
+	@Override
+	public String registerClosure(String clientId, String closureKey, byte[] closureBytes) {
+		return closureRegistry.register(clientId, extractClosure(closureKey, closureBytes));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#invokeClosureHandle(java.lang.String, java.lang.Object[])
+	 */
+	@Override
+	public Object invokeClosureHandle(String handle, Object[] arguments) {
+		Closure<?> closure = closureRegistry.get(handle);
+		return execute(null, closure, arguments, meter.probe(closure.getClass().getName(), meter.requestSize(null, arguments)), -1L);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#unregisterClosure(java.lang.String)
+	 */
+	@Override
+	public boolean unregisterClosure(String handle) {
+		return closureRegistry.unregister(handle);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#unregisterClient(java.lang.String)
+	 */
+	@Override
+	public int unregisterClient(String clientId) {
+		return closureRegistry.unregisterClient(clientId) + scheduler.cancelClient(clientId) + (relay==null ? 0 : relay.unsubscribeClient(clientId));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getRegisteredClosureCount()
+	 */
+	@Override
+	public int getRegisteredClosureCount() {
+		return closureRegistry.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getExpiredClosureHandles()
+	 */
+	@Override
+	public long getExpiredClosureHandles() {
+		return closureRegistry.getExpirations();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureHandleIdleTimeout()
+	 */
+	@Override
+	public long getClosureHandleIdleTimeout() {
+		return closureRegistry.getIdleTimeout();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setClosureHandleIdleTimeout(long)
+	 */
+	@Override
+	public void setClosureHandleIdleTimeout(long idleTimeout) {
+		closureRegistry.setIdleTimeout(idleTimeout);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#scheduleClosure(java.lang.String, java.lang.String, byte[], java.lang.Object[], long, int)
+	 */
+	@Override
+	public String scheduleClosure(String clientId, String closureKey, byte[] closureBytes, final Object[] arguments, long period, int capacity) {
+		final Closure<?> closure = extractClosure(closureKey, closureBytes);
+		final String closureClass = closure.getClass().getName();
+		final long requestBytes = meter.requestSize(closureBytes, arguments);
+		return scheduler.schedule(clientId, new Callable<Object>(){
+			public Object call() {
+				return callClosure(closure, arguments, meter.probe(closureClass, requestBytes));
+			}
+		}, period, capacity);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#fetchSamples(java.lang.String, long, int)
+	 */
+	@Override
+	public SampleBatch fetchSamples(String scheduleId, long sinceSequence, int maxSamples) {
+		return scheduler.fetch(scheduleId, sinceSequence, maxSamples);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#unscheduleClosure(java.lang.String)
+	 */
+	@Override
+	public boolean unscheduleClosure(String scheduleId) {
+		return scheduler.cancel(scheduleId);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScheduledClosureCount()
+	 */
+	@Override
+	public int getScheduledClosureCount() {
+		return scheduler.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getExpiredSchedules()
+	 */
+	@Override
+	public long getExpiredSchedules() {
+		return scheduler.getExpirations();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScheduleIdleTimeout()
+	 */
+	@Override
+	public long getScheduleIdleTimeout() {
+		return scheduler.getIdleTimeout();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setScheduleIdleTimeout(long)
+	 */
+	@Override
+	public void setScheduleIdleTimeout(long idleTimeout) {
+		scheduler.setIdleTimeout(idleTimeout);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#subscribeNotifications(java.lang.String, javax.management.ObjectName, java.lang.String, byte[], java.lang.String, byte[], long)
+	 */
+	@Override
+	public String subscribeNotifications(String clientId, ObjectName objectName, String filterKey, byte[] filterBytes, String aggregatorKey, byte[] aggregatorBytes, long window) {
+		return subscribeNotifications(clientId, objectName, filterKey, filterBytes, aggregatorKey, aggregatorBytes, window, false);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#subscribeNotifications(java.lang.String, javax.management.ObjectName, java.lang.String, byte[], java.lang.String, byte[], long, boolean)
+	 */
+	@Override
+	public String subscribeNotifications(String clientId, ObjectName objectName, String filterKey, byte[] filterBytes, String aggregatorKey, byte[] aggregatorBytes, long window, boolean journaled) {
+		NotificationFilter filter = filterBytes==null ? null : new ClosureWrappingNotificationFilter(extractClosure(filterKey, filterBytes));
+		Closure<?> aggregator = aggregatorBytes==null ? null : extractClosure(aggregatorKey, aggregatorBytes);
+		final NotificationJournal notificationJournal = journaled ? getJournal() : null;
+		return relay.subscribe(clientId, objectName, filter, aggregator, window, new NotificationListener(){
+			public void handleNotification(Notification notification, Object handback) {
+				if(notificationJournal!=null) {
+					notification = notificationJournal.append(NotificationRelay.subscriptionId(notification), RemotableMBeanServer.this.objectName, notification);
+				}
+				broadcaster.sendNotification(notification);
+			}
+		}, null);
+	}
+	
+	/**
+	 * Returns the notification journal, creating it if necessary
+	 * @return the notification journal
+	 */
+	protected synchronized NotificationJournal getJournal() {
+		if(journal==null) {
+			journal = new NotificationJournal(NotificationJournal.DEFAULT_CAPACITY);
+		}
+		return journal;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#replayNotifications(java.lang.String, long, long)
+	 */
+	@Override
+	public JournalBatch replayNotifications(String subscriptionId, long fromSequence, long toSequence) {
+		NotificationJournal notificationJournal = journal;
+		if(notificationJournal==null) throw new IllegalArgumentException("No journaled subscription for id [" + subscriptionId + "]", new Throwable());
+		return notificationJournal.replay(subscriptionId, fromSequence, toSequence);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#unsubscribeNotifications(java.lang.String)
+	 */
+	@Override
+	public boolean unsubscribeNotifications(String subscriptionId) {
+		NotificationJournal notificationJournal = journal;
+		if(notificationJournal!=null) notificationJournal.release(subscriptionId);
+		return relay.unsubscribe(subscriptionId);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getNotificationSubscriptionCount()
+	 */
+	@Override
+	public int getNotificationSubscriptionCount() {
+		return relay==null ? 0 : relay.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getReceivedNotifications()
+	 */
+	@Override
+	public long getReceivedNotifications() {
+		return relay==null ? 0L : relay.getReceived();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getFilteredNotifications()
+	 */
+	@Override
+	public long getFilteredNotifications() {
+		return relay==null ? 0L : relay.getFiltered();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getRelayedNotifications()
+	 */
+	@Override
+	public long getRelayedNotifications() {
+		return relay==null ? 0L : relay.getForwarded();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getJournalCapacity()
+	 */
+	@Override
+	public int getJournalCapacity() {
+		NotificationJournal notificationJournal = journal;
+		return notificationJournal==null ? NotificationJournal.DEFAULT_CAPACITY : notificationJournal.getCapacity();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getJournaledNotifications()
+	 */
+	@Override
+	public long getJournaledNotifications() {
+		NotificationJournal notificationJournal = journal;
+		return notificationJournal==null ? 0L : notificationJournal.getJournaled();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getEvictedJournalEntries()
+	 */
+	@Override
+	public long getEvictedJournalEntries() {
+		NotificationJournal notificationJournal = journal;
+		return notificationJournal==null ? 0L : notificationJournal.getEvicted();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.NotificationBroadcaster#addNotificationListener(javax.management.NotificationListener, javax.management.NotificationFilter, java.lang.Object)
+	 */
+	@Override
+	public void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) {
+		broadcaster.addNotificationListener(listener, filter, handback);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.NotificationBroadcaster#removeNotificationListener(javax.management.NotificationListener)
+	 */
+	@Override
+	public void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException {
+		broadcaster.removeNotificationListener(listener);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.NotificationEmitter#removeNotificationListener(javax.management.NotificationListener, javax.management.NotificationFilter, java.lang.Object)
+	 */
+	@Override
+	public void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException {
+		broadcaster.removeNotificationListener(listener, filter, handback);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see javax.management.NotificationBroadcaster#getNotificationInfo()
+	 */
+	@Override
+	public MBeanNotificationInfo[] getNotificationInfo() {
+		return new MBeanNotificationInfo[]{
+			new MBeanNotificationInfo(new String[]{NotificationRelay.RELAY_TYPE_PREFIX}, Notification.class.getName(), "Subscribed notifications relayed from MBeans in this MBeanServer")
+		};
+	}
+	
+	/**
+	 * Invokes the passed closure in the execution engine with the default timeout and returns the result
 	 * @param closure The closure
 	 * @param arguments optional arguments
 	 * @return the return value of the closure
 	 */
 	@Override
 	public Object invokeClosure(Closure<?> closure, Object[] arguments) {
+		return execute(null, closure, arguments, meter.probe(closure.getClass().getName(), meter.requestSize(null, arguments)), -1L);
+	}
+	
+	/**
+	 * Invokes the passed closure in the execution engine, measured by the passed probe
+	 * @param invocationId The optional invocation id through which the invocation can be cancelled
+	 * @param closure The closure
+	 * @param arguments optional arguments
+	 * @param probe The probe that measures the invocation
+	 * @param timeout The timeout in ms. Zero waits without a deadline and a negative value applies the default timeout.
+	 * @return the return value of the closure
+	 */
+	protected Object execute(String invocationId, final Closure<?> closure, final Object[] arguments, final ClosureMeter.Probe probe, long timeout) {
+		return engine.execute(invocationId, new Callable<Object>(){
+			public Object call() {
+				return callClosure(closure, arguments, probe);
+			}
+		}, timeout);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#invokeClosure(java.lang.String, java.lang.String, byte[], java.lang.Object[], long)
+	 */
+	@Override
+	public Object invokeClosure(String invocationId, String closureKey, byte[] closureBytes, Object[] arguments, long timeout) {
+		Closure<?> closure = extractClosure(closureKey, closureBytes);
+		return execute(invocationId, closure, arguments, meter.probe(closure.getClass().getName(), meter.requestSize(closureBytes, arguments)), timeout);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#cancelClosure(java.lang.String)
+	 */
+	@Override
+	public boolean cancelClosure(String invocationId) {
+		return engine.cancel(invocationId);
+	}
+	
+	/**
+	 * Invokes the passed closure in the calling thread and returns the result
+	 * @param closure The closure
+	 * @param arguments optional arguments
+	 * @param probe The probe that measures the invocation
+	 * @return the return value of the closure
+	 */
+	protected Object callClosure(Closure<?> closure, Object[] arguments, ClosureMeter.Probe probe) {
 		System.out.println("\n\tInvoking Closure\n");
 		ClassLoader current = Thread.currentThread().getContextClassLoader();		
 		try {
@@ -180,9 +772,12 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 			for(int i = 0; i < argsSize; i++) {
 				args[i+1] = arguments[i];
 			}
+			probe.start();
 			Object val = closure.call(args);
+			probe.stop(val, false);
 			return val;
 		} catch (Exception e) {
+			probe.stop(null, true);
 			e.printStackTrace(System.err);
 			throw new RuntimeException("Failed to invoke closure", e);
 		} finally {
@@ -190,25 +785,259 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#readAttributes(javax.management.ObjectName, javax.management.QueryExp, java.lang.String[])
+	 */
+	@Override
+	public Map<ObjectName, Map<String, Object>> readAttributes(ObjectName pattern, QueryExp query, String[] attributeNames) {
+		return JMXHelper.readAttributes(server, pattern, query, attributeNames);
+	}
+	
 	/**
 	 * Invokes the submitted script passing in the MBeanServer as a binding and returning the script's return value.
+	 * The script is only compiled on the first invocation of its source, and then served from the script cache. 
 	 * @param script The script to execute.
 	 * @param args Arguments to the script
 	 * @return the script's return value
 	 */
 	public Object invokeScript(String script, Object...args) {
 		try {
-			Map<String, Object> binds = new HashMap<String, Object>(1);
+			Map<String, Object> binds = new HashMap<String, Object>(2);
 			binds.put("server", server);
 			binds.put("arguments", args);
-			GroovyShell shell = new GroovyShell(new Binding(binds));
-			return shell.evaluate(script);
+			return scriptCache.run(script, new Binding(binds));
 		} catch (Exception e) {
 			e.printStackTrace(System.err);
 			throw new RuntimeException("Failed to invoke script", e);
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getActiveClosures()
+	 */
+	@Override
+	public int getActiveClosures() {
+		return engine.getActive();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getQueuedClosures()
+	 */
+	@Override
+	public int getQueuedClosures() {
+		return engine.getQueued();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getCompletedClosures()
+	 */
+	@Override
+	public long getCompletedClosures() {
+		return engine.getCompleted();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getRejectedClosures()
+	 */
+	@Override
+	public long getRejectedClosures() {
+		return engine.getRejected();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getTimedOutClosures()
+	 */
+	@Override
+	public long getTimedOutClosures() {
+		return engine.getTimedOut();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getCancelledClosures()
+	 */
+	@Override
+	public long getCancelledClosures() {
+		return engine.getCancelled();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureThreads()
+	 */
+	@Override
+	public int getClosureThreads() {
+		return engine.getThreads();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setClosureThreads(int)
+	 */
+	@Override
+	public void setClosureThreads(int threads) {
+		engine.setThreads(threads);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureQueueCapacity()
+	 */
+	@Override
+	public int getClosureQueueCapacity() {
+		return engine.getQueueCapacity();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureTimeout()
+	 */
+	@Override
+	public long getClosureTimeout() {
+		return engine.getDefaultTimeout();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setClosureTimeout(long)
+	 */
+	@Override
+	public void setClosureTimeout(long timeout) {
+		engine.setDefaultTimeout(timeout);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCacheHits()
+	 */
+	@Override
+	public long getScriptCacheHits() {
+		return scriptCache.getCache().getHits();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCacheMisses()
+	 */
+	@Override
+	public long getScriptCacheMisses() {
+		return scriptCache.getCache().getMisses();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCacheEvictions()
+	 */
+	@Override
+	public long getScriptCacheEvictions() {
+		return scriptCache.getCache().getEvictions();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCacheSize()
+	 */
+	@Override
+	public int getScriptCacheSize() {
+		return scriptCache.getCache().size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCacheMaxSize()
+	 */
+	@Override
+	public int getScriptCacheMaxSize() {
+		return scriptCache.getCache().getMaxSize();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setScriptCacheMaxSize(int)
+	 */
+	@Override
+	public void setScriptCacheMaxSize(int maxSize) {
+		scriptCache.getCache().setMaxSize(maxSize);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getScriptCompileTime()
+	 */
+	@Override
+	public long getScriptCompileTime() {
+		return scriptCache.getCompileTime();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#clearScriptCache()
+	 */
+	@Override
+	public void clearScriptCache() {
+		scriptCache.getCache().clear();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureCacheHits()
+	 */
+	@Override
+	public long getClosureCacheHits() {
+		return closureCache.getCache().getHits();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureCacheMisses()
+	 */
+	@Override
+	public long getClosureCacheMisses() {
+		return closureCache.getCache().getMisses();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureCacheEvictions()
+	 */
+	@Override
+	public long getClosureCacheEvictions() {
+		return closureCache.getCache().getEvictions();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureCacheSize()
+	 */
+	@Override
+	public int getClosureCacheSize() {
+		return closureCache.getCache().size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#getClosureCacheMaxSize()
+	 */
+	@Override
+	public int getClosureCacheMaxSize() {
+		return closureCache.getCache().getMaxSize();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see org.helios.gmx.jmx.remote.RemotableMBeanServerMBean#setClosureCacheMaxSize(int)
+	 */
+	@Override
+	public void setClosureCacheMaxSize(int maxSize) {
+		closureCache.getCache().setMaxSize(maxSize);
+	}
+	
 	/**
 	 * The URL of the reverse class loader
 	 * @return the reverseClassLoadURL
@@ -265,6 +1094,20 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 	 */
 	@Override
 	public void postDeregister() {
+		engine.shutdown();
+		scheduler.shutdown();
+		if(relay!=null) relay.shutdown();
+		synchronized(this) {
+			if(journal!=null) {
+				journal.close();
+				journal = null;
+			}
+		}
+		meter.unregister();
+		for(StreamSink sink: streams.values()) {
+			sink.cancel();
+		}
+		streams.clear();
 	}
 
 	/**
@@ -273,6 +1116,13 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 	 */
 	@Override
 	public void postRegister(Boolean registrationDone) {
+		if(Boolean.TRUE.equals(registrationDone)) {
+			try {
+				meter.register(server, objectName);
+			} catch (Exception e) {
+				e.printStackTrace(System.err);
+			}
+		}
 	}
 
 	/**
@@ -291,6 +1141,7 @@ public class RemotableMBeanServer implements RemotableMBeanServerMBean, Serializ
 	public ObjectName preRegister(MBeanServer server, ObjectName name) throws Exception {
 		this.server = server;
 		objectName = name;	
+		relay = new NotificationRelay(server, name);
 		try {
 			gmx = newInstance.invoke(null, server);
 		} catch (Exception e) {
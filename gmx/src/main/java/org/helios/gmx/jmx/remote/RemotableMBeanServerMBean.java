@@ -25,11 +25,15 @@
 package org.helios.gmx.jmx.remote;
 
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 
 import groovy.lang.Closure;
 
 import javax.management.MBeanRegistration;
 import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
 
 /**
  * <p>Title: RemotableMBeanServerMBean</p>
@@ -49,6 +53,53 @@ public interface RemotableMBeanServerMBean extends MBeanServer, MBeanRegistratio
 	 */
 	public Object invokeScript(String script, Object...args);
 	
+	/**
+	 * Returns the number of script invocations that found their compiled script in the script cache
+	 * @return the number of script cache hits
+	 */
+	public long getScriptCacheHits();
+	
+	/**
+	 * Returns the number of script invocations that had to compile their script
+	 * @return the number of script cache misses
+	 */
+	public long getScriptCacheMisses();
+	
+	/**
+	 * Returns the number of compiled scripts evicted from the script cache
+	 * @return the number of script cache evictions
+	 */
+	public long getScriptCacheEvictions();
+	
+	/**
+	 * Returns the number of cached compiled scripts
+	 * @return the number of cached compiled scripts
+	 */
+	public int getScriptCacheSize();
+	
+	/**
+	 * Returns the maximum number of cached compiled scripts
+	 * @return the maximum number of cached compiled scripts
+	 */
+	public int getScriptCacheMaxSize();
+	
+	/**
+	 * Sets the maximum number of cached compiled scripts
+	 * @param maxSize the maximum number of cached compiled scripts
+	 */
+	public void setScriptCacheMaxSize(int maxSize);
+	
+	/**
+	 * Returns the total time spent compiling scripts
+	 * @return the script compile time in ms.
+	 */
+	public long getScriptCompileTime();
+	
+	/**
+	 * Clears the script cache, releasing the cached script classes
+	 */
+	public void clearScriptCache();
+	
 	/**
 	 * Invokes the passed closure and returns the result
 	 * @param closure The closure
@@ -65,6 +116,358 @@ public interface RemotableMBeanServerMBean extends MBeanServer, MBeanRegistratio
 	 */
 	public Object invokeClosure(byte[] closureBytes, Object...arguments);	
 	
+	/**
+	 * Invokes the closure extracted from the passed byte array and returns the result.
+	 * The closure's classes are loaded through a class loader cached by the passed closure key, 
+	 * so repeat invocations of the same closure class load no classes.
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @return the return value of the closure
+	 */
+	public Object invokeClosure(String closureKey, byte[] closureBytes, Object[] arguments);
+	
+	/**
+	 * Invokes the closure extracted from the passed byte array with a deadline and returns the result.
+	 * @param invocationId The client assigned invocation id through which the invocation can be cancelled
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @param timeout The timeout in ms. Zero waits without a deadline and a negative value applies the default closure timeout.
+	 * @return the return value of the closure
+	 */
+	public Object invokeClosure(String invocationId, String closureKey, byte[] closureBytes, Object[] arguments, long timeout);
+	
+	/**
+	 * Cancels the identified closure invocation, interrupting the worker thread executing it
+	 * @param invocationId The invocation id passed to {@link #invokeClosure(String, String, byte[], Object[], long)}
+	 * @return true if the invocation was running or queued and has been cancelled
+	 */
+	public boolean cancelClosure(String invocationId);
+	
+	/**
+	 * Invokes the closure extracted from the passed byte array and returns its outcome together with the resources the invocation consumed
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @return the closure result, carrying the invocation metrics if closure metering is enabled
+	 */
+	public ClosureResult invokeClosureMetered(String closureKey, byte[] closureBytes, Object[] arguments);
+	
+	/**
+	 * Returns the number of closures being executed
+	 * @return the number of active closures
+	 */
+	public int getActiveClosures();
+	
+	/**
+	 * Returns the number of closures waiting for a worker thread
+	 * @return the number of queued closures
+	 */
+	public int getQueuedClosures();
+	
+	/**
+	 * Returns the number of completed closure invocations
+	 * @return the number of completed closures
+	 */
+	public long getCompletedClosures();
+	
+	/**
+	 * Returns the number of closure invocations rejected because all workers were busy and the queue was full
+	 * @return the number of rejected closures
+	 */
+	public long getRejectedClosures();
+	
+	/**
+	 * Returns the number of closure invocations that exceeded their deadline
+	 * @return the number of timed out closures
+	 */
+	public long getTimedOutClosures();
+	
+	/**
+	 * Returns the number of cancelled closure invocations
+	 * @return the number of cancelled closures
+	 */
+	public long getCancelledClosures();
+	
+	/**
+	 * Returns the number of closure worker threads
+	 * @return the number of closure worker threads
+	 */
+	public int getClosureThreads();
+	
+	/**
+	 * Sets the number of closure worker threads
+	 * @param threads the number of closure worker threads
+	 */
+	public void setClosureThreads(int threads);
+	
+	/**
+	 * Returns the capacity of the closure invocation queue
+	 * @return the closure queue capacity
+	 */
+	public int getClosureQueueCapacity();
+	
+	/**
+	 * Returns the default closure invocation timeout
+	 * @return the default timeout in ms. Zero means no deadline.
+	 */
+	public long getClosureTimeout();
+	
+	/**
+	 * Sets the default closure invocation timeout
+	 * @param timeout the default timeout in ms. Zero means no deadline.
+	 */
+	public void setClosureTimeout(long timeout);
+	
+	/**
+	 * Invokes a batch of closures in one call and returns the outcome of each. 
+	 * A failing closure does not stop the batch, its exception is returned in its result.
+	 * @param closureKeys The closure keys as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closures serialized as byte arrays
+	 * @param arguments The optional arguments of each closure. Can be null.
+	 * @param parallel If true, the closures are executed concurrently, otherwise they are executed in order
+	 * @return the closure results in the same order as the closures
+	 */
+	public List<ClosureResult> invokeClosures(String[] closureKeys, byte[][] closureBytes, Object[][] arguments, boolean parallel);
+	
+	/**
+	 * Starts a streaming closure and returns the id of its stream. The closure is passed a {@link StreamSink} after the Gmx
+	 * and emits its result items into the sink, from which they are pulled in chunks through {@link #nextStreamChunk(String, long)}.
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @param chunkSize The number of items per chunk
+	 * @return the stream id
+	 */
+	public String openStream(String closureKey, byte[] closureBytes, Object[] arguments, int chunkSize);
+	
+	/**
+	 * Waits for the next chunk of the identified stream for up to the passed timeout
+	 * @param streamId The stream id
+	 * @param timeout The timeout in ms.
+	 * @return the next chunk, which is empty if no chunk was ready within the timeout
+	 */
+	public StreamChunk nextStreamChunk(String streamId, long timeout);
+	
+	/**
+	 * Cancels and closes the identified stream
+	 * @param streamId The stream id
+	 */
+	public void closeStream(String streamId);
+	
+	/**
+	 * Returns the number of open closure result streams
+	 * @return the number of open streams
+	 */
+	public int getOpenStreamCount();
+	
+	/**
+	 * Installs the closure extracted from the passed byte array and returns a handle through which it can be invoked
+	 * @param clientId The identifier of the registering client
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @return the closure handle
+	 */
+	public String registerClosure(String clientId, String closureKey, byte[] closureBytes);
+	
+	/**
+	 * Invokes the installed closure with the passed handle and returns the result
+	 * @param handle The closure handle returned by {@link #registerClosure(String, String, byte[])}
+	 * @param arguments optional arguments
+	 * @return the return value of the closure
+	 * @throws UnknownClosureHandleException thrown if the handle is unknown or has expired
+	 */
+	public Object invokeClosureHandle(String handle, Object[] arguments);
+	
+	/**
+	 * Uninstalls the closure with the passed handle
+	 * @param handle The closure handle
+	 * @return true if the handle was registered
+	 */
+	public boolean unregisterClosure(String handle);
+	
+	/**
+	 * Uninstalls all the closures registered by the passed client and cancels its scheduled closures and notification subscriptions
+	 * @param clientId The client identifier
+	 * @return the number of uninstalled closures and cancelled schedules and subscriptions
+	 */
+	public int unregisterClient(String clientId);
+	
+	/**
+	 * Returns the number of installed closures
+	 * @return the number of installed closures
+	 */
+	public int getRegisteredClosureCount();
+	
+	/**
+	 * Returns the number of closure handles that expired
+	 * @return the number of expired closure handles
+	 */
+	public long getExpiredClosureHandles();
+	
+	/**
+	 * Returns the time a closure handle can be idle before it expires
+	 * @return the closure handle idle timeout in ms.
+	 */
+	public long getClosureHandleIdleTimeout();
+	
+	/**
+	 * Sets the time a closure handle can be idle before it expires
+	 * @param idleTimeout the closure handle idle timeout in ms.
+	 */
+	public void setClosureHandleIdleTimeout(long idleTimeout);
+	
+	/**
+	 * Schedules the closure extracted from the passed byte array to run at a fixed rate in this JVM. 
+	 * Each execution is buffered as a {@link ClosureSample} in a ring buffer from which the client fetches the new samples with {@link #fetchSamples(String, long, int)}.
+	 * @param clientId The identifier of the scheduling client
+	 * @param closureKey The closure class name and bytecode hash as created by {@link ClosureClassCache#key(String, String)}
+	 * @param closureBytes The closure serialized as a byte array
+	 * @param arguments optional arguments
+	 * @param period The period in ms.
+	 * @param capacity The number of samples the ring buffer holds
+	 * @return the schedule id
+	 */
+	public String scheduleClosure(String clientId, String closureKey, byte[] closureBytes, Object[] arguments, long period, int capacity);
+	
+	/**
+	 * Returns the samples of the identified schedule taken after the passed sequence number
+	 * @param scheduleId The schedule id
+	 * @param sinceSequence The sequence number of the last sample already fetched, or 0 for all buffered samples
+	 * @param maxSamples The maximum number of samples to return
+	 * @return the sample batch
+	 */
+	public SampleBatch fetchSamples(String scheduleId, long sinceSequence, int maxSamples);
+	
+	/**
+	 * Cancels the identified schedule
+	 * @param scheduleId The schedule id
+	 * @return true if the schedule was found and cancelled
+	 */
+	public boolean unscheduleClosure(String scheduleId);
+	
+	/**
+	 * Returns the number of scheduled closures
+	 * @return the number of scheduled closures
+	 */
+	public int getScheduledClosureCount();
+	
+	/**
+	 * Returns the number of schedules that were cancelled because they had not been fetched for the idle timeout
+	 * @return the number of expired schedules
+	 */
+	public long getExpiredSchedules();
+	
+	/**
+	 * Returns the time a schedule can go without a fetch before it is cancelled
+	 * @return the schedule idle timeout in ms.
+	 */
+	public long getScheduleIdleTimeout();
+	
+	/**
+	 * Sets the time a schedule can go without a fetch before it is cancelled
+	 * @param idleTimeout the schedule idle timeout in ms.
+	 */
+	public void setScheduleIdleTimeout(long idleTimeout);
+	
+	/**
+	 * Subscribes to the notifications of an MBean in this MBeanServer, filtering and optionally aggregating them in this JVM.
+	 * The notifications that pass the filter, or the aggregate of each window, are emitted by this MBean as relay notifications 
+	 * whose type starts with <code>gmx.relay.&lt;subscription id&gt;.</code> and whose user data is the original notification.
+	 * @param clientId The identifier of the subscribing client
+	 * @param objectName The ObjectName of the MBean to subscribe to
+	 * @param filterKey The filter closure class name and bytecode hash
+	 * @param filterBytes The serialized filter closure, or null for no filtering
+	 * @param aggregatorKey The aggregator closure class name and bytecode hash
+	 * @param aggregatorBytes The serialized aggregator closure, or null for no aggregation
+	 * @param window The aggregation window in ms.
+	 * @return the subscription id
+	 */
+	public String subscribeNotifications(String clientId, ObjectName objectName, String filterKey, byte[] filterBytes, String aggregatorKey, byte[] aggregatorBytes, long window);
+	
+	/**
+	 * Subscribes to the notifications of an MBean in this MBeanServer, optionally recording the relayed notifications in the notification journal.
+	 * Journaled relay notifications carry the subscription's own sequence number, so the client can detect gaps and replay them with {@link #replayNotifications(String, long, long)}.
+	 * @param clientId The identifier of the subscribing client
+	 * @param objectName The ObjectName of the MBean to subscribe to
+	 * @param filterKey The filter closure class name and bytecode hash
+	 * @param filterBytes The serialized filter closure, or null for no filtering
+	 * @param aggregatorKey The aggregator closure class name and bytecode hash
+	 * @param aggregatorBytes The serialized aggregator closure, or null for no aggregation
+	 * @param window The aggregation window in ms.
+	 * @param journal true to record the relayed notifications in the notification journal
+	 * @return the subscription id
+	 */
+	public String subscribeNotifications(String clientId, ObjectName objectName, String filterKey, byte[] filterBytes, String aggregatorKey, byte[] aggregatorBytes, long window, boolean journal);
+	
+	/**
+	 * Replays the journaled notifications of a subscription in the passed sequence range
+	 * @param subscriptionId The subscription id
+	 * @param fromSequence The first sequence number to replay
+	 * @param toSequence The last sequence number to replay
+	 * @return a batch of the journaled notifications in the range
+	 */
+	public JournalBatch replayNotifications(String subscriptionId, long fromSequence, long toSequence);
+	
+	/**
+	 * Cancels the identified notification subscription
+	 * @param subscriptionId The subscription id
+	 * @return true if the subscription was found and cancelled
+	 */
+	public boolean unsubscribeNotifications(String subscriptionId);
+	
+	/**
+	 * Returns the number of active notification subscriptions
+	 * @return the number of notification subscriptions
+	 */
+	public int getNotificationSubscriptionCount();
+	
+	/**
+	 * Returns the number of notifications received by the notification subscriptions
+	 * @return the number of received notifications
+	 */
+	public long getReceivedNotifications();
+	
+	/**
+	 * Returns the number of notifications discarded by the subscription filters instead of being sent to clients
+	 * @return the number of filtered notifications
+	 */
+	public long getFilteredNotifications();
+	
+	/**
+	 * Returns the number of notifications and aggregates relayed to clients
+	 * @return the number of relayed notifications
+	 */
+	public long getRelayedNotifications();
+	
+	/**
+	 * Returns the capacity in bytes of the notification journal
+	 * @return the notification journal capacity
+	 */
+	public int getJournalCapacity();
+	
+	/**
+	 * Returns the number of notifications recorded in the notification journal
+	 * @return the number of journaled notifications
+	 */
+	public long getJournaledNotifications();
+	
+	/**
+	 * Returns the number of journaled notifications overwritten before they could be replayed
+	 * @return the number of evicted journal entries
+	 */
+	public long getEvictedJournalEntries();
+	
+	/**
+	 * Reads the named attributes from every MBean matching the passed pattern and query in one invocation.
+	 * @param pattern The ObjectName pattern to match MBeans with
+	 * @param query The optional query expression to filter the matched MBeans with
+	 * @param attributeNames The names of the attributes to read. If null or empty, all readable attributes are read.
+	 * @return a map of attribute values keyed by attribute name, keyed by MBean ObjectName
+	 */
+	public Map<ObjectName, Map<String, Object>> readAttributes(ObjectName pattern, QueryExp query, String[] attributeNames);
+	
 	/**
 	 * The URL of the reverse class loader
 	 * @return the reverseClassLoadURL
@@ -101,5 +504,41 @@ public interface RemotableMBeanServerMBean extends MBeanServer, MBeanRegistratio
 	 */
 	public void setReverseClassLoadURL(URL reverseClassLoadURL);
 	
+	/**
+	 * Returns the number of closure invocations that found their classes in the closure class cache
+	 * @return the number of closure class cache hits
+	 */
+	public long getClosureCacheHits();
+	
+	/**
+	 * Returns the number of closure invocations that had to load their classes
+	 * @return the number of closure class cache misses
+	 */
+	public long getClosureCacheMisses();
+	
+	/**
+	 * Returns the number of closure classes evicted from the closure class cache
+	 * @return the number of closure class cache evictions
+	 */
+	public long getClosureCacheEvictions();
+	
+	/**
+	 * Returns the number of cached closure classes
+	 * @return the number of cached closure classes
+	 */
+	public int getClosureCacheSize();
+	
+	/**
+	 * Returns the maximum number of cached closure classes
+	 * @return the maximum number of cached closure classes
+	 */
+	public int getClosureCacheMaxSize();
+	
+	/**
+	 * Sets the maximum number of cached closure classes
+	 * @param maxSize the maximum number of cached closure classes
+	 */
+	public void setClosureCacheMaxSize(int maxSize);
+	
 	
 }
@@ -0,0 +1,289 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: RemoteExecutionEngine</p>
+ * <p>Description: Executes closures inside the target JVM on a bounded pool of daemon worker threads with a bounded queue,
+ * rather than on the calling JMX connection thread. Each invocation has a deadline after which its worker is interrupted 
+ * and the caller is released, invocations submitted with an id can be cancelled by the client, and invocations that find 
+ * the pool and queue full are rejected immediately with a {@link RejectedExecutionException}. Cancellation is cooperative: 
+ * the worker thread is interrupted and closures that loop for a long time should check {@link Thread#isInterrupted()}.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.RemoteExecutionEngine</code></p>
+ */
+public class RemoteExecutionEngine {
+	/** The worker pool */
+	protected final ThreadPoolExecutor executor;
+	/** The running invocations that were submitted with an id, keyed by id */
+	protected final Map<String, Future<?>> invocations = new ConcurrentHashMap<String, Future<?>>();
+	/** The number of completed invocations */
+	protected final AtomicLong completed = new AtomicLong(0L);
+	/** The number of rejected invocations */
+	protected final AtomicLong rejected = new AtomicLong(0L);
+	/** The number of invocations that timed out */
+	protected final AtomicLong timedOut = new AtomicLong(0L);
+	/** The number of cancelled invocations */
+	protected final AtomicLong cancelled = new AtomicLong(0L);
+	/** The default invocation timeout in ms. */
+	protected volatile long defaultTimeout = DEFAULT_TIMEOUT;
+	
+	/** The default number of worker threads */
+	public static final int DEFAULT_THREADS = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+	/** The default capacity of the invocation queue */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+	/** The default invocation timeout in ms. */
+	public static final long DEFAULT_TIMEOUT = 60000L;
+	
+	/**
+	 * Creates a new RemoteExecutionEngine
+	 * @param threads The number of worker threads
+	 * @param queueCapacity The capacity of the invocation queue
+	 */
+	public RemoteExecutionEngine(int threads, int queueCapacity) {
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory(){
+			final AtomicInteger serial = new AtomicInteger(0);
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "GmxClosureWorker#" + serial.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Submits a task for execution
+	 * @param invocationId The optional invocation id through which the task can be cancelled
+	 * @param task The task
+	 * @return the future of the task
+	 * @throws RejectedExecutionException thrown if the pool and queue are full
+	 */
+	public <T> Future<T> submit(String invocationId, Callable<T> task) {
+		Future<T> future = null;
+		try {
+			future = executor.submit(task);
+		} catch (RejectedExecutionException ree) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("Closure execution rejected: all [" + executor.getMaximumPoolSize() + 
+					"] workers are busy and [" + executor.getQueue().size() + "] invocations are queued");
+		}
+		if(invocationId!=null) invocations.put(invocationId, future);
+		return future;
+	}
+	
+	/**
+	 * Submits a task for execution and waits for its result
+	 * @param invocationId The optional invocation id through which the task can be cancelled
+	 * @param task The task
+	 * @param timeout The timeout in ms. A value of zero waits without a deadline and a negative value applies the default timeout. 
+	 * @return the task result
+	 */
+	public <T> T execute(String invocationId, Callable<T> task, long timeout) {
+		long effective = effectiveTimeout(timeout);
+		Future<T> future = submit(invocationId, task);
+		return await(invocationId, future, effective==0 ? 0 : System.currentTimeMillis() + effective);
+	}
+	
+	/**
+	 * Resolves the passed timeout against the default timeout
+	 * @param timeout The timeout in ms. A value of zero means no deadline and a negative value is replaced with the default timeout.
+	 * @return the effective timeout in ms.
+	 */
+	public long effectiveTimeout(long timeout) {
+		return timeout<0 ? defaultTimeout : timeout;
+	}
+	
+	/**
+	 * Waits for a submitted task until the passed deadline, cancelling it if the deadline passes or the wait is interrupted
+	 * @param invocationId The invocation id the task was submitted with
+	 * @param future The future of the task
+	 * @param deadline The deadline as a UTC long, or zero for no deadline
+	 * @return the task result
+	 */
+	public <T> T await(String invocationId, Future<T> future, long deadline) {
+		try {
+			T result = null;
+			if(deadline==0) {
+				result = future.get();
+			} else {
+				result = future.get(Math.max(0, deadline-System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			}
+			completed.incrementAndGet();
+			return result;
+		} catch (TimeoutException te) {
+			future.cancel(true);
+			timedOut.incrementAndGet();
+			throw new RuntimeException("Closure invocation [" + invocationId + "] timed out", te);
+		} catch (CancellationException ce) {
+			throw new RuntimeException("Closure invocation [" + invocationId + "] was cancelled", ce);
+		} catch (InterruptedException ie) {
+			future.cancel(true);
+			cancelled.incrementAndGet();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for closure invocation [" + invocationId + "]", ie);
+		} catch (ExecutionException ee) {
+			completed.incrementAndGet();
+			throw new RuntimeException("Failed to invoke closure", ee.getCause());
+		} finally {
+			if(invocationId!=null) invocations.remove(invocationId);
+		}
+	}
+	
+	/**
+	 * Cancels the identified invocation, interrupting its worker
+	 * @param invocationId The invocation id
+	 * @return true if the invocation was running or queued and has been cancelled
+	 */
+	public boolean cancel(String invocationId) {
+		Future<?> future = invocationId==null ? null : invocations.remove(invocationId);
+		if(future!=null && future.cancel(true)) {
+			if(future instanceof Runnable) executor.remove((Runnable)future);
+			cancelled.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Stops the engine, interrupting the running invocations
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		invocations.clear();
+	}
+	
+	/**
+	 * Returns the number of invocations being executed
+	 * @return the number of active invocations
+	 */
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * Returns the number of invocations waiting for a worker
+	 * @return the number of queued invocations
+	 */
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Returns the number of completed invocations
+	 * @return the number of completed invocations
+	 */
+	public long getCompleted() {
+		return completed.get();
+	}
+	
+	/**
+	 * Returns the number of rejected invocations
+	 * @return the number of rejected invocations
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	/**
+	 * Returns the number of invocations that timed out
+	 * @return the number of timed out invocations
+	 */
+	public long getTimedOut() {
+		return timedOut.get();
+	}
+	
+	/**
+	 * Returns the number of cancelled invocations
+	 * @return the number of cancelled invocations
+	 */
+	public long getCancelled() {
+		return cancelled.get();
+	}
+	
+	/**
+	 * Returns the number of worker threads
+	 * @return the number of worker threads
+	 */
+	public int getThreads() {
+		return executor.getMaximumPoolSize();
+	}
+	
+	/**
+	 * Sets the number of worker threads
+	 * @param threads the number of worker threads
+	 */
+	public synchronized void setThreads(int threads) {
+		if(threads<1) throw new IllegalArgumentException("Invalid thread count [" + threads + "]", new Throwable());
+		if(threads>executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		} else {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		}
+	}
+	
+	/**
+	 * Returns the capacity of the invocation queue
+	 * @return the queue capacity
+	 */
+	public int getQueueCapacity() {
+		return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+	}
+	
+	/**
+	 * Returns the default invocation timeout
+	 * @return the default timeout in ms.
+	 */
+	public long getDefaultTimeout() {
+		return defaultTimeout;
+	}
+	
+	/**
+	 * Sets the default invocation timeout
+	 * @param defaultTimeout the default timeout in ms. Zero means no deadline.
+	 */
+	public void setDefaultTimeout(long defaultTimeout) {
+		if(defaultTimeout<0) throw new IllegalArgumentException("Invalid timeout [" + defaultTimeout + "]", new Throwable());
+		this.defaultTimeout = defaultTimeout;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Title: SampleBatch</p>
+ * <p>Description: The samples of a scheduled closure fetched in one call, together with the sequence number to fetch from next
+ * and the number of samples that were overwritten in the ring buffer before they could be fetched.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.SampleBatch</code></p>
+ */
+public class SampleBatch implements Serializable {
+	/**  */
+	private static final long serialVersionUID = 3180750934211462290L;
+	/** The fetched samples, in sequence order */
+	protected final ArrayList<ClosureSample> samples;
+	/** The sequence number of the last sample covered by this batch */
+	protected final long lastSequence;
+	/** The number of samples overwritten before they could be fetched */
+	protected final long dropped;
+	/** Indicates if the schedule is still running */
+	protected final boolean active;
+	
+	/**
+	 * Creates a new SampleBatch
+	 * @param samples The fetched samples, in sequence order
+	 * @param lastSequence The sequence number of the last sample covered by this batch
+	 * @param dropped The number of samples overwritten before they could be fetched
+	 * @param active Indicates if the schedule is still running
+	 */
+	public SampleBatch(ArrayList<ClosureSample> samples, long lastSequence, long dropped, boolean active) {
+		this.samples = samples;
+		this.lastSequence = lastSequence;
+		this.dropped = dropped;
+		this.active = active;
+	}
+
+	/**
+	 * Returns the fetched samples
+	 * @return the samples, in sequence order
+	 */
+	public List<ClosureSample> getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Returns the sequence number of the last sample covered by this batch, which is the sequence to fetch the next batch after
+	 * @return the last sequence number
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Returns the number of samples that were overwritten in the ring buffer before they could be fetched
+	 * @return the number of dropped samples
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Indicates if the schedule is still running
+	 * @return false if the schedule has been cancelled or has expired
+	 */
+	public boolean isActive() {
+		return active;
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("SampleBatch [samples:").append(samples.size())
+			.append(", lastSequence:").append(lastSequence)
+			.append(", dropped:").append(dropped)
+			.append(", active:").append(active).append("]").toString();
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.helios.gmx.util.LRUCache;
+
+/**
+ * <p>Title: ScriptCache</p>
+ * <p>Description: A size bounded, LRU cache of compiled Groovy script classes keyed by a hash of the script source.
+ * Each script is compiled once, by its own {@link GroovyClassLoader}, and each invocation only creates a new script instance 
+ * with a fresh binding. When a script class is evicted, its class loader's cache and the Groovy runtime's meta data for the class 
+ * are cleared so that the class and its loader can be collected.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.ScriptCache</code></p>
+ */
+public class ScriptCache {
+	/** The cached script classes keyed by source hash */
+	protected final LRUCache<String, Class<?>> scripts;
+	/** The parent class loader of the script class loaders */
+	protected final ClassLoader parent;
+	/** The total time spent compiling scripts in ms. */
+	protected final AtomicLong compileTime = new AtomicLong(0L);
+	
+	/** The default maximum number of cached scripts */
+	public static final int DEFAULT_MAX_SIZE = 128;
+	/** The class name prefix of the compiled scripts */
+	public static final String SCRIPT_NAME_PREFIX = "GmxScript";
+	
+	/**
+	 * Creates a new ScriptCache
+	 * @param maxSize The maximum number of cached scripts
+	 * @param parent The parent class loader of the script class loaders
+	 */
+	public ScriptCache(int maxSize, ClassLoader parent) {
+		this.parent = parent;
+		scripts = new LRUCache<String, Class<?>>(maxSize) {
+			@Override
+			protected void onEviction(String key, Class<?> value) {
+				release(value);
+			}
+		};
+	}
+	
+	/**
+	 * Executes the passed script source with the passed binding, compiling it only if it is not cached
+	 * @param source The script source
+	 * @param binding The script binding
+	 * @return the script's return value
+	 */
+	public Object run(String source, Binding binding) {
+		if(source==null) throw new IllegalArgumentException("The passed script was null", new Throwable());
+		Script script = InvokerHelper.createScript(getScriptClass(source), binding==null ? new Binding() : binding);
+		return script.run();
+	}
+	
+	/**
+	 * Returns the compiled script class for the passed source, compiling and caching it on a cache miss
+	 * @param source The script source
+	 * @return the compiled script class
+	 */
+	public Class<?> getScriptClass(String source) {
+		String key = hash(source);
+		Class<?> clazz = scripts.get(key);
+		if(clazz==null) {
+			long start = System.currentTimeMillis();
+			GroovyClassLoader loader = new GroovyClassLoader(parent);
+			Class<?> compiled = loader.parseClass(source, SCRIPT_NAME_PREFIX + key);
+			compileTime.addAndGet(System.currentTimeMillis()-start);
+			clazz = scripts.putIfAbsent(key, compiled);
+			if(clazz!=compiled) release(compiled);
+		}
+		return clazz;
+	}
+	
+	/**
+	 * Releases the Groovy runtime's references to the passed script class and clears its class loader's class cache
+	 * @param clazz The script class to release
+	 */
+	protected static void release(Class<?> clazz) {
+		InvokerHelper.removeClass(clazz);
+		ClassLoader loader = clazz.getClassLoader();
+		if(loader instanceof GroovyClassLoader.InnerLoader) {
+			loader = loader.getParent();
+		}
+		if(loader instanceof GroovyClassLoader) {
+			((GroovyClassLoader)loader).clearCache();
+		}
+	}
+	
+	/**
+	 * Computes the SHA-1 hash of the passed script source as a hex string
+	 * @param source The script source
+	 * @return the hex encoded hash
+	 */
+	protected static String hash(String source) {
+		try {
+			StringBuilder b = new StringBuilder();
+			for(byte x: MessageDigest.getInstance("SHA-1").digest(source.getBytes("UTF-8"))) {
+				b.append(String.format("%02x", x & 0xFF));
+			}
+			return b.toString();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to hash script source", e);
+		}
+	}
+	
+	/**
+	 * Returns the total time spent compiling scripts
+	 * @return the compile time in ms.
+	 */
+	public long getCompileTime() {
+		return compileTime.get();
+	}
+	
+	/**
+	 * Returns the cache
+	 * @return the cache
+	 */
+	public LRUCache<String, Class<?>> getCache() {
+		return scripts;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Title: StreamChunk</p>
+ * <p>Description: A chunk of the items emitted by a streaming closure through its {@link StreamSink}. 
+ * The last chunk of a stream is flagged as such and carries the closure's exception if it failed.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.StreamChunk</code></p>
+ */
+public class StreamChunk implements Serializable {
+	/**  */
+	private static final long serialVersionUID = 2361830935012398842L;
+	/** The chunk items */
+	protected final ArrayList<Object> items;
+	/** Indicates if this is the last chunk of the stream */
+	protected final boolean last;
+	/** The exception thrown by the streaming closure */
+	protected final RuntimeException error;
+	
+	/**
+	 * Creates a new StreamChunk
+	 * @param items The chunk items
+	 * @param last true if this is the last chunk of the stream
+	 * @param error The exception thrown by the streaming closure, or null if it did not fail
+	 */
+	public StreamChunk(ArrayList<Object> items, boolean last, Throwable error) {
+		this.items = items;
+		this.last = last;
+		this.error = ClosureResult.portable(error);
+	}
+	
+	/**
+	 * Returns the chunk items
+	 * @return the chunk items
+	 */
+	public List<Object> getItems() {
+		return items==null ? Collections.emptyList() : items;
+	}
+	
+	/**
+	 * Indicates if this is the last chunk of the stream
+	 * @return true if this is the last chunk
+	 */
+	public boolean isLast() {
+		return last;
+	}
+	
+	/**
+	 * Returns the exception thrown by the streaming closure
+	 * @return the error, or null if the closure did not fail
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("StreamChunk [items:").append(getItems().size())
+			.append(", last:").append(last).append(error==null ? "" : ", error:" + error.getMessage()).append("]").toString();
+	}
+}
@@ -0,0 +1,230 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Title: StreamSink</p>
+ * <p>Description: The sink a streaming closure emits its result items into, one at a time, instead of returning them all at once.
+ * Items are buffered into chunks of a fixed size and at most a few chunks are queued for the consumer. When the queue is full, 
+ * the emitting closure blocks until the consumer pulls a chunk, so the memory held by a stream is bounded regardless of how many 
+ * items the closure emits. A stream that is cancelled, or that the consumer stops pulling from for longer than the idle timeout, 
+ * aborts the closure with a {@link CancellationException} on its next emit.</p>
+ * <pre>
+ * gmx.stream({ gmx, sink -> gmx.queryNames(null, null).each { sink &lt;&lt; it.toString() } }).each { println it }
+ * </pre> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.StreamSink</code></p>
+ */
+public class StreamSink {
+	/** The stream identifier */
+	protected final String streamId;
+	/** The number of items per chunk */
+	protected final int chunkSize;
+	/** The time in ms. the consumer can stop pulling chunks before the stream is cancelled */
+	protected final long idleTimeout;
+	/** The queued chunks */
+	protected final BlockingQueue<StreamChunk> chunks = new ArrayBlockingQueue<StreamChunk>(MAX_QUEUED_CHUNKS);
+	/** The chunk being filled */
+	protected ArrayList<Object> current;
+	/** The thread running the streaming closure */
+	protected volatile Thread producer = null;
+	/** Indicates the stream has been cancelled */
+	protected volatile boolean cancelled = false;
+	/** Indicates the last chunk has been pulled */
+	protected volatile boolean drained = false;
+	/** The time the consumer last pulled a chunk */
+	protected volatile long lastPulled = System.currentTimeMillis();
+	
+	/** The default number of items per chunk */
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+	/** The maximum number of chunks queued for the consumer */
+	public static final int MAX_QUEUED_CHUNKS = 4;
+	/** The default time in ms. the consumer can stop pulling chunks before the stream is cancelled */
+	public static final long DEFAULT_IDLE_TIMEOUT = 120000L;
+	
+	/**
+	 * Creates a new StreamSink
+	 * @param streamId The stream identifier
+	 * @param chunkSize The number of items per chunk
+	 * @param idleTimeout The time in ms. the consumer can stop pulling chunks before the stream is cancelled
+	 */
+	public StreamSink(String streamId, int chunkSize, long idleTimeout) {
+		if(chunkSize<1) throw new IllegalArgumentException("Invalid chunk size [" + chunkSize + "]", new Throwable());
+		this.streamId = streamId;
+		this.chunkSize = chunkSize;
+		this.idleTimeout = idleTimeout;
+		current = new ArrayList<Object>(chunkSize);
+	}
+	
+	/**
+	 * Emits an item into the stream
+	 * @param item The item to emit
+	 */
+	public void emit(Object item) {
+		if(cancelled) throw new CancellationException("Stream [" + streamId + "] was cancelled");
+		current.add(item);
+		if(current.size()>=chunkSize) {
+			flush();
+		}
+	}
+	
+	/**
+	 * Emits an item into the stream. Supports the Groovy <code>sink &lt;&lt; item</code> syntax.
+	 * @param item The item to emit
+	 * @return this sink
+	 */
+	public StreamSink leftShift(Object item) {
+		emit(item);
+		return this;
+	}
+	
+	/**
+	 * Queues the items emitted so far as a chunk, without waiting for the chunk to fill
+	 */
+	public void flush() {
+		if(current.isEmpty()) return;
+		enqueue(new StreamChunk(current, false, null));
+		current = new ArrayList<Object>(chunkSize);
+	}
+	
+	/**
+	 * Runs the passed streaming closure invocation in the calling thread and queues the last chunk when it completes
+	 * @param invocation The streaming closure invocation
+	 */
+	public void produce(Callable<?> invocation) {
+		producer = Thread.currentThread();
+		Throwable error = null;
+		try {
+			invocation.call();
+		} catch (Throwable t) {
+			error = t;
+		} finally {
+			producer = null;
+		}
+		if(cancelled) return;
+		try {
+			enqueue(new StreamChunk(current, true, error));
+		} catch (CancellationException ce) {}
+		current = null;
+	}
+	
+	/**
+	 * Waits for a chunk to be queued for up to the passed timeout
+	 * @param timeout The timeout in ms.
+	 * @return the next chunk, or an empty chunk if none was queued within the timeout
+	 */
+	public StreamChunk nextChunk(long timeout) {
+		lastPulled = System.currentTimeMillis();
+		if(cancelled) throw new CancellationException("Stream [" + streamId + "] was cancelled");
+		StreamChunk chunk = null;
+		try {
+			chunk = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		lastPulled = System.currentTimeMillis();
+		if(chunk==null) return new StreamChunk(null, false, null);
+		if(chunk.isLast()) drained = true;
+		return chunk;
+	}
+	
+	/**
+	 * Cancels the stream, discarding the queued chunks and interrupting the streaming closure
+	 */
+	public void cancel() {
+		cancelled = true;
+		chunks.clear();
+		Thread t = producer;
+		if(t!=null) t.interrupt();
+	}
+	
+	/**
+	 * Queues the passed chunk, waiting while the queue is full
+	 * @param chunk The chunk to queue
+	 */
+	protected void enqueue(StreamChunk chunk) {
+		try {
+			while(!chunks.offer(chunk, 1000, TimeUnit.MILLISECONDS)) {
+				if(cancelled) throw new CancellationException("Stream [" + streamId + "] was cancelled");
+				if(isIdle(System.currentTimeMillis())) {
+					cancel();
+					throw new CancellationException("Stream [" + streamId + "] was abandoned by its consumer");
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Stream [" + streamId + "] was interrupted");
+		}
+	}
+	
+	/**
+	 * Determines if the consumer has not pulled a chunk for longer than the idle timeout
+	 * @param now The current time
+	 * @return true if the stream is idle
+	 */
+	public boolean isIdle(long now) {
+		return now-lastPulled > idleTimeout;
+	}
+	
+	/**
+	 * Indicates if the stream has been cancelled
+	 * @return true if the stream has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Indicates if the last chunk of the stream has been pulled
+	 * @return true if the stream is drained
+	 */
+	public boolean isDrained() {
+		return drained;
+	}
+	
+	/**
+	 * Returns the stream identifier
+	 * @return the stream identifier
+	 */
+	public String getStreamId() {
+		return streamId;
+	}
+	
+	/**
+	 * Returns the number of items per chunk
+	 * @return the chunk size
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.jmx.remote;
+
+/**
+ * <p>Title: UnknownClosureHandleException</p>
+ * <p>Description: Thrown when a closure is invoked by a handle that was never registered, was unregistered or has expired.
+ * Clients holding the closure can re-register it and retry.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.jmx.remote.UnknownClosureHandleException</code></p>
+ */
+public class UnknownClosureHandleException extends RuntimeException {
+	/**  */
+	private static final long serialVersionUID = 4263370573216488405L;
+	/** The unknown handle */
+	protected final String handle;
+
+	/**
+	 * Creates a new UnknownClosureHandleException
+	 * @param handle The unknown handle
+	 */
+	public UnknownClosureHandleException(String handle) {
+		super("Unknown closure handle [" + handle + "]");
+		this.handle = handle;
+	}
+
+	/**
+	 * Returns the unknown handle
+	 * @return the handle
+	 */
+	public String getHandle() {
+		return handle;
+	}
+}
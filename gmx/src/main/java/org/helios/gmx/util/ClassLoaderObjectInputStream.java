@@ -0,0 +1,66 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * <p>Title: ClassLoaderObjectInputStream</p>
+ * <p>Description: An ObjectInputStream that resolves classes through a specified class loader.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.util.ClassLoaderObjectInputStream</code></p>
+ */
+public class ClassLoaderObjectInputStream extends ObjectInputStream {
+	/** The class loader to resolve classes with */
+	protected final ClassLoader classLoader;
+	
+	/**
+	 * Creates a new ClassLoaderObjectInputStream
+	 * @param in The input stream to read from
+	 * @param classLoader The class loader to resolve classes with
+	 * @throws IOException thrown if the stream header cannot be read
+	 */
+	public ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+		super(in);
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.io.ObjectInputStream#resolveClass(java.io.ObjectStreamClass)
+	 */
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+		try {
+			return Class.forName(desc.getName(), false, classLoader);
+		} catch (ClassNotFoundException cnfe) {
+			return super.resolveClass(desc);
+		}
+	}
+}
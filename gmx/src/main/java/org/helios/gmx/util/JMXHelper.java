@@ -24,9 +24,17 @@
  */
 package org.helios.gmx.util;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 
+import javax.management.Attribute;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
+import javax.management.QueryExp;
 import javax.management.remote.JMXServiceURL;
 
 /**
@@ -124,4 +132,53 @@ public class JMXHelper {
 		}
 	}
 	
+	/**
+	 * Reads the named attributes from every MBean matching the passed pattern and query, using one <code>getAttributes</code> call per MBean.
+	 * MBeans that are unregistered while being read are skipped, and attributes that could not be read are omitted from the MBean's map.
+	 * @param conn The MBeanServer connection to read from
+	 * @param pattern The ObjectName pattern to match MBeans with. Null matches all MBeans.
+	 * @param query The optional query expression to filter the matched MBeans with 
+	 * @param attributeNames The names of the attributes to read. If null or empty, all the readable attributes of each MBean are read.
+	 * @return a map of attribute values keyed by attribute name, keyed by MBean ObjectName
+	 */
+	public static Map<ObjectName, Map<String, Object>> readAttributes(MBeanServerConnection conn, ObjectName pattern, QueryExp query, String...attributeNames) {
+		if(conn==null) throw new IllegalArgumentException("The passed MBeanServerConnection was null", new Throwable());
+		boolean allAttributes = attributeNames==null || attributeNames.length==0;
+		Map<ObjectName, Map<String, Object>> table = new HashMap<ObjectName, Map<String, Object>>();
+		try {
+			for(ObjectName on: conn.queryNames(pattern, query)) {
+				try {
+					String[] names = allAttributes ? readableAttributeNames(conn, on) : attributeNames;
+					Map<String, Object> values = new HashMap<String, Object>(names.length);
+					if(names.length>0) {
+						for(Object attr: conn.getAttributes(on, names)) {
+							values.put(((Attribute)attr).getName(), ((Attribute)attr).getValue());
+						}
+					}
+					table.put(on, values);
+				} catch (Exception e) {
+					/* MBean went away or rejected the read */
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to read attributes for [" + pattern + "]", e);
+		}
+		return table;
+	}
+	
+	/**
+	 * Returns the names of the readable attributes of the passed MBean
+	 * @param conn The MBeanServer connection
+	 * @param on The ObjectName of the MBean
+	 * @return an array of attribute names
+	 * @throws Exception thrown on any error retrieving the MBeanInfo
+	 */
+	private static String[] readableAttributeNames(MBeanServerConnection conn, ObjectName on) throws Exception {
+		List<String> names = new ArrayList<String>();
+		for(MBeanAttributeInfo info: conn.getMBeanInfo(on).getAttributes()) {
+			if(info.isReadable()) names.add(info.getName());
+		}
+		return names.toArray(new String[names.size()]);
+	}
+	
 }
@@ -0,0 +1,204 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Title: LRUCache</p>
+ * <p>Description: A small, synchronized, size bounded cache that evicts the least recently used entry and counts hits, misses and evictions.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.util.LRUCache</code></p>
+ * @param <K> The cache key type
+ * @param <V> The cache value type
+ */
+public class LRUCache<K, V> {
+	/** The access ordered map */
+	private final LinkedHashMap<K, V> map;
+	/** The maximum number of entries */
+	private volatile int maxSize;
+	/** The number of cache hits */
+	private final AtomicLong hits = new AtomicLong(0L);
+	/** The number of cache misses */
+	private final AtomicLong misses = new AtomicLong(0L);
+	/** The number of evictions */
+	private final AtomicLong evictions = new AtomicLong(0L);
+	
+	/**
+	 * Creates a new LRUCache
+	 * @param maxSize The maximum number of entries
+	 */
+	public LRUCache(int maxSize) {
+		if(maxSize<1) throw new IllegalArgumentException("Invalid max size [" + maxSize + "]", new Throwable());
+		this.maxSize = maxSize;
+		map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = -1788440950432208377L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if(size()>LRUCache.this.maxSize) {
+					evictions.incrementAndGet();
+					onEviction(eldest.getKey(), eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the cached value for the passed key, counting a hit or a miss
+	 * @param key The key
+	 * @return the cached value or null if it was not found
+	 */
+	public synchronized V get(K key) {
+		V value = map.get(key);
+		if(value==null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+	
+	/**
+	 * Caches the passed value, evicting the least recently used entry if the cache is full
+	 * @param key The key
+	 * @param value The value
+	 * @return the value previously bound to the key
+	 */
+	public synchronized V put(K key, V value) {
+		return map.put(key, value);
+	}
+	
+	/**
+	 * Caches the passed value unless a value is already bound to the key
+	 * @param key The key
+	 * @param value The value
+	 * @return the value bound to the key after the call
+	 */
+	public synchronized V putIfAbsent(K key, V value) {
+		V current = map.get(key);
+		if(current!=null) return current;
+		map.put(key, value);
+		return value;
+	}
+	
+	/**
+	 * Removes the entry for the passed key
+	 * @param key The key
+	 * @return the removed value
+	 */
+	public synchronized V remove(K key) {
+		return map.remove(key);
+	}
+	
+	/**
+	 * Clears the cache, passing each cleared entry to {@link #onEviction(Object, Object)}
+	 */
+	public synchronized void clear() {
+		for(Map.Entry<K, V> entry: map.entrySet()) {
+			onEviction(entry.getKey(), entry.getValue());
+		}
+		map.clear();
+	}
+	
+	/**
+	 * Callback when an entry is evicted. The default does nothing.
+	 * @param key The evicted key
+	 * @param value The evicted value
+	 */
+	protected void onEviction(K key, V value) {
+		
+	}
+	
+	/**
+	 * Returns a copy of the cached entries, without counting hits or changing the access order
+	 * @return a map of the cached entries, least recently used first
+	 */
+	public synchronized Map<K, V> snapshot() {
+		return new LinkedHashMap<K, V>(map);
+	}
+	
+	/**
+	 * Returns the number of cached entries
+	 * @return the number of cached entries
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+	
+	/**
+	 * Returns the maximum number of entries
+	 * @return the maximum number of entries
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Sets the maximum number of entries. Excess entries are evicted on the next put.
+	 * @param maxSize the maximum number of entries
+	 */
+	public void setMaxSize(int maxSize) {
+		if(maxSize<1) throw new IllegalArgumentException("Invalid max size [" + maxSize + "]", new Throwable());
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Returns the number of cache hits
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * Returns the number of cache misses
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * Returns the number of evictions
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/**
+	 * Resets the hit, miss and eviction counters
+	 */
+	public void resetStats() {
+		hits.set(0L);
+		misses.set(0L);
+		evictions.set(0L);
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * Helios, OpenSource Monitoring
+ * Brought to you by the Helios Development Group
+ *
+ * Copyright 2007, Helios Development Group and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org. 
+ *
+ */
+package org.helios.gmx.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Title: Log2Histogram</p>
+ * <p>Description: A lock free histogram of non negative long values with one bucket per power of two. 
+ * Bucket <code>n</code> counts the values in the range <code>[2<sup>n-1</sup>, 2<sup>n</sup>)</code> and bucket zero counts zeros,
+ * so recording is a couple of atomic increments and percentiles are accurate to within a factor of two.</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * <p><code>org.helios.gmx.util.Log2Histogram</code></p>
+ */
+public class Log2Histogram {
+	/** The number of buckets */
+	public static final int BUCKETS = 64;
+	/** The bucket counts */
+	protected final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	/** The number of recorded values */
+	protected final AtomicLong count = new AtomicLong(0L);
+	/** The sum of the recorded values */
+	protected final AtomicLong sum = new AtomicLong(0L);
+	/** The largest recorded value */
+	protected final AtomicLong max = new AtomicLong(0L);
+	
+	/**
+	 * Returns the index of the bucket for the passed value
+	 * @param value The value
+	 * @return the bucket index
+	 */
+	public static int bucket(long value) {
+		if(value<=0) return 0;
+		return Math.min(BUCKETS-1, BUCKETS-Long.numberOfLeadingZeros(value));
+	}
+	
+	/**
+	 * Returns the largest value counted by the passed bucket
+	 * @param bucket The bucket index
+	 * @return the bucket's upper bound
+	 */
+	public static long upperBound(int bucket) {
+		if(bucket<=0) return 0L;
+		if(bucket>=BUCKETS-1) return Long.MAX_VALUE;
+		return (1L << bucket)-1;
+	}
+	
+	/**
+	 * Records a value. Negative values, which indicate a measurement that is not available, are ignored.
+	 * @param value The value to record
+	 */
+	public void record(long value) {
+		if(value<0) return;
+		buckets.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while(value>current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * Returns the approximate value below which the passed percentage of the recorded values fall
+	 * @param percentile The percentile, between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, capped at the largest recorded value 
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if(total==0) return 0L;
+		long rank = (long)Math.ceil(total * Math.min(100d, Math.max(0d, percentile)) / 100d);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if(seen>=rank && seen>0) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * Returns the bucket counts
+	 * @return an array of counts, indexed by bucket
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+	
+	/**
+	 * Returns the number of recorded values
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Returns the sum of the recorded values
+	 * @return the sum of the recorded values
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+	
+	/**
+	 * Returns the mean of the recorded values
+	 * @return the mean, or zero if no values have been recorded
+	 */
+	public long getMean() {
+		long total = count.get();
+		return total==0 ? 0L : sum.get()/total;
+	}
+	
+	/**
+	 * Returns the largest recorded value
+	 * @return the largest recorded value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Clears the histogram
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0L);
+		}
+		count.set(0L);
+		sum.set(0L);
+		max.set(0L);
+	}
+	
+	/**
+	 * Constructs a <code>String</code> with key attributes in name = value format.
+	 * @return a <code>String</code> representation of this object.
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder("Log2Histogram [count:").append(getCount())
+			.append(", mean:").append(getMean()).append(", p99:").append(getPercentile(99))
+			.append(", max:").append(getMax()).append("]").toString();
+	}
+}
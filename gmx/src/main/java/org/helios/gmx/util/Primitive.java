@@ -24,6 +24,9 @@
  */
 package org.helios.gmx.util;
 
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -288,6 +291,107 @@ public enum Primitive {
 	}
 	
 	
+	/**
+	 * Computes the cost of passing the passed value as an argument of the passed type:<ul>
+	 * 	<li><b>0</b>: The value is an instance of the type (or the type's upconvert), or is null for a non primitive type.</li>
+	 * 	<li><b>1</b>: The value can be coerced to the type by {@link #coerce(Class, Object)}.</li>
+	 * 	<li><b>-1</b>: The value cannot be passed as the type.</li>
+	 * </ul>
+	 * @param type The parameter type
+	 * @param value The argument value
+	 * @return the coercion cost
+	 */
+	public static int coercionCost(Class<?> type, Object value) {
+		if(type==null) return -1;
+		if(value==null) return type.isPrimitive() ? -1 : 0;
+		Class<?> target = isPrimitive(type) ? up(type) : type;
+		if(target.isInstance(value)) return 0;
+		Primitive p = UCLASS_TO_P.get(target);
+		if(p!=null) {
+			return p.coerceValue(value)==null ? -1 : 1;
+		}
+		if(target==String.class && value instanceof CharSequence) return 1;
+		if(target.isArray()) {
+			Object[] items = items(value);
+			if(items==null) return -1;
+			Class<?> component = target.getComponentType();
+			for(Object item: items) {
+				if(coercionCost(component, item)<0) return -1;
+			}
+			return 1;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Coerces the passed value to the passed type. Numbers are converted between numeric types where the value fits, 
+	 * single character strings are converted to chars, char sequences to strings, and collections or arrays to arrays of the type's component.
+	 * @param type The type to coerce to
+	 * @param value The value to coerce
+	 * @return the coerced value, boxed if the type is primitive
+	 */
+	public static Object coerce(Class<?> type, Object value) {
+		int cost = coercionCost(type, value);
+		if(cost<0) throw new IllegalArgumentException("Cannot coerce [" + (value==null ? "null" : value.getClass().getName()) + "] to [" + (type==null ? "null" : type.getName()) + "]", new Throwable());
+		if(cost==0) return value;
+		Class<?> target = isPrimitive(type) ? up(type) : type;
+		Primitive p = UCLASS_TO_P.get(target);
+		if(p!=null) return p.coerceValue(value);
+		if(target==String.class) return value.toString();
+		Object[] items = items(value);
+		Class<?> component = target.getComponentType();
+		Object array = Array.newInstance(component, items.length);
+		for(int i = 0; i < items.length; i++) {
+			Array.set(array, i, coerce(component, items[i]));
+		}
+		return array;
+	}
+	
+	/**
+	 * Returns the items of a collection or array
+	 * @param value The collection or array
+	 * @return the items, or null if the value is not a collection or array
+	 */
+	private static Object[] items(Object value) {
+		if(value instanceof Collection) return ((Collection<?>)value).toArray();
+		if(value!=null && value.getClass().isArray()) {
+			Object[] items = new Object[Array.getLength(value)];
+			for(int i = 0; i < items.length; i++) {
+				items[i] = Array.get(value, i);
+			}
+			return items;
+		}
+		return null;
+	}
+	
+	/**
+	 * Converts the passed value to this primitive's upconvert type
+	 * @param value The value to convert
+	 * @return the converted value or null if the value cannot be converted without loss
+	 */
+	private Object coerceValue(Object value) {
+		if(uclazz.isInstance(value)) return value;
+		switch(this) {
+			case CHAR:
+				if(value instanceof CharSequence && ((CharSequence)value).length()==1) return ((CharSequence)value).charAt(0);
+				return null;
+			case FLOAT:
+				return value instanceof Number ? ((Number)value).floatValue() : null;
+			case DOUBLE:
+				return value instanceof Number ? ((Number)value).doubleValue() : null;
+			case BYTE: case SHORT: case INT: case LONG:
+				if(!(value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long || value instanceof BigInteger)) return null;
+				if(value instanceof BigInteger && ((BigInteger)value).bitLength()>63) return null;
+				long v = ((Number)value).longValue();
+				if(this==BYTE) return (v>=Byte.MIN_VALUE && v<=Byte.MAX_VALUE) ? Byte.valueOf((byte)v) : null;
+				if(this==SHORT) return (v>=Short.MIN_VALUE && v<=Short.MAX_VALUE) ? Short.valueOf((short)v) : null;
+				if(this==INT) return (v>=Integer.MIN_VALUE && v<=Integer.MAX_VALUE) ? Integer.valueOf((int)v) : null;
+				return Long.valueOf(v);
+			default:
+				return null;
+		}
+	}
+	
 	/**
 	 * Renders the primitive info as a string
 	 * @return a string describing the primitive
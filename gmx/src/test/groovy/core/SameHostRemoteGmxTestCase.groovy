@@ -350,7 +350,7 @@ class GmxSameHostRemoteVMTestCase extends GroovyTestCase {
 		 }
 		 def listener = gmx.addListener(objectName, {filteredResults.add(it.getUserData())}, {return it.getUserData()%2==0;}, null);
 		 Assert.assertFalse("The handback expected of the listener", listener.isExpectHandback());
-		 Assert.assertEquals("The number of notification listeners registered", 1, tns.ListenerCount);
+		 Assert.assertEquals("The number of notification subscriptions filtered in the target", 1, gmx.remotedMBeanServer.NotificationSubscriptionCount);
 		 sendValues.each() {
 			 tns.sendMeANotification(it);
 		 }		 
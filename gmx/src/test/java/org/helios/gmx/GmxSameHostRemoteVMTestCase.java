@@ -23,15 +23,28 @@
  *
  */
 package org.helios.gmx;
+import groovy.lang.Closure;
+
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
+import javax.management.Attribute;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Logger;
+import org.helios.gmx.classloading.CachingMLet;
+import org.helios.gmx.jmx.ConnectionSupervisor;
+import org.helios.gmx.jmx.JournaledNotificationListener;
+import org.helios.gmx.jmx.ObjectNameAwareListener;
+import org.helios.gmx.jmx.remote.ClosureResult;
+import org.helios.gmx.jmx.remote.ClosureSample;
+import org.helios.gmx.jmx.remote.JournalBatch;
 import org.helios.gmx.util.ClosureCompiler;
 import org.helios.gmx.util.JMXHelper;
 import org.helios.gmx.util.jvmcontrol.JVMLauncher;
@@ -143,12 +156,257 @@ public class GmxSameHostRemoteVMTestCase {
 	    	Integer gcMbeanCount = gmx.queryNames(gcWildcard, null).size();
 	    	Integer gcRemoteMbeanCount = (Integer)gmx.exec(ClosureCompiler.compile("it, name, query -> return it.queryNames(name, query).size();"), gcWildcard, null);
 	    	Assert.assertEquals("The GC MBeanCount", gcMbeanCount, gcRemoteMbeanCount);
+	    	Assert.assertTrue("The Gmx is remoted", gmx.isRemoted());
+	    	Assert.assertEquals("The GC bulk read count", gcMbeanCount.intValue(), gmx.read(gcWildcard, "Name", "CollectionCount").size());
+	    	List<ClosureResult> results = gmx.batch().add(ClosureCompiler.compile("return it.getMBeanCount();"))
+	    		.add(ClosureCompiler.compile("it, name, query -> return it.queryNames(name, query).size();"), gcWildcard, null)
+	    		.add(ClosureCompiler.compile("throw new IllegalStateException('batch failure');")).parallel().execute();
+	    	Assert.assertEquals("The batch MBeanCount", gmx.getMBeanCount(), results.get(0).get());
+	    	Assert.assertEquals("The batch GC MBeanCount", gcMbeanCount, results.get(1).get());
+	    	Assert.assertFalse("The batch failure", results.get(2).isSuccess());
+	    	ClosureStream stream = gmx.stream(5, ClosureCompiler.compile("it, sink, name -> it.queryNames(name, null).each { sink << it.toString() };"), gcWildcard);
+	    	int streamed = 0;
+	    	while(stream.hasNext()) {
+	    		Assert.assertTrue("The streamed GC name", gcWildcard.apply(JMXHelper.objectName(stream.next().toString())));
+	    		streamed++;
+	    	}
+	    	Assert.assertEquals("The streamed GC MBeanCount", gcMbeanCount.intValue(), streamed);
+	    	ClosureResult measured = gmx.measure(ClosureCompiler.compile("return it.getMBeanCount();"));
+	    	Assert.assertEquals("The measured MBeanCount", gmx.getMBeanCount(), measured.get());
+	    	Assert.assertTrue("The measured wall time", measured.getMetrics().getWallTime() > 0);
+	    	ObjectName meterOn = gmx.queryNames(JMXHelper.objectName("org.helios.gmx:service=ClosureMetrics,*"), null).iterator().next();
+	    	Assert.assertTrue("The metered invocations", (Long)gmx.getAttribute(meterOn, "TotalInvocations") >= 7);
     	} finally {
     		if(gmx!=null) try { gmx.close(); } catch (Exception e) {}
     		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
     	}    	
     }
     
+    /**
+     * Validates that two remote Gmx instances to the same JMXServiceURL share one pooled connector
+     * and that the connector survives the first close.
+     */
+    @Test(timeout=20000)
+    public void testPooledConnectionSharing() throws Exception {
+    	int port = 18901;
+    	Gmx gmx1 = null, gmx2 = null;
+    	LaunchedJVMProcess jvmProcess = null;
+    	try {
+	    	jvmProcess = JVMLauncher.newJVMLauncher().timeout(5000).basicPortJmx(port).start();
+	    	gmx1 = Gmx.remote(jmxUrl(port));
+	    	gmx2 = Gmx.remote(jmxUrl(port));
+	    	Assert.assertSame("The shared connector", gmx1.getConnector(), gmx2.getConnector());
+	    	gmx1.close();
+	    	Assert.assertFalse("Gmx1 is connected", gmx1.isConnected());
+	    	Assert.assertEquals("The remote runtime name", gmx2.getJvmName(), gmx2.mbean(ManagementFactory.RUNTIME_MXBEAN_NAME).getProperty("Name"));
+    	} finally {
+    		if(gmx1!=null) try { gmx1.close(); } catch (Exception e) {}
+    		if(gmx2!=null) try { gmx2.close(); } catch (Exception e) {}
+    		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
+    	}
+    }
+    
+    /**
+     * Validates that repeat remote executions of the same closure reuse the cached closure class on the target,
+     * and that a reinstall loads the remote classes from the target's disk cache
+     */
+    @Test(timeout=20000)
+    public void testRemoteClosureClassCache() throws Exception {
+    	int port = 18902;
+    	Gmx gmx = null;
+    	LaunchedJVMProcess jvmProcess = null;
+    	try {
+	    	jvmProcess = JVMLauncher.newJVMLauncher().timeout(0).basicPortJmx(port).start();
+	    	gmx = Gmx.remote(jmxUrl(port));
+	    	Closure<?> closure = ClosureCompiler.compile("return it.getMBeanCount();");
+	    	Integer mbeanCount = null;
+	    	for(int i = 0; i < 3; i++) {
+	    		mbeanCount = (Integer)gmx.exec(closure);
+	    	}
+	    	Assert.assertNotNull("The remote MBeanCount", mbeanCount);
+	    	ObjectName remoteOn = gmx.getRemotedMBeanServer().getObjectName();
+	    	Assert.assertEquals("The closure cache misses", 1L, gmx.getAttribute(remoteOn, "ClosureCacheMisses"));
+	    	Assert.assertEquals("The closure cache hits", 2L, gmx.getAttribute(remoteOn, "ClosureCacheHits"));
+	    	// Reinstalling revalidates the classes cached on disk by the first install instead of downloading them
+	    	ObjectName classLoaderOn = gmx.getRemoteClassLoader().getObjectName();
+	    	Assert.assertEquals("The remote class loader", CachingMLet.class.getName(), gmx.getMBeanServerConnection().getObjectInstance(classLoaderOn).getClassName());
+	    	gmx.unregisterMBean(remoteOn);
+	    	gmx.unregisterMBean(classLoaderOn);
+	    	gmx.installRemote();
+	    	Assert.assertEquals("The reinstalled remote MBeanCount", mbeanCount, gmx.exec(closure));
+	    	Assert.assertEquals("The reinstall downloads", 0L, gmx.getAttribute(classLoaderOn, "Downloads"));
+	    	Assert.assertTrue("The reinstall revalidations", ((Long)gmx.getAttribute(classLoaderOn, "NotModified")) > 0);
+    	} finally {
+    		if(gmx!=null) try { gmx.close(); } catch (Exception e) {}
+    		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
+    	}
+    }
+    
+    /**
+     * Validates that an installed closure is invoked by handle and is re-installed when its handle expires,
+     * and that scheduled closures and filtered notification subscriptions run in the target
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=20000)
+    public void testInstalledClosureHandle() throws Exception {
+    	int port = 18903;
+    	Gmx gmx = null;
+    	LaunchedJVMProcess jvmProcess = null;
+    	try {
+	    	jvmProcess = JVMLauncher.newJVMLauncher().timeout(0).basicPortJmx(port).start();
+	    	gmx = Gmx.remote(jmxUrl(port));
+	    	RemoteClosure<?> closure = gmx.install(ClosureCompiler.compile("it, name -> return it.queryNames(name, null).size();"));
+	    	Integer mbeanCount = gmx.getMBeanCount();
+	    	ObjectName remoteOn = gmx.getRemotedMBeanServer().getObjectName();
+	    	for(int i = 0; i < 3; i++) {
+	    		Assert.assertEquals("The remote MBeanCount", mbeanCount, closure.call(new Object[]{null}));
+	    	}
+	    	Assert.assertEquals("The registered closure count", 1, gmx.getAttribute(remoteOn, "RegisteredClosureCount"));
+	    	String handle = closure.getHandle();
+	    	gmx.setAttribute(remoteOn, new Attribute("ClosureHandleIdleTimeout", 1000L));
+	    	Thread.sleep(1500);
+	    	Assert.assertEquals("The remote MBeanCount after expiry", mbeanCount, closure.call(new Object[]{null}));
+	    	Assert.assertFalse("The handle was re-issued", handle.equals(closure.getHandle()));
+	    	Assert.assertEquals("The expired handle count", 1L, gmx.getAttribute(remoteOn, "ExpiredClosureHandles"));
+	    	closure.close();
+	    	Assert.assertEquals("The registered closure count after close", 0, gmx.getAttribute(remoteOn, "RegisteredClosureCount"));
+	    	ClosureSchedule schedule = gmx.schedule(20, ClosureCompiler.compile("return it.getMBeanCount();"));
+	    	Thread.sleep(300);
+	    	List<ClosureSample> samples = schedule.fetch();
+	    	Assert.assertFalse("The remote samples were empty", samples.isEmpty());
+	    	Assert.assertEquals("The remote sample value", mbeanCount, samples.get(0).get());
+	    	Assert.assertEquals("The scheduled closure count", 1, gmx.getAttribute(remoteOn, "ScheduledClosureCount"));
+	    	schedule.close();
+	    	Assert.assertEquals("The scheduled closure count after close", 0, gmx.getAttribute(remoteOn, "ScheduledClosureCount"));
+	    	List<Object> received = new CopyOnWriteArrayList<Object>();
+	    	ObjectName delegateOn = JMXHelper.objectName("JMImplementation:type=MBeanServerDelegate");
+	    	Closure<Boolean> filter = (Closure<Boolean>)ClosureCompiler.compile("n -> return n.getMBeanName().getDomain().equals('gmxrelay');");
+	    	ObjectNameAwareListener filtered = gmx.addListener(delegateOn, (Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getMBeanName());"), 
+	    			filter, null, 0L, null, new Object[]{received});
+	    	ObjectNameAwareListener aggregated = gmx.addListener(delegateOn, (Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getUserData());"), 
+	    			filter, ClosureCompiler.compile("list -> return list.size();"), 100L, null, new Object[]{received});
+	    	Assert.assertEquals("The notification subscription count", 2, gmx.getAttribute(remoteOn, "NotificationSubscriptionCount"));
+	    	ObjectName relayedOn = JMXHelper.objectName("gmxrelay:type=Timer");
+	    	ObjectName ignoredOn = JMXHelper.objectName("gmxignored:type=Timer");
+	    	gmx.createMBean("javax.management.timer.Timer", ignoredOn);
+	    	gmx.createMBean("javax.management.timer.Timer", relayedOn);
+	    	while(received.size() < 2) Thread.sleep(50);
+	    	Assert.assertTrue("The relayed MBean name", received.contains(relayedOn));
+	    	Assert.assertTrue("The aggregate", received.contains(1));
+	    	Assert.assertFalse("The filtered MBean name", received.contains(ignoredOn));
+	    	Assert.assertTrue("The filtered notification count", ((Long)gmx.getAttribute(remoteOn, "FilteredNotifications")) >= 2);
+	    	gmx.removeListener(filtered);
+	    	gmx.removeListener(aggregated);
+	    	Assert.assertEquals("The notification subscription count after removal", 0, gmx.getAttribute(remoteOn, "NotificationSubscriptionCount"));
+	    	gmx.unregisterMBean(relayedOn);
+	    	gmx.unregisterMBean(ignoredOn);
+	    	List<Object> journaledNames = new CopyOnWriteArrayList<Object>();
+	    	JournaledNotificationListener journaled = (JournaledNotificationListener)gmx.addJournaledListener(delegateOn, 
+	    			(Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getMBeanName());"), filter, null, new Object[]{journaledNames});
+	    	ObjectName journaledOn = JMXHelper.objectName("gmxrelay:type=JournaledTimer");
+	    	gmx.createMBean("javax.management.timer.Timer", journaledOn);
+	    	while(journaledNames.isEmpty()) Thread.sleep(50);
+	    	Assert.assertEquals("The journaled MBean name", journaledOn, journaledNames.get(0));
+	    	Assert.assertEquals("The journaled sequence", 1L, journaled.getLastSequence());
+	    	JournalBatch journalBatch = gmx.replayNotifications(journaled.getSubscriptionId(), 1L, Long.MAX_VALUE);
+	    	Assert.assertEquals("The replayed notification count", 1, journalBatch.getNotifications().size());
+	    	Assert.assertEquals("The replayed notification sequence", 1L, journalBatch.getNotifications().get(0).getSequenceNumber());
+	    	Assert.assertEquals("The journaled notification count", 1L, gmx.getAttribute(remoteOn, "JournaledNotifications"));
+	    	gmx.onConnectionLostNotifications(null);
+	    	Assert.assertEquals("The notifications replayed after recovery", 0L, journaled.getReplayed());
+	    	Assert.assertEquals("The notifications received after recovery", 1, journaledNames.size());
+	    	gmx.removeListener(journaled);
+	    	gmx.unregisterMBean(journaledOn);
+    	} finally {
+    		if(gmx!=null) try { gmx.close(); } catch (Exception e) {}
+    		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
+    	}
+    }
+    
+    /**
+     * Validates that a submitted closure is interrupted on the target when it exceeds its deadline
+     */
+    @Test(timeout=30000)
+    public void testSubmittedClosureDeadline() throws Exception {
+    	int port = 18904;
+    	Gmx gmx = null;
+    	LaunchedJVMProcess jvmProcess = null;
+    	try {
+	    	jvmProcess = JVMLauncher.newJVMLauncher().timeout(0).basicPortJmx(port).start();
+	    	gmx = Gmx.remote(jmxUrl(port));
+	    	Assert.assertEquals("The submitted closure result", gmx.getDefaultDomain(), gmx.submit(0, ClosureCompiler.compile("return it.getDefaultDomain();")).get());
+	    	ClosureInvocation<?> invocation = gmx.submit(200, ClosureCompiler.compile("Thread.sleep(10000); return null;"));
+	    	try {
+	    		invocation.get();
+	    		Assert.fail("The slow closure did not time out");
+	    	} catch (ExecutionException ee) {}
+	    	ObjectName remoteOn = gmx.getRemotedMBeanServer().getObjectName();
+	    	Assert.assertEquals("The timed out closure count", 1L, gmx.getAttribute(remoteOn, "TimedOutClosures"));
+	    	long giveUp = System.currentTimeMillis() + 5000;
+	    	while(((Integer)gmx.getAttribute(remoteOn, "ActiveClosures"))>0 && System.currentTimeMillis() < giveUp) Thread.sleep(50);
+	    	Assert.assertEquals("The active closure count after the interrupt", 0, gmx.getAttribute(remoteOn, "ActiveClosures"));
+    	} finally {
+    		if(gmx!=null) try { gmx.close(); } catch (Exception e) {}
+    		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
+    	}
+    }
+    
+    /**
+     * Validates that an auto reconnecting Gmx reconnects after its connector is closed, restores its listeners,
+     * and reinstalls the remotable MBeanServer and resubscribes its relayed listeners when the remotable MBeanServer is gone
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=30000)
+    public void testAutoReconnect() throws Exception {
+    	int port = 18905;
+    	Gmx gmx = null;
+    	LaunchedJVMProcess jvmProcess = null;
+    	try {
+	    	jvmProcess = JVMLauncher.newJVMLauncher().timeout(0).basicPortJmx(port).start();
+	    	gmx = Gmx.remote(JMXHelper.serviceURL(jmxUrl(port)), null, true);
+	    	ConnectionSupervisor supervisor = gmx.getConnectionSupervisor();
+	    	Assert.assertTrue("The supervisor MBean is registered", ManagementFactory.getPlatformMBeanServer().isRegistered(supervisor.getMBeanObjectName()));
+	    	ObjectName delegateOn = JMXHelper.objectName("JMImplementation:type=MBeanServerDelegate");
+	    	List<Object> plainNames = new CopyOnWriteArrayList<Object>();
+	    	List<Object> journaledNames = new CopyOnWriteArrayList<Object>();
+	    	gmx.addListener(delegateOn, (Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getMBeanName());"), new Object[]{plainNames});
+	    	JournaledNotificationListener journaled = (JournaledNotificationListener)gmx.addJournaledListener(delegateOn, 
+	    			(Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getMBeanName());"), 
+	    			(Closure<Boolean>)ClosureCompiler.compile("n -> return n.getMBeanName().getDomain().equals('gmxrelay');"), null, new Object[]{journaledNames});
+	    	ObjectName remoteOn = gmx.getRemotedMBeanServer().getObjectName();
+	    	gmx.getConnector().close();
+	    	while(supervisor.getReconnects() < 1) Thread.sleep(50);
+	    	Assert.assertTrue("The Gmx is connected", gmx.isConnected());
+	    	Assert.assertEquals("The disconnects", 1L, supervisor.getDisconnects());
+	    	Assert.assertEquals("The restored listeners", 2L, supervisor.getRestoredListeners());
+	    	Assert.assertEquals("The listener restore failures", 0L, supervisor.getListenerRestoreFailures());
+	    	Assert.assertEquals("The remote reinstalls", 0L, supervisor.getRemoteReinstalls());
+	    	Assert.assertTrue("The downtime", supervisor.getTotalDowntime() > 0);
+	    	ObjectName firstOn = JMXHelper.objectName("gmxrelay:type=ReconnectedTimer");
+	    	gmx.createMBean("javax.management.timer.Timer", firstOn);
+	    	while(plainNames.size() < 1 || journaledNames.size() < 1) Thread.sleep(50);
+	    	Assert.assertEquals("The plain listener MBean name", firstOn, plainNames.get(0));
+	    	Assert.assertEquals("The journaled listener MBean name", firstOn, journaledNames.get(0));
+	    	gmx.unregisterMBean(remoteOn);
+	    	plainNames.clear();
+	    	gmx.getConnector().close();
+	    	while(supervisor.getReconnects() < 2) Thread.sleep(50);
+	    	Assert.assertEquals("The remote reinstalls", 1L, supervisor.getRemoteReinstalls());
+	    	Assert.assertTrue("The remotable MBeanServer is registered", gmx.isRegistered(remoteOn));
+	    	Assert.assertEquals("The listener restore failures", 0L, supervisor.getListenerRestoreFailures());
+	    	ObjectName secondOn = JMXHelper.objectName("gmxrelay:type=ReinstalledTimer");
+	    	gmx.createMBean("javax.management.timer.Timer", secondOn);
+	    	while(!plainNames.contains(secondOn) || journaledNames.size() < 2) Thread.sleep(50);
+	    	Assert.assertEquals("The journaled listener MBean name", secondOn, journaledNames.get(1));
+	    	Assert.assertEquals("The restarted journal sequence", 1L, journaled.getLastSequence());
+	    	gmx.close();
+	    	Assert.assertFalse("The supervisor MBean is registered", ManagementFactory.getPlatformMBeanServer().isRegistered(supervisor.getMBeanObjectName()));
+    	} finally {
+    		if(gmx!=null) try { gmx.close(); } catch (Exception e) {}
+    		if(jvmProcess!=null) try { jvmProcess.destroy(); } catch (Exception e) {}    		
+    	}
+    }
+    
     @Test
     public void testNewMBeanOpInvoker() throws Exception {
     	Gmx gmx = null;
@@ -1,132 +1,1046 @@
-package org.helios.gmx;
-
-
-import java.lang.management.ManagementFactory;
-
-
-
-import org.apache.log4j.BasicConfigurator;
-import org.apache.log4j.Logger;
-import org.junit.Before;
-import org.junit.Assert;
-import org.junit.BeforeClass;
-import org.junit.Rule;
-import org.junit.Test;
-import org.junit.rules.TestName;
-
-/**
- * <p>Title: GmxTestCase</p>
- * <p>Description: Test cases for {@link Gmx}</p> 
- * <p>Company: Helios Development Group LLC</p>
- * @author Whitehead (nwhitehead AT heliosdev DOT org)
- * @version $LastChangedRevision$
- * <p><code>org.helios.gmx.GmxTestCase</code></p>
- */
-public class GmxTestCase {
-	/** Tracks the test name */
-	@Rule
-    public TestName testName= new TestName();
-
-	/** Instance logger */
-	protected final Logger LOG = Logger.getLogger(getClass());
-	/** This JVM's PID */
-	public static final String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
-	
-	@BeforeClass
-	public static void classSetup() {
-		BasicConfigurator.configure();
-	}
-	
-	/**
-	 * {@inheritDoc}
-	 * @see junit.framework.TestCase#setUp()
-	 */	
-	@Before
-	public void setUp() {
-		String methodName = testName.getMethodName();
-		LOG.debug("\n\t******\n\t Test [" + getClass().getSimpleName() + "." + methodName + "]\n\t******");
-	}
-	
-	
-
-
-    /**
-     * Validates that the default domain name is returned through the property accessor.
-     */
-    @Test
-    public void testLocalDomain()  {
-    	String localDomain = ManagementFactory.getPlatformMBeanServer().getDefaultDomain();
-    	Gmx gmx = Gmx.newInstance();
-    	Assert.assertEquals("The default domain", localDomain, gmx.getProperty("defaultDomain"));        
-    }
-    
-    /**
-     * Validates that the domain names array is returned through the property accessor.
-     */
-    @Test
-    public void testLocalDomains()  {
-    	String[] domains = ManagementFactory.getPlatformMBeanServer().getDomains();
-    	Gmx gmx = Gmx.newInstance();    	
-    	Assert.assertArrayEquals("The domains array", domains, (Object[]) gmx.getProperty("domains"));        
-    }
-    
-    /**
-     * Validates that the MBean count is returned through the property accessor.
-     */
-    @Test
-    public void testMBeanCount()  {
-    	Integer mbeanCount = ManagementFactory.getPlatformMBeanServer().getMBeanCount();
-    	Gmx gmx = Gmx.newInstance();    	
-    	Assert.assertEquals("The MBean Count", mbeanCount, (Integer)gmx.getProperty("MBeanCount"));        
-    }
-    
-    /**
-     * Validates that the remote flag is returned through the property accessor.
-     */
-    @Test
-    public void testRemote()  {    	
-    	Gmx gmx = Gmx.newInstance();    	
-    	Assert.assertFalse("The MBean Remote Flag", (Boolean)gmx.getProperty("remote"));        
-    }
-    
-    /**
-     * Validates that the default domain name is returned through the property accessor for an attached Gmx.
-     */
-    @Test
-    public void testAttachedLocalDomain()  {
-    	String localDomain = ManagementFactory.getPlatformMBeanServer().getDefaultDomain();    	
-    	Gmx gmx = Gmx.attachInstance(pid);
-    	Assert.assertEquals("The default domain", localDomain, gmx.getProperty("defaultDomain"));        
-    }
-    
-    /**
-     * Validates that the domain names array is returned through the property accessor for an attached Gmx.
-     */
-    @Test
-    public void testAttachedLocalDomains()  {
-    	String[] domains = ManagementFactory.getPlatformMBeanServer().getDomains();
-    	Gmx gmx = Gmx.attachInstance(pid);    	
-    	Assert.assertArrayEquals("The domains array", domains, (Object[]) gmx.getProperty("domains"));        
-    }
-
-    /**
-     * Validates that the MBean count is returned through the property accessor for an attached Gmx.
-     */
-    @Test
-    public void testAttachedMBeanCount()  {
-    	Integer mbeanCount = ManagementFactory.getPlatformMBeanServer().getMBeanCount();
-    	Gmx gmx = Gmx.attachInstance(pid);    	
-    	Assert.assertEquals("The MBean Count", mbeanCount, (Integer)gmx.getProperty("MBeanCount"));        
-    }
-    
-    /**
-     * Validates that the remote flag is returned through the property accessor for an attached Gmx
-     */
-    @Test
-    public void testAttachedRemote()  {    	
-    	Gmx gmx = Gmx.attachInstance(pid);    	
-    	Assert.assertTrue("The MBean Remote Flag", (Boolean)gmx.getProperty("remote"));        
-    }
-    
-    
-}
+package org.helios.gmx;
+
+
+import groovy.lang.Closure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+import org.helios.gmx.classloading.ByteCodeRepository;
+import org.helios.gmx.classloading.CachingMLet;
+import org.helios.gmx.classloading.ClassByteCache;
+import org.helios.gmx.classloading.ClassByteCacheMBean;
+import org.helios.gmx.classloading.MappedResource;
+import org.helios.gmx.classloading.RequestThrottle;
+import org.helios.gmx.classloading.RequestThrottleMBean;
+import org.helios.gmx.classloading.ReverseClassLoader;
+import org.helios.gmx.jmx.AsyncNotificationListener;
+import org.helios.gmx.jmx.AsyncNotificationListener.OverflowPolicy;
+import org.helios.gmx.jmx.ClosureWrappingNotificationListener;
+import org.helios.gmx.jmx.ClosureWrappingNotificationListener.Coalesce;
+import org.helios.gmx.jmx.JournaledNotificationListener;
+import org.helios.gmx.jmx.ObjectNameAwareListener;
+import org.helios.gmx.jmx.PatternSubscription;
+import org.helios.gmx.jmx.PatternSubscriptionRegistry;
+import org.helios.gmx.jmx.remote.ClosureClassCache;
+import org.helios.gmx.jmx.remote.ClosureMeter;
+import org.helios.gmx.jmx.remote.ClosureMeterMBean;
+import org.helios.gmx.jmx.remote.ClosureResult;
+import org.helios.gmx.jmx.remote.ClosureSample;
+import org.helios.gmx.jmx.remote.ClosureScheduler;
+import org.helios.gmx.jmx.remote.InvocationMetrics;
+import org.helios.gmx.jmx.remote.JournalBatch;
+import org.helios.gmx.jmx.remote.NotificationJournal;
+import org.helios.gmx.jmx.remote.NotificationRelay;
+import org.helios.gmx.jmx.remote.RemotableMBeanServer;
+import org.helios.gmx.jmx.remote.RemoteExecutionEngine;
+import org.helios.gmx.jmx.remote.SampleBatch;
+import org.helios.gmx.notifications.NotificationTriggerService;
+import org.helios.gmx.util.ClosureCompiler;
+import org.helios.gmx.util.Log2Histogram;
+import org.junit.Before;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+/**
+ * <p>Title: GmxTestCase</p>
+ * <p>Description: Test cases for {@link Gmx}</p> 
+ * <p>Company: Helios Development Group LLC</p>
+ * @author Whitehead (nwhitehead AT heliosdev DOT org)
+ * @version $LastChangedRevision$
+ * <p><code>org.helios.gmx.GmxTestCase</code></p>
+ */
+public class GmxTestCase {
+	/** Tracks the test name */
+	@Rule
+    public TestName testName= new TestName();
+
+	/** Instance logger */
+	protected final Logger LOG = Logger.getLogger(getClass());
+	/** This JVM's PID */
+	public static final String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+	
+	@BeforeClass
+	public static void classSetup() {
+		BasicConfigurator.configure();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see junit.framework.TestCase#setUp()
+	 */	
+	@Before
+	public void setUp() {
+		String methodName = testName.getMethodName();
+		LOG.debug("\n\t******\n\t Test [" + getClass().getSimpleName() + "." + methodName + "]\n\t******");
+	}
+	
+	
+
+
+    /**
+     * Validates that the default domain name is returned through the property accessor.
+     */
+    @Test
+    public void testLocalDomain()  {
+    	String localDomain = ManagementFactory.getPlatformMBeanServer().getDefaultDomain();
+    	Gmx gmx = Gmx.newInstance();
+    	Assert.assertEquals("The default domain", localDomain, gmx.getProperty("defaultDomain"));        
+    }
+    
+    /**
+     * Validates that the domain names array is returned through the property accessor.
+     */
+    @Test
+    public void testLocalDomains()  {
+    	String[] domains = ManagementFactory.getPlatformMBeanServer().getDomains();
+    	Gmx gmx = Gmx.newInstance();    	
+    	Assert.assertArrayEquals("The domains array", domains, (Object[]) gmx.getProperty("domains"));        
+    }
+    
+    /**
+     * Validates that the MBean count is returned through the property accessor.
+     */
+    @Test
+    public void testMBeanCount()  {
+    	Integer mbeanCount = ManagementFactory.getPlatformMBeanServer().getMBeanCount();
+    	Gmx gmx = Gmx.newInstance();    	
+    	Assert.assertEquals("The MBean Count", mbeanCount, (Integer)gmx.getProperty("MBeanCount"));        
+    }
+    
+    /**
+     * Validates that the remote flag is returned through the property accessor.
+     */
+    @Test
+    public void testRemote()  {    	
+    	Gmx gmx = Gmx.newInstance();    	
+    	Assert.assertFalse("The MBean Remote Flag", (Boolean)gmx.getProperty("remote"));        
+    }
+    
+    /**
+     * Validates that the default domain name is returned through the property accessor for an attached Gmx.
+     */
+    @Test
+    public void testAttachedLocalDomain()  {
+    	String localDomain = ManagementFactory.getPlatformMBeanServer().getDefaultDomain();    	
+    	Gmx gmx = Gmx.attachInstance(pid);
+    	Assert.assertEquals("The default domain", localDomain, gmx.getProperty("defaultDomain"));        
+    }
+    
+    /**
+     * Validates that the domain names array is returned through the property accessor for an attached Gmx.
+     */
+    @Test
+    public void testAttachedLocalDomains()  {
+    	String[] domains = ManagementFactory.getPlatformMBeanServer().getDomains();
+    	Gmx gmx = Gmx.attachInstance(pid);    	
+    	Assert.assertArrayEquals("The domains array", domains, (Object[]) gmx.getProperty("domains"));        
+    }
+
+    /**
+     * Validates that the MBean count is returned through the property accessor for an attached Gmx.
+     */
+    @Test
+    public void testAttachedMBeanCount()  {
+    	Integer mbeanCount = ManagementFactory.getPlatformMBeanServer().getMBeanCount();
+    	Gmx gmx = Gmx.attachInstance(pid);    	
+    	Assert.assertEquals("The MBean Count", mbeanCount, (Integer)gmx.getProperty("MBeanCount"));        
+    }
+    
+    /**
+     * Validates that the remote flag is returned through the property accessor for an attached Gmx
+     */
+    @Test
+    public void testAttachedRemote()  {    	
+    	Gmx gmx = Gmx.attachInstance(pid);    	
+    	Assert.assertTrue("The MBean Remote Flag", (Boolean)gmx.getProperty("remote"));        
+    }
+
+    /**
+     * Validates that the parallel attacher attaches to the passed JVM within the per JVM timeout
+     */
+    @Test(timeout=30000)
+    public void testParallelAttach() throws Exception {
+    	ParallelAttacher attacher = ParallelAttacher.newParallelAttacher().timeout(10000);
+    	Gmx[] gmxes = attacher.attach(pid);
+    	try {
+	    	Assert.assertEquals("The attached Gmx count", 1, gmxes.length);
+	    	Assert.assertTrue("The attached Gmx is remote", gmxes[0].isRemote());
+	    	Assert.assertEquals("The attached MBean count", ManagementFactory.getPlatformMBeanServer().getMBeanCount(), gmxes[0].getMBeanCount());
+	    	Assert.assertTrue("The attach failures", attacher.getFailures().isEmpty());
+    	} finally {
+    		for(Gmx gmx: gmxes) gmx.close();
+    	}
+    }
+
+    /**
+     * Validates that handler errors are reported apart from attach failures and that attach failures reach the failure handler
+     */
+    @Test(timeout=30000)
+    public void testParallelAttachHandlerAndFailure() throws Exception {
+    	final AtomicInteger handled = new AtomicInteger(0);
+    	final Map<String, Throwable> reported = new ConcurrentHashMap<String, Throwable>();
+    	ParallelAttacher attacher = ParallelAttacher.newParallelAttacher().timeout(10000)
+    		.handler(new Closure<Void>(this) {
+    			public Void call(Object...args) {
+    				handled.incrementAndGet();
+    				throw new IllegalStateException("Handler failure");
+    			}
+    		})
+    		.onFailure(new Closure<Void>(this) {
+    			public Void call(Object...args) {
+    				reported.put((String)args[0], (Throwable)args[1]);
+    				return null;
+    			}
+    		});
+    	Gmx[] gmxes = attacher.attach(pid, "-1");
+    	Assert.assertEquals("The returned Gmx count", 0, gmxes.length);
+    	Assert.assertEquals("The handler call count", 1, handled.get());
+    	Assert.assertTrue("The handler error", attacher.getHandlerFailures().get(pid) instanceof IllegalStateException);
+    	Assert.assertFalse("The handler error reported as an attach failure", attacher.getFailures().containsKey(pid));
+    	Assert.assertNotNull("The attach failure", attacher.getFailures().get("-1"));
+    	Assert.assertSame("The reported attach failure", attacher.getFailures().get("-1"), reported.get("-1"));
+    }
+    
+    /**
+     * Validates that MBeans of the same class share one cached MBeanInfo and that unregistration invalidates the cached entry.
+     */
+    @Test
+    public void testMBeanInfoCache() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	MetaMBean[] pools = gmx.mbeans("java.lang:type=MemoryPool,*");
+    	Assert.assertTrue("More than one memory pool", pools.length>1);
+    	for(MetaMBean pool: pools) {
+    		Assert.assertSame("The shared MBeanInfo", pools[0].mbeanInfo.get(), pool.mbeanInfo.get());
+    	}
+    	ObjectName on = new ObjectName("org.helios.gmx.test:service=CacheInvalidation");
+    	ManagementFactory.getPlatformMBeanServer().registerMBean(new javax.management.StandardMBean(new java.io.StringReader(""), java.io.Closeable.class), on);
+    	gmx.mbean(on);
+    	long invalidations = gmx.getMBeanInfoCache().getInvalidations();
+    	ManagementFactory.getPlatformMBeanServer().unregisterMBean(on);
+    	Assert.assertEquals("The MBeanInfo invalidations", invalidations+1, gmx.getMBeanInfoCache().getInvalidations());
+    }
+    
+    /**
+     * Validates that operation arguments are coerced to the matched signature and that operation tables are shared by MBeanInfo.
+     */
+    @Test
+    public void testOperationDispatch() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	MetaMBean threadMBean = gmx.mbean(ManagementFactory.THREAD_MXBEAN_NAME);
+    	int threadId = (int)Thread.currentThread().getId();
+    	CompositeData threadInfo = (CompositeData)threadMBean.invokeMethod("getThreadInfo", new Object[]{threadId, 2});
+    	Assert.assertEquals("The Thread ID", Thread.currentThread().getId(), ThreadInfo.from(threadInfo).getThreadId());
+    	MetaMBean[] pools = gmx.mbeans("java.lang:type=MemoryPool,*");
+    	Assert.assertSame("The shared operations", pools[0].operations, pools[pools.length-1].operations);
+    }
+    
+    /**
+     * Validates that lazy MBean iteration visits every match and queries domains only on demand.
+     */
+    @Test
+    public void testLazyIteration() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	int poolCount = ManagementFactory.getMemoryPoolMXBeans().size();
+    	Assert.assertEquals("The iterated pool count", poolCount, gmx.eachMBean("java.lang:type=MemoryPool,*", new Closure<Void>(this) {
+    		public Void call(Object...args) { return null; }
+    	}));
+    	MetaMBeanIterator iter = new MetaMBeanIterator(gmx, new ObjectName("*:*"), null);
+    	Assert.assertTrue("The iterator has a first MBean", iter.hasNext());
+    	iter.next();
+    	Assert.assertEquals("The number of queried domains", 1, iter.getPages());
+    	int count = 0;
+    	for(MetaMBean bean: gmx.iterate("java.lang:type=MemoryPool,*")) {
+    		Assert.assertEquals("The MBean type", "MemoryPool", bean.getObjectName().getKeyProperty("type"));
+    		count++;
+    	}
+    	Assert.assertEquals("The iterable pool count", poolCount, count);
+    }
+    
+    /**
+     * Validates that a bulk attribute read returns the same values as individual attribute reads.
+     */
+    @Test
+    public void testBulkRead() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	ObjectName pattern = new ObjectName("java.lang:type=MemoryPool,*");
+    	Map<ObjectName, Map<String, Object>> table = gmx.read(pattern, "Name", "Type");
+    	Assert.assertEquals("The number of pools read", ManagementFactory.getMemoryPoolMXBeans().size(), table.size());
+    	for(Map.Entry<ObjectName, Map<String, Object>> entry: table.entrySet()) {
+    		Assert.assertEquals("The pool name", gmx.getAttribute(entry.getKey(), "Name"), entry.getValue().get("Name"));
+    		Assert.assertEquals("The pool type", gmx.getAttribute(entry.getKey(), "Type"), entry.getValue().get("Type"));
+    	}
+    }
+    
+    /**
+     * Validates that a closure batch returns each closure's result or error in order.
+     */
+    @Test
+    public void testClosureBatch() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	List<ClosureResult> results = gmx.batch()
+    		.add(ClosureCompiler.compile("return it.getMBeanCount();"))
+    		.add(ClosureCompiler.compile("throw new IllegalStateException('batch failure');"))
+    		.add(ClosureCompiler.compile("it, a, b -> return a + b;"), 1, 2)
+    		.execute();
+    	Assert.assertEquals("The result count", 3, results.size());
+    	Assert.assertEquals("The MBeanCount", gmx.getMBeanCount(), results.get(0).get());
+    	Assert.assertFalse("The second closure failed", results.get(1).isSuccess());
+    	Assert.assertTrue("The error message", results.get(1).getError().getMessage().contains("batch failure"));
+    	Assert.assertEquals("The sum", 3, results.get(2).get());
+    }
+    
+    /**
+     * Validates that a streaming closure's items are all delivered across chunks, and that closing a stream cancels the closure.
+     */
+    @Test(timeout=10000)
+    public void testClosureStream() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	ClosureStream stream = gmx.stream(10, ClosureCompiler.compile("it, sink, count -> (0..<count).each { sink << it };"), 1000);
+    	int expected = 0;
+    	while(stream.hasNext()) {
+    		Assert.assertEquals("The streamed item", expected++, stream.next());
+    	}
+    	Assert.assertEquals("The streamed item count", 1000, expected);
+    	stream = gmx.stream(10, ClosureCompiler.compile("it, sink -> while(true) { sink << System.nanoTime() };"));
+    	Assert.assertNotNull("The first endless item", stream.next());
+    	stream.close();
+    	Assert.assertFalse("The closed stream has no more items", stream.hasNext());
+    }
+    
+    /**
+     * Validates the execution engine's rejection when saturated, deadlines and cancellation.
+     */
+    @Test(timeout=10000)
+    public void testRemoteExecutionEngine() throws Exception {
+    	RemoteExecutionEngine engine = new RemoteExecutionEngine(1, 1);
+    	final CountDownLatch release = new CountDownLatch(1);
+    	Callable<Object> blocker = new Callable<Object>() {
+    		public Object call() throws Exception {
+    			release.await();
+    			return null;
+    		}
+    	};
+    	try {
+	    	engine.submit("active", blocker);
+	    	engine.submit("queued", blocker);
+	    	try {
+	    		engine.submit("rejected", blocker);
+	    		Assert.fail("The third invocation was not rejected");
+	    	} catch (RejectedExecutionException ree) {}
+	    	Assert.assertEquals("The rejected count", 1L, engine.getRejected());
+	    	Assert.assertEquals("The queued count", 1, engine.getQueued());
+	    	Assert.assertTrue("The queued invocation was cancelled", engine.cancel("queued"));
+	    	release.countDown();
+	    	try {
+	    		engine.execute("slow", new Callable<Object>() {
+	    			public Object call() throws Exception {
+	    				Thread.sleep(5000);
+	    				return null;
+	    			}
+	    		}, 100);
+	    		Assert.fail("The slow invocation did not time out");
+	    	} catch (RuntimeException re) {
+	    		Assert.assertTrue("The timeout cause", re.getCause() instanceof TimeoutException);
+	    	}
+	    	Assert.assertEquals("The timed out count", 1L, engine.getTimedOut());
+	    	Assert.assertEquals("The cancelled count", 1L, engine.getCancelled());
+    	} finally {
+    		engine.shutdown();
+    	}
+    }
+    
+    /**
+     * Validates the per invocation closure metrics and their aggregation into the closure class metrics MBeans
+     */
+    @Test
+    public void testClosureMetrics() throws Exception {
+    	Log2Histogram histogram = new Log2Histogram();
+    	for(long v: new long[]{0, 1, 3, 4, 1000}) histogram.record(v);
+    	histogram.record(-1);
+    	Assert.assertEquals("The histogram count", 5, histogram.getCount());
+    	Assert.assertEquals("The histogram max", 1000, histogram.getMax());
+    	Assert.assertEquals("The histogram median bucket bound", 3, histogram.getPercentile(50));
+    	Assert.assertEquals("The histogram p99", 1000, histogram.getPercentile(99));
+    	Assert.assertEquals("The 1000 bucket", 1, histogram.getBuckets()[Log2Histogram.bucket(1000)]);
+    	
+    	ObjectName owner = new ObjectName("org.helios.gmx:service=RemotableMBeanServer,domain=test,host=localhost,port=1");
+    	ClosureMeter meter = new ClosureMeter(1);
+    	meter.register(ManagementFactory.getPlatformMBeanServer(), owner);
+    	try {
+	    	ClosureMeter.Probe probe = meter.probe("ClosureA", meter.requestSize(new byte[100], new Object[]{"x"}));
+	    	probe.start();
+	    	byte[] allocated = new byte[1024*1024];
+	    	InvocationMetrics metrics = probe.stop(allocated, false);
+	    	Assert.assertTrue("The request size", metrics.getRequestBytes() > 100);
+	    	Assert.assertTrue("The response size", metrics.getResponseBytes() > 1024*1024);
+	    	Assert.assertTrue("The wall time", metrics.getWallTime() >= 0);
+	    	if(meter.isAllocationSupported()) {
+	    		Assert.assertTrue("The allocated bytes", metrics.getAllocatedBytes() >= 1024*1024);
+	    	}
+	    	ObjectName meterOn = new ObjectName(String.format(ClosureMeterMBean.METER_ON_TEMPLATE, "test", "localhost", "1"));
+	    	Assert.assertEquals("The metered invocations", 1L, ManagementFactory.getPlatformMBeanServer().getAttribute(meterOn, "TotalInvocations"));
+	    	Assert.assertEquals("The ClosureA histogram count", 1L, ((long[])ManagementFactory.getPlatformMBeanServer().invoke(meterOn, "getClosureHistogram", 
+	    			new Object[]{"ClosureA", "ResponseBytes"}, new String[]{String.class.getName(), String.class.getName()}))[Log2Histogram.bucket(metrics.getResponseBytes())]);
+	    	meter.probe("ClosureB", -1L).stop(null, true);
+	    	Assert.assertArrayEquals("The metered classes after eviction", new String[]{"ClosureB"}, meter.getClosureClasses());
+	    	Assert.assertEquals("The failed invocations", Long.valueOf(1L), meter.getClosureSummary("ClosureB").get("Errors"));
+	    	meter.setEnabled(false);
+	    	Assert.assertNull("Disabled metering produced metrics", meter.probe("ClosureB", -1L).stop(null, false));
+    	} finally {
+    		meter.unregister();
+    	}
+    	ClosureResult result = Gmx.newInstance().measure(ClosureCompiler.compile("return it.getDefaultDomain();"));
+    	Assert.assertEquals("The measured closure result", ManagementFactory.getPlatformMBeanServer().getDefaultDomain(), result.get());
+    	Assert.assertNotNull("The measured closure metrics", result.getMetrics());
+    }
+
+    /**
+     * Validates that an aggregating listener is passed one aggregate per window of the notifications that passed the filter
+     * @throws Exception thrown on any error
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=10000)
+    public void testAggregatingListener() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	ObjectName objectName = NotificationTriggerService.register(ManagementFactory.getPlatformMBeanServer());
+    	List<Object> aggregates = new CopyOnWriteArrayList<Object>();
+    	ObjectNameAwareListener listener = gmx.addListener(objectName, 
+    			(Closure<Void>)ClosureCompiler.compile("n, list -> list.add(n.getType()); list.add(n.getUserData());"), 
+    			(Closure<Boolean>)ClosureCompiler.compile("n -> return n.getUserData() % 2 == 0;"), 
+    			ClosureCompiler.compile("list -> return list.size();"), 100, null, new Object[]{aggregates});
+    	try {
+    		for(int i = 1; i <= 10; i++) {
+    			ManagementFactory.getPlatformMBeanServer().invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		int total = 0;
+    		while(total < 5) {
+    			Thread.sleep(50);
+    			total = 0;
+    			for(int i = 1; i < aggregates.size(); i+=2) total += (Integer)aggregates.get(i);
+    		}
+    		Assert.assertEquals("The aggregated notification count", 5, total);
+    		Assert.assertEquals("The aggregate notification type", NotificationRelay.AGGREGATE_TYPE, aggregates.get(0));
+    		Assert.assertEquals("The relay subscription count", 1, gmx.localRelay.size());
+    		Assert.assertEquals("The filtered notification count", 5, gmx.localRelay.getFiltered());
+    	} finally {
+    		gmx.removeListener(listener);
+    		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    	}
+    	Assert.assertEquals("The relay subscription count after removal", 0, gmx.localRelay.size());
+    }
+    
+    /**
+     * Validates that a batching listener is passed lists of notifications by batch size and window, and coalesces them by key
+     * @throws Exception thrown on any error
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=10000)
+    public void testBatchingListener() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	ObjectName objectName = NotificationTriggerService.register(ManagementFactory.getPlatformMBeanServer());
+    	List<Object> batches = new CopyOnWriteArrayList<Object>();
+    	Closure<Void> listener = (Closure<Void>)ClosureCompiler.compile("list, batches -> batches.add(list.collect { it.getUserData() });");
+    	ClosureWrappingNotificationListener sized = (ClosureWrappingNotificationListener)gmx.addBatchingListener(objectName, listener, null, 5, 0L, null, null, new Object[]{batches});
+    	try {
+    		for(int i = 1; i <= 12; i++) {
+    			ManagementFactory.getPlatformMBeanServer().invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		while(batches.size() < 2) Thread.sleep(20);
+    		Assert.assertEquals("The first batch", Arrays.asList(1, 2, 3, 4, 5), batches.get(0));
+    		Assert.assertEquals("The second batch", Arrays.asList(6, 7, 8, 9, 10), batches.get(1));
+    		Assert.assertEquals("The pending notifications", 2, sized.getPendingCount());
+    	} finally {
+    		gmx.removeListener(sized);
+    	}
+    	Assert.assertEquals("The batch flushed on removal", Arrays.asList(11, 12), batches.get(2));
+    	batches.clear();
+    	ClosureWrappingNotificationListener coalesced = (ClosureWrappingNotificationListener)gmx.addBatchingListener(objectName, listener, null, 0, 200L, Coalesce.TYPE, null, new Object[]{batches});
+    	try {
+    		for(int i = 1; i <= 10; i++) {
+    			ManagementFactory.getPlatformMBeanServer().invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		while(batches.isEmpty()) Thread.sleep(20);
+    		Assert.assertEquals("The coalesced batch", Arrays.asList(10), batches.get(0));
+    		Assert.assertEquals("The coalesced notifications", 9, coalesced.getCoalescedNotifications());
+    	} finally {
+    		gmx.removeListener(coalesced);
+    		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    	}
+    }
+    
+    /**
+     * Validates that an async listener queues notifications without stalling other listeners, drops overflowing notifications and exposes its counters
+     * @throws Exception thrown on any error
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=20000)
+    public void testAsyncListener() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    	ObjectName objectName = NotificationTriggerService.register(server);
+    	CountDownLatch latch = new CountDownLatch(1);
+    	List<Object> slowValues = new CopyOnWriteArrayList<Object>();
+    	List<Object> fastValues = new CopyOnWriteArrayList<Object>();
+    	AsyncNotificationListener slow = (AsyncNotificationListener)gmx.addAsyncListener(objectName, (Closure<Void>)ClosureCompiler.compile("n, latch, values -> latch.await(); values.add(n.getUserData());"), null, 3, OverflowPolicy.DROP_NEWEST, null, new Object[]{latch, slowValues});
+    	ObjectNameAwareListener fast = gmx.addListener(objectName, (Closure<Void>)ClosureCompiler.compile("n, values -> values.add(n.getUserData());"), new Object[]{fastValues});
+    	ObjectName mbeanObjectName = slow.getMBeanObjectName();
+    	try {
+    		server.invoke(objectName, "sendMeANotification", new Object[]{1}, new String[]{Object.class.getName()});
+    		while(slow.getQueueDepth() > 0) Thread.sleep(10);
+    		for(int i = 2; i <= 10; i++) {
+    			server.invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		Assert.assertEquals("The fast listener values", Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), fastValues);
+    		Assert.assertEquals("The queue depth", 3, server.getAttribute(mbeanObjectName, "QueueDepth"));
+    		Assert.assertEquals("The queue capacity", 3, server.getAttribute(mbeanObjectName, "QueueCapacity"));
+    		Assert.assertEquals("The overflow policy", "DROP_NEWEST", server.getAttribute(mbeanObjectName, "OverflowPolicy"));
+    		Assert.assertEquals("The received notifications", 10L, server.getAttribute(mbeanObjectName, "Received"));
+    		Assert.assertEquals("The dropped notifications", 6L, server.getAttribute(mbeanObjectName, "Dropped"));
+    		latch.countDown();
+    		while(slow.getDispatched() < 4) Thread.sleep(10);
+    		Assert.assertEquals("The slow listener values", Arrays.asList(1, 2, 3, 4), slowValues);
+    		Assert.assertTrue("The max lag", slow.getMaxLag() >= 0L);
+    		Assert.assertEquals("The lag of the empty queue", 0L, slow.getLag());
+    	} finally {
+    		gmx.removeListener(slow);
+    		gmx.removeListener(fast);
+    	}
+    	Assert.assertFalse("The async listener MBean is registered", server.isRegistered(mbeanObjectName));
+    	slowValues.clear();
+    	CountDownLatch gate = new CountDownLatch(1);
+    	AsyncNotificationListener oldest = (AsyncNotificationListener)gmx.addAsyncListener(objectName, (Closure<Void>)ClosureCompiler.compile("n, latch, values -> latch.await(); values.add(n.getUserData());"), null, 2, OverflowPolicy.DROP_OLDEST, null, new Object[]{gate, slowValues});
+    	try {
+    		server.invoke(objectName, "sendMeANotification", new Object[]{1}, new String[]{Object.class.getName()});
+    		while(oldest.getQueueDepth() > 0) Thread.sleep(10);
+    		for(int i = 2; i <= 6; i++) {
+    			server.invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		Assert.assertEquals("The dropped notifications", 3L, oldest.getDropped());
+    		gate.countDown();
+    		while(oldest.getDispatched() < 3) Thread.sleep(10);
+    		Assert.assertEquals("The slow listener values", Arrays.asList(1, 5, 6), slowValues);
+    	} finally {
+    		gmx.removeListener(oldest);
+    		server.unregisterMBean(objectName);
+    	}
+    }
+    
+    /**
+     * Validates that a pattern listener follows the registration of matching MBeans, and that registration events only evaluate indexed candidate patterns
+     * @throws Exception thrown on any error
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=20000)
+    public void testPatternListener() throws Exception {
+    	Gmx gmx = Gmx.newInstance();
+    	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    	ObjectName first = new ObjectName("org.helios.gmx.test:type=PatternTrigger,id=1");
+    	ObjectName second = new ObjectName("org.helios.gmx.test:type=PatternTrigger,id=2");
+    	ObjectName third = new ObjectName("org.helios.gmx.test:type=PatternTrigger,id=3");
+    	server.registerMBean(new NotificationTriggerService(), first);
+    	List<Object> values = new CopyOnWriteArrayList<Object>();
+    	PatternSubscription subscription = (PatternSubscription)gmx.addListener("org.helios.gmx.test:type=PatternTrigger,*", (Closure<Void>)ClosureCompiler.compile("n, values -> values.add(n.getUserData());"), new Object[]{values});
+    	List<PatternSubscription> others = new ArrayList<PatternSubscription>();
+    	try {
+    		Assert.assertEquals("The attached MBeans", Collections.singleton(first), subscription.getAttachedObjectNames());
+    		server.registerMBean(new NotificationTriggerService(), second);
+    		while(subscription.getAttachedObjectNames().size() < 2) Thread.sleep(10);
+    		server.invoke(first, "sendMeANotification", new Object[]{1}, new String[]{Object.class.getName()});
+    		server.invoke(second, "sendMeANotification", new Object[]{2}, new String[]{Object.class.getName()});
+    		Assert.assertEquals("The notification values", Arrays.asList(1, 2), values);
+    		server.unregisterMBean(first);
+    		while(subscription.getAttachedObjectNames().contains(first)) Thread.sleep(10);
+    		PatternSubscriptionRegistry registry = gmx.patternRegistry;
+    		for(int i = 0; i < 1000; i++) {
+    			final ObjectName pattern = new ObjectName("org.helios.gmx.test:type=OtherTrigger" + i + ",*");
+    			others.add(registry.subscribe(new ObjectNameAwareListener() {
+    				public void handleNotification(Notification notification, Object handback) {}
+    				public ObjectName getObjectName() { return pattern; }
+    			}, null, null));
+    		}
+    		Assert.assertEquals("The subscription count", 1001, registry.size());
+    		long evaluations = registry.getEvaluations();
+    		server.registerMBean(new NotificationTriggerService(), third);
+    		while(!subscription.getAttachedObjectNames().contains(third)) Thread.sleep(10);
+    		Assert.assertEquals("The evaluated patterns", 1, registry.getEvaluations() - evaluations);
+    	} finally {
+    		gmx.removeListener(subscription);
+    		for(PatternSubscription other: others) {
+    			gmx.patternRegistry.unsubscribe(other);
+    		}
+    		for(ObjectName objectName: new ObjectName[]{first, second, third}) {
+    			if(server.isRegistered(objectName)) server.unregisterMBean(objectName);
+    		}
+    	}
+    	Assert.assertFalse("The subscription is active", subscription.isActive());
+    	Assert.assertTrue("The attached MBeans after removal", subscription.getAttachedObjectNames().isEmpty());
+    	Assert.assertEquals("The subscription count after removal", 0, gmx.patternRegistry.size());
+    }
+    
+    /**
+     * Validates that the notification journal overwrites its oldest records, and that a journaled listener replays the notifications missing from its sequence
+     * @throws Exception thrown on any error
+     */
+    @SuppressWarnings("unchecked")
+    @Test(timeout=10000)
+    public void testNotificationJournal() throws Exception {
+    	ObjectName source = new ObjectName("org.helios.gmx.test:type=Journal");
+    	NotificationJournal journal = new NotificationJournal(4096);
+    	try {
+    		for(int i = 1; i <= 100; i++) {
+    			Notification notification = new Notification("gmx.test", source, 0L, "Notification #" + i);
+    			notification.setUserData(i);
+    			Notification journaled = journal.append(i % 10 == 0 ? "b" : "a", source, notification);
+    			Assert.assertEquals("The journaled notification", notification, NotificationRelay.unwrap(journaled));
+    		}
+    		Assert.assertTrue("The evicted records", journal.getEvicted() > 0);
+    		Assert.assertEquals("The journaled and evicted records", journal.getJournaled(), journal.size() + journal.getEvicted());
+    		JournalBatch batch = journal.replay("a", 1L, Long.MAX_VALUE);
+    		Assert.assertEquals("The last sequence", 90L, batch.getLastSequence());
+    		Assert.assertEquals("The replayed and lost notifications", 90L, batch.getNotifications().size() + batch.getLost());
+    		long sequence = batch.getLost();
+    		for(Notification notification: batch.getNotifications()) {
+    			Assert.assertEquals("The replayed sequence", ++sequence, notification.getSequenceNumber());
+    		}
+    		Assert.assertEquals("The last replayed value", 99, NotificationRelay.unwrap(batch.getNotifications().get(batch.getNotifications().size()-1)).getUserData());
+    		batch = journal.replay("b", 10L, 10L);
+    		Assert.assertEquals("The replayed range", 1, batch.getNotifications().size());
+    		Assert.assertEquals("The replayed range value", 100, NotificationRelay.unwrap(batch.getNotifications().get(0)).getUserData());
+    	} finally {
+    		journal.close();
+    	}
+    	Assert.assertFalse("The journal file exists", journal.getFile().exists());
+    	
+    	Gmx gmx = Gmx.newInstance();
+    	ObjectName objectName = NotificationTriggerService.register(ManagementFactory.getPlatformMBeanServer());
+    	List<Object> values = new CopyOnWriteArrayList<Object>();
+    	JournaledNotificationListener listener = (JournaledNotificationListener)gmx.addJournaledListener(objectName, (Closure<Void>)ClosureCompiler.compile("n, values -> values.add(n.getUserData());"), 
+    			(Closure<Boolean>)ClosureCompiler.compile("n -> return n.getUserData() % 2 == 0;"), null, new Object[]{values});
+    	try {
+    		for(int i = 1; i <= 4; i++) {
+    			ManagementFactory.getPlatformMBeanServer().invoke(objectName, "sendMeANotification", new Object[]{i}, new String[]{Object.class.getName()});
+    		}
+    		Assert.assertEquals("The journaled values", Arrays.asList(2, 4), values);
+    		Notification missed = new Notification("gmx.test", objectName, 0L, "Missed");
+    		missed.setUserData(6);
+    		gmx.localJournal.append(listener.getSubscriptionId(), objectName, missed);
+    		ManagementFactory.getPlatformMBeanServer().invoke(objectName, "sendMeANotification", new Object[]{8}, new String[]{Object.class.getName()});
+    		Assert.assertEquals("The values after the gap", Arrays.asList(2, 4, 6, 8), values);
+    		Assert.assertEquals("The detected gaps", 1L, listener.getGaps());
+    		missed.setUserData(10);
+    		gmx.localJournal.append(listener.getSubscriptionId(), objectName, missed);
+    		Assert.assertEquals("The recovered notifications", 1, listener.recover());
+    		Assert.assertEquals("The values after recovery", Arrays.asList(2, 4, 6, 8, 10), values);
+    		Assert.assertEquals("The replayed notifications", 2L, listener.getReplayed());
+    		Assert.assertEquals("The last sequence", 5L, listener.getLastSequence());
+    	} finally {
+    		gmx.removeListener(listener);
+    		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    	}
+    }
+    
+    /**
+     * Validates that scheduled closures buffer their samples in sequence, report overflow and expire when abandoned
+     * @throws Exception thrown on any error
+     */
+    @Test(timeout=20000)
+    public void testScheduledClosure() throws Exception {
+    	ClosureSchedule schedule = Gmx.newInstance().schedule(10, 4, ClosureCompiler.compile("return it.getMBeanCount();"));
+    	try {
+    		Thread.sleep(200);
+    		List<ClosureSample> samples = schedule.fetch();
+    		Assert.assertEquals("The number of buffered samples", 4, samples.size());
+    		Assert.assertTrue("The overflowed samples", schedule.getDropped() > 0);
+    		long last = schedule.getDropped();
+    		for(ClosureSample sample: samples) {
+    			Assert.assertTrue("The sample was successful", sample.isSuccess());
+    			Assert.assertEquals("The sample sequence", last+1, sample.getSequence());
+    			Assert.assertTrue("The sample value", sample.get() instanceof Integer);
+    			last = sample.getSequence();
+    		}
+    		Assert.assertEquals("The last sequence", last, schedule.getLastSequence());
+    		Thread.sleep(30);
+    		for(ClosureSample sample: schedule.fetch()) {
+    			Assert.assertTrue("A sample was fetched twice", sample.getSequence() > last);
+    		}
+    		Assert.assertTrue("The schedule is active", schedule.isActive());
+    	} finally {
+    		schedule.close();
+    	}
+    	Assert.assertFalse("The closed schedule is active", schedule.isActive());
+    	
+    	ClosureScheduler scheduler = new ClosureScheduler(1);
+    	try {
+    		scheduler.setIdleTimeout(300);
+    		final AtomicInteger calls = new AtomicInteger();
+    		String id = scheduler.schedule("test", new Callable<Object>() {
+    			public Object call() throws Exception {
+    				if(calls.incrementAndGet()==2) throw new Exception("Sample failure");
+    				return calls.get();
+    			}
+    		}, 10, 1024);
+    		Thread.sleep(100);
+    		SampleBatch batch = scheduler.fetch(id, 0, 1024);
+    		ClosureSample failed = null;
+    		for(ClosureSample sample: batch.getSamples()) {
+    			if(sample.getSequence()==2) failed = sample;
+    		}
+    		Assert.assertNotNull("The failed sample", failed);
+    		Assert.assertFalse("The failed sample was successful", failed.isSuccess());
+    		Assert.assertNotNull("The failed sample error", failed.getError());
+    		long deadline = System.currentTimeMillis() + 5000;
+    		while(scheduler.size()>0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+    		Assert.assertEquals("The abandoned schedule count", 0, scheduler.size());
+    		Assert.assertEquals("The schedule expirations", 1, scheduler.getExpirations());
+    		try {
+    			scheduler.fetch(id, batch.getLastSequence(), 16);
+    			Assert.fail("The expired schedule was fetched");
+    		} catch (IllegalArgumentException iae) {}
+    	} finally {
+    		scheduler.shutdown();
+    	}
+    }
+    
+    /**
+     * Validates that repeat script invocations reuse the compiled script and that the script cache is bounded.
+     */
+    @Test
+    public void testScriptCache() throws Exception {
+    	RemotableMBeanServer remotable = new RemotableMBeanServer();
+    	for(int i = 0; i < 3; i++) {
+    		Assert.assertEquals("The script result", 42, remotable.invokeScript("return arguments[0] * 2", 21));
+    	}
+    	Assert.assertEquals("The script cache misses", 1L, remotable.getScriptCacheMisses());
+    	Assert.assertEquals("The script cache hits", 2L, remotable.getScriptCacheHits());
+    	remotable.setScriptCacheMaxSize(1);
+    	Assert.assertEquals("The second script result", 3, remotable.invokeScript("return arguments.length", 1, 2, 3));
+    	Assert.assertEquals("The script cache evictions", 1L, remotable.getScriptCacheEvictions());
+    	Assert.assertEquals("The script cache size", 1, remotable.getScriptCacheSize());
+    }
+    
+    /**
+     * Validates that the reverse class loader serves repeat class requests from its byte cache, gzipped when the client accepts it.
+     */
+    @Test
+    public void testReverseClassLoaderByteCache() throws Exception {
+    	ReverseClassLoader rcl = ReverseClassLoader.getInstance();
+    	ClassByteCache cache = rcl.getByteCache();
+    	Assert.assertTrue("The cache MBean is registered", ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(ClassByteCacheMBean.CACHE_ON)));
+    	String resource = Gmx.class.getName().replace('.', '/') + ".class";
+    	byte[] raw = readFully(Gmx.class.getClassLoader().getResourceAsStream(resource));
+    	long hits = cache.getHits();
+    	long served = cache.getBytesServed();
+    	long total = 0;
+    	for(int i = 0; i < 2; i++) {
+    		HttpURLConnection conn = (HttpURLConnection)new URL(rcl.getBaseURL(), resource).openConnection();
+    		conn.setRequestProperty("Accept-Encoding", "gzip");
+    		Assert.assertEquals("The response code", 200, conn.getResponseCode());
+    		Assert.assertEquals("The content encoding", "gzip", conn.getContentEncoding());
+    		byte[] body = readFully(conn.getInputStream());
+    		Assert.assertEquals("The content length", body.length, conn.getContentLength());
+    		Assert.assertTrue("The body was compressed", body.length < raw.length);
+    		Assert.assertArrayEquals("The uncompressed body", raw, readFully(new GZIPInputStream(new ByteArrayInputStream(body))));
+    		total += body.length;
+    	}
+    	Assert.assertTrue("The cache hits", cache.getHits() - hits >= 1);
+    	Assert.assertTrue("The bytes served", cache.getBytesServed() - served >= total);
+    	Assert.assertTrue("The hit ratio", cache.getHitRatio() > 0);
+    	HttpURLConnection missing = (HttpURLConnection)new URL(rcl.getBaseURL(), "org/helios/gmx/NoSuchClass.class").openConnection();
+    	Assert.assertEquals("The missing class response code", 404, missing.getResponseCode());
+    	
+    	ClassByteCache bounded = new ClassByteCache(1);
+    	ClassByteCache.CachedBytes first = bounded.cache("a", raw, true);
+    	Assert.assertSame("The cached entry by name", first, bounded.get("a"));
+    	Assert.assertEquals("The cached bytes", first.getSize(), bounded.getCachedBytes());
+    	Assert.assertNotSame("The entry for another name", first, bounded.cache("b", raw, false));
+    	Assert.assertNull("The evicted entry", bounded.get("a"));
+    	Assert.assertEquals("The evictions", 1L, bounded.getEvictions());
+    	bounded.clear();
+    	Assert.assertEquals("The cleared bytes", 0L, bounded.getCachedBytes());
+    }
+    
+    /**
+     * Validates that a closure class and its nested closures are served as one bundle and defined from it by the remote closure class loader.
+     */
+    @Test
+    public void testClassBundle() throws Exception {
+    	ReverseClassLoader rcl = ReverseClassLoader.getInstance();
+    	Closure<?> closure = ClosureCompiler.compile("return [1, 2].collect { x -> [x].collect { y -> y * 2 } };");
+    	String closureName = closure.getClass().getName();
+    	Assert.assertTrue("The closure bytecode is available", rcl.getByteCode(closure.getClass())!=null);
+    	Assert.assertEquals("The local closure result", Arrays.asList(Arrays.asList(2), Arrays.asList(4)), closure.call());
+    	byte[] bytecode = rcl.getByteCode(closure.getClass());
+    	Assert.assertTrue("The closure references itself", ByteCodeRepository.getReferencedClasses(bytecode).contains(closureName.replace('.', '/')));
+    	
+    	URL bundleUrl = new URL(rcl.getBaseURL(), ReverseClassLoader.HTTP_URI_BUNDLE_PREFIX + closureName.replace('.', '/') + ".class");
+    	List<String> bundled = new ArrayList<String>();
+    	JarInputStream jarIn = new JarInputStream(bundleUrl.openStream());
+    	try {
+    		JarEntry entry = null;
+    		while((entry=jarIn.getNextJarEntry())!=null) {
+    			bundled.add(entry.getName());
+    		}
+    	} finally {
+    		jarIn.close();
+    	}
+    	Assert.assertEquals("The bundle root", closureName.replace('.', '/') + ".class", bundled.get(0));
+    	Assert.assertEquals("The bundled class count", 3, bundled.size());
+    	String nestedName = bundled.get(2).replace(".class", "").replace('/', '.');
+    	Assert.assertTrue("The bundled nested closure", nestedName.startsWith(closureName));
+    	
+    	ClosureClassCache closureCache = new ClosureClassCache(1);
+    	ClassLoader loader = closureCache.getClassLoader(ClosureClassCache.key(closureName, "test"), rcl.getBaseURL(), getClass().getClassLoader());
+    	long misses = rcl.getByteCache().getMisses();
+    	Assert.assertSame("The bundled closure class loader", loader, loader.loadClass(closureName).getClassLoader());
+    	Assert.assertSame("The bundled nested closure class loader", loader, loader.loadClass(nestedName).getClassLoader());
+    	Assert.assertNotSame("The bundled closure class", closure.getClass(), loader.loadClass(closureName));
+    	Assert.assertEquals("The bundle was served from the cache", misses, rcl.getByteCache().getMisses());
+    }
+    
+    /**
+     * Validates that resources are served with entity tags, that a current copy is answered with a not modified response,
+     * and that the caching MLet revalidates its disk cached copies instead of downloading them again.
+     */
+    @Test
+    public void testConditionalClassLoading() throws Exception {
+    	ReverseClassLoader rcl = ReverseClassLoader.getInstance();
+    	String resource = Gmx.class.getName().replace('.', '/') + ".class";
+    	HttpURLConnection conn = (HttpURLConnection)new URL(rcl.getBaseURL(), resource).openConnection();
+    	Assert.assertEquals("The response code", 200, conn.getResponseCode());
+    	String etag = conn.getHeaderField("ETag");
+    	readFully(conn.getInputStream());
+    	Assert.assertNotNull("The entity tag", etag);
+    	Assert.assertEquals("The cache control", ReverseClassLoader.CACHE_CONTROL, conn.getHeaderField("Cache-Control"));
+    	long notModified = rcl.getByteCache().getNotModified();
+    	conn = (HttpURLConnection)new URL(rcl.getBaseURL(), resource).openConnection();
+    	conn.setRequestProperty("If-None-Match", etag);
+    	Assert.assertEquals("The conditional response code", 304, conn.getResponseCode());
+    	Assert.assertEquals("The not modified count", notModified + 1, rcl.getByteCache().getNotModified());
+    	conn = (HttpURLConnection)new URL(rcl.getBaseURL(), resource).openConnection();
+    	conn.setRequestProperty("Accept-Encoding", "gzip");
+    	conn.setRequestProperty("If-None-Match", etag);
+    	Assert.assertEquals("The conditional response code for another representation", 200, conn.getResponseCode());
+    	readFully(conn.getInputStream());
+    	
+    	File cacheDir = new File(System.getProperty("java.io.tmpdir"), "gmx-classcache-test-" + System.nanoTime());
+    	String priorDir = System.getProperty(CachingMLet.CACHE_DIR_PROP);
+    	System.setProperty(CachingMLet.CACHE_DIR_PROP, cacheDir.getAbsolutePath());
+    	try {
+    		CachingMLet first = new CachingMLet(new URL[]{rcl.getBaseURL()}, false);
+    		URL cached = first.findResource(resource);
+    		Assert.assertEquals("The cached resource protocol", "file", cached.getProtocol());
+    		Assert.assertEquals("The downloads", 1L, first.getDownloads());
+    		Assert.assertArrayEquals("The cached resource", readFully(Gmx.class.getClassLoader().getResourceAsStream(resource)), readFully(cached.openStream()));
+    		CachingMLet second = new CachingMLet(new URL[]{rcl.getBaseURL()}, false);
+    		Assert.assertEquals("The revalidated resource", cached, second.findResource(resource));
+    		Assert.assertEquals("The revalidated downloads", 0L, second.getDownloads());
+    		Assert.assertEquals("The revalidated not modified count", 1L, second.getNotModified());
+    		Assert.assertNull("The missing resource", second.findResource("org/helios/gmx/NoSuchClass.class"));
+    	} finally {
+    		if(priorDir==null) System.clearProperty(CachingMLet.CACHE_DIR_PROP);
+    		else System.setProperty(CachingMLet.CACHE_DIR_PROP, priorDir);
+    		delete(cacheDir);
+    	}
+    }
+    
+    /**
+     * Validates that file dynamic resources are served from a memory mapping, with a gzipped sidecar and single byte range requests.
+     */
+    @Test
+    public void testMappedResourceRanges() throws Exception {
+    	ReverseClassLoader rcl = ReverseClassLoader.getInstance();
+    	File file = File.createTempFile("gmx-mapped", ".txt");
+    	file.deleteOnExit();
+    	StringBuilder b = new StringBuilder();
+    	for(int i = 0; i < 2000; i++) b.append("GroovyMX mapped resource line ").append(i).append('\n');
+    	byte[] raw = b.toString().getBytes("UTF-8");
+    	FileOutputStream fos = new FileOutputStream(file);
+    	try {
+    		fos.write(raw);
+    	} finally {
+    		fos.close();
+    	}
+    	rcl.addDynamicResource(file.toURI().toURL());
+    	URL url = new URL(rcl.getBaseURL(), file.getName());
+    	
+    	HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+    	Assert.assertEquals("The response code", 200, conn.getResponseCode());
+    	Assert.assertEquals("The accept ranges", "bytes", conn.getHeaderField("Accept-Ranges"));
+    	Assert.assertArrayEquals("The mapped body", raw, readFully(conn.getInputStream()));
+    	MappedResource mapped = new MappedResource(file, MappedResource.DEFAULT_SIDECAR_DIR);
+    	Assert.assertEquals("The entity tag", ReverseClassLoader.etag(mapped.getHash(), false), conn.getHeaderField("ETag"));
+    	Assert.assertTrue("The gzipped sidecar", new File(MappedResource.DEFAULT_SIDECAR_DIR, mapped.getHash() + ".gz").isFile());
+    	
+    	conn = (HttpURLConnection)url.openConnection();
+    	conn.setRequestProperty("Accept-Encoding", "gzip");
+    	Assert.assertEquals("The gzipped response code", 200, conn.getResponseCode());
+    	Assert.assertEquals("The content encoding", "gzip", conn.getContentEncoding());
+    	byte[] body = readFully(conn.getInputStream());
+    	Assert.assertEquals("The gzipped body length", mapped.getGzippedSize(), body.length);
+    	Assert.assertArrayEquals("The uncompressed body", raw, readFully(new GZIPInputStream(new ByteArrayInputStream(body))));
+    	
+    	conn = (HttpURLConnection)url.openConnection();
+    	conn.setRequestProperty("Range", "bytes=2-5");
+    	Assert.assertEquals("The range response code", 206, conn.getResponseCode());
+    	Assert.assertEquals("The content range", "bytes 2-5/" + raw.length, conn.getHeaderField("Content-Range"));
+    	Assert.assertArrayEquals("The range body", Arrays.copyOfRange(raw, 2, 6), readFully(conn.getInputStream()));
+    	
+    	conn = (HttpURLConnection)url.openConnection();
+    	conn.setRequestProperty("Range", "bytes=-10");
+    	Assert.assertEquals("The suffix range response code", 206, conn.getResponseCode());
+    	Assert.assertArrayEquals("The suffix range body", Arrays.copyOfRange(raw, raw.length - 10, raw.length), readFully(conn.getInputStream()));
+    	
+    	conn = (HttpURLConnection)url.openConnection();
+    	conn.setRequestProperty("Range", "bytes=2-5");
+    	conn.setRequestProperty("If-Range", "\"stale\"");
+    	Assert.assertEquals("The stale If-Range response code", 200, conn.getResponseCode());
+    	readFully(conn.getInputStream());
+    	
+    	conn = (HttpURLConnection)url.openConnection();
+    	conn.setRequestProperty("Range", "bytes=" + raw.length + "-");
+    	Assert.assertEquals("The unsatisfiable range response code", 416, conn.getResponseCode());
+    	Assert.assertEquals("The unsatisfiable content range", "bytes */" + raw.length, conn.getHeaderField("Content-Range"));
+    }
+    
+    /**
+     * Validates that the reverse class loader rejects requests over the per host limit with a Retry-After, that clients retry them,
+     * that a backed up server queue rejects requests, and that latencies are recorded by resource type.
+     */
+    @Test
+    public void testReverseClassLoaderThrottle() throws Exception {
+    	ReverseClassLoader rcl = ReverseClassLoader.getInstance();
+    	final RequestThrottle throttle = rcl.getThrottle();
+    	Assert.assertTrue("The throttle MBean is registered", ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(RequestThrottleMBean.THROTTLE_ON)));
+    	Assert.assertEquals("The bounded pool", RequestThrottle.DEFAULT_MAX_THREADS, throttle.getMaxThreads());
+    	URL url = new URL(rcl.getBaseURL(), Gmx.class.getName().replace('.', '/') + ".class");
+    	long classCount = throttle.getHistogram("Class").getCount();
+    	HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+    	Assert.assertEquals("The response code", 200, conn.getResponseCode());
+    	readFully(conn.getInputStream());
+    	Assert.assertEquals("The class latency count", classCount + 1, throttle.getHistogram("Class").getCount());
+    	Assert.assertEquals("The class latency summary count", classCount + 1, throttle.getLatencySummary().get("ClassCount").longValue());
+    	
+    	final int maxPerHost = throttle.getMaxPerHost();
+    	int retryAfter = throttle.getRetryAfter();
+    	long rejected = throttle.getRejectedPerHost();
+    	try {
+    		throttle.setMaxPerHost(0);
+    		throttle.setRetryAfter(1);
+    		conn = (HttpURLConnection)url.openConnection();
+    		Assert.assertEquals("The busy response code", 503, conn.getResponseCode());
+    		Assert.assertEquals("The Retry-After", "1", conn.getHeaderField("Retry-After"));
+    		Assert.assertEquals("The per host rejections", rejected + 1, throttle.getRejectedPerHost());
+    		
+    		long retries = new CachingMLet(new URL[0], false).getRetries();
+    		Thread restorer = new Thread() {
+    			public void run() {
+    				try { Thread.sleep(300); } catch (Exception e) {}
+    				throttle.setMaxPerHost(maxPerHost);
+    			}
+    		};
+    		restorer.setDaemon(true);
+    		restorer.start();
+    		conn = CachingMLet.connect(url, null);
+    		Assert.assertEquals("The retried response code", 200, conn.getResponseCode());
+    		readFully(conn.getInputStream());
+    		Assert.assertTrue("The retries", new CachingMLet(new URL[0], false).getRetries() > retries);
+    	} finally {
+    		throttle.setMaxPerHost(maxPerHost);
+    		throttle.setRetryAfter(retryAfter);
+    	}
+    	
+    	ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(4));
+    	final CountDownLatch latch = new CountDownLatch(1);
+    	Runnable blocker = new Runnable() {
+    		public void run() {
+    			try { latch.await(); } catch (Exception e) {}
+    		}
+    	};
+    	try {
+    		RequestThrottle saturated = new RequestThrottle(executor, 4);
+    		Assert.assertTrue("The admitted request", saturated.admit("host"));
+    		saturated.release("host");
+    		executor.execute(blocker);
+    		executor.execute(blocker);
+    		executor.execute(blocker);
+    		Assert.assertFalse("The saturated request", saturated.admit("host"));
+    		Assert.assertEquals("The saturation rejections", 1L, saturated.getRejectedSaturated());
+    		Assert.assertTrue("The in flight hosts", saturated.getInFlight().isEmpty());
+    	} finally {
+    		latch.countDown();
+    		executor.shutdown();
+    	}
+    }
+    
+    /**
+     * Deletes the passed file or directory tree
+     * @param file The file to delete
+     */
+    protected static void delete(File file) {
+    	File[] files = file.listFiles();
+    	if(files!=null) {
+    		for(File f: files) delete(f);
+    	}
+    	file.delete();
+    }
+    
+    /**
+     * Reads the passed stream to the end and closes it
+     * @param is The stream to read
+     * @return the bytes read
+     */
+    protected static byte[] readFully(InputStream is) throws IOException {
+    	try {
+    		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    		byte[] buffer = new byte[8192];
+    		int bytesRead = -1;
+    		while((bytesRead=is.read(buffer))!=-1) {
+    			baos.write(buffer, 0, bytesRead);
+    		}
+    		return baos.toByteArray();
+    	} finally {
+    		is.close();
+    	}
+    }
+    
+    
+}